@@ -72,6 +72,7 @@ public class JobSpecificationActivityClusterGraphGeneratorFactory implements IAc
         acg.setMaxReattempts(spec.getMaxReattempts());
         acg.setJobletEventListenerFactory(spec.getJobletEventListenerFactory());
         acg.setGlobalJobDataFactory(spec.getGlobalJobDataFactory());
+        acg.setSpillCompressorFactory(spec.getSpillCompressorFactory());
         acg.setConnectorPolicyAssignmentPolicy(spec.getConnectorPolicyAssignmentPolicy());
         acg.setUseConnectorPolicyForScheduling(spec.isUseConnectorPolicyForScheduling());
         acg.setReportTaskDetails(spec.isReportTaskDetails());
@@ -14,8 +14,65 @@
  */
 package edu.uci.ics.hyracks.api.comm;
 
+import java.nio.ByteBuffer;
+
+import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
+
+/**
+ * A frame normally has the frame size of the job. Tuples that do not fit into such a frame are carried in a large
+ * frame, whose capacity is a multiple of the frame size and whose layout is the same as that of a regular frame, with
+ * the tuple count and tuple offsets stored at the end of the buffer.
+ * When a large frame travels through a channel or file that moves regular frames, it is sent as a header frame,
+ * whose tuple count holds the negated number of frames that follow, followed by the content of the large frame cut
+ * into regular frames.
+ */
 public class FrameHelper {
     public static int getTupleCountOffset(int frameSize) {
         return frameSize - 4;
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the number of regular frames needed to hold the given number of bytes.
+     */
+    public static int getFrameCount(int frameSize, int bytes) {
+        return bytes <= frameSize ? 1 : (bytes + frameSize - 1) / frameSize;
+    }
+
+    /**
+     * Makes the header frame announce a large frame that spans frameCount regular frames.
+     */
+    public static void putLargeFrameHeader(ByteBuffer header, int frameCount) {
+        header.putInt(getTupleCountOffset(header.capacity()), -frameCount);
+    }
+
+    /**
+     * Returns the number of regular frames announced by the frame if it is a large frame header, or 0 otherwise.
+     */
+    public static int getLargeFrameCount(ByteBuffer frame) {
+        int tupleCount = frame.getInt(getTupleCountOffset(frame.capacity()));
+        return tupleCount < 0 ? -tupleCount : 0;
+    }
+
+    /**
+     * Reads the regular frames that follow a large frame header from the reader and assembles them into largeFrame,
+     * using frame, which must be a regular frame, as the read buffer. On return, largeFrame is readable from its start.
+     */
+    public static void readLargeFrame(IFrameReader reader, ByteBuffer frame, ByteBuffer largeFrame, int frameCount)
+            throws HyracksDataException {
+        if (largeFrame.capacity() < frameCount * frame.capacity()) {
+            throw new HyracksDataException("Large frame of " + frameCount + " frames does not fit into "
+                    + largeFrame.capacity() + " bytes");
+        }
+        largeFrame.clear();
+        for (int i = 0; i < frameCount; ++i) {
+            if (!reader.nextFrame(frame)) {
+                throw new HyracksDataException("Premature end of large frame: read " + i + " of " + frameCount
+                        + " frames");
+            }
+            frame.position(0);
+            frame.limit(frame.capacity());
+            largeFrame.put(frame);
+        }
+        largeFrame.flip();
+    }
+}
@@ -25,6 +25,12 @@ public interface IHyracksCommonContext {
     public IIOManager getIOManager();
 
     public ByteBuffer allocateFrame() throws HyracksDataException;
+
+    /**
+     * Allocates a frame that can hold at least the given number of bytes. Its capacity is rounded up to a multiple
+     * of the frame size, and it counts as that many frames when it is deallocated.
+     */
+    public ByteBuffer allocateFrame(int bytes) throws HyracksDataException;
     
     public void deallocateFrames(int frameCount);
 }
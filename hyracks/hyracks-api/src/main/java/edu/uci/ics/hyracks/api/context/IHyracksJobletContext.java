@@ -15,6 +15,7 @@
 package edu.uci.ics.hyracks.api.context;
 
 import edu.uci.ics.hyracks.api.application.INCApplicationContext;
+import edu.uci.ics.hyracks.api.io.IBlockCompressorFactory;
 import edu.uci.ics.hyracks.api.io.IWorkspaceFileFactory;
 import edu.uci.ics.hyracks.api.job.JobId;
 import edu.uci.ics.hyracks.api.job.profiling.counters.ICounterContext;
@@ -29,6 +30,12 @@ public interface IHyracksJobletContext extends IWorkspaceFileFactory, IDeallocat
 
     public Object getGlobalJobData();
 
+    /**
+     * @return the factory of the compressors for the workspace files that operators spill to, or null if the job
+     *         spills uncompressed
+     */
+    public IBlockCompressorFactory getSpillCompressorFactory();
+
     public Class<?> loadClass(String className);
 
     public ClassLoader getClassLoader();
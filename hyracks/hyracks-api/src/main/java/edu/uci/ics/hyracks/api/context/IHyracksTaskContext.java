@@ -14,6 +14,8 @@
  */
 package edu.uci.ics.hyracks.api.context;
 
+import java.util.concurrent.Executor;
+
 import edu.uci.ics.hyracks.api.dataflow.TaskAttemptId;
 import edu.uci.ics.hyracks.api.dataset.IDatasetPartitionManager;
 import edu.uci.ics.hyracks.api.deployment.DeploymentId;
@@ -28,6 +30,11 @@ public interface IHyracksTaskContext extends IHyracksCommonContext, IWorkspaceFi
 
     public TaskAttemptId getTaskAttemptId();
 
+    /**
+     * Returns the executor of the node controller, for work that a task hands off to other threads.
+     */
+    public Executor getExecutor();
+
     public ICounterContext getCounterContext();
 
     public IDatasetPartitionManager getDatasetPartitionManager();
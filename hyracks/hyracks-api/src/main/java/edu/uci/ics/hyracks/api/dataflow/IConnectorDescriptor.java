@@ -28,6 +28,7 @@ import edu.uci.ics.hyracks.api.constraints.IConstraintAcceptor;
 import edu.uci.ics.hyracks.api.context.IHyracksTaskContext;
 import edu.uci.ics.hyracks.api.dataflow.value.RecordDescriptor;
 import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
+import edu.uci.ics.hyracks.api.io.IBlockCompressorFactory;
 import edu.uci.ics.hyracks.api.job.ActivityCluster;
 
 /**
@@ -115,6 +116,13 @@ public interface IConnectorDescriptor extends Serializable {
      */
     public boolean allProducersToAllConsumers();
 
+    /**
+     * Gets the factory of the compressors for the frames that this connector sends over the network.
+     * 
+     * @return the factory, or null to send frames uncompressed
+     */
+    public IBlockCompressorFactory getFrameCompressorFactory();
+
     /**
      * Gets the display name.
      */
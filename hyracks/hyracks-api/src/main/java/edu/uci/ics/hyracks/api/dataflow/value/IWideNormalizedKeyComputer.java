@@ -0,0 +1,36 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.hyracks.api.dataflow.value;
+
+/**
+ * A normalized key computer that produces a key of several ints instead of one.
+ * The ints are compared as unsigned values, in order; if two keys differ, their
+ * order must agree with the order of the full field values. Equal keys say
+ * nothing, and the caller then falls back to the binary comparators.
+ * The first int alone must also be a valid normalized key, so callers that only
+ * keep one int can use {@link #normalize(byte[], int, int)}.
+ */
+public interface IWideNormalizedKeyComputer extends INormalizedKeyComputer {
+    /**
+     * @return the number of ints in a normalized key
+     */
+    public int getNormalizedKeyLength();
+
+    /**
+     * Writes {@link #getNormalizedKeyLength()} ints of the normalized key of a field into target,
+     * starting at targetOffset.
+     */
+    public void normalize(byte[] bytes, int start, int length, int[] target, int targetOffset);
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.hyracks.api.io;
+
+import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
+
+/**
+ * Compresses frames one block at a time before they are spilled to workspace files. Instances are not thread-safe and
+ * may keep scratch state between calls.
+ */
+public interface IBlockCompressor {
+    /**
+     * @return an upper bound of the size of the block that compress() produces for an input of srcLength bytes
+     */
+    public int getMaxCompressedLength(int srcLength);
+
+    /**
+     * Compresses src[srcOffset, srcOffset + srcLength) into dest, which must have room for
+     * getMaxCompressedLength(srcLength) bytes starting at destOffset.
+     *
+     * @return the size of the compressed block
+     */
+    public int compress(byte[] src, int srcOffset, int srcLength, byte[] dest, int destOffset)
+            throws HyracksDataException;
+
+    /**
+     * Decompresses a block produced by compress() into dest[destOffset, destOffset + destLength).
+     *
+     * @return the size of the decompressed data
+     * @throws HyracksDataException
+     *             if the block is corrupt or does not fit into destLength bytes
+     */
+    public int decompress(byte[] src, int srcOffset, int srcLength, byte[] dest, int destOffset, int destLength)
+            throws HyracksDataException;
+}
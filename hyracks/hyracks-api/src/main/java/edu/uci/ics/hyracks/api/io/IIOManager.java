@@ -32,6 +32,19 @@ public interface IIOManager {
         METADATA_ASYNC_DATA_ASYNC
     }
 
+    /**
+     * Priority classes of I/O requests. When a device is saturated, queued requests are served in the order of the
+     * classes below, with occasional grants to lower classes so that they cannot starve.
+     */
+    public enum IOPriority {
+        /** I/O that a running query waits on, e.g. index page reads. */
+        FOREGROUND,
+        /** Spilling and reading back of intermediate results, e.g. sort runs and materialized partitions. */
+        SPILL,
+        /** Write-back of index pages, e.g. LSM flushes and merges. */
+        BACKGROUND
+    }
+
     public List<IODeviceHandle> getIODevices();
 
     public IFileHandle open(FileReference fileRef, FileReadWriteMode rwMode, FileSyncMode syncMode)
@@ -39,12 +52,29 @@ public interface IIOManager {
 
     public int syncWrite(IFileHandle fHandle, long offset, ByteBuffer data) throws HyracksDataException;
 
+    public int syncWrite(IFileHandle fHandle, long offset, ByteBuffer data, IOPriority priority)
+            throws HyracksDataException;
+
+    /**
+     * Writes the remaining bytes of the given buffers back to back, starting at offset, using a single gathering
+     * write where possible.
+     */
+    public long syncWrite(IFileHandle fHandle, long offset, ByteBuffer[] dataArray, IOPriority priority)
+            throws HyracksDataException;
+
     public int syncRead(IFileHandle fHandle, long offset, ByteBuffer data) throws HyracksDataException;
 
+    public int syncRead(IFileHandle fHandle, long offset, ByteBuffer data, IOPriority priority)
+            throws HyracksDataException;
+
     public IIOFuture asyncWrite(IFileHandle fHandle, long offset, ByteBuffer data);
 
+    public IIOFuture asyncWrite(IFileHandle fHandle, long offset, ByteBuffer data, IOPriority priority);
+
     public IIOFuture asyncRead(IFileHandle fHandle, long offset, ByteBuffer data);
 
+    public IIOFuture asyncRead(IFileHandle fHandle, long offset, ByteBuffer data, IOPriority priority);
+
     public void close(IFileHandle fHandle) throws HyracksDataException;
 
     public void sync(IFileHandle fileHandle, boolean metadata) throws HyracksDataException;
@@ -28,6 +28,7 @@ import edu.uci.ics.hyracks.api.dataflow.ActivityId;
 import edu.uci.ics.hyracks.api.dataflow.ConnectorDescriptorId;
 import edu.uci.ics.hyracks.api.dataflow.IConnectorDescriptor;
 import edu.uci.ics.hyracks.api.dataflow.connectors.IConnectorPolicyAssignmentPolicy;
+import edu.uci.ics.hyracks.api.io.IBlockCompressorFactory;
 
 public class ActivityClusterGraph implements Serializable {
     private static final long serialVersionUID = 1L;
@@ -48,6 +49,8 @@ public class ActivityClusterGraph implements Serializable {
 
     private IGlobalJobDataFactory globalJobDataFactory;
 
+    private IBlockCompressorFactory spillCompressorFactory;
+
     private IConnectorPolicyAssignmentPolicy connectorPolicyAssignmentPolicy;
 
     private boolean useConnectorPolicyForScheduling;
@@ -132,6 +135,14 @@ public class ActivityClusterGraph implements Serializable {
         this.connectorPolicyAssignmentPolicy = connectorPolicyAssignmentPolicy;
     }
 
+    public IBlockCompressorFactory getSpillCompressorFactory() {
+        return spillCompressorFactory;
+    }
+
+    public void setSpillCompressorFactory(IBlockCompressorFactory spillCompressorFactory) {
+        this.spillCompressorFactory = spillCompressorFactory;
+    }
+
     public boolean isUseConnectorPolicyForScheduling() {
         return useConnectorPolicyForScheduling;
     }
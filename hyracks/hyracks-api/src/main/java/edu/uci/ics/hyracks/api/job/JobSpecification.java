@@ -39,6 +39,7 @@ import edu.uci.ics.hyracks.api.dataflow.OperatorDescriptorId;
 import edu.uci.ics.hyracks.api.dataflow.connectors.IConnectorPolicyAssignmentPolicy;
 import edu.uci.ics.hyracks.api.dataflow.value.RecordDescriptor;
 import edu.uci.ics.hyracks.api.dataset.ResultSetId;
+import edu.uci.ics.hyracks.api.io.IBlockCompressorFactory;
 
 public class JobSpecification implements Serializable, IOperatorDescriptorRegistry, IConnectorDescriptorRegistry {
     private static final long serialVersionUID = 1L;
@@ -73,6 +74,8 @@ public class JobSpecification implements Serializable, IOperatorDescriptorRegist
 
     private IGlobalJobDataFactory globalJobDataFactory;
 
+    private IBlockCompressorFactory spillCompressorFactory;
+
     private boolean useConnectorPolicyForScheduling;
 
     private boolean reportTaskDetails;
@@ -283,6 +286,14 @@ public class JobSpecification implements Serializable, IOperatorDescriptorRegist
         this.globalJobDataFactory = globalJobDataFactory;
     }
 
+    public IBlockCompressorFactory getSpillCompressorFactory() {
+        return spillCompressorFactory;
+    }
+
+    public void setSpillCompressorFactory(IBlockCompressorFactory spillCompressorFactory) {
+        this.spillCompressorFactory = spillCompressorFactory;
+    }
+
     public boolean isUseConnectorPolicyForScheduling() {
         return useConnectorPolicyForScheduling;
     }
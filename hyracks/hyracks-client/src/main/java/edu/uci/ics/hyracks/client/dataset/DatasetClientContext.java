@@ -16,6 +16,7 @@ package edu.uci.ics.hyracks.client.dataset;
 
 import java.nio.ByteBuffer;
 
+import edu.uci.ics.hyracks.api.comm.FrameHelper;
 import edu.uci.ics.hyracks.api.context.IHyracksCommonContext;
 import edu.uci.ics.hyracks.api.io.IIOManager;
 
@@ -41,6 +42,11 @@ public class DatasetClientContext implements IHyracksCommonContext {
         return ByteBuffer.allocate(frameSize);
     }
 
+    @Override
+    public ByteBuffer allocateFrame(int bytes) {
+        return ByteBuffer.allocate(FrameHelper.getFrameCount(frameSize, bytes) * frameSize);
+    }
+
     @Override
     public void deallocateFrames(int frameCount) {
         // TODO Auto-generated method stub
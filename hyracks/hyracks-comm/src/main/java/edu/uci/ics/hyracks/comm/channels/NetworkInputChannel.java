@@ -17,6 +17,7 @@ package edu.uci.ics.hyracks.comm.channels;
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
 import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Queue;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -25,15 +26,23 @@ import edu.uci.ics.hyracks.api.channels.IInputChannel;
 import edu.uci.ics.hyracks.api.channels.IInputChannelMonitor;
 import edu.uci.ics.hyracks.api.context.IHyracksCommonContext;
 import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
+import edu.uci.ics.hyracks.api.io.IBlockCompressor;
+import edu.uci.ics.hyracks.api.io.IBlockCompressorFactory;
 import edu.uci.ics.hyracks.api.partitions.PartitionId;
 import edu.uci.ics.hyracks.net.buffers.IBufferAcceptor;
 import edu.uci.ics.hyracks.net.buffers.ICloseableBufferAcceptor;
 import edu.uci.ics.hyracks.net.protocols.muxdemux.ChannelControlBlock;
 
+/**
+ * Receives frames from a {@link NetworkOutputChannel}. With a frame compressor factory, the channel asks the sender
+ * for compressed frames. It then receives a stream of blocks, counts the complete blocks as they arrive, and decodes
+ * one block into a frame of its own whenever the consumer asks for the next buffer. A block that fails to decode fails
+ * the channel through its monitor, like an error reported by the sender.
+ */
 public class NetworkInputChannel implements IInputChannel {
     private static final Logger LOGGER = Logger.getLogger(NetworkInputChannel.class.getName());
 
-    static final int INITIAL_MESSAGE_SIZE = 20;
+    static final int INITIAL_MESSAGE_SIZE = 24;
 
     private final IChannelConnectionFactory netManager;
 
@@ -51,13 +60,34 @@ public class NetworkInputChannel implements IInputChannel {
 
     private Object attachment;
 
+    private final IBlockCompressor frameDecompressor;
+
+    private final Deque<ByteBuffer> freeFrames;
+
+    private int frameSize;
+
+    private byte[] block;
+
+    private int scanPayloadRemaining;
+
     public NetworkInputChannel(IChannelConnectionFactory netManager, SocketAddress remoteAddress,
             PartitionId partitionId, int nBuffers) {
+        this(netManager, remoteAddress, partitionId, nBuffers, null);
+    }
+
+    /**
+     * @param frameCompressorFactory
+     *            the compressor factory of the connector, or null to receive uncompressed frames
+     */
+    public NetworkInputChannel(IChannelConnectionFactory netManager, SocketAddress remoteAddress,
+            PartitionId partitionId, int nBuffers, IBlockCompressorFactory frameCompressorFactory) {
         this.netManager = netManager;
         this.remoteAddress = remoteAddress;
         this.partitionId = partitionId;
         fullQueue = new ArrayDeque<ByteBuffer>(nBuffers);
         this.nBuffers = nBuffers;
+        frameDecompressor = frameCompressorFactory == null ? null : frameCompressorFactory.createBlockCompressor();
+        freeFrames = new ArrayDeque<ByteBuffer>();
     }
 
     @Override
@@ -75,17 +105,161 @@ public class NetworkInputChannel implements IInputChannel {
         return attachment;
     }
 
+    /**
+     * @return the next frame, or null if the next block could not be decoded, in which case the monitor has been
+     *         notified of the failure
+     */
     @Override
-    public synchronized ByteBuffer getNextBuffer() {
-        return fullQueue.poll();
+    public ByteBuffer getNextBuffer() {
+        if (frameDecompressor == null) {
+            synchronized (this) {
+                return fullQueue.poll();
+            }
+        }
+        try {
+            return decodeFrame();
+        } catch (HyracksDataException e) {
+            if (LOGGER.isLoggable(Level.WARNING)) {
+                LOGGER.log(Level.WARNING, "Failed to decode a block on channel " + partitionId, e);
+            }
+            monitor.notifyFailure(this);
+            return null;
+        }
     }
 
     @Override
     public void recycleBuffer(ByteBuffer buffer) {
         buffer.clear();
+        if (frameDecompressor != null) {
+            synchronized (this) {
+                freeFrames.push(buffer);
+            }
+            return;
+        }
         ccb.getReadInterface().getEmptyBufferAcceptor().accept(buffer);
     }
 
+    /**
+     * Decodes the next block, which the scan on the network thread has already seen complete. Network buffers go
+     * back to the channel as soon as the decoder is done with them.
+     */
+    private ByteBuffer decodeFrame() throws HyracksDataException {
+        skipPadding();
+        ByteBuffer headerChunk = headChunk();
+        int header = headerChunk.getInt();
+        releaseIfConsumed(headerChunk);
+        int length = header & ~NetworkOutputChannel.COMPRESSED_BLOCK;
+        ByteBuffer frame;
+        synchronized (this) {
+            frame = freeFrames.poll();
+        }
+        if (frame == null) {
+            frame = ByteBuffer.allocate(frameSize);
+        }
+        if ((header & NetworkOutputChannel.COMPRESSED_BLOCK) == 0) {
+            read(frame.array(), 0, length);
+            frame.limit(length);
+            skipPadding();
+            return frame;
+        }
+        ByteBuffer chunk = headChunk();
+        int frameLength;
+        if (chunk.remaining() >= length) {
+            frameLength = frameDecompressor.decompress(chunk.array(), chunk.arrayOffset() + chunk.position(), length,
+                    frame.array(), 0, frame.capacity());
+            chunk.position(chunk.position() + length);
+            releaseIfConsumed(chunk);
+        } else {
+            read(block, 0, length);
+            frameLength = frameDecompressor.decompress(block, 0, length, frame.array(), 0, frame.capacity());
+        }
+        frame.limit(frameLength);
+        skipPadding();
+        return frame;
+    }
+
+    /**
+     * Hands back the buffers at the head of the queue for as long as the next header position is in padding, so that
+     * a padded buffer does not hold on to its credit until the next block arrives.
+     */
+    private void skipPadding() {
+        while (true) {
+            ByteBuffer chunk;
+            synchronized (this) {
+                chunk = fullQueue.peek();
+            }
+            if (chunk == null || !isPadding(chunk, chunk.position())) {
+                return;
+            }
+            chunk.position(chunk.limit());
+            releaseIfConsumed(chunk);
+        }
+    }
+
+    private static boolean isPadding(ByteBuffer buffer, int pos) {
+        return buffer.limit() - pos < NetworkOutputChannel.BLOCK_HEADER_SIZE || buffer.getInt(pos) == 0;
+    }
+
+    private void read(byte[] bytes, int offset, int length) throws HyracksDataException {
+        while (length > 0) {
+            ByteBuffer chunk = headChunk();
+            int n = Math.min(length, chunk.remaining());
+            chunk.get(bytes, offset, n);
+            offset += n;
+            length -= n;
+            releaseIfConsumed(chunk);
+        }
+    }
+
+    private synchronized ByteBuffer headChunk() throws HyracksDataException {
+        ByteBuffer chunk = fullQueue.peek();
+        if (chunk == null) {
+            throw new HyracksDataException("Truncated block on channel " + partitionId);
+        }
+        return chunk;
+    }
+
+    private void releaseIfConsumed(ByteBuffer chunk) {
+        if (!chunk.hasRemaining()) {
+            synchronized (this) {
+                fullQueue.poll();
+            }
+            chunk.clear();
+            ccb.getReadInterface().getEmptyBufferAcceptor().accept(chunk);
+        }
+    }
+
+    /**
+     * Follows the block headers through a buffer that just arrived from the network.
+     *
+     * @return the number of blocks that the buffer completes, or -1 if the stream is corrupt
+     */
+    private int scanBlocks(ByteBuffer buffer) {
+        int nBlocks = 0;
+        int pos = buffer.position();
+        int limit = buffer.limit();
+        while (pos < limit) {
+            if (scanPayloadRemaining == 0) {
+                if (isPadding(buffer, pos)) {
+                    break;
+                }
+                scanPayloadRemaining = buffer.getInt(pos) & ~NetworkOutputChannel.COMPRESSED_BLOCK;
+                pos += NetworkOutputChannel.BLOCK_HEADER_SIZE;
+                if (scanPayloadRemaining <= 0 || scanPayloadRemaining > block.length) {
+                    return -1;
+                }
+                continue;
+            }
+            int n = Math.min(scanPayloadRemaining, limit - pos);
+            pos += n;
+            scanPayloadRemaining -= n;
+            if (scanPayloadRemaining == 0) {
+                ++nBlocks;
+            }
+        }
+        return nBlocks;
+    }
+
     @Override
     public void open(IHyracksCommonContext ctx) throws HyracksDataException {
         try {
@@ -96,11 +270,16 @@ public class NetworkInputChannel implements IInputChannel {
         ccb.getReadInterface().setFullBufferAcceptor(new ReadFullBufferAcceptor());
         ccb.getWriteInterface().setEmptyBufferAcceptor(new WriteEmptyBufferAcceptor());
         ccb.getReadInterface().setBufferFactory(new ReadBufferFactory(nBuffers, ctx), nBuffers, ctx.getFrameSize());
+        frameSize = ctx.getFrameSize();
+        if (frameDecompressor != null) {
+            block = new byte[Math.max(frameSize, frameDecompressor.getMaxCompressedLength(frameSize))];
+        }
         ByteBuffer writeBuffer = ByteBuffer.allocate(INITIAL_MESSAGE_SIZE);
         writeBuffer.putLong(partitionId.getJobId().getId());
         writeBuffer.putInt(partitionId.getConnectorDescriptorId().getId());
         writeBuffer.putInt(partitionId.getSenderIndex());
         writeBuffer.putInt(partitionId.getReceiverIndex());
+        writeBuffer.putInt(frameDecompressor == null ? 0 : NetworkOutputChannel.FLAG_COMPRESSED_FRAMES);
         writeBuffer.flip();
         if (LOGGER.isLoggable(Level.FINE)) {
             LOGGER.fine("Sending partition request: " + partitionId + " on channel: " + ccb);
@@ -117,12 +296,32 @@ public class NetworkInputChannel implements IInputChannel {
     private class ReadFullBufferAcceptor implements ICloseableBufferAcceptor {
         @Override
         public void accept(ByteBuffer buffer) {
-            fullQueue.add(buffer);
-            monitor.notifyDataAvailability(NetworkInputChannel.this, 1);
+            if (frameDecompressor == null) {
+                fullQueue.add(buffer);
+                monitor.notifyDataAvailability(NetworkInputChannel.this, 1);
+                return;
+            }
+            int nBlocks = scanBlocks(buffer);
+            if (nBlocks < 0) {
+                LOGGER.warning("Corrupt block header on channel " + partitionId);
+                monitor.notifyFailure(NetworkInputChannel.this);
+                return;
+            }
+            synchronized (NetworkInputChannel.this) {
+                fullQueue.add(buffer);
+            }
+            if (nBlocks > 0) {
+                monitor.notifyDataAvailability(NetworkInputChannel.this, nBlocks);
+            }
         }
 
         @Override
         public void close() {
+            if (frameDecompressor != null && scanPayloadRemaining > 0) {
+                LOGGER.warning("Stream ended within a block on channel " + partitionId);
+                monitor.notifyFailure(NetworkInputChannel.this);
+                return;
+            }
             monitor.notifyEndOfStream(NetworkInputChannel.this);
         }
 
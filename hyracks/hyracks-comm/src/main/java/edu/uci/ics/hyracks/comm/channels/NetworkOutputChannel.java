@@ -18,27 +18,106 @@ import java.nio.ByteBuffer;
 import java.util.ArrayDeque;
 import java.util.Deque;
 
+import edu.uci.ics.hyracks.api.comm.FrameHelper;
 import edu.uci.ics.hyracks.api.comm.IFrameWriter;
 import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
+import edu.uci.ics.hyracks.api.io.IBlockCompressor;
+import edu.uci.ics.hyracks.api.io.IBlockCompressorFactory;
 import edu.uci.ics.hyracks.net.buffers.IBufferAcceptor;
 import edu.uci.ics.hyracks.net.protocols.muxdemux.ChannelControlBlock;
 
+/**
+ * Sends frames to a {@link NetworkInputChannel}.
+ * If the receiver asks for compressed frames when it opens the channel, every frame is sent as a block: a 4-byte
+ * header holding the payload length and {@link #COMPRESSED_BLOCK} if the payload is compressed, followed by the
+ * payload. Blocks are packed back to back into the network buffers, but a header never spans two buffers. The
+ * receiver only takes in full buffers, so a buffer that is partly filled at the end of a frame is padded: a zero
+ * header, if there is room for one, marks the rest of the buffer as padding. The padded buffer is sent right away if
+ * the network has nothing else to send, and otherwise as soon as the buffers before it have been written, unless the
+ * next frame fills it up first. The channel compresses in windows of
+ * {@link #STATS_WINDOW} frames and stops compressing for {@link #SUSPEND_FRAMES} frames after a window in which the
+ * blocks did not shrink enough or in which compressing took longer than waiting for the network.
+ */
 public class NetworkOutputChannel implements IFrameWriter {
+    /**
+     * Flag of the initial message of a channel by which the receiver asks for compressed frames.
+     */
+    public static final int FLAG_COMPRESSED_FRAMES = 0x1;
+
+    static final int COMPRESSED_BLOCK = 0x80000000;
+
+    static final int BLOCK_HEADER_SIZE = 4;
+
+    private static final int STATS_WINDOW = 32;
+
+    private static final int SUSPEND_FRAMES = 1024;
+
+    /**
+     * Compression has to save at least a fifth of the bytes to be worth its CPU time.
+     */
+    private static final double MAX_BLOCK_RATIO = 0.8;
+
+    /**
+     * The sender counts as CPU bound when it spent less than this fraction of its compression time waiting for the
+     * receiver to hand buffers back.
+     */
+    private static final double MIN_WAIT_RATIO = 0.25;
+
     private final ChannelControlBlock ccb;
 
     private final int nBuffers;
 
     private final Deque<ByteBuffer> emptyStack;
 
+    private final boolean compressedFrames;
+
     private boolean aborted;
 
     private int frameSize = 32768;
 
     private int allocateCounter = 0;
 
+    private ByteBuffer largeFrameHeader;
+
+    private IBlockCompressor compressor;
+
+    private byte[] block;
+
+    private byte[] frameCopy;
+
+    private ByteBuffer currentBuffer;
+
+    /**
+     * A partly filled buffer left for the network thread to send once the buffers in flight have been written.
+     */
+    private ByteBuffer parkedBuffer;
+
+    private int buffersInFlight;
+
+    private int suspendedFrames;
+
+    private int windowFrames;
+
+    private long windowFrameBytes;
+
+    private long windowBlockBytes;
+
+    private long windowCompressNanos;
+
+    private long windowWaitNanos;
+
     public NetworkOutputChannel(ChannelControlBlock ccb, int nBuffers) {
+        this(ccb, nBuffers, false);
+    }
+
+    /**
+     * @param compressedFrames
+     *            whether the receiver asked for compressed frames
+     */
+    public NetworkOutputChannel(ChannelControlBlock ccb, int nBuffers, boolean compressedFrames) {
         this.ccb = ccb;
         this.nBuffers = nBuffers;
+        this.compressedFrames = compressedFrames;
         emptyStack = new ArrayDeque<ByteBuffer>(nBuffers);
         ccb.getWriteInterface().setEmptyBufferAcceptor(new WriteEmptyBufferAcceptor());
     }
@@ -47,14 +126,90 @@ public class NetworkOutputChannel implements IFrameWriter {
         this.frameSize = frameSize;
     }
 
+    /**
+     * Sets the compressor factory of the connector this channel belongs to. It only takes effect if the receiver
+     * asked for compressed frames, in which case frames are sent as uncompressed blocks if there is no factory.
+     */
+    public void setFrameCompressorFactory(IBlockCompressorFactory frameCompressorFactory) {
+        if (compressedFrames && frameCompressorFactory != null) {
+            compressor = frameCompressorFactory.createBlockCompressor();
+        }
+    }
+
     @Override
     public void open() throws HyracksDataException {
     }
 
     @Override
     public void nextFrame(ByteBuffer buffer) throws HyracksDataException {
+        if (compressedFrames) {
+            unparkBuffer();
+        }
+        if (buffer.capacity() <= frameSize) {
+            send(buffer, 0);
+        } else {
+            // Large frames are sent as a header followed by their content, one frame at a time.
+            int frameCount = buffer.capacity() / frameSize;
+            if (largeFrameHeader == null) {
+                largeFrameHeader = ByteBuffer.allocate(frameSize);
+            }
+            FrameHelper.putLargeFrameHeader(largeFrameHeader, frameCount);
+            send(largeFrameHeader, 0);
+            for (int i = 0; i < frameCount; ++i) {
+                send(buffer, i * frameSize);
+            }
+        }
+        if (compressedFrames && currentBuffer != null) {
+            parkBuffer();
+        }
+    }
+
+    /**
+     * Sends the partly filled current buffer if no buffer is in flight. Otherwise the network thread sends it after
+     * the last buffer in flight, unless the next frame takes it back first.
+     */
+    private void parkBuffer() {
+        synchronized (this) {
+            if (buffersInFlight > 0) {
+                parkedBuffer = currentBuffer;
+                currentBuffer = null;
+                return;
+            }
+        }
+        pad(currentBuffer);
+        flushCurrentBuffer();
+    }
+
+    private void unparkBuffer() {
+        synchronized (this) {
+            if (parkedBuffer != null) {
+                currentBuffer = parkedBuffer;
+                parkedBuffer = null;
+            }
+        }
+    }
+
+    private void send(ByteBuffer buffer, int offset) throws HyracksDataException {
+        if (compressedFrames) {
+            sendBlock(buffer, offset);
+            return;
+        }
+        ByteBuffer destBuffer = acquireBuffer();
+        buffer.limit(offset + destBuffer.capacity());
+        buffer.position(offset);
+        destBuffer.clear();
+        destBuffer.put(buffer);
+        destBuffer.flip();
+        synchronized (this) {
+            ++buffersInFlight;
+        }
+        ccb.getWriteInterface().getFullBufferAcceptor().accept(destBuffer);
+    }
+
+    private ByteBuffer acquireBuffer() throws HyracksDataException {
         ByteBuffer destBuffer = null;
         synchronized (this) {
+            long waitStart = 0;
             while (true) {
                 if (aborted) {
                     throw new HyracksDataException("Connection has been aborted");
@@ -67,19 +222,136 @@ public class NetworkOutputChannel implements IFrameWriter {
                 if (destBuffer != null) {
                     break;
                 }
+                if (waitStart == 0) {
+                    waitStart = System.nanoTime();
+                }
                 try {
                     wait();
                 } catch (InterruptedException e) {
                     throw new HyracksDataException(e);
                 }
             }
+            if (waitStart != 0) {
+                windowWaitNanos += System.nanoTime() - waitStart;
+            }
         }
-        buffer.position(0);
-        buffer.limit(destBuffer.capacity());
-        destBuffer.clear();
-        destBuffer.put(buffer);
-        destBuffer.flip();
-        ccb.getWriteInterface().getFullBufferAcceptor().accept(destBuffer);
+        return destBuffer;
+    }
+
+    private void sendBlock(ByteBuffer buffer, int offset) throws HyracksDataException {
+        byte[] src;
+        int srcOffset;
+        if (buffer.hasArray()) {
+            src = buffer.array();
+            srcOffset = buffer.arrayOffset() + offset;
+        } else {
+            if (frameCopy == null) {
+                frameCopy = new byte[frameSize];
+            }
+            ByteBuffer copy = buffer.duplicate();
+            copy.limit(offset + frameSize);
+            copy.position(offset);
+            copy.get(frameCopy);
+            src = frameCopy;
+            srcOffset = 0;
+        }
+        if (compressor != null && suspendedFrames == 0) {
+            if (block == null) {
+                block = new byte[compressor.getMaxCompressedLength(frameSize)];
+            }
+            long start = System.nanoTime();
+            int blockLength = compressor.compress(src, srcOffset, frameSize, block, 0);
+            windowCompressNanos += System.nanoTime() - start;
+            windowFrameBytes += frameSize;
+            if (blockLength < frameSize) {
+                windowBlockBytes += blockLength;
+                putHeader(COMPRESSED_BLOCK | blockLength);
+                put(block, 0, blockLength);
+            } else {
+                windowBlockBytes += frameSize;
+                putHeader(frameSize);
+                put(src, srcOffset, frameSize);
+            }
+            if (++windowFrames >= STATS_WINDOW) {
+                adaptCompression();
+            }
+            return;
+        }
+        if (suspendedFrames > 0 && --suspendedFrames == 0) {
+            resetWindow();
+        }
+        putHeader(frameSize);
+        put(src, srcOffset, frameSize);
+    }
+
+    private void adaptCompression() {
+        boolean poorRatio = windowBlockBytes > windowFrameBytes * MAX_BLOCK_RATIO;
+        boolean cpuBound = windowWaitNanos < windowCompressNanos * MIN_WAIT_RATIO;
+        if (poorRatio || cpuBound) {
+            suspendedFrames = SUSPEND_FRAMES;
+        }
+        resetWindow();
+    }
+
+    private void resetWindow() {
+        windowFrames = 0;
+        windowFrameBytes = 0;
+        windowBlockBytes = 0;
+        windowCompressNanos = 0;
+        synchronized (this) {
+            windowWaitNanos = 0;
+        }
+    }
+
+    private void putHeader(int header) throws HyracksDataException {
+        if (currentBuffer != null && currentBuffer.remaining() < BLOCK_HEADER_SIZE) {
+            pad(currentBuffer);
+            flushCurrentBuffer();
+        }
+        if (currentBuffer == null) {
+            currentBuffer = acquireBuffer();
+            currentBuffer.clear();
+        }
+        currentBuffer.putInt(header);
+        if (!currentBuffer.hasRemaining()) {
+            flushCurrentBuffer();
+        }
+    }
+
+    /**
+     * Fills the rest of the buffer with padding. The receiver skips the rest of a buffer after a zero header, or if
+     * there is no room left for a header.
+     */
+    private static void pad(ByteBuffer buffer) {
+        if (buffer.remaining() >= BLOCK_HEADER_SIZE) {
+            buffer.putInt(0);
+        }
+        buffer.position(buffer.limit());
+    }
+
+    private void put(byte[] bytes, int offset, int length) throws HyracksDataException {
+        while (length > 0) {
+            if (currentBuffer == null) {
+                currentBuffer = acquireBuffer();
+                currentBuffer.clear();
+            }
+            int n = Math.min(length, currentBuffer.remaining());
+            currentBuffer.put(bytes, offset, n);
+            offset += n;
+            length -= n;
+            if (!currentBuffer.hasRemaining()) {
+                flushCurrentBuffer();
+            }
+        }
+    }
+
+    private void flushCurrentBuffer() {
+        currentBuffer.flip();
+        synchronized (this) {
+            ++buffersInFlight;
+        }
+        ccb.getWriteInterface().getFullBufferAcceptor().accept(currentBuffer);
+        currentBuffer = null;
     }
 
     @Override
@@ -89,6 +361,10 @@ public class NetworkOutputChannel implements IFrameWriter {
 
     @Override
     public void close() throws HyracksDataException {
+        unparkBuffer();
+        if (currentBuffer != null && currentBuffer.position() > 0) {
+            flushCurrentBuffer();
+        }
         ccb.getWriteInterface().getFullBufferAcceptor().close();
     }
 
@@ -105,6 +381,14 @@ public class NetworkOutputChannel implements IFrameWriter {
         public void accept(ByteBuffer buffer) {
             synchronized (NetworkOutputChannel.this) {
                 emptyStack.push(buffer);
+                if (--buffersInFlight == 0 && parkedBuffer != null) {
+                    // Called on the network thread, which already holds the lock of the channel control block.
+                    pad(parkedBuffer);
+                    parkedBuffer.flip();
+                    ++buffersInFlight;
+                    ccb.getWriteInterface().getFullBufferAcceptor().accept(parkedBuffer);
+                    parkedBuffer = null;
+                }
                 NetworkOutputChannel.this.notifyAll();
             }
         }
@@ -0,0 +1,293 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.hyracks.comm.channels;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.uci.ics.hyracks.api.channels.IInputChannel;
+import edu.uci.ics.hyracks.api.channels.IInputChannelMonitor;
+import edu.uci.ics.hyracks.api.context.IHyracksCommonContext;
+import edu.uci.ics.hyracks.api.dataflow.ConnectorDescriptorId;
+import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
+import edu.uci.ics.hyracks.api.io.IBlockCompressorFactory;
+import edu.uci.ics.hyracks.api.io.IIOManager;
+import edu.uci.ics.hyracks.api.job.JobId;
+import edu.uci.ics.hyracks.api.partitions.PartitionId;
+import edu.uci.ics.hyracks.dataflow.common.io.compression.LZBlockCompressorFactory;
+import edu.uci.ics.hyracks.net.buffers.ICloseableBufferAcceptor;
+import edu.uci.ics.hyracks.net.exceptions.NetException;
+import edu.uci.ics.hyracks.net.protocols.muxdemux.ChannelControlBlock;
+import edu.uci.ics.hyracks.net.protocols.muxdemux.IChannelOpenListener;
+import edu.uci.ics.hyracks.net.protocols.muxdemux.MuxDemux;
+
+/**
+ * Sends frames from a NetworkOutputChannel to a NetworkInputChannel over a local connection, set up the way the
+ * NetworkManager of a node controller sets it up. Both sides have fewer buffers than there are frames, so the sender
+ * runs out of credit until the receiver hands buffers back.
+ */
+public class NetworkChannelTest {
+    private static final int FRAME_SIZE = 4096;
+    private static final int FRAME_COUNT = 200;
+    private static final int N_BUFFERS = 2;
+    private static final long TIMEOUT_MILLIS = 60000;
+
+    @Test
+    public void uncompressedTest() throws Exception {
+        transfer(null, null);
+    }
+
+    @Test
+    public void compressedTest() throws Exception {
+        transfer(LZBlockCompressorFactory.INSTANCE, LZBlockCompressorFactory.INSTANCE);
+    }
+
+    @Test
+    public void compressedWithoutSenderCompressorTest() throws Exception {
+        // The receiver asks for compressed frames, but the sender has no compressor and sends uncompressed blocks
+        transfer(null, LZBlockCompressorFactory.INSTANCE);
+    }
+
+    @Test
+    public void compressedFrameNotHeldBackTest() throws Exception {
+        // A frame that leaves a network buffer partly filled must arrive before the sender sends more
+        Channels channels = openChannels(LZBlockCompressorFactory.INSTANCE, LZBlockCompressorFactory.INSTANCE);
+        ByteBuffer frame = createFrames().get(1);
+        channels.noc.open();
+        channels.noc.nextFrame(frame.duplicate());
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        Assert.assertTrue(channels.monitor.awaitFrame(deadline));
+        ByteBuffer received = channels.nic.getNextBuffer();
+        Assert.assertEquals(FRAME_SIZE, received.remaining());
+        Assert.assertEquals(frame, received);
+        channels.nic.recycleBuffer(received);
+        channels.noc.close();
+        Assert.assertFalse(channels.monitor.awaitFrame(deadline));
+    }
+
+    private void transfer(IBlockCompressorFactory senderFactory, IBlockCompressorFactory receiverFactory)
+            throws Exception {
+        Channels channels = openChannels(senderFactory, receiverFactory);
+        NetworkInputChannel nic = channels.nic;
+        Monitor monitor = channels.monitor;
+        final NetworkOutputChannel noc = channels.noc;
+
+        final List<ByteBuffer> frames = createFrames();
+        final AtomicInteger framesSent = new AtomicInteger();
+        final Exception[] senderFailure = new Exception[1];
+        Thread sender = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    noc.open();
+                    for (ByteBuffer frame : frames) {
+                        noc.nextFrame(frame.duplicate());
+                        framesSent.incrementAndGet();
+                    }
+                    noc.close();
+                } catch (Exception e) {
+                    senderFailure[0] = e;
+                }
+            }
+        };
+        sender.start();
+
+        // Nothing is read yet, so the sender has to stall once the receiver's buffers are full
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (sender.getState() != Thread.State.WAITING) {
+            Assert.assertTrue("sender never ran out of credit", System.currentTimeMillis() < deadline);
+            Assert.assertTrue("sender is done", sender.isAlive());
+            Thread.yield();
+        }
+        Assert.assertTrue(framesSent.get() < FRAME_COUNT);
+
+        List<ByteBuffer> received = new ArrayList<ByteBuffer>();
+        while (monitor.awaitFrame(deadline)) {
+            ByteBuffer frame = nic.getNextBuffer();
+            ByteBuffer copy = ByteBuffer.allocate(frame.remaining());
+            copy.put(frame);
+            received.add(copy);
+            nic.recycleBuffer(frame);
+        }
+        sender.join(TIMEOUT_MILLIS);
+        Assert.assertNull(senderFailure[0]);
+        Assert.assertFalse(monitor.failed);
+        Assert.assertEquals(FRAME_COUNT, framesSent.get());
+        Assert.assertEquals(FRAME_COUNT, received.size());
+        for (int i = 0; i < FRAME_COUNT; ++i) {
+            Assert.assertEquals(FRAME_SIZE, received.get(i).position());
+            Assert.assertTrue("frame " + i, Arrays.equals(frames.get(i).array(), received.get(i).array()));
+        }
+    }
+
+    private Channels openChannels(final IBlockCompressorFactory senderFactory,
+            IBlockCompressorFactory receiverFactory) throws Exception {
+        final BlockingQueue<NetworkOutputChannel> outputChannels = new LinkedBlockingQueue<NetworkOutputChannel>();
+        MuxDemux senderMd = new MuxDemux(new InetSocketAddress("127.0.0.1", 0), new IChannelOpenListener() {
+            @Override
+            public void channelOpened(final ChannelControlBlock ccb) {
+                ccb.getReadInterface().setFullBufferAcceptor(new ICloseableBufferAcceptor() {
+                    @Override
+                    public void accept(ByteBuffer buffer) {
+                        buffer.position(NetworkInputChannel.INITIAL_MESSAGE_SIZE - 4);
+                        int flags = buffer.getInt();
+                        NetworkOutputChannel noc = new NetworkOutputChannel(ccb, N_BUFFERS,
+                                (flags & NetworkOutputChannel.FLAG_COMPRESSED_FRAMES) != 0);
+                        noc.setFrameSize(FRAME_SIZE);
+                        noc.setFrameCompressorFactory(senderFactory);
+                        outputChannels.add(noc);
+                    }
+
+                    @Override
+                    public void close() {
+                    }
+
+                    @Override
+                    public void error(int ecode) {
+                    }
+                });
+                ccb.getReadInterface().getEmptyBufferAcceptor()
+                        .accept(ByteBuffer.allocate(NetworkInputChannel.INITIAL_MESSAGE_SIZE));
+            }
+        }, 1, 5);
+        senderMd.start();
+        final MuxDemux receiverMd = new MuxDemux(new InetSocketAddress("127.0.0.1", 0), null, 1, 5);
+        receiverMd.start();
+
+        NetworkInputChannel nic = new NetworkInputChannel(new IChannelConnectionFactory() {
+            @Override
+            public ChannelControlBlock connect(SocketAddress remoteAddress) throws InterruptedException,
+                    NetException {
+                return receiverMd.connect((InetSocketAddress) remoteAddress).openChannel();
+            }
+        }, senderMd.getLocalAddress(), new PartitionId(new JobId(1), new ConnectorDescriptorId(2), 3, 4), N_BUFFERS,
+                receiverFactory);
+        Channels channels = new Channels();
+        channels.nic = nic;
+        channels.monitor = new Monitor();
+        nic.registerMonitor(channels.monitor);
+        nic.open(new TestContext());
+        channels.noc = outputChannels.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        Assert.assertNotNull(channels.noc);
+        return channels;
+    }
+
+    private static List<ByteBuffer> createFrames() {
+        Random rnd = new Random(11);
+        List<ByteBuffer> frames = new ArrayList<ByteBuffer>();
+        for (int i = 0; i < FRAME_COUNT; ++i) {
+            byte[] bytes = new byte[FRAME_SIZE];
+            if (i % 4 == 0) {
+                // incompressible
+                rnd.nextBytes(bytes);
+            } else {
+                for (int j = 0; j < FRAME_SIZE; j += 4) {
+                    bytes[j] = (byte) (i + j / 256);
+                }
+            }
+            frames.add(ByteBuffer.wrap(bytes));
+        }
+        return frames;
+    }
+
+    private static class Channels {
+        NetworkInputChannel nic;
+
+        NetworkOutputChannel noc;
+
+        Monitor monitor;
+    }
+
+    private static class Monitor implements IInputChannelMonitor {
+        private int availableFrames;
+
+        private boolean eos;
+
+        private boolean failed;
+
+        @Override
+        public synchronized void notifyFailure(IInputChannel channel) {
+            failed = true;
+            notifyAll();
+        }
+
+        @Override
+        public synchronized void notifyDataAvailability(IInputChannel channel, int nFrames) {
+            availableFrames += nFrames;
+            notifyAll();
+        }
+
+        @Override
+        public synchronized void notifyEndOfStream(IInputChannel channel) {
+            eos = true;
+            notifyAll();
+        }
+
+        /**
+         * @return true if a frame can be read, false at the end of the stream
+         */
+        synchronized boolean awaitFrame(long deadline) throws InterruptedException {
+            while (availableFrames == 0 && !eos && !failed) {
+                long timeout = deadline - System.currentTimeMillis();
+                Assert.assertTrue("receiver timed out", timeout > 0);
+                wait(timeout);
+            }
+            Assert.assertFalse("channel failed", failed);
+            if (availableFrames == 0) {
+                return false;
+            }
+            --availableFrames;
+            return true;
+        }
+    }
+
+    private static class TestContext implements IHyracksCommonContext {
+        @Override
+        public int getFrameSize() {
+            return FRAME_SIZE;
+        }
+
+        @Override
+        public IIOManager getIOManager() {
+            return null;
+        }
+
+        @Override
+        public ByteBuffer allocateFrame() throws HyracksDataException {
+            return ByteBuffer.allocate(FRAME_SIZE);
+        }
+
+        @Override
+        public ByteBuffer allocateFrame(int bytes) throws HyracksDataException {
+            return ByteBuffer.allocate((bytes + FRAME_SIZE - 1) / FRAME_SIZE * FRAME_SIZE);
+        }
+
+        @Override
+        public void deallocateFrames(int frameCount) {
+        }
+    }
+}
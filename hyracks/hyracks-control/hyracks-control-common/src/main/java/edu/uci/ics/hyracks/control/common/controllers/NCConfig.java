@@ -73,6 +73,12 @@ public class NCConfig implements Serializable {
     @Option(name = "-iodevices", usage = "Comma separated list of IO Device mount points (default: One device in default temp folder)", required = false)
     public String ioDevices = System.getProperty("java.io.tmpdir");
 
+    @Option(name = "-iodevice-queue-depth", usage = "Maximum number of concurrent I/O requests per IO device (default: 32)", required = false)
+    public int ioQueueDepth = 32;
+
+    @Option(name = "-iodevice-queue-capacity", usage = "Maximum number of queued asynchronous I/O requests per IO device (default: 1024)", required = false)
+    public int ioQueueCapacity = 1024;
+
     @Option(name = "-net-thread-count", usage = "Number of threads to use for Network I/O (default: 1)")
     public int nNetThreads = 1;
 
@@ -131,6 +137,10 @@ public class NCConfig implements Serializable {
         cList.add(String.valueOf(resultPublicPort));
         cList.add("-iodevices");
         cList.add(ioDevices);
+        cList.add("-iodevice-queue-depth");
+        cList.add(String.valueOf(ioQueueDepth));
+        cList.add("-iodevice-queue-capacity");
+        cList.add(String.valueOf(ioQueueCapacity));
         cList.add("-net-thread-count");
         cList.add(String.valueOf(nNetThreads));
         cList.add("-net-buffer-count");
@@ -173,6 +183,8 @@ public class NCConfig implements Serializable {
         configuration.put("result-public-ip-address", resultPublicIPAddress);
         configuration.put("result-public-port", String.valueOf(resultPublicPort));
         configuration.put("iodevices", ioDevices);
+        configuration.put("iodevice-queue-depth", String.valueOf(ioQueueDepth));
+        configuration.put("iodevice-queue-capacity", String.valueOf(ioQueueCapacity));
         configuration.put("net-thread-count", String.valueOf(nNetThreads));
         configuration.put("net-buffer-count", String.valueOf(nNetBuffers));
         configuration.put("max-memory", String.valueOf(maxMemory));
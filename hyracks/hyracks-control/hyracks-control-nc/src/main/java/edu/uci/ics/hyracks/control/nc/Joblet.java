@@ -24,17 +24,21 @@ import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
 import edu.uci.ics.hyracks.api.application.INCApplicationContext;
+import edu.uci.ics.hyracks.api.comm.FrameHelper;
 import edu.uci.ics.hyracks.api.comm.IPartitionCollector;
 import edu.uci.ics.hyracks.api.comm.PartitionChannel;
 import edu.uci.ics.hyracks.api.context.IHyracksJobletContext;
+import edu.uci.ics.hyracks.api.dataflow.ConnectorDescriptorId;
 import edu.uci.ics.hyracks.api.dataflow.TaskAttemptId;
 import edu.uci.ics.hyracks.api.dataflow.state.IStateObject;
 import edu.uci.ics.hyracks.api.deployment.DeploymentId;
 import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
 import edu.uci.ics.hyracks.api.exceptions.HyracksException;
 import edu.uci.ics.hyracks.api.io.FileReference;
+import edu.uci.ics.hyracks.api.io.IBlockCompressorFactory;
 import edu.uci.ics.hyracks.api.io.IIOManager;
 import edu.uci.ics.hyracks.api.io.IWorkspaceFileFactory;
+import edu.uci.ics.hyracks.api.job.ActivityCluster;
 import edu.uci.ics.hyracks.api.job.ActivityClusterGraph;
 import edu.uci.ics.hyracks.api.job.IGlobalJobDataFactory;
 import edu.uci.ics.hyracks.api.job.IJobletEventListener;
@@ -229,8 +233,17 @@ public class Joblet implements IHyracksJobletContext, ICounterContext {
         throw new HyracksDataException("Unable to allocate frame: Not enough memory");
     }
 
+    ByteBuffer allocateFrame(int bytes) throws HyracksDataException {
+        int size = FrameHelper.getFrameCount(frameSize, bytes) * frameSize;
+        if (appCtx.getMemoryManager().allocate(size)) {
+            memoryAllocation.addAndGet(size);
+            return ByteBuffer.allocate(size);
+        }
+        throw new HyracksDataException("Unable to allocate frame of " + size + " bytes: Not enough memory");
+    }
+
     public void deallocateFrames(int nFrames) {
-        memoryAllocation.addAndGet(nFrames * frameSize);
+        memoryAllocation.addAndGet(-nFrames * frameSize);
         appCtx.getMemoryManager().deallocate(nFrames * frameSize);
     }
 
@@ -267,6 +280,19 @@ public class Joblet implements IHyracksJobletContext, ICounterContext {
         return globalJobData;
     }
 
+    @Override
+    public IBlockCompressorFactory getSpillCompressorFactory() {
+        return acg.getSpillCompressorFactory();
+    }
+
+    /**
+     * @return the factory of the compressors for the frames that the connector sends over the network, or null
+     */
+    public IBlockCompressorFactory getFrameCompressorFactory(ConnectorDescriptorId cdId) {
+        ActivityCluster ac = acg.getConnectorMap().get(cdId);
+        return ac == null ? null : ac.getConnectorMap().get(cdId).getFrameCompressorFactory();
+    }
+
     public IJobletEventListener getJobletEventListener() {
         return jobletEventListener;
     }
@@ -161,7 +161,8 @@ public class NodeControllerService extends AbstractRemoteService {
         ipc = new IPCSystem(new InetSocketAddress(ncConfig.clusterNetIPAddress, ncConfig.clusterNetPort), ipci,
                 new CCNCFunctions.SerializerDeserializer());
 
-        this.ctx = new RootHyracksContext(this, new IOManager(getDevices(ncConfig.ioDevices)));
+        this.ctx = new RootHyracksContext(this, new IOManager(getDevices(ncConfig.ioDevices), ncConfig.ioQueueDepth,
+                ncConfig.ioQueueCapacity));
         if (id == null) {
             throw new Exception("id not set");
         }
@@ -25,6 +25,7 @@ import java.util.Set;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Semaphore;
 
+import edu.uci.ics.hyracks.api.comm.FrameHelper;
 import edu.uci.ics.hyracks.api.comm.IFrameReader;
 import edu.uci.ics.hyracks.api.comm.IFrameWriter;
 import edu.uci.ics.hyracks.api.comm.IPartitionCollector;
@@ -119,6 +120,11 @@ public class Task implements IHyracksTaskContext, ICounterContext, Runnable {
         return joblet.allocateFrame();
     }
 
+    @Override
+    public ByteBuffer allocateFrame(int bytes) throws HyracksDataException {
+        return joblet.allocateFrame(bytes);
+    }
+
     @Override
     public void deallocateFrames(int frameCount) {
         joblet.deallocateFrames(frameCount);
@@ -163,6 +169,11 @@ public class Task implements IHyracksTaskContext, ICounterContext, Runnable {
         return taskAttemptId;
     }
 
+    @Override
+    public Executor getExecutor() {
+        return executor;
+    }
+
     @Override
     public ICounter getCounter(String name, boolean create) {
         Counter counter = counterMap.get(name);
@@ -322,6 +333,18 @@ public class Task implements IHyracksTaskContext, ICounterContext, Runnable {
                             if (aborted) {
                                 return;
                             }
+                            int largeFrameCount = FrameHelper.getLargeFrameCount(buffer);
+                            if (largeFrameCount > 0) {
+                                ByteBuffer largeFrame = allocateFrame(largeFrameCount * getFrameSize());
+                                try {
+                                    FrameHelper.readLargeFrame(reader, buffer, largeFrame, largeFrameCount);
+                                    writer.nextFrame(largeFrame);
+                                } finally {
+                                    deallocateFrames(largeFrameCount);
+                                }
+                                buffer.clear();
+                                continue;
+                            }
                             buffer.flip();
                             writer.nextFrame(buffer);
                             buffer.compact();
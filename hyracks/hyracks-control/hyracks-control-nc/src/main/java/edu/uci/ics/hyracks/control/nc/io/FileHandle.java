@@ -29,8 +29,11 @@ public class FileHandle implements IFileHandle {
 
     private FileChannel channel;
 
-    public FileHandle(FileReference fileRef) {
+    private final IODeviceQueue deviceQueue;
+
+    public FileHandle(FileReference fileRef, IODeviceQueue deviceQueue) {
         this.fileRef = fileRef;
+        this.deviceQueue = deviceQueue;
     }
 
     public void open(IIOManager.FileReadWriteMode rwMode, IIOManager.FileSyncMode syncMode) throws IOException {
@@ -84,6 +87,10 @@ public class FileHandle implements IFileHandle {
         return channel;
     }
 
+    public IODeviceQueue getDeviceQueue() {
+        return deviceQueue;
+    }
+
     public void sync(boolean metadata) throws IOException {
         channel.force(metadata);
     }
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.hyracks.control.nc.io;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+
+import edu.uci.ics.hyracks.api.io.IIOManager.IOPriority;
+
+/**
+ * Admission queue of a single I/O device. At most queueDepth requests are in flight on the device at any time; the
+ * others wait in one FIFO per priority class. Synchronous requests are executed by the calling thread once they are
+ * admitted, asynchronous requests are handed to the executor. At most queueCapacity asynchronous requests may be
+ * waiting, further submitters block until the queue drains.
+ */
+public class IODeviceQueue {
+    // After this many consecutive grants that bypassed the waiting requests of a class, that class is served once,
+    // so that spill and background I/O make progress on a device saturated by higher priority I/O.
+    private static final int MAX_BYPASSES = 8;
+
+    private static final IOPriority[] PRIORITIES = IOPriority.values();
+
+    private final int queueDepth;
+    private final int queueCapacity;
+    private final Deque<Request>[] waiting;
+    private int numWaitingAsync;
+    private int numInFlight;
+    // Per class, the number of consecutive grants to a higher class while the class had requests waiting.
+    private final int[] numBypasses;
+    private Executor executor;
+
+    @SuppressWarnings("unchecked")
+    public IODeviceQueue(int queueDepth, int queueCapacity) {
+        this.queueDepth = queueDepth;
+        this.queueCapacity = queueCapacity;
+        waiting = new Deque[PRIORITIES.length];
+        numBypasses = new int[PRIORITIES.length];
+        for (int i = 0; i < waiting.length; ++i) {
+            waiting[i] = new ArrayDeque<Request>();
+        }
+    }
+
+    public synchronized void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Blocks until a synchronous request of the given priority may be executed. Every call must be followed by a
+     * call to {@link #release()} once the request is done.
+     */
+    public void acquire(IOPriority priority) {
+        Request request = new Request(null);
+        boolean interrupted = false;
+        synchronized (this) {
+            waiting[priority.ordinal()].addLast(request);
+            dispatch();
+            while (!request.admitted) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    // File I/O in this code base is not interruptible, so neither is waiting for the device.
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public synchronized void release() {
+        --numInFlight;
+        dispatch();
+    }
+
+    /**
+     * Queues the given runnable to be executed on the executor once the device admits it.
+     */
+    public void submit(IOPriority priority, Runnable runnable) {
+        Request request = new Request(runnable);
+        boolean interrupted = false;
+        synchronized (this) {
+            if (executor == null) {
+                throw new IllegalStateException("No executor set for asynchronous I/O");
+            }
+            while (numWaitingAsync >= queueCapacity) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            waiting[priority.ordinal()].addLast(request);
+            ++numWaitingAsync;
+            dispatch();
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public synchronized int getNumInFlight() {
+        return numInFlight;
+    }
+
+    public synchronized int getNumWaiting(IOPriority priority) {
+        return waiting[priority.ordinal()].size();
+    }
+
+    private void dispatch() {
+        boolean admitted = false;
+        while (numInFlight < queueDepth) {
+            Request request = next();
+            if (request == null) {
+                break;
+            }
+            ++numInFlight;
+            admitted = true;
+            if (request.runnable == null) {
+                request.admitted = true;
+            } else {
+                --numWaitingAsync;
+                executor.execute(new AsyncExecution(request.runnable));
+            }
+        }
+        if (admitted) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Serves the highest waiting class, unless a lower class has been bypassed too often: then the highest of the
+     * starved classes is served. The classes below the served one count one more bypass.
+     */
+    private Request next() {
+        int served = -1;
+        for (int i = 0; i < waiting.length; ++i) {
+            if (waiting[i].isEmpty()) {
+                numBypasses[i] = 0;
+            } else if (served < 0) {
+                served = i;
+            } else if (numBypasses[i] >= MAX_BYPASSES && numBypasses[served] < MAX_BYPASSES) {
+                served = i;
+            }
+        }
+        if (served < 0) {
+            return null;
+        }
+        numBypasses[served] = 0;
+        for (int i = served + 1; i < waiting.length; ++i) {
+            if (!waiting[i].isEmpty()) {
+                ++numBypasses[i];
+            }
+        }
+        return waiting[served].pollFirst();
+    }
+
+    private class AsyncExecution implements Runnable {
+        private final Runnable runnable;
+
+        private AsyncExecution(Runnable runnable) {
+            this.runnable = runnable;
+        }
+
+        @Override
+        public void run() {
+            try {
+                runnable.run();
+            } finally {
+                release();
+            }
+        }
+    }
+
+    private static class Request {
+        // null for synchronous requests.
+        private final Runnable runnable;
+        private boolean admitted;
+
+        private Request(Runnable runnable) {
+            this.runnable = runnable;
+        }
+    }
+}
@@ -17,6 +17,7 @@ package edu.uci.ics.hyracks.control.nc.io;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -31,9 +32,16 @@ import edu.uci.ics.hyracks.api.io.IIOManager;
 import edu.uci.ics.hyracks.api.io.IODeviceHandle;
 
 public class IOManager implements IIOManager {
+    public static final int DEFAULT_IO_QUEUE_DEPTH = 32;
+
+    public static final int DEFAULT_IO_QUEUE_CAPACITY = 1024;
+
     private final List<IODeviceHandle> ioDevices;
 
-    private Executor executor;
+    private final IODeviceQueue[] deviceQueues;
+
+    // Queue for files that do not live on one of the I/O devices.
+    private final IODeviceQueue defaultDeviceQueue;
 
     private final List<IODeviceHandle> workAreaIODevices;
 
@@ -41,11 +49,20 @@ public class IOManager implements IIOManager {
 
     public IOManager(List<IODeviceHandle> devices, Executor executor) throws HyracksException {
         this(devices);
-        this.executor = executor;
+        setExecutor(executor);
     }
 
     public IOManager(List<IODeviceHandle> devices) throws HyracksException {
+        this(devices, DEFAULT_IO_QUEUE_DEPTH, DEFAULT_IO_QUEUE_CAPACITY);
+    }
+
+    public IOManager(List<IODeviceHandle> devices, int ioQueueDepth, int ioQueueCapacity) throws HyracksException {
         this.ioDevices = Collections.unmodifiableList(devices);
+        deviceQueues = new IODeviceQueue[ioDevices.size()];
+        for (int i = 0; i < deviceQueues.length; ++i) {
+            deviceQueues[i] = new IODeviceQueue(ioQueueDepth, ioQueueCapacity);
+        }
+        defaultDeviceQueue = new IODeviceQueue(ioQueueDepth, ioQueueCapacity);
         workAreaIODevices = new ArrayList<IODeviceHandle>();
         for (IODeviceHandle d : ioDevices) {
             if (d.getWorkAreaPath() != null) {
@@ -60,7 +77,10 @@ public class IOManager implements IIOManager {
     }
 
     public void setExecutor(Executor executor) {
-        this.executor = executor;
+        for (IODeviceQueue deviceQueue : deviceQueues) {
+            deviceQueue.setExecutor(executor);
+        }
+        defaultDeviceQueue.setExecutor(executor);
     }
 
     @Override
@@ -71,7 +91,7 @@ public class IOManager implements IIOManager {
     @Override
     public IFileHandle open(FileReference fileRef, FileReadWriteMode rwMode, FileSyncMode syncMode)
             throws HyracksDataException {
-        FileHandle fHandle = new FileHandle(fileRef);
+        FileHandle fHandle = new FileHandle(fileRef, getDeviceQueue(fileRef));
         try {
             fHandle.open(rwMode, syncMode);
         } catch (IOException e) {
@@ -80,16 +100,43 @@ public class IOManager implements IIOManager {
         return fHandle;
     }
 
+    private IODeviceQueue getDeviceQueue(FileReference fileRef) {
+        IODeviceHandle dev = fileRef.getDeviceHandle();
+        String filePath = fileRef.getFile().getAbsolutePath();
+        for (int i = 0; i < deviceQueues.length; ++i) {
+            IODeviceHandle ioDevice = ioDevices.get(i);
+            if (ioDevice == dev || filePath.startsWith(ioDevice.getPath().getAbsolutePath() + File.separator)) {
+                return deviceQueues[i];
+            }
+        }
+        return defaultDeviceQueue;
+    }
+
     @Override
     public int syncWrite(IFileHandle fHandle, long offset, ByteBuffer data) throws HyracksDataException {
+        return syncWrite(fHandle, offset, data, IOPriority.FOREGROUND);
+    }
+
+    @Override
+    public int syncWrite(IFileHandle fHandle, long offset, ByteBuffer data, IOPriority priority)
+            throws HyracksDataException {
+        IODeviceQueue deviceQueue = ((FileHandle) fHandle).getDeviceQueue();
+        deviceQueue.acquire(priority);
+        try {
+            return performWrite((FileHandle) fHandle, offset, data);
+        } finally {
+            deviceQueue.release();
+        }
+    }
+
+    private int performWrite(FileHandle fHandle, long offset, ByteBuffer data) throws HyracksDataException {
         try {
             int n = 0;
             int remaining = data.remaining();
             while (remaining > 0) {
-                int len = ((FileHandle) fHandle).getFileChannel().write(data, offset);
+                int len = fHandle.getFileChannel().write(data, offset);
                 if (len < 0) {
-                    throw new HyracksDataException("Error writing to file: "
-                            + ((FileHandle) fHandle).getFileReference().toString());
+                    throw new HyracksDataException("Error writing to file: " + fHandle.getFileReference().toString());
                 }
                 remaining -= len;
                 offset += len;
@@ -103,13 +150,70 @@ public class IOManager implements IIOManager {
         }
     }
 
+    @Override
+    public long syncWrite(IFileHandle fHandle, long offset, ByteBuffer[] dataArray, IOPriority priority)
+            throws HyracksDataException {
+        IODeviceQueue deviceQueue = ((FileHandle) fHandle).getDeviceQueue();
+        deviceQueue.acquire(priority);
+        try {
+            return performWrite((FileHandle) fHandle, offset, dataArray);
+        } finally {
+            deviceQueue.release();
+        }
+    }
+
+    private long performWrite(FileHandle fHandle, long offset, ByteBuffer[] dataArray) throws HyracksDataException {
+        FileChannel channel = fHandle.getFileChannel();
+        try {
+            long remaining = 0;
+            for (ByteBuffer data : dataArray) {
+                remaining += data.remaining();
+            }
+            long n = 0;
+            // Gathering writes are relative to the channel position, which is shared by all writers of the handle.
+            synchronized (fHandle) {
+                channel.position(offset);
+                while (remaining > 0) {
+                    long len = channel.write(dataArray);
+                    if (len < 0) {
+                        throw new HyracksDataException("Error writing to file: "
+                                + fHandle.getFileReference().toString());
+                    }
+                    remaining -= len;
+                    n += len;
+                }
+            }
+            return n;
+        } catch (HyracksDataException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new HyracksDataException(e);
+        }
+    }
+
     @Override
     public int syncRead(IFileHandle fHandle, long offset, ByteBuffer data) throws HyracksDataException {
+        return syncRead(fHandle, offset, data, IOPriority.FOREGROUND);
+    }
+
+    @Override
+    public int syncRead(IFileHandle fHandle, long offset, ByteBuffer data, IOPriority priority)
+            throws HyracksDataException {
+        IODeviceQueue deviceQueue = ((FileHandle) fHandle).getDeviceQueue();
+        deviceQueue.acquire(priority);
+        try {
+            return performRead((FileHandle) fHandle, offset, data);
+        } finally {
+            deviceQueue.release();
+        }
+    }
+
+    private int performRead(FileHandle fHandle, long offset, ByteBuffer data) throws HyracksDataException {
         try {
             int n = 0;
             int remaining = data.remaining();
             while (remaining > 0) {
-                int len = ((FileHandle) fHandle).getFileChannel().read(data, offset);
+                int len = fHandle.getFileChannel().read(data, offset);
                 if (len < 0) {
                     return -1;
                 }
@@ -127,15 +231,25 @@ public class IOManager implements IIOManager {
 
     @Override
     public IIOFuture asyncWrite(IFileHandle fHandle, long offset, ByteBuffer data) {
+        return asyncWrite(fHandle, offset, data, IOPriority.FOREGROUND);
+    }
+
+    @Override
+    public IIOFuture asyncWrite(IFileHandle fHandle, long offset, ByteBuffer data, IOPriority priority) {
         AsyncWriteRequest req = new AsyncWriteRequest((FileHandle) fHandle, offset, data);
-        executor.execute(req);
+        ((FileHandle) fHandle).getDeviceQueue().submit(priority, req);
         return req;
     }
 
     @Override
     public IIOFuture asyncRead(IFileHandle fHandle, long offset, ByteBuffer data) {
+        return asyncRead(fHandle, offset, data, IOPriority.FOREGROUND);
+    }
+
+    @Override
+    public IIOFuture asyncRead(IFileHandle fHandle, long offset, ByteBuffer data, IOPriority priority) {
         AsyncReadRequest req = new AsyncReadRequest((FileHandle) fHandle, offset, data);
-        executor.execute(req);
+        ((FileHandle) fHandle).getDeviceQueue().submit(priority, req);
         return req;
     }
 
@@ -220,7 +334,7 @@ public class IOManager implements IIOManager {
 
         @Override
         protected int performOperation() throws HyracksDataException {
-            return syncRead(fHandle, offset, data);
+            return performRead(fHandle, offset, data);
         }
     }
 
@@ -231,7 +345,7 @@ public class IOManager implements IIOManager {
 
         @Override
         protected int performOperation() throws HyracksDataException {
-            return syncWrite(fHandle, offset, data);
+            return performWrite(fHandle, offset, data);
         }
     }
 
@@ -42,7 +42,7 @@ public class NetworkManager implements IChannelConnectionFactory {
 
     private static final int MAX_CONNECTION_ATTEMPTS = 5;
 
-    static final int INITIAL_MESSAGE_SIZE = 20;
+    static final int INITIAL_MESSAGE_SIZE = 24;
 
     private final PartitionManager partitionManager;
 
@@ -121,10 +121,12 @@ public class NetworkManager implements IChannelConnectionFactory {
         @Override
         public void accept(ByteBuffer buffer) {
             PartitionId pid = readInitialMessage(buffer);
+            int flags = buffer.getInt();
             if (LOGGER.isLoggable(Level.FINE)) {
                 LOGGER.fine("Received initial partition request: " + pid + " on channel: " + ccb);
             }
-            noc = new NetworkOutputChannel(ccb, nBuffers);
+            boolean compressedFrames = (flags & NetworkOutputChannel.FLAG_COMPRESSED_FRAMES) != 0;
+            noc = new NetworkOutputChannel(ccb, nBuffers, compressedFrames);
             try {
                 partitionManager.registerPartitionRequest(pid, noc);
             } catch (HyracksException e) {
@@ -23,6 +23,7 @@ import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
 import edu.uci.ics.hyracks.api.io.FileReference;
 import edu.uci.ics.hyracks.api.io.IFileHandle;
 import edu.uci.ics.hyracks.api.io.IIOManager;
+import edu.uci.ics.hyracks.api.io.IIOManager.IOPriority;
 import edu.uci.ics.hyracks.api.partitions.IPartition;
 import edu.uci.ics.hyracks.control.nc.io.IOManager;
 
@@ -75,7 +76,7 @@ public class MaterializedPartition implements IPartition {
                             ByteBuffer buffer = ctx.allocateFrame();
                             while (true) {
                                 buffer.clear();
-                                long size = ioManager.syncRead(fh, offset, buffer);
+                                long size = ioManager.syncRead(fh, offset, buffer, IOPriority.SPILL);
                                 if (size < 0) {
                                     break;
                                 } else if (size < buffer.capacity()) {
@@ -19,6 +19,7 @@ import java.util.concurrent.Executor;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import edu.uci.ics.hyracks.api.comm.FrameHelper;
 import edu.uci.ics.hyracks.api.comm.IFrameWriter;
 import edu.uci.ics.hyracks.api.context.IHyracksTaskContext;
 import edu.uci.ics.hyracks.api.dataflow.TaskAttemptId;
@@ -26,6 +27,7 @@ import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
 import edu.uci.ics.hyracks.api.io.FileReference;
 import edu.uci.ics.hyracks.api.io.IFileHandle;
 import edu.uci.ics.hyracks.api.io.IIOManager;
+import edu.uci.ics.hyracks.api.io.IIOManager.IOPriority;
 import edu.uci.ics.hyracks.api.partitions.PartitionId;
 import edu.uci.ics.hyracks.control.common.job.PartitionState;
 import edu.uci.ics.hyracks.control.nc.io.IOManager;
@@ -51,6 +53,8 @@ public class MaterializedPartitionWriter implements IFrameWriter {
 
     private boolean failed;
 
+    private ByteBuffer largeFrameHeader;
+
     public MaterializedPartitionWriter(IHyracksTaskContext ctx, PartitionManager manager, PartitionId pid,
             TaskAttemptId taId, Executor executor) {
         this.ctx = ctx;
@@ -76,7 +80,16 @@ public class MaterializedPartitionWriter implements IFrameWriter {
                     IIOManager.FileSyncMode.METADATA_ASYNC_DATA_ASYNC);
             size = 0;
         }
-        size += ctx.getIOManager().syncWrite(handle, size, buffer);
+        if (buffer.capacity() > ctx.getFrameSize()) {
+            // Partitions are read back one frame at a time, so announce the large frame with a header.
+            if (largeFrameHeader == null) {
+                largeFrameHeader = ByteBuffer.allocate(ctx.getFrameSize());
+            }
+            FrameHelper.putLargeFrameHeader(largeFrameHeader, buffer.capacity() / ctx.getFrameSize());
+            largeFrameHeader.clear();
+            size += ctx.getIOManager().syncWrite(handle, size, largeFrameHeader, IOPriority.SPILL);
+        }
+        size += ctx.getIOManager().syncWrite(handle, size, buffer, IOPriority.SPILL);
     }
 
     @Override
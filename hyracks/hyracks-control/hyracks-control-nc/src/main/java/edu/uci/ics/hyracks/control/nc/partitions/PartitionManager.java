@@ -31,6 +31,7 @@ import edu.uci.ics.hyracks.api.partitions.PartitionId;
 import edu.uci.ics.hyracks.comm.channels.NetworkOutputChannel;
 import edu.uci.ics.hyracks.control.common.job.PartitionDescriptor;
 import edu.uci.ics.hyracks.control.common.job.PartitionState;
+import edu.uci.ics.hyracks.control.nc.Joblet;
 import edu.uci.ics.hyracks.control.nc.NodeControllerService;
 import edu.uci.ics.hyracks.control.nc.io.IOManager;
 import edu.uci.ics.hyracks.control.nc.io.WorkspaceFileFactory;
@@ -64,7 +65,7 @@ public class PartitionManager {
              */
             NetworkOutputChannel writer = partitionRequests.remove(pid);
             if (writer != null) {
-                writer.setFrameSize(partition.getTaskContext().getFrameSize());
+                configureChannel(pid, partition, writer);
                 partition.writeTo(writer);
                 if (!partition.isReusable()) {
                     return;
@@ -116,7 +117,7 @@ public class PartitionManager {
             List<IPartition> pList = availablePartitionMap.get(partitionId);
             if (pList != null && !pList.isEmpty()) {
                 IPartition partition = pList.get(0);
-                writer.setFrameSize(partition.getTaskContext().getFrameSize());
+                configureChannel(partitionId, partition, writer);
                 partition.writeTo(writer);
                 if (!partition.isReusable()) {
                     availablePartitionMap.remove(partitionId);
@@ -130,6 +131,14 @@ public class PartitionManager {
         }
     }
 
+    private void configureChannel(PartitionId pid, IPartition partition, NetworkOutputChannel writer) {
+        writer.setFrameSize(partition.getTaskContext().getFrameSize());
+        Joblet joblet = ncs.getJobletMap().get(pid.getJobId());
+        if (joblet != null) {
+            writer.setFrameCompressorFactory(joblet.getFrameCompressorFactory(pid.getConnectorDescriptorId()));
+        }
+    }
+
     public IWorkspaceFileFactory getFileFactory() {
         return fileFactory;
     }
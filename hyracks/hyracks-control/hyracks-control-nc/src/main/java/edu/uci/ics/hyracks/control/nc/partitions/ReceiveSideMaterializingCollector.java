@@ -128,6 +128,9 @@ public class ReceiveSideMaterializingCollector implements IPartitionCollector {
                 while (true) {
                     if (nAvailableFrames.get() > 0) {
                         ByteBuffer buffer = channel.getNextBuffer();
+                        if (buffer == null) {
+                            throw new HyracksDataException("Failure occurred on input");
+                        }
                         nAvailableFrames.decrementAndGet();
                         mpw.nextFrame(buffer);
                         channel.recycleBuffer(buffer);
@@ -48,7 +48,8 @@ public class ReportPartitionAvailabilityWork extends AbstractWork {
             if (ji != null) {
                 PartitionChannel channel = new PartitionChannel(pid, new NetworkInputChannel(ncs.getNetworkManager(),
                         new InetSocketAddress(InetAddress.getByAddress(networkAddress.lookupIpAddress()),
-                                networkAddress.getPort()), pid, 5));
+                                networkAddress.getPort()), pid, 5, ji.getFrameCompressorFactory(pid
+                                .getConnectorDescriptorId())));
                 ji.reportPartitionAvailability(channel);
             }
         } catch (Exception e) {
@@ -264,7 +264,8 @@ public class StartTasksWork extends AbstractWork {
                                 .getTaskAttemptId().getTaskId().getPartition());
                         PartitionChannel channel = new PartitionChannel(pid, new NetworkInputChannel(
                                 ncs.getNetworkManager(), new InetSocketAddress(InetAddress.getByAddress(networkAddress
-                                        .lookupIpAddress()), networkAddress.getPort()), pid, 5));
+                                        .lookupIpAddress()), networkAddress.getPort()), pid, 5, inputs.get(i)
+                                        .getFrameCompressorFactory()));
                         channels.add(channel);
                     }
                 }
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.hyracks.control.nc.io;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.uci.ics.hyracks.api.io.IIOManager.IOPriority;
+
+public class IODeviceQueueTest {
+    private static final long TIMEOUT_SECONDS = 60;
+
+    @Test
+    public void queueDepthTest() throws Exception {
+        final int queueDepth = 2;
+        final int numRequests = 10;
+        IODeviceQueue queue = new IODeviceQueue(queueDepth, numRequests);
+        ExecutorService executor = Executors.newCachedThreadPool();
+        queue.setExecutor(executor);
+        final CountDownLatch go = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(numRequests);
+        final AtomicInteger numRunning = new AtomicInteger();
+        final AtomicInteger maxNumRunning = new AtomicInteger();
+        try {
+            for (int i = 0; i < numRequests; ++i) {
+                queue.submit(IOPriority.SPILL, new Runnable() {
+                    @Override
+                    public void run() {
+                        int n = numRunning.incrementAndGet();
+                        while (true) {
+                            int max = maxNumRunning.get();
+                            if (n <= max || maxNumRunning.compareAndSet(max, n)) {
+                                break;
+                            }
+                        }
+                        try {
+                            go.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        numRunning.decrementAndGet();
+                        done.countDown();
+                    }
+                });
+            }
+            Assert.assertEquals(queueDepth, queue.getNumInFlight());
+            Assert.assertEquals(numRequests - queueDepth, queue.getNumWaiting(IOPriority.SPILL));
+            go.countDown();
+            Assert.assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            Assert.assertTrue(maxNumRunning.get() <= queueDepth);
+
+            // A synchronous request waits for a slot like any other.
+            queue.acquire(IOPriority.FOREGROUND);
+            queue.acquire(IOPriority.FOREGROUND);
+            Assert.assertEquals(queueDepth, queue.getNumInFlight());
+            queue.release();
+            queue.release();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void priorityTest() {
+        ManualExecutor executor = new ManualExecutor();
+        IODeviceQueue queue = new IODeviceQueue(1, 100);
+        queue.setExecutor(executor);
+        List<String> executed = Collections.synchronizedList(new ArrayList<String>());
+        queue.submit(IOPriority.FOREGROUND, new Request("running", executed));
+        queue.submit(IOPriority.BACKGROUND, new Request("background", executed));
+        queue.submit(IOPriority.SPILL, new Request("spill", executed));
+        queue.submit(IOPriority.FOREGROUND, new Request("foreground", executed));
+        executor.runAll();
+        Assert.assertEquals(4, executed.size());
+        Assert.assertEquals("running", executed.get(0));
+        Assert.assertEquals("foreground", executed.get(1));
+        Assert.assertEquals("spill", executed.get(2));
+        Assert.assertEquals("background", executed.get(3));
+    }
+
+    @Test
+    public void starvationTest() {
+        ManualExecutor executor = new ManualExecutor();
+        IODeviceQueue queue = new IODeviceQueue(1, 100);
+        queue.setExecutor(executor);
+        List<String> executed = Collections.synchronizedList(new ArrayList<String>());
+        queue.submit(IOPriority.FOREGROUND, new Request("running", executed));
+        int numForeground = 20;
+        for (int i = 0; i < numForeground; ++i) {
+            queue.submit(IOPriority.FOREGROUND, new Request("foreground", executed));
+        }
+        queue.submit(IOPriority.BACKGROUND, new Request("background0", executed));
+        queue.submit(IOPriority.BACKGROUND, new Request("background1", executed));
+        executor.runAll();
+        Assert.assertEquals(numForeground + 3, executed.size());
+        // Every 8 grants that bypass the background requests are followed by a background request.
+        Assert.assertEquals(9, executed.indexOf("background0"));
+        Assert.assertEquals(18, executed.indexOf("background1"));
+    }
+
+    @Test
+    public void saturatedStarvationTest() {
+        ManualExecutor executor = new ManualExecutor();
+        IODeviceQueue queue = new IODeviceQueue(1, 100);
+        queue.setExecutor(executor);
+        List<String> executed = Collections.synchronizedList(new ArrayList<String>());
+        queue.submit(IOPriority.FOREGROUND, new Request("running", executed));
+        int numRequests = 30;
+        for (int i = 0; i < numRequests; ++i) {
+            queue.submit(IOPriority.FOREGROUND, new Request("foreground", executed));
+            queue.submit(IOPriority.SPILL, new Request("spill" + i, executed));
+            queue.submit(IOPriority.BACKGROUND, new Request("background" + i, executed));
+        }
+        executor.runAll();
+        Assert.assertEquals(3 * numRequests + 1, executed.size());
+        // While all three classes wait, every 8 foreground grants are followed by a spill and a background request.
+        for (int i = 0; i < 3; ++i) {
+            Assert.assertEquals(9 + 10 * i, executed.indexOf("spill" + i));
+            Assert.assertEquals(10 + 10 * i, executed.indexOf("background" + i));
+        }
+    }
+
+    @Test
+    public void queueCapacityTest() throws Exception {
+        ManualExecutor executor = new ManualExecutor();
+        final int queueCapacity = 2;
+        final IODeviceQueue queue = new IODeviceQueue(1, queueCapacity);
+        queue.setExecutor(executor);
+        final List<String> executed = Collections.synchronizedList(new ArrayList<String>());
+        queue.submit(IOPriority.SPILL, new Request("running", executed));
+        for (int i = 0; i < queueCapacity; ++i) {
+            queue.submit(IOPriority.SPILL, new Request("waiting" + i, executed));
+        }
+        Thread submitter = new Thread() {
+            @Override
+            public void run() {
+                queue.submit(IOPriority.SPILL, new Request("blocked", executed));
+            }
+        };
+        submitter.start();
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS);
+        while (submitter.getState() != Thread.State.WAITING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        // The submitter waits for the queue to drain.
+        Assert.assertEquals(Thread.State.WAITING, submitter.getState());
+        Assert.assertEquals(queueCapacity, queue.getNumWaiting(IOPriority.SPILL));
+
+        executor.runNext();
+        submitter.join(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+        Assert.assertFalse(submitter.isAlive());
+        Assert.assertEquals(queueCapacity, queue.getNumWaiting(IOPriority.SPILL));
+        executor.runAll();
+        Assert.assertEquals(queueCapacity + 2, executed.size());
+        Assert.assertEquals("blocked", executed.get(queueCapacity + 1));
+    }
+
+    /**
+     * Runs the admitted requests on the test thread, one at a time, in the order they were admitted.
+     */
+    private static class ManualExecutor implements Executor {
+        private final List<Runnable> admitted = Collections.synchronizedList(new ArrayList<Runnable>());
+
+        @Override
+        public void execute(Runnable command) {
+            admitted.add(command);
+        }
+
+        public void runNext() {
+            admitted.remove(0).run();
+        }
+
+        public void runAll() {
+            while (!admitted.isEmpty()) {
+                runNext();
+            }
+        }
+    }
+
+    private static class Request implements Runnable {
+        private final String name;
+        private final List<String> executed;
+
+        public Request(String name, List<String> executed) {
+            this.name = name;
+            this.executed = executed;
+        }
+
+        @Override
+        public void run() {
+            executed.add(name);
+        }
+    }
+}
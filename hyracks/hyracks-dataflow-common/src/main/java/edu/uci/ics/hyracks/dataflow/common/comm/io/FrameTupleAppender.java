@@ -20,7 +20,10 @@ import edu.uci.ics.hyracks.api.comm.FrameHelper;
 import edu.uci.ics.hyracks.api.comm.IFrameTupleAccessor;
 
 public class FrameTupleAppender {
-    private final int frameSize;
+    /**
+     * Capacity of the current buffer, which is larger than the frame size for large frames.
+     */
+    private int frameSize;
 
     private ByteBuffer buffer;
 
@@ -43,6 +46,7 @@ public class FrameTupleAppender {
 
     public void reset(ByteBuffer buffer, boolean clear) {
         this.buffer = buffer;
+        frameSize = buffer.capacity();
         if (clear) {
             buffer.putInt(FrameHelper.getTupleCountOffset(frameSize), 0);
             tupleCount = 0;
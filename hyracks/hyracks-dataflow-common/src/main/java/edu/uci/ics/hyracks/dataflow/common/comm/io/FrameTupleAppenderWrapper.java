@@ -19,6 +19,7 @@ import java.nio.ByteBuffer;
 
 import edu.uci.ics.hyracks.api.comm.IFrameTupleAccessor;
 import edu.uci.ics.hyracks.api.comm.IFrameWriter;
+import edu.uci.ics.hyracks.api.context.IHyracksCommonContext;
 import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
 import edu.uci.ics.hyracks.dataflow.common.comm.util.FrameUtils;
 
@@ -33,9 +34,20 @@ public class FrameTupleAppenderWrapper {
     private final FrameTupleAppender frameTupleAppender;
     private final ByteBuffer outputFrame;
     private final IFrameWriter outputWriter;
+    private final IHyracksCommonContext ctx;
 
     public FrameTupleAppenderWrapper(FrameTupleAppender frameTupleAppender, ByteBuffer outputFrame,
             IFrameWriter outputWriter) {
+        this(null, frameTupleAppender, outputFrame, outputWriter);
+    }
+
+    /**
+     * With a context, tuples that do not fit into an empty output frame are sent in a large frame of their own
+     * instead of failing.
+     */
+    public FrameTupleAppenderWrapper(IHyracksCommonContext ctx, FrameTupleAppender frameTupleAppender,
+            ByteBuffer outputFrame, IFrameWriter outputWriter) {
+        this.ctx = ctx;
         this.frameTupleAppender = frameTupleAppender;
         this.outputFrame = outputFrame;
         this.outputWriter = outputWriter;
@@ -69,7 +81,10 @@ public class FrameTupleAppenderWrapper {
             FrameUtils.flushFrame(outputFrame, outputWriter);
             frameTupleAppender.reset(outputFrame, true);
             if (!frameTupleAppender.appendSkipEmptyField(fieldSlots, bytes, offset, length)) {
-                throw new HyracksDataException("The output cannot be fit into a frame.");
+                if (ctx == null) {
+                    throw new HyracksDataException("The output cannot be fit into a frame.");
+                }
+                FrameUtils.flushLargeTuple(ctx, fieldSlots, bytes, offset, length, outputWriter);
             }
         }
     }
@@ -89,7 +104,10 @@ public class FrameTupleAppenderWrapper {
             FrameUtils.flushFrame(outputFrame, outputWriter);
             frameTupleAppender.reset(outputFrame, true);
             if (!frameTupleAppender.append(tupleAccessor, tStartOffset, tEndOffset)) {
-                throw new HyracksDataException("The output cannot be fit into a frame.");
+                if (ctx == null) {
+                    throw new HyracksDataException("The output cannot be fit into a frame.");
+                }
+                FrameUtils.flushLargeTuple(ctx, tupleAccessor, tStartOffset, tEndOffset, outputWriter);
             }
         }
     }
@@ -99,7 +117,10 @@ public class FrameTupleAppenderWrapper {
             FrameUtils.flushFrame(outputFrame, outputWriter);
             frameTupleAppender.reset(outputFrame, true);
             if (!frameTupleAppender.append(tupleAccessor, tIndex)) {
-                throw new HyracksDataException("The output cannot be fit into a frame.");
+                if (ctx == null) {
+                    throw new HyracksDataException("The output cannot be fit into a frame.");
+                }
+                FrameUtils.flushLargeTuple(ctx, tupleAccessor, tIndex, outputWriter);
             }
         }
     }
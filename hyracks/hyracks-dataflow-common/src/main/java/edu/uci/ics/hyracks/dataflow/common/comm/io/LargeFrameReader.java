@@ -0,0 +1,79 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.hyracks.dataflow.common.comm.io;
+
+import java.nio.ByteBuffer;
+
+import edu.uci.ics.hyracks.api.comm.FrameHelper;
+import edu.uci.ics.hyracks.api.comm.IFrameReader;
+import edu.uci.ics.hyracks.api.context.IHyracksCommonContext;
+import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
+
+/**
+ * Reads from a reader of regular frames that carries large frames as a large frame header followed by regular frames
+ * (see {@link FrameHelper}), such as a run file, and hands out large frames reassembled.
+ * A reassembled large frame is allocated from the context and is released when the next frame is read or the reader
+ * is closed.
+ */
+public class LargeFrameReader {
+    private final IHyracksCommonContext ctx;
+    private final IFrameReader reader;
+    private ByteBuffer largeFrame;
+
+    public LargeFrameReader(IHyracksCommonContext ctx, IFrameReader reader) {
+        this.ctx = ctx;
+        this.reader = reader;
+    }
+
+    public void open() throws HyracksDataException {
+        reader.open();
+    }
+
+    /**
+     * Reads the next frame.
+     *
+     * @param frame
+     *            the regular frame to read into
+     * @return frame, or the reassembled large frame if frame received a large frame header, readable from its start,
+     *         or null at the end of the reader
+     */
+    public ByteBuffer nextFrame(ByteBuffer frame) throws HyracksDataException {
+        releaseLargeFrame();
+        if (!reader.nextFrame(frame)) {
+            return null;
+        }
+        int frameCount = FrameHelper.getLargeFrameCount(frame);
+        if (frameCount == 0) {
+            frame.position(0);
+            frame.limit(frame.capacity());
+            return frame;
+        }
+        largeFrame = ctx.allocateFrame(frameCount * frame.capacity());
+        FrameHelper.readLargeFrame(reader, frame, largeFrame, frameCount);
+        return largeFrame;
+    }
+
+    public void close() throws HyracksDataException {
+        releaseLargeFrame();
+        reader.close();
+    }
+
+    private void releaseLargeFrame() {
+        if (largeFrame != null) {
+            ctx.deallocateFrames(largeFrame.capacity() / ctx.getFrameSize());
+            largeFrame = null;
+        }
+    }
+}
@@ -18,7 +18,9 @@ import java.nio.ByteBuffer;
 
 import edu.uci.ics.hyracks.api.comm.IFrameTupleAccessor;
 import edu.uci.ics.hyracks.api.comm.IFrameWriter;
+import edu.uci.ics.hyracks.api.context.IHyracksCommonContext;
 import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
+import edu.uci.ics.hyracks.dataflow.common.comm.io.FrameTupleAppender;
 
 public class FrameUtils {
     public static void copy(ByteBuffer srcFrame, ByteBuffer destFrame) {
@@ -40,6 +42,121 @@ public class FrameUtils {
         buffer.limit(buffer.capacity());
     }
 
+    /**
+     * Sends a tuple that does not fit into an empty frame to the writer in a large frame of its own.
+     */
+    public static void flushLargeTuple(IHyracksCommonContext ctx, IFrameTupleAccessor accessor, int tIndex,
+            IFrameWriter writer) throws HyracksDataException {
+        flushLargeTuple(ctx, accessor, accessor.getTupleStartOffset(tIndex), accessor.getTupleEndOffset(tIndex),
+                writer);
+    }
+
+    /**
+     * Same as {@link #flushLargeTuple(IHyracksCommonContext, IFrameTupleAccessor, int, IFrameWriter)}, for the tuple
+     * between the given offsets of the accessor's frame.
+     */
+    public static void flushLargeTuple(IHyracksCommonContext ctx, IFrameTupleAccessor accessor, int tStartOffset,
+            int tEndOffset, IFrameWriter writer) throws HyracksDataException {
+        int tupleLength = tEndOffset - tStartOffset;
+        // The tuple is followed by its end offset and the tuple count.
+        ByteBuffer largeFrame = ctx.allocateFrame(tupleLength + 8);
+        try {
+            FrameTupleAppender appender = new FrameTupleAppender(ctx.getFrameSize());
+            appender.reset(largeFrame, true);
+            if (!appender.append(accessor, tStartOffset, tEndOffset)) {
+                throw new HyracksDataException("Record size (" + tupleLength + ") larger than large frame size ("
+                        + largeFrame.capacity() + ")");
+            }
+            flushFrame(largeFrame, writer);
+        } finally {
+            ctx.deallocateFrames(largeFrame.capacity() / ctx.getFrameSize());
+        }
+    }
+
+    /**
+     * Same as {@link #flushLargeTuple(IHyracksCommonContext, IFrameTupleAccessor, int, IFrameWriter)}, for a tuple
+     * given by its field slots and data.
+     */
+    public static void flushLargeTuple(IHyracksCommonContext ctx, int[] fieldSlots, byte[] bytes, int offset,
+            int length, IFrameWriter writer) throws HyracksDataException {
+        int tupleLength = fieldSlots.length * 4 + length;
+        ByteBuffer largeFrame = ctx.allocateFrame(tupleLength + 8);
+        try {
+            FrameTupleAppender appender = new FrameTupleAppender(ctx.getFrameSize());
+            appender.reset(largeFrame, true);
+            if (!appender.append(fieldSlots, bytes, offset, length)) {
+                throw new HyracksDataException("Record size (" + tupleLength + ") larger than large frame size ("
+                        + largeFrame.capacity() + ")");
+            }
+            flushFrame(largeFrame, writer);
+        } finally {
+            ctx.deallocateFrames(largeFrame.capacity() / ctx.getFrameSize());
+        }
+    }
+
+    /**
+     * Copies a tuple that does not fit into an empty frame into a large frame of its own, allocated from the context.
+     * The caller owns the returned frame and must release it.
+     */
+    public static ByteBuffer copyToLargeFrame(IHyracksCommonContext ctx, IFrameTupleAccessor accessor, int tIndex)
+            throws HyracksDataException {
+        int tupleLength = accessor.getTupleEndOffset(tIndex) - accessor.getTupleStartOffset(tIndex);
+        ByteBuffer largeFrame = ctx.allocateFrame(tupleLength + 8);
+        FrameTupleAppender appender = new FrameTupleAppender(ctx.getFrameSize());
+        appender.reset(largeFrame, true);
+        if (!appender.append(accessor, tIndex)) {
+            ctx.deallocateFrames(largeFrame.capacity() / ctx.getFrameSize());
+            throw new HyracksDataException("Record size (" + tupleLength + ") larger than large frame size ("
+                    + largeFrame.capacity() + ")");
+        }
+        return largeFrame;
+    }
+
+    /**
+     * Same as {@link #flushLargeTuple(IHyracksCommonContext, IFrameTupleAccessor, int, IFrameWriter)}, for the
+     * concatenation of two tuples.
+     */
+    public static void flushLargeConcatTuple(IHyracksCommonContext ctx, IFrameTupleAccessor accessor0, int tIndex0,
+            IFrameTupleAccessor accessor1, int tIndex1, IFrameWriter writer) throws HyracksDataException {
+        int tupleLength = accessor0.getTupleEndOffset(tIndex0) - accessor0.getTupleStartOffset(tIndex0)
+                + accessor1.getTupleEndOffset(tIndex1) - accessor1.getTupleStartOffset(tIndex1);
+        ByteBuffer largeFrame = ctx.allocateFrame(tupleLength + 8);
+        try {
+            FrameTupleAppender appender = new FrameTupleAppender(ctx.getFrameSize());
+            appender.reset(largeFrame, true);
+            if (!appender.appendConcat(accessor0, tIndex0, accessor1, tIndex1)) {
+                throw new HyracksDataException("Record size (" + tupleLength + ") larger than large frame size ("
+                        + largeFrame.capacity() + ")");
+            }
+            flushFrame(largeFrame, writer);
+        } finally {
+            ctx.deallocateFrames(largeFrame.capacity() / ctx.getFrameSize());
+        }
+    }
+
+    /**
+     * Same as {@link #flushLargeTuple(IHyracksCommonContext, IFrameTupleAccessor, int, IFrameWriter)}, for the
+     * concatenation of a tuple and a tuple given by its field slots and data.
+     */
+    public static void flushLargeConcatTuple(IHyracksCommonContext ctx, IFrameTupleAccessor accessor0, int tIndex0,
+            int[] fieldSlots1, byte[] bytes1, int offset1, int dataLen1, IFrameWriter writer)
+            throws HyracksDataException {
+        int tupleLength = accessor0.getTupleEndOffset(tIndex0) - accessor0.getTupleStartOffset(tIndex0)
+                + fieldSlots1.length * 4 + dataLen1;
+        ByteBuffer largeFrame = ctx.allocateFrame(tupleLength + 8);
+        try {
+            FrameTupleAppender appender = new FrameTupleAppender(ctx.getFrameSize());
+            appender.reset(largeFrame, true);
+            if (!appender.appendConcat(accessor0, tIndex0, fieldSlots1, bytes1, offset1, dataLen1)) {
+                throw new HyracksDataException("Record size (" + tupleLength + ") larger than large frame size ("
+                        + largeFrame.capacity() + ")");
+            }
+            flushFrame(largeFrame, writer);
+        } finally {
+            ctx.deallocateFrames(largeFrame.capacity() / ctx.getFrameSize());
+        }
+    }
+
     public static int getAbsoluteFieldStartOffset(IFrameTupleAccessor accessor, int tuple, int field) {
         return accessor.getTupleStartOffset(tuple) + accessor.getFieldSlotsLength()
                 + accessor.getFieldStartOffset(tuple, field);
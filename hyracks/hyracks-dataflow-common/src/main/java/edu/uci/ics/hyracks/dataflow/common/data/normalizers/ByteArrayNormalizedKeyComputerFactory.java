@@ -17,13 +17,32 @@ package edu.uci.ics.hyracks.dataflow.common.data.normalizers;
 
 import edu.uci.ics.hyracks.api.dataflow.value.INormalizedKeyComputer;
 import edu.uci.ics.hyracks.api.dataflow.value.INormalizedKeyComputerFactory;
+import edu.uci.ics.hyracks.api.dataflow.value.IWideNormalizedKeyComputer;
 import edu.uci.ics.hyracks.data.std.primitive.ByteArrayPointable;
 
 public class ByteArrayNormalizedKeyComputerFactory implements INormalizedKeyComputerFactory {
     public static ByteArrayNormalizedKeyComputerFactory INSTANCE = new ByteArrayNormalizedKeyComputerFactory();
 
+    /**
+     * Default number of ints in the wide normalized key, i.e. the first 16 bytes.
+     */
+    public static final int DEFAULT_NORMALIZED_KEY_LENGTH = 4;
+
+    private final int normalizedKeyLength;
+
+    public ByteArrayNormalizedKeyComputerFactory() {
+        this(DEFAULT_NORMALIZED_KEY_LENGTH);
+    }
+
+    public ByteArrayNormalizedKeyComputerFactory(int normalizedKeyLength) {
+        if (normalizedKeyLength < 1) {
+            throw new IllegalArgumentException("Normalized key length must be positive: " + normalizedKeyLength);
+        }
+        this.normalizedKeyLength = normalizedKeyLength;
+    }
+
     @Override public INormalizedKeyComputer createNormalizedKeyComputer() {
-        return new INormalizedKeyComputer() {
+        return new IWideNormalizedKeyComputer() {
             @Override public int normalize(byte[] bytes, int start, int length) {
                 int normalizedKey = 0;
                 int realLength = ByteArrayPointable.getLength(bytes, start);
@@ -40,6 +59,28 @@ public class ByteArrayNormalizedKeyComputerFactory implements INormalizedKeyComp
                 }
                 return normalizedKey;
             }
+
+            @Override
+            public int getNormalizedKeyLength() {
+                return normalizedKeyLength;
+            }
+
+            @Override
+            public void normalize(byte[] bytes, int start, int length, int[] target, int targetOffset) {
+                int realLength = ByteArrayPointable.getLength(bytes, start);
+                int offset = start + ByteArrayPointable.SIZE_OF_LENGTH;
+                for (int i = 0, pos = 0; i < normalizedKeyLength; ++i) {
+                    // compared unsigned, so all 32 bits can be used
+                    int normalizedKey = 0;
+                    for (int j = 0; j < 4; ++j, ++pos) {
+                        normalizedKey <<= 8;
+                        if (pos < realLength) {
+                            normalizedKey += bytes[offset + pos] & 0xff;
+                        }
+                    }
+                    target[targetOffset + i] = normalizedKey;
+                }
+            }
         };
     }
 }
@@ -16,6 +16,7 @@ package edu.uci.ics.hyracks.dataflow.common.data.normalizers;
 
 import edu.uci.ics.hyracks.api.dataflow.value.INormalizedKeyComputer;
 import edu.uci.ics.hyracks.api.dataflow.value.INormalizedKeyComputerFactory;
+import edu.uci.ics.hyracks.api.dataflow.value.IWideNormalizedKeyComputer;
 import edu.uci.ics.hyracks.data.std.primitive.LongPointable;
 import edu.uci.ics.hyracks.dataflow.common.data.marshalling.Integer64SerializerDeserializer;
 
@@ -25,7 +26,7 @@ public class Integer64NormalizedKeyComputerFactory implements INormalizedKeyComp
 
     @Override
     public INormalizedKeyComputer createNormalizedKeyComputer() {
-        return new INormalizedKeyComputer() {
+        return new IWideNormalizedKeyComputer() {
             private static final int POSTIVE_LONG_MASK = (3 << 30);
             private static final int NON_NEGATIVE_INT_MASK = (2 << 30);
             private static final int NEGATIVE_LONG_MASK = (0 << 30);
@@ -61,6 +62,21 @@ public class Integer64NormalizedKeyComputerFactory implements INormalizedKeyComp
                 }
             }
 
+            @Override
+            public int getNormalizedKeyLength() {
+                return 2;
+            }
+
+            @Override
+            public void normalize(byte[] bytes, int start, int length, int[] target, int targetOffset) {
+                /**
+                 * the two ints hold the whole value, so only equal values have equal keys
+                 */
+                long value = LongPointable.getLong(bytes, start);
+                target[targetOffset] = getKey((int) (value >> 32));
+                target[targetOffset + 1] = (int) value;
+            }
+
             private int getKey(int value) {
                 return value ^ Integer.MIN_VALUE;
             }
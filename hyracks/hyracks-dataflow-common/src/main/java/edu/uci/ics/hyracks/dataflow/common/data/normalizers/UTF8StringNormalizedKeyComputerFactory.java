@@ -16,28 +16,79 @@ package edu.uci.ics.hyracks.dataflow.common.data.normalizers;
 
 import edu.uci.ics.hyracks.api.dataflow.value.INormalizedKeyComputer;
 import edu.uci.ics.hyracks.api.dataflow.value.INormalizedKeyComputerFactory;
+import edu.uci.ics.hyracks.api.dataflow.value.IWideNormalizedKeyComputer;
 import edu.uci.ics.hyracks.data.std.primitive.UTF8StringPointable;
 
 public class UTF8StringNormalizedKeyComputerFactory implements INormalizedKeyComputerFactory {
     private static final long serialVersionUID = 1L;
 
+    /**
+     * Default number of ints in the wide normalized key, i.e. the first 8 characters.
+     */
+    public static final int DEFAULT_NORMALIZED_KEY_LENGTH = 4;
+
+    private final int normalizedKeyLength;
+
+    public UTF8StringNormalizedKeyComputerFactory() {
+        this(DEFAULT_NORMALIZED_KEY_LENGTH);
+    }
+
+    /**
+     * @param normalizedKeyLength
+     *            number of ints in the wide normalized key; each int holds two characters
+     */
+    public UTF8StringNormalizedKeyComputerFactory(int normalizedKeyLength) {
+        if (normalizedKeyLength < 1) {
+            throw new IllegalArgumentException("Normalized key length must be positive: " + normalizedKeyLength);
+        }
+        this.normalizedKeyLength = normalizedKeyLength;
+    }
+
     @Override
     public INormalizedKeyComputer createNormalizedKeyComputer() {
-        return new INormalizedKeyComputer() {
+        return new IWideNormalizedKeyComputer() {
             @Override
             public int normalize(byte[] bytes, int start, int length) {
-                int len = UTF8StringPointable.getUTFLength(bytes, start);
-                int nk = 0;
+                int end = start + 2 + UTF8StringPointable.getUTFLength(bytes, start);
+                return pack(bytes, start + 2, end);
+            }
+
+            @Override
+            public int getNormalizedKeyLength() {
+                return normalizedKeyLength;
+            }
+
+            @Override
+            public void normalize(byte[] bytes, int start, int length, int[] target, int targetOffset) {
+                int end = start + 2 + UTF8StringPointable.getUTFLength(bytes, start);
                 int offset = start + 2;
+                for (int i = 0; i < normalizedKeyLength; ++i) {
+                    target[targetOffset + i] = pack(bytes, offset, end);
+                    offset = skip(bytes, offset, end);
+                }
+            }
+
+            /**
+             * Packs the two characters at offset into one int, padding with 0 past the end of the string.
+             */
+            private int pack(byte[] bytes, int offset, int end) {
+                int nk = 0;
                 for (int i = 0; i < 2; ++i) {
                     nk <<= 16;
-                    if (i < len) {
+                    if (offset < end) {
                         nk += ((int) UTF8StringPointable.charAt(bytes, offset)) & 0xffff;
                         offset += UTF8StringPointable.charSize(bytes, offset);
                     }
                 }
                 return nk;
             }
+
+            private int skip(byte[] bytes, int offset, int end) {
+                for (int i = 0; i < 2 && offset < end; ++i) {
+                    offset += UTF8StringPointable.charSize(bytes, offset);
+                }
+                return offset;
+            }
         };
     }
-}
\ No newline at end of file
+}
@@ -37,7 +37,9 @@ public class RepartitionComputerFactory implements ITuplePartitionComputerFactor
 
             @Override
             public int partition(IFrameTupleAccessor accessor, int tIndex, int nParts) throws HyracksDataException {
-                return delegate.partition(accessor, tIndex, factor * nParts) / factor;
+                // Capped, so that many partitions, such as Integer.MAX_VALUE for the full hash, do not overflow
+                long delegateParts = Math.min((long) factor * nParts, Integer.MAX_VALUE);
+                return delegate.partition(accessor, tIndex, (int) delegateParts) / factor;
             }
         };
     }
@@ -19,27 +19,84 @@ import java.nio.ByteBuffer;
 import edu.uci.ics.hyracks.api.comm.IFrameReader;
 import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
 import edu.uci.ics.hyracks.api.io.FileReference;
+import edu.uci.ics.hyracks.api.io.IBlockCompressor;
 import edu.uci.ics.hyracks.api.io.IFileHandle;
+import edu.uci.ics.hyracks.api.io.IIOFuture;
 import edu.uci.ics.hyracks.api.io.IIOManager;
+import edu.uci.ics.hyracks.api.io.IIOManager.IOPriority;
 
+/**
+ * Reads a run back one regular frame at a time. A large frame written to the run comes back as a large frame header
+ * followed by regular frames, which a LargeFrameReader reassembles.
+ */
 public class RunFileReader implements IFrameReader {
+    /** compressed blocks are read into this before they are decompressed into the caller's frame */
+    private static final ThreadLocal<byte[]> BLOCK_BUFFER = new ThreadLocal<byte[]>();
+
     private final FileReference file;
     private final IIOManager ioManager;
     private final long size;
+    private final IBlockCompressor compressor;
+    private final int[] blockLengths;
+    private final int blockCount;
 
     private IFileHandle handle;
     private long readPtr;
+    private int readBlock;
+
+    private ByteBuffer[] readAheadFrames;
+    private IIOFuture[] readAheadFutures;
+    private int readAheadHead;
+    private int readAheadCount;
+    private long readAheadPtr;
+    private int readAheadBlock;
 
     public RunFileReader(FileReference file, IIOManager ioManager, long size) {
+        this(file, ioManager, size, null, null, 0);
+    }
+
+    /**
+     * Reads a run written by a RunFileWriter with a compressor.
+     *
+     * @param blockLengths
+     *            the length of each block in the file, negated for blocks stored uncompressed
+     */
+    public RunFileReader(FileReference file, IIOManager ioManager, long size, IBlockCompressor compressor,
+            int[] blockLengths, int blockCount) {
         this.file = file;
         this.ioManager = ioManager;
         this.size = size;
+        this.compressor = compressor;
+        this.blockLengths = blockLengths;
+        this.blockCount = blockCount;
+    }
+
+    /**
+     * Lends frames to this reader for its next open/close cycle. While open, the reader keeps one asynchronous read
+     * per frame in flight ahead of the frame it returns next, so nextFrame() usually only copies a frame that has
+     * already arrived. The frames must have the size of the frames passed to nextFrame().
+     */
+    public void setReadAheadFrames(ByteBuffer[] readAheadFrames) {
+        this.readAheadFrames = readAheadFrames == null || readAheadFrames.length == 0 ? null : readAheadFrames;
     }
 
     @Override
     public void open() throws HyracksDataException {
         handle = ioManager.open(file, IIOManager.FileReadWriteMode.READ_ONLY, null);
         readPtr = 0;
+        readBlock = 0;
+        if (readAheadFrames != null) {
+            readAheadFutures = new IIOFuture[readAheadFrames.length];
+            readAheadHead = 0;
+            readAheadCount = 0;
+            readAheadPtr = 0;
+            readAheadBlock = 0;
+            while (readAheadCount < readAheadFrames.length) {
+                if (!readAhead()) {
+                    break;
+                }
+            }
+        }
     }
 
     @Override
@@ -48,13 +105,126 @@ public class RunFileReader implements IFrameReader {
         if (readPtr >= size) {
             return false;
         }
-        readPtr += ioManager.syncRead(handle, readPtr, buffer);
+        if (readAheadFrames == null) {
+            if (compressor == null) {
+                readPtr += ioManager.syncRead(handle, readPtr, buffer, IOPriority.SPILL);
+                return true;
+            }
+            int blockLength = blockLengths[readBlock++];
+            checkBlockLength(blockLength, buffer);
+            if (blockLength < 0) {
+                buffer.limit(-blockLength);
+                readBlock(buffer);
+                return true;
+            }
+            byte[] block = getBlockBuffer(blockLength);
+            readBlock(ByteBuffer.wrap(block, 0, blockLength));
+            decompress(block, blockLength, buffer);
+            return true;
+        }
+        ByteBuffer frame = readAheadFrames[readAheadHead];
+        int len = await(readAheadFutures[readAheadHead]);
+        if (len < 0) {
+            throw new HyracksDataException("Premature end of run file " + file);
+        }
+        readAheadFutures[readAheadHead] = null;
+        readAheadHead = (readAheadHead + 1) % readAheadFrames.length;
+        --readAheadCount;
+        if (compressor != null && blockLengths[readBlock++] > 0) {
+            decompress(frame.array(), len, buffer);
+        } else {
+            frame.flip();
+            buffer.put(frame);
+        }
+        readPtr += len;
+        readAhead();
+        return true;
+    }
+
+    private void checkBlockLength(int blockLength, ByteBuffer buffer) throws HyracksDataException {
+        if (Math.abs(blockLength) > buffer.capacity()) {
+            throw new HyracksDataException("Block of " + Math.abs(blockLength) + " bytes in run file " + file
+                    + " does not fit into a frame of " + buffer.capacity() + " bytes");
+        }
+    }
+
+    private void readBlock(ByteBuffer block) throws HyracksDataException {
+        int length = block.remaining();
+        if (ioManager.syncRead(handle, readPtr, block, IOPriority.SPILL) < length) {
+            throw new HyracksDataException("Premature end of run file " + file);
+        }
+        readPtr += length;
+    }
+
+    private void decompress(byte[] block, int blockLength, ByteBuffer buffer) throws HyracksDataException {
+        int length = compressor.decompress(block, 0, blockLength, buffer.array(), 0, buffer.capacity());
+        buffer.position(length);
+    }
+
+    private static byte[] getBlockBuffer(int length) {
+        byte[] block = BLOCK_BUFFER.get();
+        if (block == null || block.length < length) {
+            block = new byte[length];
+            BLOCK_BUFFER.set(block);
+        }
+        return block;
+    }
+
+    /**
+     * Issues the read of the next frame that is not in flight yet into the free read-ahead frame.
+     *
+     * @return false if the whole file has been requested already
+     */
+    private boolean readAhead() throws HyracksDataException {
+        if (readAheadPtr >= size) {
+            return false;
+        }
+        int slot = (readAheadHead + readAheadCount) % readAheadFrames.length;
+        ByteBuffer frame = readAheadFrames[slot];
+        frame.clear();
+        if (compressor != null) {
+            int blockLength = blockLengths[readAheadBlock++];
+            checkBlockLength(blockLength, frame);
+            frame.limit(Math.abs(blockLength));
+        }
+        int length = frame.remaining();
+        readAheadFutures[slot] = ioManager.asyncRead(handle, readAheadPtr, frame, IOPriority.SPILL);
+        readAheadPtr += length;
+        ++readAheadCount;
         return true;
     }
 
+    private static int await(IIOFuture future) throws HyracksDataException {
+        try {
+            return future.synchronize();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HyracksDataException(e);
+        }
+    }
+
     @Override
     public void close() throws HyracksDataException {
-        ioManager.close(handle);
+        try {
+            if (readAheadFutures != null) {
+                /** the frames go back to the caller, so no read may still write into them */
+                for (int i = 0; i < readAheadFutures.length; ++i) {
+                    if (readAheadFutures[i] != null) {
+                        IIOFuture future = readAheadFutures[i];
+                        readAheadFutures[i] = null;
+                        try {
+                            await(future);
+                        } catch (HyracksDataException e) {
+                            /** nobody is going to read this frame */
+                        }
+                    }
+                }
+            }
+        } finally {
+            readAheadFutures = null;
+            readAheadFrames = null;
+            ioManager.close(handle);
+        }
     }
 
     public long getFileSize() {
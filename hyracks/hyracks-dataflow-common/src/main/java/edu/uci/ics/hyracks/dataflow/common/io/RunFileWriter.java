@@ -15,24 +15,74 @@
 package edu.uci.ics.hyracks.dataflow.common.io;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
+import edu.uci.ics.hyracks.api.comm.FrameHelper;
 import edu.uci.ics.hyracks.api.comm.IFrameWriter;
+import edu.uci.ics.hyracks.api.context.IHyracksTaskContext;
 import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
 import edu.uci.ics.hyracks.api.io.FileReference;
+import edu.uci.ics.hyracks.api.io.IBlockCompressor;
+import edu.uci.ics.hyracks.api.io.IBlockCompressorFactory;
 import edu.uci.ics.hyracks.api.io.IFileHandle;
 import edu.uci.ics.hyracks.api.io.IIOManager;
+import edu.uci.ics.hyracks.api.io.IIOManager.IOPriority;
 
 public class RunFileWriter implements IFrameWriter {
+    /** compressed blocks are staged here; one per thread since nextFrame() writes them out before returning */
+    private static final ThreadLocal<byte[]> BLOCK_BUFFER = new ThreadLocal<byte[]>();
+
     private final FileReference file;
     private final IIOManager ioManager;
+    private final int frameSize;
+    private final IBlockCompressor compressor;
     private boolean failed;
+    private ByteBuffer largeFrameHeader;
 
     private IFileHandle handle;
     private long size;
 
+    private int[] blockLengths;
+    private int blockCount;
+
+    /**
+     * Writes frames as they come. Such a run can only be read back by a reader with frames of the same capacity, so
+     * it must not receive large frames.
+     */
     public RunFileWriter(FileReference file, IIOManager ioManager) {
+        this(file, ioManager, 0, null);
+    }
+
+    public RunFileWriter(FileReference file, IIOManager ioManager, int frameSize) {
+        this(file, ioManager, frameSize, null);
+    }
+
+    /**
+     * Writes a large frame as a large frame header followed by the large frame cut into regular frames (see
+     * {@link FrameHelper}), so that the run can be read back with regular frames.
+     * If a compressor is given, every regular frame becomes a block of its own, compressed, or stored as it is if it
+     * does not shrink. The block lengths are kept in memory and handed to the reader by createReader(), which is the
+     * only way such a run can be read back.
+     *
+     * @param frameSize
+     *            the frame size of the job
+     * @param compressor
+     *            the compressor, or null to write frames uncompressed
+     */
+    public RunFileWriter(FileReference file, IIOManager ioManager, int frameSize, IBlockCompressor compressor) {
         this.file = file;
         this.ioManager = ioManager;
+        this.frameSize = frameSize;
+        this.compressor = compressor;
+    }
+
+    /**
+     * @return a compressor for the task's spill files as configured for the job, or null if the job spills
+     *         uncompressed
+     */
+    public static IBlockCompressor createSpillCompressor(IHyracksTaskContext ctx) {
+        IBlockCompressorFactory factory = ctx.getJobletContext().getSpillCompressorFactory();
+        return factory == null ? null : factory.createBlockCompressor();
     }
 
     @Override
@@ -40,6 +90,7 @@ public class RunFileWriter implements IFrameWriter {
         handle = ioManager.open(file, IIOManager.FileReadWriteMode.READ_WRITE,
                 IIOManager.FileSyncMode.METADATA_ASYNC_DATA_ASYNC);
         size = 0;
+        blockCount = 0;
         failed = false;
     }
 
@@ -51,7 +102,68 @@ public class RunFileWriter implements IFrameWriter {
 
     @Override
     public void nextFrame(ByteBuffer buffer) throws HyracksDataException {
-        size += ioManager.syncWrite(handle, size, buffer);
+        if (frameSize > 0 && buffer.capacity() > frameSize) {
+            writeLargeFrame(buffer);
+            return;
+        }
+        writeFrame(buffer);
+    }
+
+    private void writeLargeFrame(ByteBuffer buffer) throws HyracksDataException {
+        int frameCount = buffer.capacity() / frameSize;
+        if (largeFrameHeader == null) {
+            largeFrameHeader = ByteBuffer.allocate(frameSize);
+        }
+        FrameHelper.putLargeFrameHeader(largeFrameHeader, frameCount);
+        largeFrameHeader.clear();
+        writeFrame(largeFrameHeader);
+        ByteBuffer frame = buffer.duplicate();
+        if (compressor == null) {
+            frame.clear();
+            writeFrame(frame);
+            return;
+        }
+        for (int i = 0; i < frameCount; ++i) {
+            frame.limit((i + 1) * frameSize);
+            frame.position(i * frameSize);
+            writeFrame(frame);
+        }
+    }
+
+    private void writeFrame(ByteBuffer buffer) throws HyracksDataException {
+        if (compressor == null) {
+            size += ioManager.syncWrite(handle, size, buffer, IOPriority.SPILL);
+            return;
+        }
+        int length = buffer.remaining();
+        byte[] block = getBlockBuffer(compressor.getMaxCompressedLength(length));
+        int blockLength = compressor.compress(buffer.array(), buffer.position(), length, block, 0);
+        if (blockLength < length) {
+            size += ioManager.syncWrite(handle, size, ByteBuffer.wrap(block, 0, blockLength), IOPriority.SPILL);
+            addBlock(blockLength);
+        } else {
+            /** stored blocks are recorded with a negative length */
+            size += ioManager.syncWrite(handle, size, buffer, IOPriority.SPILL);
+            addBlock(-length);
+        }
+    }
+
+    private static byte[] getBlockBuffer(int length) {
+        byte[] block = BLOCK_BUFFER.get();
+        if (block == null || block.length < length) {
+            block = new byte[length];
+            BLOCK_BUFFER.set(block);
+        }
+        return block;
+    }
+
+    private void addBlock(int blockLength) {
+        if (blockLengths == null) {
+            blockLengths = new int[16];
+        } else if (blockCount == blockLengths.length) {
+            blockLengths = Arrays.copyOf(blockLengths, blockCount * 2);
+        }
+        blockLengths[blockCount++] = blockLength;
     }
 
     @Override
@@ -73,6 +185,9 @@ public class RunFileWriter implements IFrameWriter {
         if (failed) {
             throw new HyracksDataException("createReader() called on a failed RunFileWriter");
         }
+        if (compressor != null) {
+            return new RunFileReader(file, ioManager, size, compressor, blockLengths, blockCount);
+        }
         return new RunFileReader(file, ioManager, size);
     }
 }
\ No newline at end of file
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.hyracks.dataflow.common.io.compression;
+
+import java.util.Arrays;
+
+import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
+import edu.uci.ics.hyracks.api.io.IBlockCompressor;
+
+/**
+ * A byte-oriented LZ77 block compressor that writes the LZ4 block format: each sequence is a token holding the
+ * literal length and the match length in its two nibbles, the literals, a 2-byte little-endian match offset, and
+ * length extensions of 255-valued bytes where a nibble overflows. The last sequence has literals only.
+ * Matches are found through a single-entry hash table of 4-byte prefixes, which favours speed over ratio; runs of
+ * literals make the search skip ahead faster so that incompressible frames cost little.
+ */
+public class LZBlockCompressor implements IBlockCompressor {
+    private static final int MIN_MATCH = 4;
+
+    private static final int LAST_LITERALS = 5;
+
+    private static final int MATCH_FIND_LIMIT = 12;
+
+    private static final int MAX_OFFSET = 65535;
+
+    private static final int HASH_LOG = 12;
+
+    private static final int SKIP_STRENGTH = 6;
+
+    private static final int RUN_MASK = 15;
+
+    private final int[] hashTable = new int[1 << HASH_LOG];
+
+    @Override
+    public int getMaxCompressedLength(int srcLength) {
+        return srcLength + srcLength / 255 + 16;
+    }
+
+    @Override
+    public int compress(byte[] src, int srcOffset, int srcLength, byte[] dest, int destOffset) {
+        int srcEnd = srcOffset + srcLength;
+        int anchor = srcOffset;
+        int op = destOffset;
+        if (srcLength > MATCH_FIND_LIMIT) {
+            /** positions are stored +1 so that 0 means empty */
+            Arrays.fill(hashTable, 0);
+            int matchLimit = srcEnd - LAST_LITERALS;
+            int findLimit = srcEnd - MATCH_FIND_LIMIT;
+            int ip = srcOffset;
+            while (ip < findLimit) {
+                int sequence = readInt(src, ip);
+                int h = hash(sequence);
+                int ref = hashTable[h] - 1;
+                hashTable[h] = ip + 1;
+                if (ref < srcOffset || ip - ref > MAX_OFFSET || readInt(src, ref) != sequence) {
+                    ip += 1 + ((ip - anchor) >>> SKIP_STRENGTH);
+                    continue;
+                }
+                while (ip > anchor && ref > srcOffset && src[ip - 1] == src[ref - 1]) {
+                    --ip;
+                    --ref;
+                }
+                int matchLength = MIN_MATCH;
+                while (ip + matchLength < matchLimit && src[ip + matchLength] == src[ref + matchLength]) {
+                    ++matchLength;
+                }
+                op = writeLiterals(src, anchor, ip - anchor, matchLength - MIN_MATCH, dest, op);
+                int offset = ip - ref;
+                dest[op++] = (byte) offset;
+                dest[op++] = (byte) (offset >>> 8);
+                if (matchLength - MIN_MATCH >= RUN_MASK) {
+                    op = writeLengthExtension(matchLength - MIN_MATCH - RUN_MASK, dest, op);
+                }
+                ip += matchLength;
+                anchor = ip;
+                if (ip < findLimit) {
+                    /** keeps matches inside repetitive data reachable from the next position */
+                    hashTable[hash(readInt(src, ip - 2))] = ip - 1;
+                }
+            }
+        }
+        return writeLiterals(src, anchor, srcEnd - anchor, 0, dest, op) - destOffset;
+    }
+
+    /**
+     * Writes the token and the literals of a sequence. The token's match nibble is set from matchCode, whose
+     * extension the caller writes after the offset.
+     */
+    private static int writeLiterals(byte[] src, int start, int length, int matchCode, byte[] dest, int op) {
+        int tokenPos = op++;
+        int token = Math.min(matchCode, RUN_MASK);
+        if (length >= RUN_MASK) {
+            token |= RUN_MASK << 4;
+            op = writeLengthExtension(length - RUN_MASK, dest, op);
+        } else {
+            token |= length << 4;
+        }
+        dest[tokenPos] = (byte) token;
+        System.arraycopy(src, start, dest, op, length);
+        return op + length;
+    }
+
+    private static int writeLengthExtension(int remaining, byte[] dest, int op) {
+        while (remaining >= 255) {
+            dest[op++] = (byte) 255;
+            remaining -= 255;
+        }
+        dest[op++] = (byte) remaining;
+        return op;
+    }
+
+    @Override
+    public int decompress(byte[] src, int srcOffset, int srcLength, byte[] dest, int destOffset, int destLength)
+            throws HyracksDataException {
+        int ip = srcOffset;
+        int srcEnd = srcOffset + srcLength;
+        int op = destOffset;
+        int destEnd = destOffset + destLength;
+        while (ip < srcEnd) {
+            int token = src[ip++] & 0xff;
+            int literalLength = token >>> 4;
+            if (literalLength == RUN_MASK) {
+                int b;
+                do {
+                    if (ip >= srcEnd) {
+                        throw corrupt();
+                    }
+                    b = src[ip++] & 0xff;
+                    literalLength += b;
+                } while (b == 255);
+            }
+            if (literalLength > srcEnd - ip || literalLength > destEnd - op) {
+                throw corrupt();
+            }
+            System.arraycopy(src, ip, dest, op, literalLength);
+            ip += literalLength;
+            op += literalLength;
+            if (ip == srcEnd) {
+                break;
+            }
+            if (srcEnd - ip < 2) {
+                throw corrupt();
+            }
+            int offset = (src[ip] & 0xff) | ((src[ip + 1] & 0xff) << 8);
+            ip += 2;
+            int matchLength = token & RUN_MASK;
+            if (matchLength == RUN_MASK) {
+                int b;
+                do {
+                    if (ip >= srcEnd) {
+                        throw corrupt();
+                    }
+                    b = src[ip++] & 0xff;
+                    matchLength += b;
+                } while (b == 255);
+            }
+            matchLength += MIN_MATCH;
+            if (offset == 0 || offset > op - destOffset || matchLength > destEnd - op) {
+                throw corrupt();
+            }
+            int ref = op - offset;
+            if (offset >= matchLength) {
+                System.arraycopy(dest, ref, dest, op, matchLength);
+                op += matchLength;
+            } else {
+                /** overlapping copy repeats the last offset bytes */
+                for (int i = 0; i < matchLength; ++i) {
+                    dest[op++] = dest[ref++];
+                }
+            }
+        }
+        return op - destOffset;
+    }
+
+    private static HyracksDataException corrupt() {
+        return new HyracksDataException("Corrupt compressed block");
+    }
+
+    private static int readInt(byte[] b, int i) {
+        return (b[i] & 0xff) | ((b[i + 1] & 0xff) << 8) | ((b[i + 2] & 0xff) << 16) | ((b[i + 3] & 0xff) << 24);
+    }
+
+    private static int hash(int sequence) {
+        return (sequence * -1640531535) >>> (32 - HASH_LOG);
+    }
+}
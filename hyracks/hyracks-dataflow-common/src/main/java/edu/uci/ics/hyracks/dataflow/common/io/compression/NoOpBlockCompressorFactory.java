@@ -0,0 +1,59 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.hyracks.dataflow.common.io.compression;
+
+import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
+import edu.uci.ics.hyracks.api.io.IBlockCompressor;
+import edu.uci.ics.hyracks.api.io.IBlockCompressorFactory;
+
+/**
+ * Stores blocks as they are. Useful to measure the cost of the compressed spill path itself.
+ */
+public class NoOpBlockCompressorFactory implements IBlockCompressorFactory {
+    private static final long serialVersionUID = 1L;
+
+    public static final IBlockCompressorFactory INSTANCE = new NoOpBlockCompressorFactory();
+
+    private static final IBlockCompressor COMPRESSOR = new IBlockCompressor() {
+        @Override
+        public int getMaxCompressedLength(int srcLength) {
+            return srcLength;
+        }
+
+        @Override
+        public int compress(byte[] src, int srcOffset, int srcLength, byte[] dest, int destOffset) {
+            System.arraycopy(src, srcOffset, dest, destOffset, srcLength);
+            return srcLength;
+        }
+
+        @Override
+        public int decompress(byte[] src, int srcOffset, int srcLength, byte[] dest, int destOffset, int destLength)
+                throws HyracksDataException {
+            if (srcLength > destLength) {
+                throw new HyracksDataException("Block of " + srcLength + " bytes does not fit into " + destLength);
+            }
+            System.arraycopy(src, srcOffset, dest, destOffset, srcLength);
+            return srcLength;
+        }
+    };
+
+    private NoOpBlockCompressorFactory() {
+    }
+
+    @Override
+    public IBlockCompressor createBlockCompressor() {
+        return COMPRESSOR;
+    }
+}
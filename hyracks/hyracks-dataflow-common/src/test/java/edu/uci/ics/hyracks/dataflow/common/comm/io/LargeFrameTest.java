@@ -0,0 +1,126 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.hyracks.dataflow.common.comm.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import edu.uci.ics.hyracks.api.comm.FrameHelper;
+import edu.uci.ics.hyracks.api.comm.IFrameReader;
+import edu.uci.ics.hyracks.api.dataflow.value.ISerializerDeserializer;
+import edu.uci.ics.hyracks.api.dataflow.value.RecordDescriptor;
+import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
+
+public class LargeFrameTest {
+    private static final int FRAME_SIZE = 256;
+
+    private final Random random = new Random(0);
+
+    private final RecordDescriptor recordDescriptor = new RecordDescriptor(new ISerializerDeserializer[2]);
+
+    @Test
+    public void testLargeTupleRoundTrip() throws Exception {
+        byte[] field0 = new byte[10];
+        byte[] field1 = new byte[3 * FRAME_SIZE];
+        random.nextBytes(field0);
+        random.nextBytes(field1);
+        byte[] bytes = new byte[field0.length + field1.length];
+        System.arraycopy(field0, 0, bytes, 0, field0.length);
+        System.arraycopy(field1, 0, bytes, field0.length, field1.length);
+        int[] fieldSlots = new int[] { field0.length, bytes.length };
+
+        FrameTupleAppender appender = new FrameTupleAppender(FRAME_SIZE);
+        appender.reset(ByteBuffer.allocate(FRAME_SIZE), true);
+        assertFalse(appender.append(fieldSlots, bytes, 0, bytes.length));
+
+        int frameCount = FrameHelper.getFrameCount(FRAME_SIZE, bytes.length + 4 * fieldSlots.length + 8);
+        ByteBuffer largeFrame = ByteBuffer.allocate(frameCount * FRAME_SIZE);
+        appender.reset(largeFrame, true);
+        assertTrue(appender.append(fieldSlots, bytes, 0, bytes.length));
+        assertEquals(0, FrameHelper.getLargeFrameCount(largeFrame));
+
+        // Cut the large frame into a header and regular frames, as a channel would.
+        List<ByteBuffer> frames = new ArrayList<ByteBuffer>();
+        ByteBuffer header = ByteBuffer.allocate(FRAME_SIZE);
+        FrameHelper.putLargeFrameHeader(header, frameCount);
+        frames.add(header);
+        for (int i = 0; i < frameCount; ++i) {
+            ByteBuffer frame = ByteBuffer.allocate(FRAME_SIZE);
+            frame.put(largeFrame.array(), i * FRAME_SIZE, FRAME_SIZE);
+            frames.add(frame);
+        }
+
+        IFrameReader reader = new ListFrameReader(frames);
+        ByteBuffer buffer = ByteBuffer.allocate(FRAME_SIZE);
+        assertTrue(reader.nextFrame(buffer));
+        assertEquals(frameCount, FrameHelper.getLargeFrameCount(buffer));
+        ByteBuffer assembled = ByteBuffer.allocate(frameCount * FRAME_SIZE);
+        FrameHelper.readLargeFrame(reader, buffer, assembled, frameCount);
+        assertFalse(reader.nextFrame(buffer));
+
+        FrameTupleAccessor accessor = new FrameTupleAccessor(FRAME_SIZE, recordDescriptor);
+        accessor.reset(assembled);
+        assertEquals(1, accessor.getTupleCount());
+        assertEquals(field1.length, accessor.getFieldLength(0, 1));
+        int start = accessor.getTupleStartOffset(0) + accessor.getFieldSlotsLength()
+                + accessor.getFieldStartOffset(0, 1);
+        for (int i = 0; i < field1.length; ++i) {
+            assertEquals(field1[i], assembled.get(start + i));
+        }
+    }
+
+    @Test(expected = HyracksDataException.class)
+    public void testTruncatedLargeFrame() throws Exception {
+        List<ByteBuffer> frames = new ArrayList<ByteBuffer>();
+        frames.add(ByteBuffer.allocate(FRAME_SIZE));
+        IFrameReader reader = new ListFrameReader(frames);
+        FrameHelper.readLargeFrame(reader, ByteBuffer.allocate(FRAME_SIZE), ByteBuffer.allocate(2 * FRAME_SIZE), 2);
+    }
+
+    private static class ListFrameReader implements IFrameReader {
+        private final Iterator<ByteBuffer> frames;
+
+        ListFrameReader(List<ByteBuffer> frames) {
+            this.frames = frames.iterator();
+        }
+
+        @Override
+        public void open() throws HyracksDataException {
+        }
+
+        @Override
+        public boolean nextFrame(ByteBuffer buffer) throws HyracksDataException {
+            if (!frames.hasNext()) {
+                return false;
+            }
+            buffer.clear();
+            buffer.put(frames.next().array());
+            return true;
+        }
+
+        @Override
+        public void close() throws HyracksDataException {
+        }
+    }
+}
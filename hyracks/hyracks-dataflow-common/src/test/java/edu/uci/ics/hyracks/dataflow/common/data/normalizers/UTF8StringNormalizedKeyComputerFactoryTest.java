@@ -0,0 +1,99 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.hyracks.dataflow.common.data.normalizers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+import edu.uci.ics.hyracks.api.dataflow.value.IWideNormalizedKeyComputer;
+import edu.uci.ics.hyracks.data.std.primitive.UTF8StringPointable;
+
+public class UTF8StringNormalizedKeyComputerFactoryTest {
+
+    private final Random random = new Random(17);
+
+    private final UTF8StringNormalizedKeyComputerFactory factory = new UTF8StringNormalizedKeyComputerFactory(3);
+
+    private final IWideNormalizedKeyComputer computer = (IWideNormalizedKeyComputer) factory
+            .createNormalizedKeyComputer();
+
+    private static byte[] serialize(String s) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        new DataOutputStream(baos).writeUTF(s);
+        return baos.toByteArray();
+    }
+
+    private String randomString(String prefix) {
+        StringBuilder sb = new StringBuilder(prefix);
+        int len = random.nextInt(4);
+        for (int i = 0; i < len; ++i) {
+            // mix in characters that need 2 and 3 bytes in modified UTF-8
+            int r = random.nextInt(4);
+            sb.append(r == 0 ? (char) 0 : r == 1 ? (char) (0x100 + random.nextInt(16)) : r == 2 ? (char) (0xF000
+                    + random.nextInt(16)) : (char) ('a' + random.nextInt(3)));
+        }
+        return sb.toString();
+    }
+
+    private static int compareKeys(int[] k1, int[] k2) {
+        for (int i = 0; i < k1.length; ++i) {
+            if (k1[i] != k2[i]) {
+                return ((((long) k1[i]) & 0xffffffffL) < (((long) k2[i]) & 0xffffffffL)) ? -1 : 1;
+            }
+        }
+        return 0;
+    }
+
+    @Test
+    public void testOrderIsConsistent() throws IOException {
+        String[] prefixes = { "", "a", "abcd", "abcde" };
+        for (int n = 0; n < 5000; ++n) {
+            byte[] b1 = serialize(randomString(prefixes[random.nextInt(prefixes.length)]));
+            byte[] b2 = serialize(randomString(prefixes[random.nextInt(prefixes.length)]));
+            int[] k1 = new int[computer.getNormalizedKeyLength()];
+            int[] k2 = new int[computer.getNormalizedKeyLength()];
+            computer.normalize(b1, 0, b1.length, k1, 0);
+            computer.normalize(b2, 0, b2.length, k2, 0);
+            assertEquals(computer.normalize(b1, 0, b1.length), k1[0]);
+
+            UTF8StringPointable p1 = new UTF8StringPointable();
+            p1.set(b1, 0, b1.length);
+            int c = p1.compareTo(b2, 0, b2.length);
+            int kc = compareKeys(k1, k2);
+            if (kc != 0) {
+                assertTrue(Integer.signum(kc) == Integer.signum(c));
+            }
+        }
+    }
+
+    @Test
+    public void testKeyCoversCommonPrefix() throws IOException {
+        byte[] b1 = serialize("abcdex");
+        byte[] b2 = serialize("abcdey");
+        int[] k1 = new int[3];
+        int[] k2 = new int[3];
+        computer.normalize(b1, 0, b1.length, k1, 0);
+        computer.normalize(b2, 0, b2.length, k2, 0);
+        assertEquals(computer.normalize(b1, 0, b1.length), computer.normalize(b2, 0, b2.length));
+        assertTrue(compareKeys(k1, k2) < 0);
+    }
+}
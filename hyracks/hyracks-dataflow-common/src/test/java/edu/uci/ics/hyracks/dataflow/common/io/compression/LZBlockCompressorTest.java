@@ -0,0 +1,83 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.hyracks.dataflow.common.io.compression;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
+import edu.uci.ics.hyracks.api.io.IBlockCompressor;
+
+public class LZBlockCompressorTest {
+
+    Random random = new Random(17);
+
+    IBlockCompressor compressor = LZBlockCompressorFactory.INSTANCE.createBlockCompressor();
+
+    private byte[] roundTrip(byte[] src) throws HyracksDataException {
+        byte[] block = new byte[compressor.getMaxCompressedLength(src.length)];
+        int blockLength = compressor.compress(src, 0, src.length, block, 0);
+        assertTrue(blockLength <= block.length);
+        byte[] out = new byte[src.length];
+        assertEquals(src.length, compressor.decompress(block, 0, blockLength, out, 0, out.length));
+        assertArrayEquals(src, out);
+        return Arrays.copyOf(block, blockLength);
+    }
+
+    @Test
+    public void testShortInputs() throws HyracksDataException {
+        for (int len = 0; len < 64; ++len) {
+            byte[] bytes = new byte[len];
+            random.nextBytes(bytes);
+            roundTrip(bytes);
+            Arrays.fill(bytes, (byte) 'a');
+            roundTrip(bytes);
+        }
+    }
+
+    @Test
+    public void testRandomFrames() throws HyracksDataException {
+        for (int i = 0; i < 20; ++i) {
+            byte[] bytes = new byte[random.nextInt(65536)];
+            for (int j = 0; j < bytes.length; ++j) {
+                bytes[j] = (byte) (i % 2 == 0 ? random.nextInt() : 'a' + random.nextInt(3));
+            }
+            roundTrip(bytes);
+        }
+    }
+
+    @Test
+    public void testRepetitiveFrameShrinks() throws HyracksDataException {
+        byte[] bytes = new byte[32768];
+        for (int j = 0; j < bytes.length; ++j) {
+            bytes[j] = (byte) (j % 13);
+        }
+        assertTrue(roundTrip(bytes).length < bytes.length / 20);
+    }
+
+    @Test(expected = HyracksDataException.class)
+    public void testOutputOverflow() throws HyracksDataException {
+        byte[] bytes = new byte[1024];
+        byte[] block = new byte[compressor.getMaxCompressedLength(bytes.length)];
+        int blockLength = compressor.compress(bytes, 0, bytes.length, block, 0);
+        compressor.decompress(block, 0, blockLength, new byte[1000], 0, 1000);
+    }
+}
@@ -72,6 +72,9 @@ public class ShuffleFrameReader implements IFrameReader {
             RunInfo info = infos[entry];
             IInputChannel channel = channels[entry];
             ByteBuffer netBuffer = channel.getNextBuffer();
+            if (netBuffer == null) {
+                throw new HyracksDataException("Failure occurred on input");
+            }
             accessor.reset(netBuffer);
             int nTuples = accessor.getTupleCount();
             for (int i = 0; i < nTuples; ++i) {
@@ -107,7 +110,7 @@ public class ShuffleFrameReader implements IFrameReader {
         for (RunFileWriter rfw : runFileWriters) {
             runs.add(rfw.createReader());
         }
-        RunFileWriter rfw = new RunFileWriter(outFile, ctx.getIOManager());
+        RunFileWriter rfw = new RunFileWriter(outFile, ctx.getIOManager(), ctx.getFrameSize());
         ExternalSortRunMerger merger = new ExternalSortRunMerger(ctx, null, runs, new int[] { 0 }, comparators, null,
                 recordDescriptor, framesLimit, rfw);
         merger.process();
@@ -144,7 +147,7 @@ public class ShuffleFrameReader implements IFrameReader {
             fta.reset(buffer, true);
             try {
                 file = ctx.createManagedWorkspaceFile(ShuffleFrameReader.class.getName() + ".run");
-                rfw = new RunFileWriter(file, ctx.getIOManager());
+                rfw = new RunFileWriter(file, ctx.getIOManager(), ctx.getFrameSize());
             } catch (IOException e) {
                 throw new HyracksDataException(e);
             }
@@ -21,6 +21,7 @@ import edu.uci.ics.hyracks.api.application.ICCApplicationContext;
 import edu.uci.ics.hyracks.api.constraints.IConstraintAcceptor;
 import edu.uci.ics.hyracks.api.dataflow.ConnectorDescriptorId;
 import edu.uci.ics.hyracks.api.dataflow.IConnectorDescriptor;
+import edu.uci.ics.hyracks.api.io.IBlockCompressorFactory;
 import edu.uci.ics.hyracks.api.job.ActivityCluster;
 import edu.uci.ics.hyracks.api.job.IConnectorDescriptorRegistry;
 
@@ -30,6 +31,8 @@ public abstract class AbstractConnectorDescriptor implements IConnectorDescripto
 
     protected String displayName;
 
+    protected IBlockCompressorFactory frameCompressorFactory;
+
     public AbstractConnectorDescriptor(IConnectorDescriptorRegistry spec) {
         this.id = spec.createConnectorDescriptor(this);
         displayName = getClass().getName() + "[" + id + "]";
@@ -47,6 +50,20 @@ public abstract class AbstractConnectorDescriptor implements IConnectorDescripto
         this.displayName = displayName;
     }
 
+    @Override
+    public IBlockCompressorFactory getFrameCompressorFactory() {
+        return frameCompressorFactory;
+    }
+
+    /**
+     * Compresses the frames that cross the network. Compressed frames are packed into the network buffers, so a
+     * receiver may only see a frame once more frames or the end of the stream follow it. The sender stops
+     * compressing on its own while compression does not pay off.
+     */
+    public void setFrameCompressorFactory(IBlockCompressorFactory frameCompressorFactory) {
+        this.frameCompressorFactory = frameCompressorFactory;
+    }
+
     @Override
     public JSONObject toJSON() throws JSONException {
         JSONObject jconn = new JSONObject();
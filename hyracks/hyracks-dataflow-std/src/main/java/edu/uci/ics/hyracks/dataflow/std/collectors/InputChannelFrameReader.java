@@ -61,6 +61,9 @@ public class InputChannelFrameReader implements IFrameReader, IInputChannelMonit
             --availableFrames;
         }
         ByteBuffer srcBuffer = channel.getNextBuffer();
+        if (srcBuffer == null) {
+            throw new HyracksDataException("Failure occurred on input");
+        }
         FrameUtils.copy(srcBuffer, buffer);
         channel.recycleBuffer(srcBuffer);
         return true;
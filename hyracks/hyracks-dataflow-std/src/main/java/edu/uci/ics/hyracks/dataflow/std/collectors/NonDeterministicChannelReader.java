@@ -109,6 +109,28 @@ public class NonDeterministicChannelReader implements IInputChannelMonitor, IPar
         }
     }
 
+    /**
+     * Waits for the next frame of the given sender, which must not have reached the end of its stream.
+     */
+    public synchronized void waitForSender(int sender) throws HyracksDataException {
+        while (availableFrameCounts[sender] <= 0) {
+            if (failSenders.get(sender)) {
+                throw new HyracksDataException("Failure occurred on input");
+            }
+            if (eosSenders.get(sender) || closedSenders.get(sender)) {
+                throw new HyracksDataException("Premature end of stream from sender " + sender);
+            }
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                throw new HyracksDataException(e);
+            }
+        }
+        if (--availableFrameCounts[sender] == 0) {
+            frameAvailability.clear(sender);
+        }
+    }
+
     public synchronized void close() throws HyracksDataException {
         for (int i = closedSenders.nextClearBit(0); i >= 0 && i < nSenderPartitions; i = closedSenders
                 .nextClearBit(i + 1)) {
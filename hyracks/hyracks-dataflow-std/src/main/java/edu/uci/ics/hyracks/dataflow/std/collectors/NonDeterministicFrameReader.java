@@ -17,6 +17,7 @@ package edu.uci.ics.hyracks.dataflow.std.collectors;
 import java.nio.ByteBuffer;
 
 import edu.uci.ics.hyracks.api.channels.IInputChannel;
+import edu.uci.ics.hyracks.api.comm.FrameHelper;
 import edu.uci.ics.hyracks.api.comm.IFrameReader;
 import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
 import edu.uci.ics.hyracks.dataflow.common.comm.util.FrameUtils;
@@ -24,6 +25,10 @@ import edu.uci.ics.hyracks.dataflow.common.comm.util.FrameUtils;
 public class NonDeterministicFrameReader implements IFrameReader {
     private final NonDeterministicChannelReader channelReader;
 
+    private int largeFrameSender;
+
+    private int remainingLargeFrameCount;
+
     public NonDeterministicFrameReader(NonDeterministicChannelReader channelReader) {
         this.channelReader = channelReader;
     }
@@ -31,16 +36,33 @@ public class NonDeterministicFrameReader implements IFrameReader {
     @Override
     public void open() throws HyracksDataException {
         channelReader.open();
+        largeFrameSender = -1;
+        remainingLargeFrameCount = 0;
     }
 
     @Override
     public boolean nextFrame(ByteBuffer buffer) throws HyracksDataException {
-        int index = channelReader.findNextSender();
+        int index;
+        if (remainingLargeFrameCount > 0) {
+            // The frames of a large frame must not be interleaved with frames of other senders.
+            index = largeFrameSender;
+            channelReader.waitForSender(index);
+            --remainingLargeFrameCount;
+        } else {
+            index = channelReader.findNextSender();
+        }
         if (index >= 0) {
             IInputChannel[] channels = channelReader.getChannels();
             ByteBuffer srcFrame = channels[index].getNextBuffer();
+            if (srcFrame == null) {
+                throw new HyracksDataException("Failure occurred on input");
+            }
             FrameUtils.copy(srcFrame, buffer);
             channels[index].recycleBuffer(srcFrame);
+            if (remainingLargeFrameCount == 0) {
+                remainingLargeFrameCount = FrameHelper.getLargeFrameCount(buffer);
+                largeFrameSender = index;
+            }
             return true;
         }
         return false;
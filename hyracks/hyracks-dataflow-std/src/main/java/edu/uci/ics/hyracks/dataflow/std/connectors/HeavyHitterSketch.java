@@ -0,0 +1,92 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.hyracks.dataflow.std.connectors;
+
+import java.util.Arrays;
+
+/**
+ * A Misra-Gries summary of the key fingerprints of a stream of tuples. It counts at most capacity fingerprints at a
+ * time. After n additions, the count of each fingerprint is underestimated by at most n / (capacity + 1), so every
+ * fingerprint with a larger share of the stream is among the counted ones.
+ */
+public class HeavyHitterSketch {
+    private final int[] fingerprints;
+    private final long[] counts;
+    private int size;
+    private long total;
+
+    public HeavyHitterSketch(int capacity) {
+        fingerprints = new int[capacity];
+        counts = new long[capacity];
+    }
+
+    public void add(int fingerprint) {
+        ++total;
+        for (int i = 0; i < size; ++i) {
+            if (fingerprints[i] == fingerprint) {
+                ++counts[i];
+                return;
+            }
+        }
+        if (size < fingerprints.length) {
+            fingerprints[size] = fingerprint;
+            counts[size++] = 1;
+            return;
+        }
+        /**
+         * No counter is free: the new fingerprint and all the counted ones
+         * are decremented once, and the counters that drop to zero are freed.
+         */
+        int j = 0;
+        for (int i = 0; i < size; ++i) {
+            if (--counts[i] > 0) {
+                fingerprints[j] = fingerprints[i];
+                counts[j++] = counts[i];
+            }
+        }
+        size = j;
+    }
+
+    /**
+     * @return the sorted fingerprints counted for at least minShare of the additions
+     */
+    public int[] getHeavyHitters(double minShare) {
+        long minCount = Math.max(1, (long) Math.ceil(minShare * total));
+        int n = 0;
+        for (int i = 0; i < size; ++i) {
+            if (counts[i] >= minCount) {
+                ++n;
+            }
+        }
+        int[] heavyHitters = new int[n];
+        n = 0;
+        for (int i = 0; i < size; ++i) {
+            if (counts[i] >= minCount) {
+                heavyHitters[n++] = fingerprints[i];
+            }
+        }
+        Arrays.sort(heavyHitters);
+        return heavyHitters;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public void reset() {
+        size = 0;
+        total = 0;
+    }
+}
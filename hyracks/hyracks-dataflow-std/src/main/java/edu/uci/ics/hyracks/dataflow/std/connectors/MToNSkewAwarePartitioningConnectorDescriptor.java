@@ -0,0 +1,175 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.hyracks.dataflow.std.connectors;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+import edu.uci.ics.hyracks.api.application.ICCApplicationContext;
+import edu.uci.ics.hyracks.api.comm.IFrameTupleAccessor;
+import edu.uci.ics.hyracks.api.comm.IFrameWriter;
+import edu.uci.ics.hyracks.api.comm.IPartitionCollector;
+import edu.uci.ics.hyracks.api.comm.IPartitionWriterFactory;
+import edu.uci.ics.hyracks.api.constraints.IConstraintAcceptor;
+import edu.uci.ics.hyracks.api.context.IHyracksTaskContext;
+import edu.uci.ics.hyracks.api.dataflow.ActivityId;
+import edu.uci.ics.hyracks.api.dataflow.ConnectorDescriptorId;
+import edu.uci.ics.hyracks.api.dataflow.IActivity;
+import edu.uci.ics.hyracks.api.dataflow.IConnectorDescriptor;
+import edu.uci.ics.hyracks.api.dataflow.OperatorDescriptorId;
+import edu.uci.ics.hyracks.api.dataflow.value.ITuplePartitionComputer;
+import edu.uci.ics.hyracks.api.dataflow.value.ITuplePartitionComputerFactory;
+import edu.uci.ics.hyracks.api.dataflow.value.RecordDescriptor;
+import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
+import edu.uci.ics.hyracks.api.job.ActivityCluster;
+import edu.uci.ics.hyracks.api.job.ActivityClusterGraph;
+import edu.uci.ics.hyracks.api.job.IConnectorDescriptorRegistry;
+import edu.uci.ics.hyracks.dataflow.std.base.AbstractMToNConnectorDescriptor;
+import edu.uci.ics.hyracks.dataflow.std.collectors.NonDeterministicChannelReader;
+import edu.uci.ics.hyracks.dataflow.std.collectors.NonDeterministicFrameReader;
+import edu.uci.ics.hyracks.dataflow.std.collectors.PartitionCollector;
+import edu.uci.ics.hyracks.dataflow.std.group.hybridhash.HybridHashGroupOperatorDescriptor;
+
+/**
+ * A hash partitioning connector that does not send all the tuples of a heavy hitter (a key with a large share of the
+ * tuples) to the same consumer. The other keys are partitioned exactly as by
+ * {@link MToNPartitioningConnectorDescriptor} with the same partition computer.
+ * With SPREAD, the tuples of a heavy hitter are dealt round-robin over the consumers, so a key may reach several of
+ * them. With REPLICATE, the tuples of a heavy hitter are sent to all the consumers.
+ * Unless the heavy hitters are given, they are detected from a sample of the tuples of each producer, and only SPREAD
+ * can be used.
+ * A job is rejected when it starts unless the consumer handles the heavy hitters:
+ * - SPREAD into a partial {@link HybridHashGroupOperatorDescriptor}, whose partial groups are merged by a global
+ * group-by after an ordinary hash partitioning.
+ * - SPREAD into a join whose other input REPLICATEs the same given heavy hitters, or REPLICATE into a join whose other
+ * input SPREADs them. Detected heavy hitters cannot go into a join, as its other input could not replicate keys that
+ * are only known at run time.
+ */
+public class MToNSkewAwarePartitioningConnectorDescriptor extends AbstractMToNConnectorDescriptor {
+    private static final long serialVersionUID = 1L;
+
+    public enum HeavyHitterPolicy {
+        SPREAD,
+        REPLICATE
+    }
+
+    private final ITuplePartitionComputerFactory tpcf;
+    private final int[] heavyHitters;
+    private final HeavyHitterPolicy policy;
+    private double minShare = -1;
+
+    /**
+     * Detects the heavy hitters and spreads them.
+     */
+    public MToNSkewAwarePartitioningConnectorDescriptor(IConnectorDescriptorRegistry spec,
+            ITuplePartitionComputerFactory tpcf) {
+        super(spec);
+        this.tpcf = tpcf;
+        this.heavyHitters = null;
+        this.policy = HeavyHitterPolicy.SPREAD;
+    }
+
+    /**
+     * @param heavyHitters
+     *            the fingerprints of the heavy hitters, as given by {@link #getFingerprint}
+     */
+    public MToNSkewAwarePartitioningConnectorDescriptor(IConnectorDescriptorRegistry spec,
+            ITuplePartitionComputerFactory tpcf, int[] heavyHitters, HeavyHitterPolicy policy) {
+        super(spec);
+        this.tpcf = tpcf;
+        this.heavyHitters = Arrays.copyOf(heavyHitters, heavyHitters.length);
+        Arrays.sort(this.heavyHitters);
+        this.policy = policy;
+    }
+
+    /**
+     * Sets the share of the tuples of a producer above which a detected key is a heavy hitter. The default is half
+     * the share of a consumer.
+     */
+    public void setMinShare(double minShare) {
+        this.minShare = minShare;
+    }
+
+    /**
+     * @return the fingerprint of the key of a tuple, which is the partition of the tuple among Integer.MAX_VALUE
+     *         partitions
+     */
+    public static int getFingerprint(ITuplePartitionComputer tpc, IFrameTupleAccessor accessor, int tIndex)
+            throws HyracksDataException {
+        return tpc.partition(accessor, tIndex, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public IFrameWriter createPartitioner(IHyracksTaskContext ctx, RecordDescriptor recordDesc,
+            IPartitionWriterFactory edwFactory, int index, int nProducerPartitions, int nConsumerPartitions)
+            throws HyracksDataException {
+        double producerMinShare = minShare > 0 ? minShare : 1.0 / (2 * nConsumerPartitions);
+        return new SkewAwarePartitionDataWriter(ctx, nConsumerPartitions, edwFactory, recordDesc,
+                tpcf.createPartitioner(), heavyHitters, policy, producerMinShare, index);
+    }
+
+    @Override
+    public void contributeSchedulingConstraints(IConstraintAcceptor constraintAcceptor, ActivityCluster ac,
+            ICCApplicationContext appCtx) {
+        ActivityClusterGraph acg = ac.getActivityClusterGraph();
+        ActivityId consumerActivity = ac.getConsumerActivity(getConnectorId());
+        OperatorDescriptorId consumer = consumerActivity.getOperatorDescriptorId();
+        List<IConnectorDescriptor> otherInputs = new ArrayList<IConnectorDescriptor>();
+        for (Map.Entry<ConnectorDescriptorId, ActivityCluster> e : acg.getConnectorMap().entrySet()) {
+            if (!e.getKey().equals(getConnectorId())
+                    && e.getValue().getConsumerActivity(e.getKey()).getOperatorDescriptorId().equals(consumer)) {
+                otherInputs.add(e.getValue().getConnectorMap().get(e.getKey()));
+            }
+        }
+        if (otherInputs.isEmpty()) {
+            IActivity activity = acg.getActivityMap().get(consumerActivity).getActivityMap().get(consumerActivity);
+            if (policy == HeavyHitterPolicy.SPREAD && activity instanceof HybridHashGroupOperatorDescriptor
+                    && ((HybridHashGroupOperatorDescriptor) activity).isPartial()) {
+                return;
+            }
+            throw new IllegalStateException("Heavy hitters cannot be sent by " + policy + " into " + consumer
+                    + ", which is not a partial hybrid hash group-by");
+        }
+        if (heavyHitters == null) {
+            throw new IllegalStateException("Heavy hitters detected at run time cannot be spread into " + consumer
+                    + ", which has several inputs: give the heavy hitters and replicate them on the other input");
+        }
+        for (IConnectorDescriptor input : otherInputs) {
+            if (input instanceof MToNSkewAwarePartitioningConnectorDescriptor) {
+                MToNSkewAwarePartitioningConnectorDescriptor other;
+                other = (MToNSkewAwarePartitioningConnectorDescriptor) input;
+                if (other.policy != policy && Arrays.equals(other.heavyHitters, heavyHitters)) {
+                    return;
+                }
+            }
+        }
+        throw new IllegalStateException("Heavy hitters sent by " + policy + " into " + consumer
+                + " must be sent by the other policy on another of its inputs");
+    }
+
+    @Override
+    public IPartitionCollector createPartitionCollector(IHyracksTaskContext ctx, RecordDescriptor recordDesc,
+            int index, int nProducerPartitions, int nConsumerPartitions) throws HyracksDataException {
+        BitSet expectedPartitions = new BitSet(nProducerPartitions);
+        expectedPartitions.set(0, nProducerPartitions);
+        NonDeterministicChannelReader channelReader = new NonDeterministicChannelReader(nProducerPartitions,
+                expectedPartitions);
+        NonDeterministicFrameReader frameReader = new NonDeterministicFrameReader(channelReader);
+        return new PartitionCollector(ctx, getConnectorId(), index, expectedPartitions, frameReader, channelReader);
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.hyracks.dataflow.std.connectors;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import edu.uci.ics.hyracks.api.comm.IFrameWriter;
+import edu.uci.ics.hyracks.api.comm.IPartitionWriterFactory;
+import edu.uci.ics.hyracks.api.context.IHyracksTaskContext;
+import edu.uci.ics.hyracks.api.dataflow.value.ITuplePartitionComputer;
+import edu.uci.ics.hyracks.api.dataflow.value.RecordDescriptor;
+import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
+import edu.uci.ics.hyracks.dataflow.common.comm.io.FrameTupleAccessor;
+import edu.uci.ics.hyracks.dataflow.common.comm.io.FrameTupleAppender;
+import edu.uci.ics.hyracks.dataflow.common.comm.util.FrameUtils;
+import edu.uci.ics.hyracks.dataflow.std.connectors.MToNSkewAwarePartitioningConnectorDescriptor.HeavyHitterPolicy;
+
+/**
+ * Partitions tuples by hash, except the tuples of heavy hitters, which are spread round-robin over the consumers or
+ * replicated to all of them. Without a given set of heavy hitters, they are detected from a sample of the tuples.
+ */
+public class SkewAwarePartitionDataWriter implements IFrameWriter {
+    private static final Logger LOGGER = Logger.getLogger(SkewAwarePartitionDataWriter.class.getName());
+
+    /**
+     * One in this many tuples is added to the sketch.
+     */
+    private static final int SAMPLE_INTERVAL = 8;
+
+    /**
+     * The heavy hitters are taken from the sketch each time it got this many
+     * more tuples.
+     */
+    private static final int REFRESH_SAMPLES = 1024;
+
+    private final int consumerPartitionCount;
+    private final IFrameWriter[] pWriters;
+    private final FrameTupleAppender[] appenders;
+    private final FrameTupleAccessor tupleAccessor;
+    private final ITuplePartitionComputer tpc;
+    private final IHyracksTaskContext ctx;
+    private final HeavyHitterPolicy policy;
+    private final HeavyHitterSketch sketch;
+    private final double minShare;
+    private int[] heavyHitters;
+    private int sampleCountdown;
+    private int nextConsumer;
+    private long heavyHitterTuples;
+    private boolean allocated = false;
+
+    /**
+     * @param heavyHitters
+     *            the sorted fingerprints of the heavy hitters, or null to
+     *            detect them
+     * @param minShare
+     *            the share of the tuples above which a detected key is a
+     *            heavy hitter
+     */
+    public SkewAwarePartitionDataWriter(IHyracksTaskContext ctx, int consumerPartitionCount,
+            IPartitionWriterFactory pwFactory, RecordDescriptor recordDescriptor, ITuplePartitionComputer tpc,
+            int[] heavyHitters, HeavyHitterPolicy policy, double minShare, int senderIndex)
+            throws HyracksDataException {
+        this.consumerPartitionCount = consumerPartitionCount;
+        pWriters = new IFrameWriter[consumerPartitionCount];
+        appenders = new FrameTupleAppender[consumerPartitionCount];
+        for (int i = 0; i < consumerPartitionCount; ++i) {
+            try {
+                pWriters[i] = pwFactory.createFrameWriter(i);
+                appenders[i] = new FrameTupleAppender(ctx.getFrameSize());
+            } catch (IOException e) {
+                throw new HyracksDataException(e);
+            }
+        }
+        tupleAccessor = new FrameTupleAccessor(ctx.getFrameSize(), recordDescriptor);
+        this.tpc = tpc;
+        this.ctx = ctx;
+        this.policy = policy;
+        this.minShare = minShare;
+        if (heavyHitters != null) {
+            this.heavyHitters = heavyHitters;
+            this.sketch = null;
+        } else {
+            this.heavyHitters = new int[0];
+            this.sketch = new HeavyHitterSketch(Math.max(16, (int) Math.ceil(2 / minShare)));
+        }
+        this.nextConsumer = senderIndex % consumerPartitionCount;
+    }
+
+    @Override
+    public void open() throws HyracksDataException {
+        for (int i = 0; i < pWriters.length; ++i) {
+            pWriters[i].open();
+        }
+    }
+
+    @Override
+    public void nextFrame(ByteBuffer buffer) throws HyracksDataException {
+        if (!allocated) {
+            allocateFrames();
+            allocated = true;
+        }
+        tupleAccessor.reset(buffer);
+        int tupleCount = tupleAccessor.getTupleCount();
+        for (int i = 0; i < tupleCount; ++i) {
+            boolean sampled = sketch != null && sampleCountdown-- == 0;
+            if (sampled || heavyHitters.length > 0) {
+                int fingerprint = MToNSkewAwarePartitioningConnectorDescriptor.getFingerprint(tpc, tupleAccessor, i);
+                if (sampled) {
+                    sampleCountdown = SAMPLE_INTERVAL - 1;
+                    sketch.add(fingerprint);
+                    if (sketch.getTotal() % REFRESH_SAMPLES == 0) {
+                        heavyHitters = sketch.getHeavyHitters(minShare);
+                    }
+                }
+                if (heavyHitters.length > 0 && Arrays.binarySearch(heavyHitters, fingerprint) >= 0) {
+                    appendHeavyHitter(i);
+                    continue;
+                }
+            }
+            append(tpc.partition(tupleAccessor, i, consumerPartitionCount), i);
+        }
+    }
+
+    private void appendHeavyHitter(int tIndex) throws HyracksDataException {
+        ++heavyHitterTuples;
+        if (policy == HeavyHitterPolicy.SPREAD) {
+            append(nextConsumer, tIndex);
+            nextConsumer = (nextConsumer + 1) % consumerPartitionCount;
+        } else {
+            for (int h = 0; h < consumerPartitionCount; ++h) {
+                append(h, tIndex);
+            }
+        }
+    }
+
+    private void append(int h, int tIndex) throws HyracksDataException {
+        FrameTupleAppender appender = appenders[h];
+        if (!appender.append(tupleAccessor, tIndex)) {
+            ByteBuffer appenderBuffer = appender.getBuffer();
+            flushFrame(appenderBuffer, pWriters[h]);
+            appender.reset(appenderBuffer, true);
+            if (!appender.append(tupleAccessor, tIndex)) {
+                FrameUtils.flushLargeTuple(ctx, tupleAccessor, tIndex, pWriters[h]);
+            }
+        }
+    }
+
+    private void allocateFrames() throws HyracksDataException {
+        for (int i = 0; i < appenders.length; ++i) {
+            appenders[i].reset(ctx.allocateFrame(), true);
+        }
+    }
+
+    private void flushFrame(ByteBuffer buffer, IFrameWriter frameWriter) throws HyracksDataException {
+        buffer.position(0);
+        buffer.limit(buffer.capacity());
+        frameWriter.nextFrame(buffer);
+    }
+
+    @Override
+    public void fail() throws HyracksDataException {
+        for (int i = 0; i < appenders.length; ++i) {
+            pWriters[i].fail();
+        }
+    }
+
+    @Override
+    public void close() throws HyracksDataException {
+        if (heavyHitterTuples > 0 && LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("SkewAwarePartitionDataWriter sent " + heavyHitterTuples + " tuples of "
+                    + heavyHitters.length + " heavy hitters by " + policy + ".");
+        }
+        for (int i = 0; i < pWriters.length; ++i) {
+            if (allocated) {
+                if (appenders[i].getTupleCount() > 0) {
+                    flushFrame(appenders[i].getBuffer(), pWriters[i]);
+                }
+            }
+            pWriters[i].close();
+        }
+    }
+}
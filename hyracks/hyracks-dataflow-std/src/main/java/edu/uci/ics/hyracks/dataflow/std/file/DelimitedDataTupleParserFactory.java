@@ -84,8 +84,8 @@ public class DelimitedDataTupleParserFactory implements ITupleParserFactory {
                             FrameUtils.flushFrame(frame, writer);
                             appender.reset(frame, true);
                             if (!appender.append(tb.getFieldEndOffsets(), tb.getByteArray(), 0, tb.getSize())) {
-                                throw new HyracksDataException("Record size (" + tb.getSize()
-                                        + ") larger than frame size (" + appender.getBuffer().capacity() + ")");
+                                FrameUtils.flushLargeTuple(ctx, tb.getFieldEndOffsets(), tb.getByteArray(), 0,
+                                        tb.getSize(), writer);
                             }
                         }
                     }
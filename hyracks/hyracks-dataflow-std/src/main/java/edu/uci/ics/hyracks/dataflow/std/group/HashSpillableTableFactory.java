@@ -35,6 +35,7 @@ import edu.uci.ics.hyracks.dataflow.common.comm.io.FrameTupleAppender;
 import edu.uci.ics.hyracks.dataflow.common.comm.io.FrameTuplePairComparator;
 import edu.uci.ics.hyracks.dataflow.common.comm.util.FrameUtils;
 import edu.uci.ics.hyracks.dataflow.std.structures.ISerializableTable;
+import edu.uci.ics.hyracks.dataflow.std.structures.OpenAddressingHashTable;
 import edu.uci.ics.hyracks.dataflow.std.structures.SerializableHashTable;
 import edu.uci.ics.hyracks.dataflow.std.structures.TuplePointer;
 
@@ -43,10 +44,21 @@ public class HashSpillableTableFactory implements ISpillableTableFactory {
     private static final long serialVersionUID = 1L;
     private final ITuplePartitionComputerFactory tpcf;
     private final int tableSize;
+    private final boolean openAddressing;
 
     public HashSpillableTableFactory(ITuplePartitionComputerFactory tpcf, int tableSize) {
+        this(tpcf, tableSize, false);
+    }
+
+    /**
+     * @param openAddressing
+     *            whether the groups are indexed by an {@link OpenAddressingHashTable} instead of a
+     *            {@link SerializableHashTable}; the frames of an open-addressing table count against the frame limit
+     */
+    public HashSpillableTableFactory(ITuplePartitionComputerFactory tpcf, int tableSize, boolean openAddressing) {
         this.tpcf = tpcf;
         this.tableSize = tableSize;
+        this.openAddressing = openAddressing;
     }
 
     /*
@@ -123,7 +135,10 @@ public class HashSpillableTableFactory implements ISpillableTableFactory {
 
             private FrameTupleAppender stateAppender = new FrameTupleAppender(ctx.getFrameSize());
 
-            private final ISerializableTable table = new SerializableHashTable(tableSize, ctx);
+            private final OpenAddressingHashTable fingerprintedTable = openAddressing ? new OpenAddressingHashTable(
+                    tableSize, ctx) : null;
+            private final ISerializableTable table = openAddressing ? fingerprintedTable : new SerializableHashTable(
+                    tableSize, ctx);
             private final TuplePointer storedTuplePointer = new TuplePointer();
             private final List<ByteBuffer> frames = new ArrayList<ByteBuffer>();
 
@@ -184,11 +199,24 @@ public class HashSpillableTableFactory implements ISpillableTableFactory {
             public boolean insert(FrameTupleAccessor accessor, int tIndex) throws HyracksDataException {
                 if (lastBufIndex < 0)
                     nextAvailableFrame();
-                int entry = tpc.partition(accessor, tIndex, tableSize);
+                // With fingerprints, the entry is the full hash modulo the table size, and groups whose hash has
+                // another fingerprint are skipped without comparing their keys
+                int hash = 0;
+                int entry;
+                if (fingerprintedTable != null) {
+                    hash = tpc.partition(accessor, tIndex, Integer.MAX_VALUE);
+                    entry = hash % tableSize;
+                } else {
+                    entry = tpc.partition(accessor, tIndex, tableSize);
+                }
                 boolean foundGroup = false;
                 int offset = 0;
                 do {
-                    table.getTuplePointer(entry, offset++, storedTuplePointer);
+                    if (fingerprintedTable != null) {
+                        fingerprintedTable.getTuplePointer(entry, hash, offset++, storedTuplePointer);
+                    } else {
+                        table.getTuplePointer(entry, offset++, storedTuplePointer);
+                    }
                     if (storedTuplePointer.frameIndex < 0)
                         break;
                     storedKeysAccessor1.reset(frames.get(storedTuplePointer.frameIndex));
@@ -201,6 +229,15 @@ public class HashSpillableTableFactory implements ISpillableTableFactory {
 
                 if (!foundGroup) {
 
+                    // The frames of an open-addressing table count against the limit, and the new group may need
+                    // both a new frame and a larger table
+                    if (fingerprintedTable != null) {
+                        int dataFrameCount = Math.max(frames.size(), lastBufIndex + 2);
+                        if (dataFrameCount + fingerprintedTable.getFrameCountForInsert() > framesLimit) {
+                            return false;
+                        }
+                    }
+
                     stateTupleBuilder.reset();
 
                     for (int k = 0; k < keyFields.length; k++) {
@@ -221,7 +258,11 @@ public class HashSpillableTableFactory implements ISpillableTableFactory {
 
                     storedTuplePointer.frameIndex = lastBufIndex;
                     storedTuplePointer.tupleIndex = stateAppender.getTupleCount() - 1;
-                    table.insert(entry, storedTuplePointer);
+                    if (fingerprintedTable != null) {
+                        fingerprintedTable.insert(entry, hash, storedTuplePointer);
+                    } else {
+                        table.insert(entry, storedTuplePointer);
+                    }
                 } else {
 
                     aggregator.aggregate(accessor, tIndex, storedKeysAccessor1, storedTuplePointer.tupleIndex,
@@ -370,7 +411,17 @@ public class HashSpillableTableFactory implements ISpillableTableFactory {
                 if (lastBufIndex + 1 >= framesLimit)
                     return false;
 
-                if (frames.size() < framesLimit) {
+                boolean newFrame;
+                if (fingerprintedTable == null) {
+                    newFrame = frames.size() < framesLimit;
+                } else {
+                    // The frames of an open-addressing table count against the limit, so old frames are reused first
+                    newFrame = lastBufIndex + 1 == frames.size();
+                    if (newFrame && frames.size() + fingerprintedTable.getFrameCount() >= framesLimit) {
+                        return false;
+                    }
+                }
+                if (newFrame) {
                     // Insert a new frame
                     ByteBuffer frame = ctx.allocateFrame();
                     frame.position(0);
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.hyracks.dataflow.std.group;
+
+import edu.uci.ics.hyracks.api.comm.IFrameTupleAccessor;
+import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
+
+/**
+ * An aggregator whose binary state is a fixed-width tail of the state tuple of a group, after its keys. A group table
+ * can look up the groups of a batch of input tuples first, and then aggregate the whole batch at once.
+ */
+public interface IBatchAggregatorDescriptor extends IAggregatorDescriptor {
+
+    /**
+     * Aggregate a batch of input tuples into the states of their groups.
+     * 
+     * @param accessor
+     * @param tIndexes
+     *            The input tuples.
+     * @param stateData
+     *            The buffers containing the state tuples of the groups of the
+     *            input tuples.
+     * @param stateOffsets
+     *            The offsets of the binary states in the state tuples, that is
+     *            the start of the first field after the keys.
+     * @param count
+     *            The number of input tuples.
+     * @throws HyracksDataException
+     */
+    public void aggregate(IFrameTupleAccessor accessor, int[] tIndexes, byte[][] stateData, int[] stateOffsets,
+            int count) throws HyracksDataException;
+}
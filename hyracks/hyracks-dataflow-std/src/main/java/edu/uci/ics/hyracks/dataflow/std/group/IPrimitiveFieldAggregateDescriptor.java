@@ -0,0 +1,51 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.hyracks.dataflow.std.group;
+
+import edu.uci.ics.hyracks.api.comm.IFrameTupleAccessor;
+import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
+
+/**
+ * A field aggregator of a primitive value. Its binary state has a fixed width and is updated in place, so a batch of
+ * input tuples can be aggregated into the states of their groups without any allocation.
+ */
+public interface IPrimitiveFieldAggregateDescriptor extends IFieldAggregateDescriptor {
+
+    /**
+     * @return the length of the binary state
+     */
+    public int getStateLength();
+
+    /**
+     * Aggregate a batch of input tuples into their binary states.
+     * 
+     * @param accessor
+     * @param tIndexes
+     *            The input tuples.
+     * @param stateData
+     *            The buffers containing the states of the groups of the input
+     *            tuples.
+     * @param stateOffsets
+     *            The offsets of the states of the groups, to which fieldOffset
+     *            is added.
+     * @param fieldOffset
+     *            The offset of the state of this field in the state of a group.
+     * @param count
+     *            The number of input tuples.
+     * @throws HyracksDataException
+     */
+    public void aggregate(IFrameTupleAccessor accessor, int[] tIndexes, byte[][] stateData, int[] stateOffsets,
+            int fieldOffset, int count) throws HyracksDataException;
+}
@@ -16,7 +16,6 @@ package edu.uci.ics.hyracks.dataflow.std.group.aggregators;
 
 import java.io.DataOutput;
 import java.io.IOException;
-import java.nio.ByteBuffer;
 
 import edu.uci.ics.hyracks.api.comm.IFrameTupleAccessor;
 import edu.uci.ics.hyracks.api.context.IHyracksTaskContext;
@@ -27,6 +26,7 @@ import edu.uci.ics.hyracks.dataflow.common.data.marshalling.IntegerSerializerDes
 import edu.uci.ics.hyracks.dataflow.std.group.AggregateState;
 import edu.uci.ics.hyracks.dataflow.std.group.IFieldAggregateDescriptor;
 import edu.uci.ics.hyracks.dataflow.std.group.IFieldAggregateDescriptorFactory;
+import edu.uci.ics.hyracks.dataflow.std.group.IPrimitiveFieldAggregateDescriptor;
 
 /**
  *
@@ -57,7 +57,7 @@ public class AvgFieldGroupAggregatorFactory implements IFieldAggregateDescriptor
     public IFieldAggregateDescriptor createAggregator(IHyracksTaskContext ctx, RecordDescriptor inRecordDescriptor,
             RecordDescriptor outRecordDescriptor) throws HyracksDataException {
 
-        return new IFieldAggregateDescriptor() {
+        return new IPrimitiveFieldAggregateDescriptor() {
 
             @Override
             public void reset() {
@@ -71,7 +71,7 @@ public class AvgFieldGroupAggregatorFactory implements IFieldAggregateDescriptor
                     sum = IntegerPointable.getInteger(data, offset);
                     count = IntegerPointable.getInteger(data, offset + 4);
                 } else {
-                    Integer[] fields = (Integer[]) state.state;
+                    int[] fields = (int[]) state.state;
                     sum = fields[0];
                     count = fields[1];
                 }
@@ -91,7 +91,7 @@ public class AvgFieldGroupAggregatorFactory implements IFieldAggregateDescriptor
                     sum = IntegerPointable.getInteger(data, offset);
                     count = IntegerPointable.getInteger(data, offset + 4);
                 } else {
-                    Integer[] fields = (Integer[]) state.state;
+                    int[] fields = (int[]) state.state;
                     sum = fields[0];
                     count = fields[1];
                 }
@@ -119,7 +119,7 @@ public class AvgFieldGroupAggregatorFactory implements IFieldAggregateDescriptor
                         throw new HyracksDataException("I/O exception when initializing the aggregator.");
                     }
                 } else {
-                    state.state = new Integer[] { sum, count };
+                    state.state = new int[] { sum, count };
                 }
             }
 
@@ -138,16 +138,35 @@ public class AvgFieldGroupAggregatorFactory implements IFieldAggregateDescriptor
                 sum += IntegerPointable.getInteger(accessor.getBuffer().array(), tupleOffset + accessor.getFieldSlotsLength() + fieldStart);
                 count += 1;
                 if (!useObjectState) {
-                    ByteBuffer buf = ByteBuffer.wrap(data);
-                    sum += buf.getInt(offset);
-                    count += buf.getInt(offset + 4);
-                    buf.putInt(offset, sum);
-                    buf.putInt(offset + 4, count);
+                    IntegerPointable.setInteger(data, offset, sum + IntegerPointable.getInteger(data, offset));
+                    IntegerPointable.setInteger(data, offset + 4,
+                            count + IntegerPointable.getInteger(data, offset + 4));
                 } else {
-                    Integer[] fields = (Integer[]) state.state;
-                    sum += fields[0];
-                    count += fields[1];
-                    state.state = new Integer[] { sum, count };
+                    int[] fields = (int[]) state.state;
+                    fields[0] += sum;
+                    fields[1] += count;
+                }
+            }
+
+            @Override
+            public int getStateLength() {
+                return 8;
+            }
+
+            @Override
+            public void aggregate(IFrameTupleAccessor accessor, int[] tIndexes, byte[][] stateData,
+                    int[] stateOffsets, int fieldOffset, int count) throws HyracksDataException {
+                byte[] data = accessor.getBuffer().array();
+                int fieldSlotsLength = accessor.getFieldSlotsLength();
+                for (int i = 0; i < count; ++i) {
+                    int tIndex = tIndexes[i];
+                    int sum = IntegerPointable.getInteger(data, accessor.getTupleStartOffset(tIndex)
+                            + fieldSlotsLength + accessor.getFieldStartOffset(tIndex, aggField));
+                    int offset = stateOffsets[i] + fieldOffset;
+                    IntegerPointable.setInteger(stateData[i], offset,
+                            sum + IntegerPointable.getInteger(stateData[i], offset));
+                    IntegerPointable.setInteger(stateData[i], offset + 4,
+                            IntegerPointable.getInteger(stateData[i], offset + 4) + 1);
                 }
             }
 
@@ -163,7 +182,7 @@ public class AvgFieldGroupAggregatorFactory implements IFieldAggregateDescriptor
 
             @Override
             public AggregateState createState() {
-                return new AggregateState(new Integer[] { 0, 0 });
+                return new AggregateState(new int[2]);
             }
 
         };
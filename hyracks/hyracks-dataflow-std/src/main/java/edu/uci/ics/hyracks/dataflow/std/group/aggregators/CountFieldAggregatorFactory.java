@@ -16,7 +16,6 @@ package edu.uci.ics.hyracks.dataflow.std.group.aggregators;
 
 import java.io.DataOutput;
 import java.io.IOException;
-import java.nio.ByteBuffer;
 
 import edu.uci.ics.hyracks.api.comm.IFrameTupleAccessor;
 import edu.uci.ics.hyracks.api.context.IHyracksTaskContext;
@@ -27,6 +26,7 @@ import edu.uci.ics.hyracks.dataflow.common.data.marshalling.IntegerSerializerDes
 import edu.uci.ics.hyracks.dataflow.std.group.AggregateState;
 import edu.uci.ics.hyracks.dataflow.std.group.IFieldAggregateDescriptor;
 import edu.uci.ics.hyracks.dataflow.std.group.IFieldAggregateDescriptorFactory;
+import edu.uci.ics.hyracks.dataflow.std.group.IPrimitiveFieldAggregateDescriptor;
 
 /**
  *
@@ -53,7 +53,7 @@ public class CountFieldAggregatorFactory implements IFieldAggregateDescriptorFac
     @Override
     public IFieldAggregateDescriptor createAggregator(IHyracksTaskContext ctx, RecordDescriptor inRecordDescriptor,
             RecordDescriptor outRecordDescriptor) throws HyracksDataException {
-        return new IFieldAggregateDescriptor() {
+        return new IPrimitiveFieldAggregateDescriptor() {
 
             @Override
             public void reset() {
@@ -66,7 +66,7 @@ public class CountFieldAggregatorFactory implements IFieldAggregateDescriptorFac
                 if (!useObjectState) {
                     count = IntegerPointable.getInteger(data, offset);
                 } else {
-                    count = (Integer) state.state;
+                    count = ((int[]) state.state)[0];
                 }
                 try {
                     fieldOutput.writeInt(count);
@@ -82,7 +82,7 @@ public class CountFieldAggregatorFactory implements IFieldAggregateDescriptorFac
                 if (!useObjectState) {
                     count = IntegerPointable.getInteger(data, offset);
                 } else {
-                    count = (Integer) state.state;
+                    count = ((int[]) state.state)[0];
                 }
                 try {
                     fieldOutput.writeInt(count);
@@ -102,7 +102,7 @@ public class CountFieldAggregatorFactory implements IFieldAggregateDescriptorFac
                         throw new HyracksDataException("I/O exception when initializing the aggregator.");
                     }
                 } else {
-                    state.state = count;
+                    state.state = new int[] { count };
                 }
             }
 
@@ -115,7 +115,7 @@ public class CountFieldAggregatorFactory implements IFieldAggregateDescriptorFac
             }
 
             public AggregateState createState() {
-                return new AggregateState(new Integer(0));
+                return new AggregateState(new int[1]);
             }
 
             @Override
@@ -126,14 +126,25 @@ public class CountFieldAggregatorFactory implements IFieldAggregateDescriptorFac
             @Override
             public void aggregate(IFrameTupleAccessor accessor, int tIndex, byte[] data, int offset,
                     AggregateState state) throws HyracksDataException {
-                int count = 1;
                 if (!useObjectState) {
-                    ByteBuffer buf = ByteBuffer.wrap(data);
-                    count += buf.getInt(offset);
-                    buf.putInt(offset, count);
+                    IntegerPointable.setInteger(data, offset, IntegerPointable.getInteger(data, offset) + 1);
                 } else {
-                    count += (Integer) state.state;
-                    state.state = count;
+                    ((int[]) state.state)[0]++;
+                }
+            }
+
+            @Override
+            public int getStateLength() {
+                return 4;
+            }
+
+            @Override
+            public void aggregate(IFrameTupleAccessor accessor, int[] tIndexes, byte[][] stateData,
+                    int[] stateOffsets, int fieldOffset, int count) throws HyracksDataException {
+                for (int i = 0; i < count; ++i) {
+                    int offset = stateOffsets[i] + fieldOffset;
+                    IntegerPointable.setInteger(stateData[i], offset,
+                            IntegerPointable.getInteger(stateData[i], offset) + 1);
                 }
             }
         };
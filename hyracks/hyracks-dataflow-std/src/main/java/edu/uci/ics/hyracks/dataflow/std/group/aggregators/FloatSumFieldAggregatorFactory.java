@@ -16,7 +16,6 @@ package edu.uci.ics.hyracks.dataflow.std.group.aggregators;
 
 import java.io.DataOutput;
 import java.io.IOException;
-import java.nio.ByteBuffer;
 
 import edu.uci.ics.hyracks.api.comm.IFrameTupleAccessor;
 import edu.uci.ics.hyracks.api.context.IHyracksTaskContext;
@@ -27,6 +26,7 @@ import edu.uci.ics.hyracks.dataflow.common.data.marshalling.FloatSerializerDeser
 import edu.uci.ics.hyracks.dataflow.std.group.AggregateState;
 import edu.uci.ics.hyracks.dataflow.std.group.IFieldAggregateDescriptor;
 import edu.uci.ics.hyracks.dataflow.std.group.IFieldAggregateDescriptorFactory;
+import edu.uci.ics.hyracks.dataflow.std.group.IPrimitiveFieldAggregateDescriptor;
 
 /**
  *
@@ -52,7 +52,7 @@ public class FloatSumFieldAggregatorFactory implements
     public IFieldAggregateDescriptor createAggregator(IHyracksTaskContext ctx,
             RecordDescriptor inRecordDescriptor,
             RecordDescriptor outRecordDescriptor) throws HyracksDataException {
-        return new IFieldAggregateDescriptor() {
+        return new IPrimitiveFieldAggregateDescriptor() {
             
             @Override
             public void reset() {
@@ -66,7 +66,7 @@ public class FloatSumFieldAggregatorFactory implements
                 if (!useObjectState) {
                     sum = FloatPointable.getFloat(data, offset);
                 } else {
-                    sum = (Float) state.state;
+                    sum = ((float[]) state.state)[0];
                 }
                 try {
                     fieldOutput.writeFloat(sum);
@@ -82,7 +82,7 @@ public class FloatSumFieldAggregatorFactory implements
                 if (!useObjectState) {
                     sum = FloatPointable.getFloat(data, offset);
                 } else {
-                    sum = (Float) state.state;
+                    sum = ((float[]) state.state)[0];
                 }
                 try {
                     fieldOutput.writeFloat(sum);
@@ -118,13 +118,13 @@ public class FloatSumFieldAggregatorFactory implements
                         throw new HyracksDataException("I/O exception when initializing the aggregator.");
                     }
                 } else {
-                    state.state = sum;
+                    state.state = new float[] { sum };
                 }
             }
             
             @Override
             public AggregateState createState() {
-                return new AggregateState(new Float(0.0));
+                return new AggregateState(new float[1]);
             }
             
             @Override
@@ -143,12 +143,28 @@ public class FloatSumFieldAggregatorFactory implements
                 sum += FloatPointable.getFloat(accessor.getBuffer().array(), tupleOffset + accessor.getFieldSlotsLength() + fieldStart);
 
                 if (!useObjectState) {
-                    ByteBuffer buf = ByteBuffer.wrap(data);
-                    sum += buf.getFloat(offset);
-                    buf.putFloat(offset, sum);
+                    FloatPointable.setFloat(data, offset, sum + FloatPointable.getFloat(data, offset));
                 } else {
-                    sum += (Float) state.state;
-                    state.state = sum;
+                    ((float[]) state.state)[0] += sum;
+                }
+            }
+
+            @Override
+            public int getStateLength() {
+                return 4;
+            }
+
+            @Override
+            public void aggregate(IFrameTupleAccessor accessor, int[] tIndexes, byte[][] stateData,
+                    int[] stateOffsets, int fieldOffset, int count) throws HyracksDataException {
+                byte[] data = accessor.getBuffer().array();
+                int fieldSlotsLength = accessor.getFieldSlotsLength();
+                for (int i = 0; i < count; ++i) {
+                    int tIndex = tIndexes[i];
+                    float sum = FloatPointable.getFloat(data, accessor.getTupleStartOffset(tIndex)
+                            + fieldSlotsLength + accessor.getFieldStartOffset(tIndex, aggField));
+                    int offset = stateOffsets[i] + fieldOffset;
+                    FloatPointable.setFloat(stateData[i], offset, sum + FloatPointable.getFloat(stateData[i], offset));
                 }
             }
         };
@@ -16,7 +16,6 @@ package edu.uci.ics.hyracks.dataflow.std.group.aggregators;
 
 import java.io.DataOutput;
 import java.io.IOException;
-import java.nio.ByteBuffer;
 
 import edu.uci.ics.hyracks.api.comm.IFrameTupleAccessor;
 import edu.uci.ics.hyracks.api.context.IHyracksTaskContext;
@@ -27,6 +26,7 @@ import edu.uci.ics.hyracks.dataflow.common.data.marshalling.IntegerSerializerDes
 import edu.uci.ics.hyracks.dataflow.std.group.AggregateState;
 import edu.uci.ics.hyracks.dataflow.std.group.IFieldAggregateDescriptor;
 import edu.uci.ics.hyracks.dataflow.std.group.IFieldAggregateDescriptorFactory;
+import edu.uci.ics.hyracks.dataflow.std.group.IPrimitiveFieldAggregateDescriptor;
 
 /**
  *
@@ -57,7 +57,7 @@ public class IntSumFieldAggregatorFactory implements IFieldAggregateDescriptorFa
     public IFieldAggregateDescriptor createAggregator(IHyracksTaskContext ctx, RecordDescriptor inRecordDescriptor,
             RecordDescriptor outRecordDescriptor) throws HyracksDataException {
 
-        return new IFieldAggregateDescriptor() {
+        return new IPrimitiveFieldAggregateDescriptor() {
 
             @Override
             public void reset() {
@@ -70,7 +70,7 @@ public class IntSumFieldAggregatorFactory implements IFieldAggregateDescriptorFa
                 if (!useObjectState) {
                     sum = IntegerPointable.getInteger(data, offset);
                 } else {
-                    sum = (Integer) state.state;
+                    sum = ((int[]) state.state)[0];
                 }
                 try {
                     fieldOutput.writeInt(sum);
@@ -86,7 +86,7 @@ public class IntSumFieldAggregatorFactory implements IFieldAggregateDescriptorFa
                 if (!useObjectState) {
                     sum = IntegerPointable.getInteger(data, offset);
                 } else {
-                    sum = (Integer) state.state;
+                    sum = ((int[]) state.state)[0];
                 }
                 try {
                     fieldOutput.writeInt(sum);
@@ -112,7 +112,7 @@ public class IntSumFieldAggregatorFactory implements IFieldAggregateDescriptorFa
                         throw new HyracksDataException("I/O exception when initializing the aggregator.");
                     }
                 } else {
-                    state.state = sum;
+                    state.state = new int[] { sum };
                 }
             }
 
@@ -125,7 +125,7 @@ public class IntSumFieldAggregatorFactory implements IFieldAggregateDescriptorFa
             }
 
             public AggregateState createState() {
-                return new AggregateState(new Integer(0));
+                return new AggregateState(new int[1]);
             }
 
             @Override
@@ -142,12 +142,29 @@ public class IntSumFieldAggregatorFactory implements IFieldAggregateDescriptorFa
                 sum += IntegerPointable.getInteger(accessor.getBuffer().array(), tupleOffset + accessor.getFieldSlotsLength() + fieldStart);
 
                 if (!useObjectState) {
-                    ByteBuffer buf = ByteBuffer.wrap(data);
-                    sum += buf.getInt(offset);
-                    buf.putInt(offset, sum);
+                    IntegerPointable.setInteger(data, offset, sum + IntegerPointable.getInteger(data, offset));
                 } else {
-                    sum += (Integer) state.state;
-                    state.state = sum;
+                    ((int[]) state.state)[0] += sum;
+                }
+            }
+
+            @Override
+            public int getStateLength() {
+                return 4;
+            }
+
+            @Override
+            public void aggregate(IFrameTupleAccessor accessor, int[] tIndexes, byte[][] stateData,
+                    int[] stateOffsets, int fieldOffset, int count) throws HyracksDataException {
+                byte[] data = accessor.getBuffer().array();
+                int fieldSlotsLength = accessor.getFieldSlotsLength();
+                for (int i = 0; i < count; ++i) {
+                    int tIndex = tIndexes[i];
+                    int sum = IntegerPointable.getInteger(data, accessor.getTupleStartOffset(tIndex)
+                            + fieldSlotsLength + accessor.getFieldStartOffset(tIndex, aggField));
+                    int offset = stateOffsets[i] + fieldOffset;
+                    IntegerPointable.setInteger(stateData[i], offset,
+                            sum + IntegerPointable.getInteger(stateData[i], offset));
                 }
             }
         };
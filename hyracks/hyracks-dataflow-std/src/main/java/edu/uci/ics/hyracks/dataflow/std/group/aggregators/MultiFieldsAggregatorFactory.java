@@ -23,10 +23,12 @@ import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
 import edu.uci.ics.hyracks.dataflow.common.comm.io.ArrayTupleBuilder;
 import edu.uci.ics.hyracks.dataflow.std.group.AbstractAccumulatingAggregatorDescriptorFactory;
 import edu.uci.ics.hyracks.dataflow.std.group.AggregateState;
+import edu.uci.ics.hyracks.dataflow.std.group.IBatchAggregatorDescriptor;
 import edu.uci.ics.hyracks.dataflow.std.group.IAggregatorDescriptor;
 import edu.uci.ics.hyracks.dataflow.std.group.IAggregatorDescriptorFactory;
 import edu.uci.ics.hyracks.dataflow.std.group.IFieldAggregateDescriptor;
 import edu.uci.ics.hyracks.dataflow.std.group.IFieldAggregateDescriptorFactory;
+import edu.uci.ics.hyracks.dataflow.std.group.IPrimitiveFieldAggregateDescriptor;
 
 public class MultiFieldsAggregatorFactory extends AbstractAccumulatingAggregatorDescriptorFactory {
 
@@ -66,7 +68,7 @@ public class MultiFieldsAggregatorFactory extends AbstractAccumulatingAggregator
             this.keys = keyFields;
         }
 
-        return new IAggregatorDescriptor() {
+        final IAggregatorDescriptor fieldsAggregator = new IAggregatorDescriptor() {
 
             @Override
             public void reset() {
@@ -165,5 +167,82 @@ public class MultiFieldsAggregatorFactory extends AbstractAccumulatingAggregator
                 }
             }
         };
+
+        final IPrimitiveFieldAggregateDescriptor[] batched = new IPrimitiveFieldAggregateDescriptor[aggregators.length];
+        final int[] stateFieldOffsets = new int[aggregators.length];
+        int stateLength = 0;
+        for (int i = 0; i < aggregators.length; i++) {
+            if (!(aggregators[i] instanceof IPrimitiveFieldAggregateDescriptor) || !aggregators[i].needsBinaryState()) {
+                return fieldsAggregator;
+            }
+            batched[i] = (IPrimitiveFieldAggregateDescriptor) aggregators[i];
+            stateFieldOffsets[i] = stateLength;
+            stateLength += batched[i].getStateLength();
+        }
+
+        /**
+         * All states are fixed-width binary states, one after the other, so
+         * they are updated in place at fixed offsets from the first one.
+         */
+        return new IBatchAggregatorDescriptor() {
+
+            @Override
+            public void reset() {
+                fieldsAggregator.reset();
+            }
+
+            @Override
+            public boolean outputPartialResult(ArrayTupleBuilder tupleBuilder, IFrameTupleAccessor accessor,
+                    int tIndex, AggregateState state) throws HyracksDataException {
+                return fieldsAggregator.outputPartialResult(tupleBuilder, accessor, tIndex, state);
+            }
+
+            @Override
+            public boolean outputFinalResult(ArrayTupleBuilder tupleBuilder, IFrameTupleAccessor accessor, int tIndex,
+                    AggregateState state) throws HyracksDataException {
+                return fieldsAggregator.outputFinalResult(tupleBuilder, accessor, tIndex, state);
+            }
+
+            @Override
+            public void init(ArrayTupleBuilder tupleBuilder, IFrameTupleAccessor accessor, int tIndex,
+                    AggregateState state) throws HyracksDataException {
+                fieldsAggregator.init(tupleBuilder, accessor, tIndex, state);
+            }
+
+            @Override
+            public AggregateState createAggregateStates() {
+                return fieldsAggregator.createAggregateStates();
+            }
+
+            @Override
+            public void close() {
+                fieldsAggregator.close();
+            }
+
+            @Override
+            public void aggregate(IFrameTupleAccessor accessor, int tIndex, IFrameTupleAccessor stateAccessor,
+                    int stateTupleIndex, AggregateState state) throws HyracksDataException {
+                if (stateAccessor == null) {
+                    fieldsAggregator.aggregate(accessor, tIndex, stateAccessor, stateTupleIndex, state);
+                    return;
+                }
+                byte[] data = stateAccessor.getBuffer().array();
+                int stateOffset = stateAccessor.getTupleStartOffset(stateTupleIndex)
+                        + stateAccessor.getFieldSlotsLength()
+                        + stateAccessor.getFieldStartOffset(stateTupleIndex, keys.length);
+                for (int i = 0; i < batched.length; i++) {
+                    batched[i].aggregate(accessor, tIndex, data, stateOffset + stateFieldOffsets[i], null);
+                }
+            }
+
+            @Override
+            public void aggregate(IFrameTupleAccessor accessor, int[] tIndexes, byte[][] stateData,
+                    int[] stateOffsets, int count) throws HyracksDataException {
+                for (int i = 0; i < batched.length; i++) {
+                    batched[i].aggregate(accessor, tIndexes, stateData, stateOffsets,
+                            stateFieldOffsets[i], count);
+                }
+            }
+        };
     }
 }
@@ -24,6 +24,7 @@ import edu.uci.ics.hyracks.api.dataflow.value.INormalizedKeyComputerFactory;
 import edu.uci.ics.hyracks.api.dataflow.value.RecordDescriptor;
 import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
 import edu.uci.ics.hyracks.api.io.FileReference;
+import edu.uci.ics.hyracks.api.io.IBlockCompressor;
 import edu.uci.ics.hyracks.dataflow.common.comm.io.FrameTupleAccessor;
 import edu.uci.ics.hyracks.dataflow.common.io.RunFileReader;
 import edu.uci.ics.hyracks.dataflow.common.io.RunFileWriter;
@@ -34,6 +35,7 @@ import edu.uci.ics.hyracks.dataflow.std.group.ISpillableTableFactory;
 
 class ExternalGroupBuildOperatorNodePushable extends AbstractUnaryInputSinkOperatorNodePushable {
     private final IHyracksTaskContext ctx;
+    private final IBlockCompressor spillCompressor;
     private final Object stateId;
     private final int[] keyFields;
     private final IBinaryComparatorFactory[] comparatorFactories;
@@ -52,6 +54,7 @@ class ExternalGroupBuildOperatorNodePushable extends AbstractUnaryInputSinkOpera
             IAggregatorDescriptorFactory aggregatorFactory, RecordDescriptor inRecordDescriptor,
             RecordDescriptor outRecordDescriptor, ISpillableTableFactory spillableTableFactory) {
         this.ctx = ctx;
+        this.spillCompressor = RunFileWriter.createSpillCompressor(ctx);
         this.stateId = stateId;
         this.framesLimit = framesLimit;
         this.aggregatorFactory = aggregatorFactory;
@@ -121,7 +124,7 @@ class ExternalGroupBuildOperatorNodePushable extends AbstractUnaryInputSinkOpera
         } catch (IOException e) {
             throw new HyracksDataException(e);
         }
-        RunFileWriter writer = new RunFileWriter(runFile, ctx.getIOManager());
+        RunFileWriter writer = new RunFileWriter(runFile, ctx.getIOManager(), ctx.getFrameSize(), spillCompressor);
         writer.open();
         ISpillableTable gTable = state.getSpillableTable();
         try {
@@ -30,6 +30,7 @@ import edu.uci.ics.hyracks.api.dataflow.value.INormalizedKeyComputerFactory;
 import edu.uci.ics.hyracks.api.dataflow.value.RecordDescriptor;
 import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
 import edu.uci.ics.hyracks.api.io.FileReference;
+import edu.uci.ics.hyracks.api.io.IBlockCompressor;
 import edu.uci.ics.hyracks.dataflow.common.comm.io.ArrayTupleBuilder;
 import edu.uci.ics.hyracks.dataflow.common.comm.io.FrameTupleAccessor;
 import edu.uci.ics.hyracks.dataflow.common.comm.io.FrameTupleAppender;
@@ -46,6 +47,7 @@ import edu.uci.ics.hyracks.dataflow.std.util.ReferencedPriorityQueue;
 
 class ExternalGroupMergeOperatorNodePushable extends AbstractUnaryOutputSourceOperatorNodePushable {
     private final IHyracksTaskContext ctx;
+    private final IBlockCompressor spillCompressor;
     private final Object stateId;
     private final int[] keyFields;
     private final IBinaryComparator[] comparators;
@@ -108,6 +110,7 @@ class ExternalGroupMergeOperatorNodePushable extends AbstractUnaryOutputSourceOp
 
         tupleBuilder = new ArrayTupleBuilder(outRecordDescriptor.getFields().length);
         this.ctx = ctx;
+        this.spillCompressor = RunFileWriter.createSpillCompressor(ctx);
         outAppender = new FrameTupleAppender(ctx.getFrameSize());
         outFrameAccessor = new FrameTupleAccessor(ctx.getFrameSize(), outRecordDescriptor);
         this.isOutputSorted = isOutputSorted;
@@ -171,7 +174,7 @@ class ExternalGroupMergeOperatorNodePushable extends AbstractUnaryOutputSourceOp
             runNumber = framesLimit - 2;
             newRun = ctx.getJobletContext().createManagedWorkspaceFile(
                     ExternalGroupOperatorDescriptor.class.getSimpleName());
-            writer = new RunFileWriter(newRun, ctx.getIOManager());
+            writer = new RunFileWriter(newRun, ctx.getIOManager(), ctx.getFrameSize(), spillCompressor);
             writer.open();
         }
         try {
@@ -17,6 +17,7 @@ package edu.uci.ics.hyracks.dataflow.std.group.hash;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 
 import edu.uci.ics.hyracks.api.comm.IFrameWriter;
@@ -26,16 +27,29 @@ import edu.uci.ics.hyracks.api.dataflow.value.IBinaryComparatorFactory;
 import edu.uci.ics.hyracks.api.dataflow.value.ISerializerDeserializer;
 import edu.uci.ics.hyracks.api.dataflow.value.ITuplePartitionComputer;
 import edu.uci.ics.hyracks.api.dataflow.value.ITuplePartitionComputerFactory;
+import edu.uci.ics.hyracks.api.dataflow.value.ITuplePartitionComputerFamily;
 import edu.uci.ics.hyracks.api.dataflow.value.RecordDescriptor;
 import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
+import edu.uci.ics.hyracks.api.io.FileReference;
+import edu.uci.ics.hyracks.api.io.IBlockCompressor;
 import edu.uci.ics.hyracks.dataflow.common.comm.io.ArrayTupleBuilder;
 import edu.uci.ics.hyracks.dataflow.common.comm.io.FrameTupleAccessor;
 import edu.uci.ics.hyracks.dataflow.common.comm.io.FrameTupleAppender;
 import edu.uci.ics.hyracks.dataflow.common.comm.io.FrameTuplePairComparator;
+import edu.uci.ics.hyracks.dataflow.common.comm.util.FrameUtils;
+import edu.uci.ics.hyracks.dataflow.common.io.RunFileReader;
+import edu.uci.ics.hyracks.dataflow.common.io.RunFileWriter;
 import edu.uci.ics.hyracks.dataflow.std.group.AggregateState;
 import edu.uci.ics.hyracks.dataflow.std.group.IAggregatorDescriptor;
 import edu.uci.ics.hyracks.dataflow.std.group.IAggregatorDescriptorFactory;
 
+/**
+ * The hash table of the hash group-by. Without a frame limit, all groups are kept in memory. With one, the groups are
+ * hash partitioned: once the frames are used up, the new groups of a partition that overflows are spilled, as the
+ * input tuples that start and feed them, to a run file of the partition. The groups already in memory keep
+ * aggregating their input, so the groups of a run are disjoint from the groups in memory, and each run is grouped by
+ * a table of its own at the next level, with the hash function of that level.
+ */
 class GroupingHashTable {
     /**
      * The pointers in the link store 3 int values for each entry in the
@@ -90,11 +104,85 @@ class GroupingHashTable {
 
     private final ArrayTupleBuilder stateTupleBuilder, outputTupleBuilder;
 
+    private final IBinaryComparatorFactory[] comparatorFactories;
+    private final ITuplePartitionComputerFamily tpcFamily;
+    private final int level;
+    private final IAggregatorDescriptorFactory aggregatorFactory;
+    private final RecordDescriptor inRecordDescriptor;
+    private final RecordDescriptor outRecordDescriptor;
+    private final int framesLimit;
+
+    /**
+     * The frames the groups may take, and the partitions of the overflowing
+     * groups.
+     */
+    private final int groupFrames;
+    private final int numOfPartitions;
+    private final BitSet spilled;
+    private final RunFileWriter[] runWriters;
+    private final ByteBuffer[] runBuffers;
+    private final FrameTupleAppender runAppender;
+    private final IBlockCompressor spillCompressor;
+
     GroupingHashTable(IHyracksTaskContext ctx, int[] fields, IBinaryComparatorFactory[] comparatorFactories,
             ITuplePartitionComputerFactory tpcf, IAggregatorDescriptorFactory aggregatorFactory,
             RecordDescriptor inRecordDescriptor, RecordDescriptor outRecordDescriptor, int tableSize)
             throws HyracksDataException {
+        this(ctx, fields, comparatorFactories, tpcf.createPartitioner(), null, 0, aggregatorFactory,
+                inRecordDescriptor, outRecordDescriptor, tableSize, -1);
+    }
+
+    /**
+     * @param level
+     *            the level of the table: the input of level 0 is the input of
+     *            the group-by, the input of a later level is a run of the level
+     *            before
+     * @param framesLimit
+     *            the frames of the table, including the output frame and the
+     *            buffers of the runs
+     */
+    GroupingHashTable(IHyracksTaskContext ctx, int[] fields, IBinaryComparatorFactory[] comparatorFactories,
+            ITuplePartitionComputerFamily tpcFamily, int level, IAggregatorDescriptorFactory aggregatorFactory,
+            RecordDescriptor inRecordDescriptor, RecordDescriptor outRecordDescriptor, int tableSize,
+            int framesLimit) throws HyracksDataException {
+        this(ctx, fields, comparatorFactories, tpcFamily.createPartitioner(level), tpcFamily, level,
+                aggregatorFactory, inRecordDescriptor, outRecordDescriptor, tableSize, framesLimit);
+    }
+
+    private GroupingHashTable(IHyracksTaskContext ctx, int[] fields, IBinaryComparatorFactory[] comparatorFactories,
+            ITuplePartitionComputer tpc, ITuplePartitionComputerFamily tpcFamily, int level,
+            IAggregatorDescriptorFactory aggregatorFactory, RecordDescriptor inRecordDescriptor,
+            RecordDescriptor outRecordDescriptor, int tableSize, int framesLimit) throws HyracksDataException {
         this.ctx = ctx;
+        this.comparatorFactories = comparatorFactories;
+        this.tpcFamily = tpcFamily;
+        this.level = level;
+        this.aggregatorFactory = aggregatorFactory;
+        this.inRecordDescriptor = inRecordDescriptor;
+        this.outRecordDescriptor = outRecordDescriptor;
+        this.framesLimit = framesLimit;
+        if (framesLimit < 0) {
+            groupFrames = Integer.MAX_VALUE;
+            numOfPartitions = 1;
+        } else {
+            /**
+             * 1 frame for reading a run or writing the output, and 1 buffer
+             * for the run of each partition. With a single partition, each
+             * level would only take the groups that fit in memory off a run
+             * and write the rest to the next level again.
+             */
+            numOfPartitions = Math.max(2, Math.min((framesLimit - 2) / 2, (int) Math.sqrt(framesLimit)));
+            groupFrames = framesLimit - 1 - numOfPartitions;
+            if (groupFrames < 1) {
+                throw new HyracksDataException("The hash group-by needs at least 4 frames, but it has "
+                        + framesLimit + ".");
+            }
+        }
+        spilled = new BitSet(numOfPartitions);
+        runWriters = new RunFileWriter[numOfPartitions];
+        runBuffers = new ByteBuffer[numOfPartitions];
+        runAppender = new FrameTupleAppender(ctx.getFrameSize());
+        spillCompressor = framesLimit < 0 ? null : RunFileWriter.createSpillCompressor(ctx);
 
         buffers = new ArrayList<ByteBuffer>();
         table = new Link[tableSize];
@@ -113,7 +201,7 @@ class GroupingHashTable {
             comparators[i] = comparatorFactories[i].createBinaryComparator();
         }
         ftpc = new FrameTuplePairComparator(fields, storedKeys, comparators);
-        tpc = tpcf.createPartitioner();
+        this.tpc = tpc;
 
         int[] keyFieldsInPartialResults = new int[fields.length];
         for (int i = 0; i < keyFieldsInPartialResults.length; i++) {
@@ -154,11 +242,8 @@ class GroupingHashTable {
     void insert(FrameTupleAccessor accessor, int tIndex) throws Exception {
         int entry = tpc.partition(accessor, tIndex, table.length);
         Link link = table[entry];
-        if (link == null) {
-            link = table[entry] = new Link();
-        }
         int saIndex = -1;
-        for (int i = 0; i < link.size; i += 3) {
+        for (int i = 0; link != null && i < link.size; i += 3) {
             int sbIndex = link.pointers[i];
             int stIndex = link.pointers[i + 1];
             storedKeysAccessor.reset(buffers.get(sbIndex));
@@ -169,8 +254,12 @@ class GroupingHashTable {
             }
         }
         if (saIndex < 0) {
-            // Did not find the key. Insert a new entry.
-            saIndex = accumulatorSize++;
+            // Did not find the key. Insert a new entry, unless its partition is spilled.
+            int pid = entry % numOfPartitions;
+            if (spilled.get(pid)) {
+                spill(pid, accessor, tIndex);
+                return;
+            }
             // Add keys
 
             // Add aggregation fields
@@ -185,6 +274,11 @@ class GroupingHashTable {
 
             if (!appender.appendSkipEmptyField(stateTupleBuilder.getFieldEndOffsets(),
                     stateTupleBuilder.getByteArray(), 0, stateTupleBuilder.getSize())) {
+                if (buffers.size() >= groupFrames) {
+                    newState.close();
+                    spill(pid, accessor, tIndex);
+                    return;
+                }
                 addNewBuffer();
                 if (!appender.appendSkipEmptyField(stateTupleBuilder.getFieldEndOffsets(),
                         stateTupleBuilder.getByteArray(), 0, stateTupleBuilder.getSize())) {
@@ -192,12 +286,16 @@ class GroupingHashTable {
                 }
             }
 
+            saIndex = accumulatorSize++;
             if (accumulatorSize >= aggregateStates.length) {
                 aggregateStates = Arrays.copyOf(aggregateStates, aggregateStates.length * 2);
             }
 
             aggregateStates[saIndex] = newState;
 
+            if (link == null) {
+                link = table[entry] = new Link();
+            }
             link.add(lastBIndex, appender.getTupleCount() - 1, saIndex);
 
         } else {
@@ -246,9 +344,86 @@ class GroupingHashTable {
         }
     }
 
+    private void spill(int pid, FrameTupleAccessor accessor, int tIndex) throws HyracksDataException {
+        if (!spilled.get(pid)) {
+            FileReference file = ctx.getJobletContext().createManagedWorkspaceFile(
+                    HashGroupOperatorDescriptor.class.getSimpleName());
+            runWriters[pid] = new RunFileWriter(file, ctx.getIOManager(), ctx.getFrameSize(), spillCompressor);
+            runWriters[pid].open();
+            runBuffers[pid] = ctx.allocateFrame();
+            runAppender.reset(runBuffers[pid], true);
+            spilled.set(pid);
+        } else {
+            runAppender.reset(runBuffers[pid], false);
+        }
+        if (!runAppender.append(accessor, tIndex)) {
+            FrameUtils.flushFrame(runBuffers[pid], runWriters[pid]);
+            runAppender.reset(runBuffers[pid], true);
+            if (!runAppender.append(accessor, tIndex)) {
+                throw new HyracksDataException("The input tuple is too large to be fit into a frame.");
+            }
+        }
+    }
+
+    /**
+     * Closes the runs of the spilled partitions and releases their buffers.
+     * 
+     * @return the runs, to be grouped by the tables of the next level
+     */
+    List<RunFileReader> closeRuns() throws HyracksDataException {
+        List<RunFileReader> runs = new ArrayList<RunFileReader>();
+        for (int pid = spilled.nextSetBit(0); pid >= 0; pid = spilled.nextSetBit(pid + 1)) {
+            runAppender.reset(runBuffers[pid], false);
+            if (runAppender.getTupleCount() > 0) {
+                FrameUtils.flushFrame(runBuffers[pid], runWriters[pid]);
+            }
+            runWriters[pid].close();
+            runs.add(runWriters[pid].createReader());
+            runWriters[pid] = null;
+            runBuffers[pid] = null;
+        }
+        spilled.clear();
+        return runs;
+    }
+
+    /**
+     * Inserts the input tuples of a run of the table of the level before.
+     */
+    void insert(RunFileReader run, ByteBuffer frame) throws Exception {
+        FrameTupleAccessor runAccessor = new FrameTupleAccessor(ctx.getFrameSize(), inRecordDescriptor);
+        run.open();
+        try {
+            while (run.nextFrame(frame)) {
+                runAccessor.reset(frame);
+                int tupleCount = runAccessor.getTupleCount();
+                for (int i = 0; i < tupleCount; ++i) {
+                    insert(runAccessor, i);
+                }
+            }
+        } finally {
+            run.close();
+        }
+    }
+
+    int getLevel() {
+        return level;
+    }
+
+    /**
+     * Creates the table that groups a run of this table.
+     */
+    GroupingHashTable createRunTable() throws HyracksDataException {
+        return new GroupingHashTable(ctx, keys, comparatorFactories, tpcFamily, level + 1, aggregatorFactory,
+                inRecordDescriptor, outRecordDescriptor, table.length, framesLimit);
+    }
+
     void close() throws HyracksDataException {
-        for (AggregateState aState : aggregateStates) {
-            aState.close();
+        for (int i = 0; i < accumulatorSize; ++i) {
+            aggregateStates[i].close();
+            aggregateStates[i] = null;
         }
+        accumulatorSize = 0;
+        buffers.clear();
+        Arrays.fill(table, null);
     }
 }
\ No newline at end of file
@@ -19,6 +19,7 @@ import java.nio.ByteBuffer;
 import edu.uci.ics.hyracks.api.context.IHyracksTaskContext;
 import edu.uci.ics.hyracks.api.dataflow.value.IBinaryComparatorFactory;
 import edu.uci.ics.hyracks.api.dataflow.value.ITuplePartitionComputerFactory;
+import edu.uci.ics.hyracks.api.dataflow.value.ITuplePartitionComputerFamily;
 import edu.uci.ics.hyracks.api.dataflow.value.RecordDescriptor;
 import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
 import edu.uci.ics.hyracks.dataflow.common.comm.io.FrameTupleAccessor;
@@ -31,26 +32,30 @@ class HashGroupBuildOperatorNodePushable extends AbstractUnaryInputSinkOperatorN
     private final Object stateId;
     private final int[] keys;
     private final ITuplePartitionComputerFactory tpcf;
+    private final ITuplePartitionComputerFamily tpcFamily;
     private final IBinaryComparatorFactory[] comparatorFactories;
     private final IAggregatorDescriptorFactory aggregatorFactory;
     private final int tableSize;
+    private final int framesLimit;
     private final RecordDescriptor inRecordDescriptor;
     private final RecordDescriptor outRecordDescriptor;
 
     private HashGroupState state;
 
     HashGroupBuildOperatorNodePushable(IHyracksTaskContext ctx, Object stateId, int[] keys,
-            ITuplePartitionComputerFactory tpcf, IBinaryComparatorFactory[] comparatorFactories,
-            IAggregatorDescriptorFactory aggregatorFactory, int tableSize, RecordDescriptor inRecordDescriptor,
-            RecordDescriptor outRecordDescriptor) {
+            ITuplePartitionComputerFactory tpcf, ITuplePartitionComputerFamily tpcFamily,
+            IBinaryComparatorFactory[] comparatorFactories, IAggregatorDescriptorFactory aggregatorFactory,
+            int tableSize, int framesLimit, RecordDescriptor inRecordDescriptor, RecordDescriptor outRecordDescriptor) {
         this.ctx = ctx;
         this.accessor = new FrameTupleAccessor(ctx.getFrameSize(), inRecordDescriptor);
         this.stateId = stateId;
         this.keys = keys;
         this.tpcf = tpcf;
+        this.tpcFamily = tpcFamily;
         this.comparatorFactories = comparatorFactories;
         this.aggregatorFactory = aggregatorFactory;
         this.tableSize = tableSize;
+        this.framesLimit = framesLimit;
         this.inRecordDescriptor = inRecordDescriptor;
         this.outRecordDescriptor = outRecordDescriptor;
     }
@@ -58,8 +63,13 @@ class HashGroupBuildOperatorNodePushable extends AbstractUnaryInputSinkOperatorN
     @Override
     public void open() throws HyracksDataException {
         state = new HashGroupState(ctx.getJobletContext().getJobId(), stateId);
-        state.setHashTable(new GroupingHashTable(ctx, keys, comparatorFactories, tpcf, aggregatorFactory,
-                inRecordDescriptor, outRecordDescriptor, tableSize));
+        if (framesLimit < 0) {
+            state.setHashTable(new GroupingHashTable(ctx, keys, comparatorFactories, tpcf, aggregatorFactory,
+                    inRecordDescriptor, outRecordDescriptor, tableSize));
+        } else {
+            state.setHashTable(new GroupingHashTable(ctx, keys, comparatorFactories, tpcFamily, 0,
+                    aggregatorFactory, inRecordDescriptor, outRecordDescriptor, tableSize, framesLimit));
+        }
     }
 
     @Override
@@ -22,6 +22,7 @@ import edu.uci.ics.hyracks.api.dataflow.TaskId;
 import edu.uci.ics.hyracks.api.dataflow.value.IBinaryComparatorFactory;
 import edu.uci.ics.hyracks.api.dataflow.value.IRecordDescriptorProvider;
 import edu.uci.ics.hyracks.api.dataflow.value.ITuplePartitionComputerFactory;
+import edu.uci.ics.hyracks.api.dataflow.value.ITuplePartitionComputerFamily;
 import edu.uci.ics.hyracks.api.dataflow.value.RecordDescriptor;
 import edu.uci.ics.hyracks.api.job.IOperatorDescriptorRegistry;
 import edu.uci.ics.hyracks.dataflow.std.base.AbstractActivityNode;
@@ -29,7 +30,9 @@ import edu.uci.ics.hyracks.dataflow.std.base.AbstractOperatorDescriptor;
 import edu.uci.ics.hyracks.dataflow.std.group.IAggregatorDescriptorFactory;
 
 /**
- *
+ * A hash group-by. Without a frame limit, it keeps all groups in memory. With one, it spills the new groups of the
+ * hash partitions that overflow its memory to run files, as input tuples, and groups each run recursively, so it
+ * handles any number of groups.
  */
 public class HashGroupOperatorDescriptor extends AbstractOperatorDescriptor {
 
@@ -41,22 +44,56 @@ public class HashGroupOperatorDescriptor extends AbstractOperatorDescriptor {
 
     private final int[] keys;
     private final ITuplePartitionComputerFactory tpcf;
+    private final ITuplePartitionComputerFamily tpcFamily;
     private final IBinaryComparatorFactory[] comparatorFactories;
 
     private final IAggregatorDescriptorFactory aggregatorFactory;
 
     private final int tableSize;
 
+    private final int framesLimit;
+
     public HashGroupOperatorDescriptor(IOperatorDescriptorRegistry spec, int[] keys,
             ITuplePartitionComputerFactory tpcf, IBinaryComparatorFactory[] comparatorFactories,
             IAggregatorDescriptorFactory aggregatorFactory, RecordDescriptor outRecordDescriptor, int tableSize) {
         super(spec, 1, 1);
         this.keys = keys;
         this.tpcf = tpcf;
+        this.tpcFamily = null;
+        this.comparatorFactories = comparatorFactories;
+        this.aggregatorFactory = aggregatorFactory;
+        recordDescriptors[0] = outRecordDescriptor;
+        this.tableSize = tableSize;
+        this.framesLimit = -1;
+    }
+
+    /**
+     * @param tpcFamily
+     *            the hash functions of the levels of spilled partitions; the
+     *            groups of each level are hashed with a different one
+     * @param framesLimit
+     *            the frames the operator may use
+     */
+    public HashGroupOperatorDescriptor(IOperatorDescriptorRegistry spec, int[] keys,
+            ITuplePartitionComputerFamily tpcFamily, IBinaryComparatorFactory[] comparatorFactories,
+            IAggregatorDescriptorFactory aggregatorFactory, RecordDescriptor outRecordDescriptor, int tableSize,
+            int framesLimit) {
+        super(spec, 1, 1);
+        if (framesLimit < 4) {
+            /**
+             * 1 frame for output, 1 for the run of each of (at least) 2
+             * partitions, and at least 1 for the groups.
+             */
+            throw new IllegalStateException("frame limit should at least be 4, but it is " + framesLimit + "!");
+        }
+        this.keys = keys;
+        this.tpcf = null;
+        this.tpcFamily = tpcFamily;
         this.comparatorFactories = comparatorFactories;
         this.aggregatorFactory = aggregatorFactory;
         recordDescriptors[0] = outRecordDescriptor;
         this.tableSize = tableSize;
+        this.framesLimit = framesLimit;
     }
 
     /*
@@ -90,8 +127,8 @@ public class HashGroupOperatorDescriptor extends AbstractOperatorDescriptor {
         public IOperatorNodePushable createPushRuntime(final IHyracksTaskContext ctx,
                 final IRecordDescriptorProvider recordDescProvider, final int partition, int nPartitions) {
             return new HashGroupBuildOperatorNodePushable(ctx, new TaskId(getActivityId(), partition), keys, tpcf,
-                    comparatorFactories, aggregatorFactory, tableSize, recordDescProvider.getInputRecordDescriptor(
-                            getActivityId(), 0), recordDescriptors[0]);
+                    tpcFamily, comparatorFactories, aggregatorFactory, tableSize, framesLimit,
+                    recordDescProvider.getInputRecordDescriptor(getActivityId(), 0), recordDescriptors[0]);
         }
     }
 
@@ -14,14 +14,25 @@
  */
 package edu.uci.ics.hyracks.dataflow.std.group.hash;
 
+import java.nio.ByteBuffer;
+import java.util.List;
+
 import edu.uci.ics.hyracks.api.context.IHyracksTaskContext;
 import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
+import edu.uci.ics.hyracks.dataflow.common.io.RunFileReader;
 import edu.uci.ics.hyracks.dataflow.std.base.AbstractUnaryOutputSourceOperatorNodePushable;
 
 class HashGroupOutputOperatorNodePushable extends AbstractUnaryOutputSourceOperatorNodePushable {
+    /**
+     * Levels of partitioning after which a spilled partition is given up on.
+     */
+    private static final int MAX_LEVELS = 16;
+
     private final IHyracksTaskContext ctx;
     private final Object stateId;
 
+    private ByteBuffer runFrame;
+
     HashGroupOutputOperatorNodePushable(IHyracksTaskContext ctx, Object stateId) {
         this.ctx = ctx;
         this.stateId = stateId;
@@ -33,7 +44,7 @@ class HashGroupOutputOperatorNodePushable extends AbstractUnaryOutputSourceOpera
         GroupingHashTable table = buildState.getHashTable();
         writer.open();
         try {
-            table.write(writer);
+            write(table);
         } catch (Exception e) {
             writer.fail();
             throw new HyracksDataException(e);
@@ -41,4 +52,26 @@ class HashGroupOutputOperatorNodePushable extends AbstractUnaryOutputSourceOpera
             writer.close();
         }
     }
+
+    /**
+     * Writes the groups of a table and releases it, then groups and writes
+     * the runs of its spilled partitions.
+     */
+    private void write(GroupingHashTable table) throws Exception {
+        table.write(writer);
+        List<RunFileReader> runs = table.closeRuns();
+        table.close();
+        if (!runs.isEmpty() && table.getLevel() + 1 >= MAX_LEVELS) {
+            throw new HyracksDataException("The hash group-by could not fit a spilled partition in memory after "
+                    + (table.getLevel() + 1) + " levels of partitioning.");
+        }
+        for (RunFileReader run : runs) {
+            if (runFrame == null) {
+                runFrame = ctx.allocateFrame();
+            }
+            GroupingHashTable runTable = table.createRunTable();
+            runTable.insert(run, runFrame);
+            write(runTable);
+        }
+    }
 }
\ No newline at end of file
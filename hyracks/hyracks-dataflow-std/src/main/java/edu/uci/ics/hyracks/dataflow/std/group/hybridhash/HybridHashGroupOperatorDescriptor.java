@@ -0,0 +1,104 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.hyracks.dataflow.std.group.hybridhash;
+
+import edu.uci.ics.hyracks.api.context.IHyracksTaskContext;
+import edu.uci.ics.hyracks.api.dataflow.IOperatorNodePushable;
+import edu.uci.ics.hyracks.api.dataflow.value.IBinaryComparatorFactory;
+import edu.uci.ics.hyracks.api.dataflow.value.IBinaryHashFunctionFamily;
+import edu.uci.ics.hyracks.api.dataflow.value.IRecordDescriptorProvider;
+import edu.uci.ics.hyracks.api.dataflow.value.RecordDescriptor;
+import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
+import edu.uci.ics.hyracks.api.job.IOperatorDescriptorRegistry;
+import edu.uci.ics.hyracks.dataflow.std.base.AbstractSingleActivityOperatorDescriptor;
+import edu.uci.ics.hyracks.dataflow.std.group.IAggregatorDescriptorFactory;
+
+/**
+ * A hash group-by that spills by hash partition instead of sorting runs.
+ * A global group-by writes the final results. The groups that do not fit in memory are spilled partition by
+ * partition and grouped again, with the merger, at the next level of partitioning.
+ * A partial group-by writes partial results for a global group-by downstream. It never spills: a full table is
+ * written out and emptied. When a full table holds almost as many groups as it took input tuples, aggregating does
+ * not reduce the data, and the next input tuples are passed through (as partial results of their own) for a while.
+ */
+public class HybridHashGroupOperatorDescriptor extends AbstractSingleActivityOperatorDescriptor {
+    private static final long serialVersionUID = 1L;
+
+    private static final double DEFAULT_MAX_GROUP_RATIO = 0.8;
+
+    private final int[] keyFields;
+    private final int framesLimit;
+    private final int tableSize;
+    private final IBinaryComparatorFactory[] comparatorFactories;
+    private final IBinaryHashFunctionFamily[] hashFunctionFamilies;
+    private final IAggregatorDescriptorFactory aggregatorFactory;
+    private final IAggregatorDescriptorFactory mergerFactory;
+    private final boolean isPartial;
+    private double maxGroupRatio = DEFAULT_MAX_GROUP_RATIO;
+
+    /**
+     * @param mergerFactory
+     *            the aggregator of the partial results of spilled partitions; unused by a partial group-by
+     * @param isPartial
+     *            whether the group-by writes partial results, and may pass its input through
+     */
+    public HybridHashGroupOperatorDescriptor(IOperatorDescriptorRegistry spec, int[] keyFields, int framesLimit,
+            int tableSize, IBinaryComparatorFactory[] comparatorFactories,
+            IBinaryHashFunctionFamily[] hashFunctionFamilies, IAggregatorDescriptorFactory aggregatorFactory,
+            IAggregatorDescriptorFactory mergerFactory, RecordDescriptor recordDescriptor, boolean isPartial) {
+        super(spec, 1, 1);
+        int minFramesLimit = isPartial ? 4 : 6;
+        if (framesLimit < minFramesLimit) {
+            /**
+             * 1 frame for output, 1 for staging aggregate states, and 2 for
+             * the groups; a global group-by needs 2 frames for each of its
+             * (at least) 2 partitions.
+             */
+            throw new IllegalStateException("frame limit should at least be " + minFramesLimit + ", but it is "
+                    + framesLimit + "!");
+        }
+        this.keyFields = keyFields;
+        this.framesLimit = framesLimit;
+        this.tableSize = tableSize;
+        this.comparatorFactories = comparatorFactories;
+        this.hashFunctionFamilies = hashFunctionFamilies;
+        this.aggregatorFactory = aggregatorFactory;
+        this.mergerFactory = mergerFactory;
+        this.isPartial = isPartial;
+        recordDescriptors[0] = recordDescriptor;
+    }
+
+    @Override
+    public IOperatorNodePushable createPushRuntime(final IHyracksTaskContext ctx,
+            final IRecordDescriptorProvider recordDescProvider, int partition, int nPartitions)
+            throws HyracksDataException {
+        return new HybridHashGroupOperatorNodePushable(ctx, keyFields, framesLimit, tableSize, comparatorFactories,
+                hashFunctionFamilies, aggregatorFactory, mergerFactory,
+                recordDescProvider.getInputRecordDescriptor(getActivityId(), 0), recordDescriptors[0], isPartial,
+                maxGroupRatio);
+    }
+
+    /**
+     * Sets the ratio of groups to input tuples of a full table above which a partial group-by passes its input
+     * through. 1 disables pass-through. The default is 0.8.
+     */
+    public void setMaxGroupRatio(double maxGroupRatio) {
+        this.maxGroupRatio = maxGroupRatio;
+    }
+
+    public boolean isPartial() {
+        return isPartial;
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.hyracks.dataflow.std.group.hybridhash;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.logging.Logger;
+
+import edu.uci.ics.hyracks.api.context.IHyracksTaskContext;
+import edu.uci.ics.hyracks.api.dataflow.value.IBinaryComparator;
+import edu.uci.ics.hyracks.api.dataflow.value.IBinaryComparatorFactory;
+import edu.uci.ics.hyracks.api.dataflow.value.IBinaryHashFunctionFamily;
+import edu.uci.ics.hyracks.api.dataflow.value.RecordDescriptor;
+import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
+import edu.uci.ics.hyracks.dataflow.common.comm.io.FrameTupleAccessor;
+import edu.uci.ics.hyracks.dataflow.common.data.partition.FieldHashPartitionComputerFamily;
+import edu.uci.ics.hyracks.dataflow.common.io.RunFileReader;
+import edu.uci.ics.hyracks.dataflow.std.base.AbstractUnaryInputUnaryOutputOperatorNodePushable;
+import edu.uci.ics.hyracks.dataflow.std.group.IAggregatorDescriptorFactory;
+
+class HybridHashGroupOperatorNodePushable extends AbstractUnaryInputUnaryOutputOperatorNodePushable {
+    /**
+     * Input tuples passed through before a partial group-by aggregates again.
+     */
+    private static final int PASS_THROUGH_TUPLES = 1 << 17;
+
+    /**
+     * Levels of partitioning after which a spilled partition is given up on.
+     */
+    private static final int MAX_LEVELS = 16;
+
+    private static final Logger LOGGER = Logger.getLogger(HybridHashGroupOperatorNodePushable.class.getName());
+
+    private final IHyracksTaskContext ctx;
+    private final int[] keyFields;
+    private final int[] storedKeys;
+    private final int framesLimit;
+    private final int tableSize;
+    private final IBinaryComparatorFactory[] comparatorFactories;
+    private final IBinaryHashFunctionFamily[] hashFunctionFamilies;
+    private final IAggregatorDescriptorFactory aggregatorFactory;
+    private final IAggregatorDescriptorFactory mergerFactory;
+    private final RecordDescriptor inRecordDescriptor;
+    private final RecordDescriptor outRecordDescriptor;
+    private final boolean isPartial;
+    private final double maxGroupRatio;
+    private final FrameTupleAccessor accessor;
+
+    private IBinaryComparator[] comparators;
+    private HybridHashGroupTable table;
+    private int tableTuples; //Input tuples aggregated into the groups of the table
+    private int passThroughTuples;
+
+    HybridHashGroupOperatorNodePushable(IHyracksTaskContext ctx, int[] keyFields, int framesLimit, int tableSize,
+            IBinaryComparatorFactory[] comparatorFactories, IBinaryHashFunctionFamily[] hashFunctionFamilies,
+            IAggregatorDescriptorFactory aggregatorFactory, IAggregatorDescriptorFactory mergerFactory,
+            RecordDescriptor inRecordDescriptor, RecordDescriptor outRecordDescriptor, boolean isPartial,
+            double maxGroupRatio) {
+        this.ctx = ctx;
+        this.keyFields = keyFields;
+        this.storedKeys = new int[keyFields.length];
+        for (int i = 0; i < keyFields.length; ++i) {
+            storedKeys[i] = i;
+        }
+        this.framesLimit = framesLimit;
+        this.tableSize = tableSize;
+        this.comparatorFactories = comparatorFactories;
+        this.hashFunctionFamilies = hashFunctionFamilies;
+        this.aggregatorFactory = aggregatorFactory;
+        this.mergerFactory = mergerFactory;
+        this.inRecordDescriptor = inRecordDescriptor;
+        this.outRecordDescriptor = outRecordDescriptor;
+        this.isPartial = isPartial;
+        this.maxGroupRatio = maxGroupRatio;
+        this.accessor = new FrameTupleAccessor(ctx.getFrameSize(), inRecordDescriptor);
+    }
+
+    @Override
+    public void open() throws HyracksDataException {
+        comparators = new IBinaryComparator[comparatorFactories.length];
+        for (int i = 0; i < comparatorFactories.length; ++i) {
+            comparators[i] = comparatorFactories[i].createBinaryComparator();
+        }
+        table = createTable(0);
+        tableTuples = 0;
+        passThroughTuples = 0;
+        writer.open();
+    }
+
+    @Override
+    public void nextFrame(ByteBuffer buffer) throws HyracksDataException {
+        accessor.reset(buffer);
+        int tupleCount = accessor.getTupleCount();
+        if (!isPartial) {
+            table.insert(accessor);
+            return;
+        }
+        for (int i = 0; i < tupleCount; ++i) {
+            if (passThroughTuples == 0) {
+                if (table.insertResident(accessor, i)) {
+                    ++tableTuples;
+                    continue;
+                }
+                /**
+                 * The downstream group-by merges partial results, so a full
+                 * table can simply be written out. If it hardly reduced its
+                 * input, the next tuples are passed through for a while.
+                 */
+                if (table.getGroupCount() > tableTuples * maxGroupRatio) {
+                    LOGGER.fine("HybridHashGroupOperatorNodePushable aggregated " + tableTuples + " tuples into "
+                            + table.getGroupCount() + " groups and passes the next " + PASS_THROUGH_TUPLES
+                            + " through.");
+                    passThroughTuples = PASS_THROUGH_TUPLES;
+                }
+                table.flushGroups(writer, true);
+                table.reset();
+                tableTuples = 0;
+                if (passThroughTuples == 0) {
+                    if (!table.insertResident(accessor, i)) {
+                        throw new HyracksDataException("Failed to insert a new buffer into the aggregate operator!");
+                    }
+                    ++tableTuples;
+                    continue;
+                }
+            }
+            table.passThrough(accessor, i, writer);
+            --passThroughTuples;
+        }
+    }
+
+    @Override
+    public void fail() throws HyracksDataException {
+        writer.fail();
+    }
+
+    @Override
+    public void close() throws HyracksDataException {
+        try {
+            if (isPartial) {
+                table.flushGroups(writer, true);
+                table.flushOutput(writer);
+                table.close();
+            } else {
+                List<RunFileReader> runs = closeLevel(table);
+                ByteBuffer inFrame = runs.isEmpty() ? null : ctx.allocateFrame();
+                groupRuns(runs, 1, inFrame);
+            }
+        } finally {
+            table = null;
+            writer.close();
+        }
+    }
+
+    /**
+     * Writes the resident groups of a level of the global group-by and releases its memory.
+     *
+     * @return the runs of the spilled partitions of the level
+     */
+    private List<RunFileReader> closeLevel(HybridHashGroupTable levelTable) throws HyracksDataException {
+        List<RunFileReader> runs = levelTable.closeRuns();
+        levelTable.flushGroups(writer, false);
+        levelTable.flushOutput(writer);
+        levelTable.close();
+        return runs;
+    }
+
+    private void groupRuns(List<RunFileReader> runs, int level, ByteBuffer inFrame) throws HyracksDataException {
+        if (runs.isEmpty()) {
+            return;
+        }
+        if (level >= MAX_LEVELS) {
+            throw new HyracksDataException("The hash group-by could not fit a spilled partition in memory after "
+                    + level + " levels of partitioning.");
+        }
+        FrameTupleAccessor runAccessor = new FrameTupleAccessor(ctx.getFrameSize(), outRecordDescriptor);
+        for (RunFileReader run : runs) {
+            HybridHashGroupTable runTable = createTable(level);
+            run.open();
+            try {
+                while (run.nextFrame(inFrame)) {
+                    runAccessor.reset(inFrame);
+                    runTable.insert(runAccessor);
+                }
+            } finally {
+                run.close();
+            }
+            groupRuns(closeLevel(runTable), level + 1, inFrame);
+        }
+    }
+
+    /**
+     * Creates the table of a level. Level 0 aggregates the input; the later levels merge the partial results of the
+     * spilled partitions.
+     */
+    private HybridHashGroupTable createTable(int level) throws HyracksDataException {
+        int[] levelKeys = level == 0 ? keyFields : storedKeys;
+        IAggregatorDescriptorFactory levelAggregatorFactory = level == 0 ? aggregatorFactory : mergerFactory;
+        RecordDescriptor levelRecordDescriptor = level == 0 ? inRecordDescriptor : outRecordDescriptor;
+        int groupFrames = framesLimit - 2;
+        int numOfPartitions = isPartial ? 1 : Math.max(2, Math.min(groupFrames / 2, (int) Math.sqrt(groupFrames)));
+        return new HybridHashGroupTable(ctx, framesLimit, tableSize, levelKeys, comparators,
+                new FieldHashPartitionComputerFamily(levelKeys, hashFunctionFamilies).createPartitioner(level),
+                levelAggregatorFactory.createAggregator(ctx, levelRecordDescriptor, outRecordDescriptor, keyFields,
+                        storedKeys, null), outRecordDescriptor, numOfPartitions);
+    }
+}
@@ -0,0 +1,545 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.hyracks.dataflow.std.group.hybridhash;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.logging.Logger;
+
+import edu.uci.ics.hyracks.api.comm.IFrameWriter;
+import edu.uci.ics.hyracks.api.context.IHyracksTaskContext;
+import edu.uci.ics.hyracks.api.dataflow.value.IBinaryComparator;
+import edu.uci.ics.hyracks.api.dataflow.value.ITuplePartitionComputer;
+import edu.uci.ics.hyracks.api.dataflow.value.RecordDescriptor;
+import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
+import edu.uci.ics.hyracks.api.io.FileReference;
+import edu.uci.ics.hyracks.api.io.IBlockCompressor;
+import edu.uci.ics.hyracks.dataflow.common.comm.io.ArrayTupleBuilder;
+import edu.uci.ics.hyracks.dataflow.common.comm.io.FrameTupleAccessor;
+import edu.uci.ics.hyracks.dataflow.common.comm.io.FrameTupleAppender;
+import edu.uci.ics.hyracks.dataflow.common.comm.io.FrameTuplePairComparator;
+import edu.uci.ics.hyracks.dataflow.common.comm.util.FrameUtils;
+import edu.uci.ics.hyracks.dataflow.common.io.RunFileReader;
+import edu.uci.ics.hyracks.dataflow.common.io.RunFileWriter;
+import edu.uci.ics.hyracks.dataflow.std.group.AggregateState;
+import edu.uci.ics.hyracks.dataflow.std.group.IBatchAggregatorDescriptor;
+import edu.uci.ics.hyracks.dataflow.std.group.IAggregatorDescriptor;
+import edu.uci.ics.hyracks.dataflow.std.structures.ISerializableTable;
+import edu.uci.ics.hyracks.dataflow.std.structures.SerializableHashTable;
+import edu.uci.ics.hyracks.dataflow.std.structures.TuplePointer;
+
+/**
+ * The groups of one level of a hybrid hash group-by. The groups are split into partitions by the hash table entry
+ * they fall into, and the aggregate states of each partition are kept in their own chain of frames. When the frames
+ * run out, the largest resident partition is written to a run file as partial results and every later tuple of
+ * that partition is appended to the run as a partial result of its own. The runs are grouped again, one by one, at
+ * the next level with a different hash function.
+ * A table built with a single partition never spills; {@link #insertResident(FrameTupleAccessor, int)} reports a
+ * full table instead, which is what a partial group-by needs.
+ */
+public class HybridHashGroupTable {
+    private static final int END_OF_CHAIN = -1;
+
+    private static final Logger LOGGER = Logger.getLogger(HybridHashGroupTable.class.getName());
+
+    private final IHyracksTaskContext ctx;
+    private final IBlockCompressor spillCompressor;
+
+    private final int[] keyFields;
+    private final int[] storedKeys;
+    private final FrameTuplePairComparator ftpc;
+    private final ITuplePartitionComputer tpc;
+    private final int tableSize;
+    private final ISerializableTable table;
+    private final TuplePointer storedTuplePointer = new TuplePointer();
+
+    private final IAggregatorDescriptor aggregator;
+    private final AggregateState aggregateState;
+    private final IBatchAggregatorDescriptor batchAggregator;
+
+    private int[] batchTuples = new int[0]; //Input tuples of existing groups, with the binary states of the groups
+    private byte[][] batchStates = new byte[0][];
+    private int[] batchStateOffsets = new int[0];
+
+    private final ByteBuffer[] frames; //Frames for the aggregate states and for the tails of the runs
+    private final int[] nextFrame; //Next frame in the chain of a partition or of the free frames
+    private int allocatedFrames;
+    private int freeFrame; //Head of the chain of released frames
+
+    private final int numOfPartitions;
+    private final int[] partitionFrame; //Current (last) frame of each partition
+    private final int[] partitionFrameCount;
+    private final int[] partitionGroupCount;
+    private final BitSet spilled;
+    private final RunFileWriter[] runWriters;
+    private int groupCount;
+
+    private final FrameTupleAccessor stateAccessor;
+    private final FrameTupleAppender stateAppender;
+    private final ArrayTupleBuilder stateTupleBuilder;
+    private final ArrayTupleBuilder outputTupleBuilder;
+
+    private final ByteBuffer scratchFrame; //Stages one aggregate state or the partial results of a spilling partition
+    private final FrameTupleAccessor scratchAccessor;
+    private final FrameTupleAppender scratchAppender;
+
+    private final ByteBuffer outputFrame;
+    private final FrameTupleAppender outputAppender;
+
+    /**
+     * @param framesLimit
+     *            the frames of the table, including one output frame and one scratch frame
+     * @param keyFields
+     *            the group fields of the input tuples
+     * @param tpc
+     *            the hash of the group fields; each level of the group-by needs a different one
+     * @param aggregator
+     *            the aggregator of the input tuples; the partial results it writes are the input of the next level
+     * @param outRecordDescriptor
+     *            the record descriptor of the aggregate states and of the partial results
+     * @param numOfPartitions
+     *            the number of partitions the table can spill, at most half of the frames of the groups
+     */
+    public HybridHashGroupTable(IHyracksTaskContext ctx, int framesLimit, int tableSize, int[] keyFields,
+            IBinaryComparator[] comparators, ITuplePartitionComputer tpc, IAggregatorDescriptor aggregator,
+            RecordDescriptor outRecordDescriptor, int numOfPartitions) throws HyracksDataException {
+        this.ctx = ctx;
+        this.spillCompressor = RunFileWriter.createSpillCompressor(ctx);
+        this.keyFields = keyFields;
+        this.storedKeys = new int[keyFields.length];
+        for (int i = 0; i < keyFields.length; ++i) {
+            storedKeys[i] = i;
+        }
+        this.ftpc = new FrameTuplePairComparator(keyFields, storedKeys, comparators);
+        this.tpc = tpc;
+        this.tableSize = tableSize;
+        this.table = new SerializableHashTable(tableSize, ctx);
+        this.aggregator = aggregator;
+        this.aggregateState = aggregator.createAggregateStates();
+        this.batchAggregator = aggregator instanceof IBatchAggregatorDescriptor ? (IBatchAggregatorDescriptor) aggregator
+                : null;
+
+        int groupFrames = framesLimit - 2;
+        if (numOfPartitions < 1 || numOfPartitions * 2 > Math.max(groupFrames, 2)) {
+            throw new HyracksDataException("Cannot split " + groupFrames + " frames into " + numOfPartitions
+                    + " partitions of the hash group-by.");
+        }
+        this.frames = new ByteBuffer[groupFrames];
+        this.nextFrame = new int[groupFrames];
+        this.freeFrame = END_OF_CHAIN;
+
+        this.numOfPartitions = numOfPartitions;
+        this.partitionFrame = new int[numOfPartitions];
+        this.partitionFrameCount = new int[numOfPartitions];
+        this.partitionGroupCount = new int[numOfPartitions];
+        this.spilled = new BitSet(numOfPartitions);
+        this.runWriters = new RunFileWriter[numOfPartitions];
+        for (int i = 0; i < numOfPartitions; ++i) {
+            partitionFrame[i] = END_OF_CHAIN;
+        }
+
+        int frameSize = ctx.getFrameSize();
+        this.stateAccessor = new FrameTupleAccessor(frameSize, outRecordDescriptor);
+        this.stateAppender = new FrameTupleAppender(frameSize);
+        int nFields = outRecordDescriptor.getFields().length;
+        this.stateTupleBuilder = new ArrayTupleBuilder(keyFields.length < nFields ? nFields : nFields + 1);
+        this.outputTupleBuilder = new ArrayTupleBuilder(nFields);
+
+        this.scratchFrame = ctx.allocateFrame();
+        this.scratchAccessor = new FrameTupleAccessor(frameSize, outRecordDescriptor);
+        this.scratchAppender = new FrameTupleAppender(frameSize);
+
+        this.outputFrame = ctx.allocateFrame();
+        this.outputAppender = new FrameTupleAppender(frameSize);
+        outputAppender.reset(outputFrame, true);
+    }
+
+    /**
+     * Aggregates the tuples of a frame into their groups, spilling partitions when the frames run out. With a batch
+     * aggregator, the tuples of existing groups are aggregated together, up to each tuple that starts a new group.
+     */
+    public void insert(FrameTupleAccessor accessor) throws HyracksDataException {
+        int tupleCount = accessor.getTupleCount();
+        if (batchAggregator == null) {
+            for (int i = 0; i < tupleCount; ++i) {
+                insert(accessor, i);
+            }
+            return;
+        }
+        if (batchTuples.length < tupleCount) {
+            batchTuples = new int[tupleCount];
+            batchStates = new byte[tupleCount][];
+            batchStateOffsets = new int[tupleCount];
+        }
+        int batchSize = 0;
+        for (int i = 0; i < tupleCount; ++i) {
+            int entry = tpc.partition(accessor, i, tableSize);
+            int pid = entry % numOfPartitions;
+            if (!spilled.get(pid) && findGroup(entry, accessor, i)) {
+                int stIndex = storedTuplePointer.tupleIndex;
+                batchTuples[batchSize] = i;
+                batchStates[batchSize] = stateAccessor.getBuffer().array();
+                batchStateOffsets[batchSize] = stateAccessor.getTupleStartOffset(stIndex)
+                        + stateAccessor.getFieldSlotsLength()
+                        + stateAccessor.getFieldStartOffset(stIndex, storedKeys.length);
+                ++batchSize;
+                continue;
+            }
+            /**
+             * A new group may spill partitions, which moves the states of
+             * their groups, so the batch is aggregated first.
+             */
+            batchAggregator.aggregate(accessor, batchTuples, batchStates, batchStateOffsets, batchSize);
+            batchSize = 0;
+            insertNewGroup(entry, pid, accessor, i);
+        }
+        batchAggregator.aggregate(accessor, batchTuples, batchStates, batchStateOffsets, batchSize);
+    }
+
+    /**
+     * Aggregates a tuple into its group, spilling partitions when the frames run out.
+     */
+    public void insert(FrameTupleAccessor accessor, int tIndex) throws HyracksDataException {
+        int entry = tpc.partition(accessor, tIndex, tableSize);
+        int pid = entry % numOfPartitions;
+        if (!spilled.get(pid) && findGroup(entry, accessor, tIndex)) {
+            aggregator.aggregate(accessor, tIndex, stateAccessor, storedTuplePointer.tupleIndex, aggregateState);
+            return;
+        }
+        insertNewGroup(entry, pid, accessor, tIndex);
+    }
+
+    private void insertNewGroup(int entry, int pid, FrameTupleAccessor accessor, int tIndex)
+            throws HyracksDataException {
+        if (!spilled.get(pid)) {
+            initState(accessor, tIndex);
+            while (!appendState(pid)) {
+                int pidToSpill = selectPartitionToSpill();
+                if (pidToSpill < 0) {
+                    throw new HyracksDataException("Not enough memory for the hash group-by.");
+                }
+                spillPartition(pidToSpill);
+                if (pidToSpill == pid) {
+                    break;
+                }
+            }
+            if (!spilled.get(pid)) {
+                addGroup(entry, pid);
+                return;
+            }
+        }
+        appendToRun(pid, accessor, tIndex);
+    }
+
+    /**
+     * Aggregates a tuple into its group without spilling.
+     *
+     * @return false if the tuple starts a new group and the frames are full
+     */
+    public boolean insertResident(FrameTupleAccessor accessor, int tIndex) throws HyracksDataException {
+        int entry = tpc.partition(accessor, tIndex, tableSize);
+        if (findGroup(entry, accessor, tIndex)) {
+            aggregator.aggregate(accessor, tIndex, stateAccessor, storedTuplePointer.tupleIndex, aggregateState);
+            return true;
+        }
+        int pid = entry % numOfPartitions;
+        initState(accessor, tIndex);
+        if (!appendState(pid)) {
+            return false;
+        }
+        addGroup(entry, pid);
+        return true;
+    }
+
+    /**
+     * Writes the partial result of a single tuple, as if it were a group of its own.
+     */
+    public void passThrough(FrameTupleAccessor accessor, int tIndex, IFrameWriter writer)
+            throws HyracksDataException {
+        buildPartialResult(accessor, tIndex);
+        appendOutput(writer);
+    }
+
+    /**
+     * Writes the results of the resident groups. The last output frame is kept until
+     * {@link #flushOutput(IFrameWriter)}.
+     */
+    public void flushGroups(IFrameWriter writer, boolean isPartial) throws HyracksDataException {
+        for (int pid = 0; pid < numOfPartitions; ++pid) {
+            if (spilled.get(pid)) {
+                continue;
+            }
+            for (int f = partitionFrame[pid]; f != END_OF_CHAIN; f = nextFrame[f]) {
+                stateAccessor.reset(frames[f]);
+                int tupleCount = stateAccessor.getTupleCount();
+                for (int i = 0; i < tupleCount; ++i) {
+                    buildResult(stateAccessor, i, isPartial);
+                    appendOutput(writer);
+                }
+            }
+        }
+    }
+
+    public void flushOutput(IFrameWriter writer) throws HyracksDataException {
+        if (outputAppender.getTupleCount() > 0) {
+            FrameUtils.flushFrame(outputFrame, writer);
+            outputAppender.reset(outputFrame, true);
+        }
+    }
+
+    /**
+     * Finishes the runs of the spilled partitions.
+     *
+     * @return the readers of the runs
+     */
+    public List<RunFileReader> closeRuns() throws HyracksDataException {
+        List<RunFileReader> runs = new ArrayList<RunFileReader>();
+        for (int pid = spilled.nextSetBit(0); pid >= 0; pid = spilled.nextSetBit(pid + 1)) {
+            ByteBuffer tail = frames[partitionFrame[pid]];
+            scratchAccessor.reset(tail);
+            if (scratchAccessor.getTupleCount() > 0) {
+                FrameUtils.flushFrame(tail, runWriters[pid]);
+            }
+            runWriters[pid].close();
+            runs.add(runWriters[pid].createReader());
+        }
+        return runs;
+    }
+
+    /**
+     * Drops all groups, keeping the frames for the next ones.
+     */
+    public void reset() {
+        table.reset();
+        aggregator.reset();
+        freeFrame = END_OF_CHAIN;
+        for (int f = allocatedFrames - 1; f >= 0; --f) {
+            nextFrame[f] = freeFrame;
+            freeFrame = f;
+        }
+        for (int pid = 0; pid < numOfPartitions; ++pid) {
+            partitionFrame[pid] = END_OF_CHAIN;
+            partitionFrameCount[pid] = 0;
+            partitionGroupCount[pid] = 0;
+        }
+        groupCount = 0;
+    }
+
+    public void close() {
+        table.close();
+        for (int f = 0; f < allocatedFrames; ++f) {
+            frames[f] = null;
+        }
+        allocatedFrames = 0;
+        freeFrame = END_OF_CHAIN;
+        aggregateState.close();
+        aggregator.close();
+    }
+
+    public int getGroupCount() {
+        return groupCount;
+    }
+
+    public int getSpilledPartitionCount() {
+        return spilled.cardinality();
+    }
+
+    private boolean findGroup(int entry, FrameTupleAccessor accessor, int tIndex) throws HyracksDataException {
+        int offset = 0;
+        while (true) {
+            table.getTuplePointer(entry, offset++, storedTuplePointer);
+            if (storedTuplePointer.frameIndex < 0) {
+                return false;
+            }
+            stateAccessor.reset(frames[storedTuplePointer.frameIndex]);
+            if (ftpc.compare(accessor, tIndex, stateAccessor, storedTuplePointer.tupleIndex) == 0) {
+                return true;
+            }
+        }
+    }
+
+    private void initState(FrameTupleAccessor accessor, int tIndex) throws HyracksDataException {
+        stateTupleBuilder.reset();
+        for (int k = 0; k < keyFields.length; ++k) {
+            stateTupleBuilder.addField(accessor, tIndex, keyFields[k]);
+        }
+        aggregator.init(stateTupleBuilder, accessor, tIndex, aggregateState);
+    }
+
+    /**
+     * Appends the state in the tuple builder to the frames of a partition and points the stored tuple pointer at it.
+     */
+    private boolean appendState(int pid) throws HyracksDataException {
+        int f = partitionFrame[pid];
+        if (f != END_OF_CHAIN) {
+            stateAppender.reset(frames[f], false);
+            if (append(stateAppender, stateTupleBuilder)) {
+                storedTuplePointer.frameIndex = f;
+                storedTuplePointer.tupleIndex = stateAppender.getTupleCount() - 1;
+                return true;
+            }
+        }
+        int newFrame = allocateFrame();
+        if (newFrame == END_OF_CHAIN) {
+            return false;
+        }
+        nextFrame[newFrame] = f;
+        partitionFrame[pid] = newFrame;
+        partitionFrameCount[pid]++;
+        stateAppender.reset(frames[newFrame], true);
+        if (!append(stateAppender, stateTupleBuilder)) {
+            throw new HyracksDataException("Cannot init the aggregate state of a group in a frame.");
+        }
+        storedTuplePointer.frameIndex = newFrame;
+        storedTuplePointer.tupleIndex = 0;
+        return true;
+    }
+
+    private void addGroup(int entry, int pid) throws HyracksDataException {
+        table.insert(entry, storedTuplePointer);
+        partitionGroupCount[pid]++;
+        groupCount++;
+    }
+
+    private int allocateFrame() throws HyracksDataException {
+        int f = freeFrame;
+        if (f != END_OF_CHAIN) {
+            freeFrame = nextFrame[f];
+        } else if (allocatedFrames < frames.length) {
+            f = allocatedFrames++;
+            frames[f] = ctx.allocateFrame();
+        }
+        return f;
+    }
+
+    private int selectPartitionToSpill() {
+        int maxFrames = 0;
+        int pidToSpill = -1;
+        for (int pid = 0; pid < numOfPartitions; ++pid) {
+            if (!spilled.get(pid) && partitionFrameCount[pid] > maxFrames) {
+                maxFrames = partitionFrameCount[pid];
+                pidToSpill = pid;
+            }
+        }
+        return pidToSpill;
+    }
+
+    /**
+     * Writes the groups of a partition to its run and releases all of its frames but one, which collects the partial
+     * results of the later tuples of the partition.
+     */
+    private void spillPartition(int pid) throws HyracksDataException {
+        LOGGER.fine("HybridHashGroupTable is spilling partition " + pid + " with " + partitionGroupCount[pid]
+                + " groups in " + partitionFrameCount[pid] + " frames.");
+        RunFileWriter writer = createRunWriter(pid);
+        scratchAppender.reset(scratchFrame, true);
+        for (int f = partitionFrame[pid]; f != END_OF_CHAIN; f = nextFrame[f]) {
+            stateAccessor.reset(frames[f]);
+            int tupleCount = stateAccessor.getTupleCount();
+            for (int i = 0; i < tupleCount; ++i) {
+                buildResult(stateAccessor, i, true);
+                if (!append(scratchAppender, outputTupleBuilder)) {
+                    FrameUtils.flushFrame(scratchFrame, writer);
+                    scratchAppender.reset(scratchFrame, true);
+                    if (!append(scratchAppender, outputTupleBuilder)) {
+                        throw new HyracksDataException("The output item is too large to be fit into a frame.");
+                    }
+                }
+            }
+        }
+        if (scratchAppender.getTupleCount() > 0) {
+            FrameUtils.flushFrame(scratchFrame, writer);
+        }
+
+        int tail = partitionFrame[pid];
+        int f = nextFrame[tail];
+        while (f != END_OF_CHAIN) {
+            int next = nextFrame[f];
+            nextFrame[f] = freeFrame;
+            freeFrame = f;
+            f = next;
+        }
+        nextFrame[tail] = END_OF_CHAIN;
+        stateAppender.reset(frames[tail], true);
+        partitionFrameCount[pid] = 1;
+        groupCount -= partitionGroupCount[pid];
+        partitionGroupCount[pid] = 0;
+        spilled.set(pid);
+    }
+
+    private RunFileWriter createRunWriter(int pid) throws HyracksDataException {
+        FileReference file = ctx.getJobletContext().createManagedWorkspaceFile(
+                HybridHashGroupOperatorDescriptor.class.getSimpleName());
+        RunFileWriter writer = new RunFileWriter(file, ctx.getIOManager(), ctx.getFrameSize(), spillCompressor);
+        writer.open();
+        runWriters[pid] = writer;
+        return writer;
+    }
+
+    private void appendToRun(int pid, FrameTupleAccessor accessor, int tIndex) throws HyracksDataException {
+        buildPartialResult(accessor, tIndex);
+        ByteBuffer tail = frames[partitionFrame[pid]];
+        stateAppender.reset(tail, false);
+        if (!append(stateAppender, outputTupleBuilder)) {
+            FrameUtils.flushFrame(tail, runWriters[pid]);
+            stateAppender.reset(tail, true);
+            if (!append(stateAppender, outputTupleBuilder)) {
+                throw new HyracksDataException("The output item is too large to be fit into a frame.");
+            }
+        }
+    }
+
+    /**
+     * Builds the partial result of a single tuple in the output tuple builder, staging its state in the scratch frame.
+     */
+    private void buildPartialResult(FrameTupleAccessor accessor, int tIndex) throws HyracksDataException {
+        initState(accessor, tIndex);
+        scratchAppender.reset(scratchFrame, true);
+        if (!append(scratchAppender, stateTupleBuilder)) {
+            throw new HyracksDataException("Cannot init the aggregate state of a group in a frame.");
+        }
+        scratchAccessor.reset(scratchFrame);
+        buildResult(scratchAccessor, 0, true);
+    }
+
+    private void buildResult(FrameTupleAccessor accessor, int tIndex, boolean isPartial) throws HyracksDataException {
+        outputTupleBuilder.reset();
+        for (int k = 0; k < storedKeys.length; ++k) {
+            outputTupleBuilder.addField(accessor, tIndex, storedKeys[k]);
+        }
+        if (isPartial) {
+            aggregator.outputPartialResult(outputTupleBuilder, accessor, tIndex, aggregateState);
+        } else {
+            aggregator.outputFinalResult(outputTupleBuilder, accessor, tIndex, aggregateState);
+        }
+    }
+
+    private void appendOutput(IFrameWriter writer) throws HyracksDataException {
+        if (!append(outputAppender, outputTupleBuilder)) {
+            FrameUtils.flushFrame(outputFrame, writer);
+            outputAppender.reset(outputFrame, true);
+            if (!append(outputAppender, outputTupleBuilder)) {
+                throw new HyracksDataException("The output item is too large to be fit into a frame.");
+            }
+        }
+    }
+
+    private static boolean append(FrameTupleAppender appender, ArrayTupleBuilder tupleBuilder) {
+        return appender.appendSkipEmptyField(tupleBuilder.getFieldEndOffsets(), tupleBuilder.getByteArray(), 0,
+                tupleBuilder.getSize());
+    }
+}
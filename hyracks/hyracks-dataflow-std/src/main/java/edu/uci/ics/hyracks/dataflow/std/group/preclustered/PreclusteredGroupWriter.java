@@ -31,11 +31,13 @@ import edu.uci.ics.hyracks.dataflow.std.group.IAggregatorDescriptor;
 import edu.uci.ics.hyracks.dataflow.std.group.IAggregatorDescriptorFactory;
 
 public class PreclusteredGroupWriter implements IFrameWriter {
+    private final IHyracksTaskContext ctx;
     private final int[] groupFields;
     private final IBinaryComparator[] comparators;
     private final IAggregatorDescriptor aggregator;
     private final AggregateState aggregateState;
-    private final ByteBuffer copyFrame;
+    private final ByteBuffer regularCopyFrame;
+    private ByteBuffer copyFrame;
     private final FrameTupleAccessor inFrameAccessor;
     private final FrameTupleAccessor copyFrameAccessor;
 
@@ -57,12 +59,14 @@ public class PreclusteredGroupWriter implements IFrameWriter {
     public PreclusteredGroupWriter(IHyracksTaskContext ctx, int[] groupFields, IBinaryComparator[] comparators,
             IAggregatorDescriptorFactory aggregatorFactory, RecordDescriptor inRecordDesc,
             RecordDescriptor outRecordDesc, IFrameWriter writer) throws HyracksDataException {
+        this.ctx = ctx;
         this.groupFields = groupFields;
         this.comparators = comparators;
         this.aggregator = aggregatorFactory.createAggregator(ctx, inRecordDesc, outRecordDesc, groupFields,
                 groupFields, writer);
         this.aggregateState = aggregator.createAggregateStates();
-        copyFrame = ctx.allocateFrame();
+        regularCopyFrame = ctx.allocateFrame();
+        copyFrame = regularCopyFrame;
         inFrameAccessor = new FrameTupleAccessor(ctx.getFrameSize(), inRecordDesc);
         copyFrameAccessor = new FrameTupleAccessor(ctx.getFrameSize(), inRecordDesc);
         copyFrameAccessor.reset(copyFrame);
@@ -70,7 +74,7 @@ public class PreclusteredGroupWriter implements IFrameWriter {
         ByteBuffer outFrame = ctx.allocateFrame();
         FrameTupleAppender appender = new FrameTupleAppender(ctx.getFrameSize());
         appender.reset(outFrame, true);
-        appenderWrapper = new FrameTupleAppenderWrapper(appender, outFrame, writer);
+        appenderWrapper = new FrameTupleAppenderWrapper(ctx, appender, outFrame, writer);
 
         tupleBuilder = new ArrayTupleBuilder(outRecordDesc.getFields().length);
     }
@@ -105,9 +109,28 @@ public class PreclusteredGroupWriter implements IFrameWriter {
 
             }
         }
+        if (buffer.capacity() != copyFrame.capacity()) {
+            resizeCopyFrame(buffer.capacity());
+        }
         FrameUtils.copy(buffer, copyFrame);
     }
 
+    /**
+     * The copy frame keeps the last frame around for its last tuple, so it follows the size of large input frames.
+     */
+    private void resizeCopyFrame(int capacity) throws HyracksDataException {
+        releaseLargeCopyFrame();
+        copyFrame = capacity == regularCopyFrame.capacity() ? regularCopyFrame : ctx.allocateFrame(capacity);
+        copyFrameAccessor.reset(copyFrame);
+    }
+
+    private void releaseLargeCopyFrame() {
+        if (copyFrame != regularCopyFrame) {
+            ctx.deallocateFrames(copyFrame.capacity() / ctx.getFrameSize());
+            copyFrame = regularCopyFrame;
+        }
+    }
+
     private void switchGroupIfRequired(FrameTupleAccessor prevTupleAccessor, int prevTupleIndex,
             FrameTupleAccessor currTupleAccessor, int currTupleIndex) throws HyracksDataException {
         if (!sameGroup(prevTupleAccessor, prevTupleIndex, currTupleAccessor, currTupleIndex)) {
@@ -170,6 +193,7 @@ public class PreclusteredGroupWriter implements IFrameWriter {
         }
         aggregator.close();
         aggregateState.close();
+        releaseLargeCopyFrame();
         appenderWrapper.close();
     }
 }
\ No newline at end of file
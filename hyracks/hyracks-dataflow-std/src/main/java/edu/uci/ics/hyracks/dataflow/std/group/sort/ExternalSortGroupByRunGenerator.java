@@ -27,6 +27,7 @@ import edu.uci.ics.hyracks.api.dataflow.value.INormalizedKeyComputerFactory;
 import edu.uci.ics.hyracks.api.dataflow.value.RecordDescriptor;
 import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
 import edu.uci.ics.hyracks.api.io.FileReference;
+import edu.uci.ics.hyracks.api.io.IBlockCompressor;
 import edu.uci.ics.hyracks.dataflow.common.io.RunFileWriter;
 import edu.uci.ics.hyracks.dataflow.std.group.IAggregatorDescriptorFactory;
 import edu.uci.ics.hyracks.dataflow.std.group.preclustered.PreclusteredGroupWriter;
@@ -42,6 +43,7 @@ import edu.uci.ics.hyracks.dataflow.std.sort.IFrameSorter;
  */
 public class ExternalSortGroupByRunGenerator implements IFrameWriter {
     private final IHyracksTaskContext ctx;
+    private final IBlockCompressor spillCompressor;
     private final IFrameSorter frameSorter;
     private final List<IFrameReader> runs;
     private final int maxSortFrames;
@@ -57,6 +59,7 @@ public class ExternalSortGroupByRunGenerator implements IFrameWriter {
             IBinaryComparatorFactory[] comparatorFactories, IAggregatorDescriptorFactory aggregatorFactory,
             RecordDescriptor outRecordDesc, Algorithm alg) throws HyracksDataException {
         this.ctx = ctx;
+        this.spillCompressor = RunFileWriter.createSpillCompressor(ctx);
         if (alg == Algorithm.MERGE_SORT) {
             frameSorter = new FrameSorterMergeSort(ctx, sortFields, firstKeyNormalizerFactory, comparatorFactories,
                     recordDesc);
@@ -81,7 +84,8 @@ public class ExternalSortGroupByRunGenerator implements IFrameWriter {
 
     @Override
     public void nextFrame(ByteBuffer buffer) throws HyracksDataException {
-        if (frameSorter.getFrameCount() >= maxSortFrames) {
+        int frameCount = frameSorter.getFrameCount();
+        if (frameCount > 0 && frameCount + buffer.capacity() / ctx.getFrameSize() > maxSortFrames) {
             flushFramesToRun();
         }
         frameSorter.insertFrame(buffer);
@@ -102,7 +106,7 @@ public class ExternalSortGroupByRunGenerator implements IFrameWriter {
         frameSorter.sortFrames();
         FileReference file = ctx.getJobletContext().createManagedWorkspaceFile(
                 ExternalSortGroupByRunGenerator.class.getSimpleName());
-        RunFileWriter writer = new RunFileWriter(file, ctx.getIOManager());
+        RunFileWriter writer = new RunFileWriter(file, ctx.getIOManager(), ctx.getFrameSize(), spillCompressor);
 
         //create group-by comparators
         IBinaryComparator[] comparators = new IBinaryComparator[Math
@@ -27,7 +27,9 @@ import edu.uci.ics.hyracks.api.dataflow.value.INormalizedKeyComputer;
 import edu.uci.ics.hyracks.api.dataflow.value.RecordDescriptor;
 import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
 import edu.uci.ics.hyracks.api.io.FileReference;
+import edu.uci.ics.hyracks.api.io.IBlockCompressor;
 import edu.uci.ics.hyracks.dataflow.common.comm.io.FrameTupleAppender;
+import edu.uci.ics.hyracks.dataflow.common.comm.io.LargeFrameReader;
 import edu.uci.ics.hyracks.dataflow.common.comm.util.FrameUtils;
 import edu.uci.ics.hyracks.dataflow.common.io.RunFileReader;
 import edu.uci.ics.hyracks.dataflow.common.io.RunFileWriter;
@@ -44,6 +46,7 @@ import edu.uci.ics.hyracks.dataflow.std.sort.RunMergingFrameReader;
 public class ExternalSortGroupByRunMerger {
 
     private final IHyracksTaskContext ctx;
+    private final IBlockCompressor spillCompressor;
     private final List<IFrameReader> runs;
     private final RecordDescriptor inputRecordDesc;
     private final RecordDescriptor partialAggRecordDesc;
@@ -76,6 +79,7 @@ public class ExternalSortGroupByRunMerger {
             IAggregatorDescriptorFactory partialAggregatorFactory, IAggregatorDescriptorFactory aggregatorFactory,
             boolean localStage) {
         this.ctx = ctx;
+        this.spillCompressor = RunFileWriter.createSpillCompressor(ctx);
         this.frameSorter = frameSorter;
         this.runs = new LinkedList<IFrameReader>(runs);
         this.inputRecordDesc = inRecordDesc;
@@ -143,7 +147,8 @@ public class ExternalSortGroupByRunMerger {
                                 runs.size() - maxMergeWidth + 1);
                         FileReference newRun = ctx.createManagedWorkspaceFile(ExternalSortGroupByRunMerger.class
                                 .getSimpleName());
-                        IFrameWriter mergeResultWriter = new RunFileWriter(newRun, ctx.getIOManager());
+                        IFrameWriter mergeResultWriter = new RunFileWriter(newRun, ctx.getIOManager(),
+                                ctx.getFrameSize(), spillCompressor);
 
                         aggregatorFactory = localSide ? mergeAggregatorFactory : partialAggregatorFactory;
                         pgw = new PreclusteredGroupWriter(ctx, mergeGroupFields, groupByComparators, aggregatorFactory,
@@ -179,12 +184,13 @@ public class ExternalSortGroupByRunMerger {
     }
 
     private void merge(IFrameWriter mergeResultWriter, IFrameReader[] runCursors) throws HyracksDataException {
-        RunMergingFrameReader merger = new RunMergingFrameReader(ctx, runCursors, inFrames, mergeSortFields,
-                comparators, firstKeyNkc, partialAggRecordDesc);
+        LargeFrameReader merger = new LargeFrameReader(ctx, new RunMergingFrameReader(ctx, runCursors, inFrames,
+                mergeSortFields, comparators, firstKeyNkc, partialAggRecordDesc));
         merger.open();
         try {
-            while (merger.nextFrame(outFrame)) {
-                FrameUtils.flushFrame(outFrame, mergeResultWriter);
+            ByteBuffer frame;
+            while ((frame = merger.nextFrame(outFrame)) != null) {
+                FrameUtils.flushFrame(frame, mergeResultWriter);
             }
         } finally {
             merger.close();
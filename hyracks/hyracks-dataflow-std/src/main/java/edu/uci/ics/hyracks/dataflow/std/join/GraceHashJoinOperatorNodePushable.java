@@ -28,10 +28,10 @@ import edu.uci.ics.hyracks.api.dataflow.value.RecordDescriptor;
 import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
 import edu.uci.ics.hyracks.dataflow.common.comm.io.FrameTupleAccessor;
 import edu.uci.ics.hyracks.dataflow.common.comm.io.FrameTuplePairComparator;
+import edu.uci.ics.hyracks.dataflow.common.comm.io.LargeFrameReader;
 import edu.uci.ics.hyracks.dataflow.common.comm.util.FrameUtils;
 import edu.uci.ics.hyracks.dataflow.common.data.partition.FieldHashPartitionComputerFactory;
 import edu.uci.ics.hyracks.dataflow.common.data.partition.RepartitionComputerFactory;
-import edu.uci.ics.hyracks.dataflow.common.io.RunFileReader;
 import edu.uci.ics.hyracks.dataflow.common.io.RunFileWriter;
 import edu.uci.ics.hyracks.dataflow.std.base.AbstractUnaryOutputSourceOperatorNodePushable;
 import edu.uci.ics.hyracks.dataflow.std.structures.ISerializableTable;
@@ -121,11 +121,12 @@ class GraceHashJoinOperatorNodePushable extends AbstractUnaryOutputSourceOperato
 
                 // build
                 if (buildWriter != null) {
-                    RunFileReader buildReader = buildWriter.createReader();
+                    LargeFrameReader buildReader = new LargeFrameReader(ctx, buildWriter.createReader());
                     buildReader.open();
-                    while (buildReader.nextFrame(buffer)) {
-                        ByteBuffer copyBuffer = ctx.allocateFrame();
-                        FrameUtils.copy(buffer, copyBuffer);
+                    ByteBuffer frame;
+                    while ((frame = buildReader.nextFrame(buffer)) != null) {
+                        ByteBuffer copyBuffer = ctx.allocateFrame(frame.capacity());
+                        FrameUtils.copy(frame, copyBuffer);
                         joiner.build(copyBuffer);
                         buffer.clear();
                     }
@@ -133,10 +134,11 @@ class GraceHashJoinOperatorNodePushable extends AbstractUnaryOutputSourceOperato
                 }
 
                 // probe
-                RunFileReader probeReader = probeWriter.createReader();
+                LargeFrameReader probeReader = new LargeFrameReader(ctx, probeWriter.createReader());
                 probeReader.open();
-                while (probeReader.nextFrame(buffer)) {
-                    joiner.join(buffer, writer);
+                ByteBuffer frame;
+                while ((frame = probeReader.nextFrame(buffer)) != null) {
+                    joiner.join(frame, writer);
                     buffer.clear();
                 }
                 probeReader.close();
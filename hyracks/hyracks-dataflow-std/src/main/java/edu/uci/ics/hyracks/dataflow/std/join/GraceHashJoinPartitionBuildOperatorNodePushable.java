@@ -26,6 +26,7 @@ import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
 import edu.uci.ics.hyracks.api.io.FileReference;
 import edu.uci.ics.hyracks.dataflow.common.comm.io.FrameTupleAccessor;
 import edu.uci.ics.hyracks.dataflow.common.comm.io.FrameTupleAppender;
+import edu.uci.ics.hyracks.dataflow.common.comm.util.FrameUtils;
 import edu.uci.ics.hyracks.dataflow.common.data.partition.FieldHashPartitionComputerFactory;
 import edu.uci.ics.hyracks.dataflow.common.io.RunFileWriter;
 import edu.uci.ics.hyracks.dataflow.std.base.AbstractUnaryInputSinkOperatorNodePushable;
@@ -79,15 +80,19 @@ class GraceHashJoinPartitionBuildOperatorNodePushable extends
     }
 
     private void write(int i, ByteBuffer head) throws HyracksDataException {
+        getRunWriter(i).nextFrame(head);
+    }
+
+    private RunFileWriter getRunWriter(int i) throws HyracksDataException {
         RunFileWriter writer = state.getRunWriters()[i];
         if (writer == null) {
             FileReference file = ctx.getJobletContext().createManagedWorkspaceFile(
                     GraceHashJoinOperatorDescriptor.class.getSimpleName());
-            writer = new RunFileWriter(file, ctx.getIOManager());
+            writer = new RunFileWriter(file, ctx.getIOManager(), ctx.getFrameSize());
             writer.open();
             state.getRunWriters()[i] = writer;
         }
-        writer.nextFrame(head);
+        return writer;
     }
 
     @Override
@@ -106,7 +111,8 @@ class GraceHashJoinPartitionBuildOperatorNodePushable extends
                 outbuf.clear();
                 appender.reset(outbuf, true);
                 if (!appender.append(accessor0, i)) {
-                    throw new HyracksDataException("Item too big to fit in frame");
+                    // the tuple does not fit into a frame: spill it in a large frame of its own
+                    FrameUtils.flushLargeTuple(ctx, accessor0, i, getRunWriter(entry));
                 }
             }
         }
@@ -42,10 +42,10 @@ import edu.uci.ics.hyracks.api.job.JobId;
 import edu.uci.ics.hyracks.dataflow.common.comm.io.FrameTupleAccessor;
 import edu.uci.ics.hyracks.dataflow.common.comm.io.FrameTupleAppender;
 import edu.uci.ics.hyracks.dataflow.common.comm.io.FrameTuplePairComparator;
+import edu.uci.ics.hyracks.dataflow.common.comm.io.LargeFrameReader;
 import edu.uci.ics.hyracks.dataflow.common.comm.util.FrameUtils;
 import edu.uci.ics.hyracks.dataflow.common.data.partition.FieldHashPartitionComputerFactory;
 import edu.uci.ics.hyracks.dataflow.common.data.partition.RepartitionComputerFactory;
-import edu.uci.ics.hyracks.dataflow.common.io.RunFileReader;
 import edu.uci.ics.hyracks.dataflow.common.io.RunFileWriter;
 import edu.uci.ics.hyracks.dataflow.std.base.AbstractActivityNode;
 import edu.uci.ics.hyracks.dataflow.std.base.AbstractOperatorDescriptor;
@@ -228,7 +228,6 @@ public class HybridHashJoinOperatorDescriptor extends AbstractOperatorDescriptor
 
                 @Override
                 public void nextFrame(ByteBuffer buffer) throws HyracksDataException {
-
                     if (state.memoryForHashtable != memsize - 2) {
                         accessorBuild.reset(buffer);
                         int tCount = accessorBuild.getTupleCount();
@@ -236,44 +235,14 @@ public class HybridHashJoinOperatorDescriptor extends AbstractOperatorDescriptor
                             int entry = -1;
                             if (state.memoryForHashtable == 0) {
                                 entry = hpcBuild.partition(accessorBuild, i, state.nPartitions);
-                                boolean newBuffer = false;
-                                ByteBuffer bufBi = bufferForPartitions[entry];
-                                while (true) {
-                                    appender.reset(bufBi, newBuffer);
-                                    if (appender.append(accessorBuild, i)) {
-                                        break;
-                                    } else {
-                                        write(entry, bufBi);
-                                        bufBi.clear();
-                                        newBuffer = true;
-                                    }
-                                }
+                                appendToPartition(entry, i);
                             } else {
                                 entry = hpcBuild.partition(accessorBuild, i, (int) (inputsize0 * factor / nPartitions));
                                 if (entry < state.memoryForHashtable) {
-                                    while (true) {
-                                        if (!ftappender.append(accessorBuild, i)) {
-                                            build(inBuffer);
-
-                                            ftappender.reset(inBuffer, true);
-                                        } else {
-                                            break;
-                                        }
-                                    }
+                                    appendToHashTable(i);
                                 } else {
                                     entry %= state.nPartitions;
-                                    boolean newBuffer = false;
-                                    ByteBuffer bufBi = bufferForPartitions[entry];
-                                    while (true) {
-                                        appender.reset(bufBi, newBuffer);
-                                        if (appender.append(accessorBuild, i)) {
-                                            break;
-                                        } else {
-                                            write(entry, bufBi);
-                                            bufBi.clear();
-                                            newBuffer = true;
-                                        }
-                                    }
+                                    appendToPartition(entry, i);
                                 }
                             }
 
@@ -284,8 +253,35 @@ public class HybridHashJoinOperatorDescriptor extends AbstractOperatorDescriptor
 
                 }
 
+                private void appendToHashTable(int tIndex) throws HyracksDataException {
+                    if (!ftappender.append(accessorBuild, tIndex)) {
+                        build(inBuffer);
+                        ftappender.reset(inBuffer, true);
+                        if (!ftappender.append(accessorBuild, tIndex)) {
+                            // the tuple does not fit into a frame: the joiner takes it in a large frame of its own
+                            state.joiner.build(FrameUtils.copyToLargeFrame(ctx, accessorBuild, tIndex));
+                        }
+                    }
+                }
+
+                private void appendToPartition(int entry, int tIndex) throws HyracksDataException {
+                    ByteBuffer bufBi = bufferForPartitions[entry];
+                    appender.reset(bufBi, false);
+                    if (!appender.append(accessorBuild, tIndex)) {
+                        if (appender.getTupleCount() > 0) {
+                            write(entry, bufBi);
+                            bufBi.clear();
+                            appender.reset(bufBi, true);
+                        }
+                        if (!appender.append(accessorBuild, tIndex)) {
+                            // the tuple does not fit into a frame: spill it in a large frame of its own
+                            FrameUtils.flushLargeTuple(ctx, accessorBuild, tIndex, getWriter(entry));
+                        }
+                    }
+                }
+
                 private void build(ByteBuffer inBuffer) throws HyracksDataException {
-                    ByteBuffer copyBuffer = ctx.allocateFrame();
+                    ByteBuffer copyBuffer = ctx.allocateFrame(inBuffer.capacity());
                     FrameUtils.copy(inBuffer, copyBuffer);
                     state.joiner.build(copyBuffer);
                 }
@@ -345,15 +341,19 @@ public class HybridHashJoinOperatorDescriptor extends AbstractOperatorDescriptor
                 }
 
                 private void write(int i, ByteBuffer head) throws HyracksDataException {
+                    getWriter(i).nextFrame(head);
+                }
+
+                private RunFileWriter getWriter(int i) throws HyracksDataException {
                     RunFileWriter writer = state.fWriters[i];
                     if (writer == null) {
                         FileReference file = ctx.getJobletContext().createManagedWorkspaceFile(
                                 BuildAndPartitionActivityNode.class.getSimpleName());
-                        writer = new RunFileWriter(file, ctx.getIOManager());
+                        writer = new RunFileWriter(file, ctx.getIOManager(), ctx.getFrameSize());
                         writer.open();
                         state.fWriters[i] = writer;
                     }
-                    writer.nextFrame(head);
+                    return writer;
                 }
             };
             return op;
@@ -431,43 +431,14 @@ public class HybridHashJoinOperatorDescriptor extends AbstractOperatorDescriptor
                             int entry = -1;
                             if (state.memoryForHashtable == 0) {
                                 entry = hpcProbe.partition(accessorProbe, i, state.nPartitions);
-                                boolean newBuffer = false;
-                                ByteBuffer outbuf = bufferForPartitions[entry];
-                                while (true) {
-                                    appender.reset(outbuf, newBuffer);
-                                    if (appender.append(accessorProbe, i)) {
-                                        break;
-                                    } else {
-                                        write(entry, outbuf);
-                                        outbuf.clear();
-                                        newBuffer = true;
-                                    }
-                                }
+                                appendToPartition(entry, i);
                             } else {
                                 entry = hpcProbe.partition(accessorProbe, i, (int) (inputsize0 * factor / nPartitions));
                                 if (entry < state.memoryForHashtable) {
-                                    while (true) {
-                                        if (!ftap.append(accessorProbe, i)) {
-                                            state.joiner.join(inBuffer, writer);
-                                            ftap.reset(inBuffer, true);
-                                        } else
-                                            break;
-                                    }
-
+                                    probeHashTable(i);
                                 } else {
                                     entry %= state.nPartitions;
-                                    boolean newBuffer = false;
-                                    ByteBuffer outbuf = bufferForPartitions[entry];
-                                    while (true) {
-                                        appender.reset(outbuf, newBuffer);
-                                        if (appender.append(accessorProbe, i)) {
-                                            break;
-                                        } else {
-                                            write(entry, outbuf);
-                                            outbuf.clear();
-                                            newBuffer = true;
-                                        }
-                                    }
+                                    appendToPartition(entry, i);
                                 }
                             }
                         }
@@ -476,6 +447,38 @@ public class HybridHashJoinOperatorDescriptor extends AbstractOperatorDescriptor
                     }
                 }
 
+                private void probeHashTable(int tIndex) throws HyracksDataException {
+                    if (!ftap.append(accessorProbe, tIndex)) {
+                        state.joiner.join(inBuffer, writer);
+                        ftap.reset(inBuffer, true);
+                        if (!ftap.append(accessorProbe, tIndex)) {
+                            // the tuple does not fit into a frame: probe with a large frame of its own
+                            ByteBuffer largeFrame = FrameUtils.copyToLargeFrame(ctx, accessorProbe, tIndex);
+                            try {
+                                state.joiner.join(largeFrame, writer);
+                            } finally {
+                                ctx.deallocateFrames(largeFrame.capacity() / ctx.getFrameSize());
+                            }
+                        }
+                    }
+                }
+
+                private void appendToPartition(int entry, int tIndex) throws HyracksDataException {
+                    ByteBuffer outbuf = bufferForPartitions[entry];
+                    appender.reset(outbuf, false);
+                    if (!appender.append(accessorProbe, tIndex)) {
+                        if (appender.getTupleCount() > 0) {
+                            write(entry, outbuf);
+                            outbuf.clear();
+                            appender.reset(outbuf, true);
+                        }
+                        if (!appender.append(accessorProbe, tIndex)) {
+                            // the tuple does not fit into a frame: spill it in a large frame of its own
+                            FrameUtils.flushLargeTuple(ctx, accessorProbe, tIndex, getWriter(entry));
+                        }
+                    }
+                }
+
                 @Override
                 public void close() throws HyracksDataException {
                     state.joiner.join(inBuffer, writer);
@@ -515,11 +518,12 @@ public class HybridHashJoinOperatorDescriptor extends AbstractOperatorDescriptor
                                     nullWriters1, table, predEvaluator);
 
                             if (buildWriter != null) {
-                                RunFileReader buildReader = buildWriter.createReader();
+                                LargeFrameReader buildReader = new LargeFrameReader(ctx, buildWriter.createReader());
                                 buildReader.open();
-                                while (buildReader.nextFrame(inBuffer)) {
-                                    ByteBuffer copyBuffer = ctx.allocateFrame();
-                                    FrameUtils.copy(inBuffer, copyBuffer);
+                                ByteBuffer frame;
+                                while ((frame = buildReader.nextFrame(inBuffer)) != null) {
+                                    ByteBuffer copyBuffer = ctx.allocateFrame(frame.capacity());
+                                    FrameUtils.copy(frame, copyBuffer);
                                     joiner.build(copyBuffer);
                                     inBuffer.clear();
                                 }
@@ -527,10 +531,11 @@ public class HybridHashJoinOperatorDescriptor extends AbstractOperatorDescriptor
                             }
 
                             // probe
-                            RunFileReader probeReader = probeWriter.createReader();
+                            LargeFrameReader probeReader = new LargeFrameReader(ctx, probeWriter.createReader());
                             probeReader.open();
-                            while (probeReader.nextFrame(inBuffer)) {
-                                joiner.join(inBuffer, writer);
+                            ByteBuffer frame;
+                            while ((frame = probeReader.nextFrame(inBuffer)) != null) {
+                                joiner.join(frame, writer);
                                 inBuffer.clear();
                             }
                             probeReader.close();
@@ -548,15 +553,19 @@ public class HybridHashJoinOperatorDescriptor extends AbstractOperatorDescriptor
                 }
 
                 private void write(int i, ByteBuffer head) throws HyracksDataException {
+                    getWriter(i).nextFrame(head);
+                }
+
+                private RunFileWriter getWriter(int i) throws HyracksDataException {
                     RunFileWriter writer = probeWriters[i];
                     if (writer == null) {
                         FileReference file = ctx.createManagedWorkspaceFile(PartitionAndJoinActivityNode.class
                                 .getSimpleName());
-                        writer = new RunFileWriter(file, ctx.getIOManager());
+                        writer = new RunFileWriter(file, ctx.getIOManager(), ctx.getFrameSize());
                         writer.open();
                         probeWriters[i] = writer;
                     }
-                    writer.nextFrame(head);
+                    return writer;
                 }
 
                 @Override
@@ -22,6 +22,7 @@ import java.util.logging.Logger;
 
 import edu.uci.ics.hyracks.api.comm.IFrameWriter;
 import edu.uci.ics.hyracks.api.context.IHyracksTaskContext;
+import edu.uci.ics.hyracks.api.dataflow.value.INormalizedKeyComputer;
 import edu.uci.ics.hyracks.api.dataflow.value.INullWriter;
 import edu.uci.ics.hyracks.api.dataflow.value.IPredicateEvaluator;
 import edu.uci.ics.hyracks.api.dataflow.value.ITuplePartitionComputer;
@@ -30,6 +31,8 @@ import edu.uci.ics.hyracks.dataflow.common.comm.io.ArrayTupleBuilder;
 import edu.uci.ics.hyracks.dataflow.common.comm.io.FrameTupleAccessor;
 import edu.uci.ics.hyracks.dataflow.common.comm.io.FrameTupleAppender;
 import edu.uci.ics.hyracks.dataflow.common.comm.io.FrameTuplePairComparator;
+import edu.uci.ics.hyracks.dataflow.common.comm.util.FrameUtils;
+import edu.uci.ics.hyracks.dataflow.std.structures.IFingerprintedSerializableTable;
 import edu.uci.ics.hyracks.dataflow.std.structures.ISerializableTable;
 import edu.uci.ics.hyracks.dataflow.std.structures.TuplePointer;
 
@@ -47,11 +50,24 @@ public class InMemoryHashJoin {
     private final boolean isLeftOuter;
     private final ArrayTupleBuilder nullTupleBuild;
     private final ISerializableTable table;
+    // The same table when it keeps hash fingerprints; the entries are then the full hashes modulo the table size
+    private final IFingerprintedSerializableTable fingerprintedTable;
     private final int tableSize;
     private final TuplePointer storedTuplePointer;
     private final boolean reverseOutputOrder; //Should we reverse the order of tuples, we are writing in output
     private final IPredicateEvaluator predEvaluator;
 
+    // Optional normalized key of the first join key, used to skip full comparisons of hash chain entries
+    private INormalizedKeyComputer nkc;
+    private int probeNormalizedKeyField;
+    private int buildNormalizedKeyField;
+    private final List<int[]> buildNormalizedKeys;
+
+    // Per probe frame arrays, filled for the whole frame before the hash table is probed
+    private int[] probeEntries;
+    private int[] probeHashes;
+    private int[] probeNormalizedKeys;
+
     private static final Logger LOGGER = Logger.getLogger(InMemoryHashJoin.class.getName());
 
     public InMemoryHashJoin(IHyracksTaskContext ctx, int tableSize, FrameTupleAccessor accessor0,
@@ -69,8 +85,14 @@ public class InMemoryHashJoin {
         this.ctx = ctx;
         this.tableSize = tableSize;
         this.table = table;
+        fingerprintedTable = table instanceof IFingerprintedSerializableTable ? (IFingerprintedSerializableTable) table
+                : null;
         storedTuplePointer = new TuplePointer();
         buffers = new ArrayList<ByteBuffer>();
+        buildNormalizedKeys = new ArrayList<int[]>();
+        probeEntries = new int[0];
+        probeHashes = new int[0];
+        probeNormalizedKeys = new int[0];
         this.accessorBuild = accessor1;
         this.tpcBuild = tpc1;
         this.accessorProbe = accessor0;
@@ -97,34 +119,75 @@ public class InMemoryHashJoin {
                 + Thread.currentThread().getId() + ".");
     }
 
+    /**
+     * Makes the join compare the normalized keys of the first join key fields before comparing
+     * the keys of a probe tuple and a build tuple that hash to the same entry. The computer must
+     * be consistent with the comparator of the first key: equal keys have equal normalized keys.
+     * Must be called before the first frame is built.
+     */
+    public void setNormalizedKeyComputer(INormalizedKeyComputer nkc, int probeKeyField, int buildKeyField) {
+        this.nkc = nkc;
+        this.probeNormalizedKeyField = probeKeyField;
+        this.buildNormalizedKeyField = buildKeyField;
+    }
+
+    /**
+     * Adds a frame to the build side. The join owns the frame from then on and releases it in
+     * {@link #closeJoin(IFrameWriter)}; it may be a large frame.
+     */
     public void build(ByteBuffer buffer) throws HyracksDataException {
         buffers.add(buffer);
         int bIndex = buffers.size() - 1;
         accessorBuild.reset(buffer);
         int tCount = accessorBuild.getTupleCount();
+        if (nkc != null) {
+            int[] normalizedKeys = new int[tCount];
+            for (int i = 0; i < tCount; ++i) {
+                normalizedKeys[i] = normalize(accessorBuild, i, buildNormalizedKeyField);
+            }
+            buildNormalizedKeys.add(normalizedKeys);
+        }
         for (int i = 0; i < tCount; ++i) {
-            int entry = tpcBuild.partition(accessorBuild, i, tableSize);
             storedTuplePointer.frameIndex = bIndex;
             storedTuplePointer.tupleIndex = i;
-            table.insert(entry, storedTuplePointer);
+            if (fingerprintedTable != null) {
+                int hash = tpcBuild.partition(accessorBuild, i, Integer.MAX_VALUE);
+                fingerprintedTable.insert(hash % tableSize, hash, storedTuplePointer);
+            } else {
+                table.insert(tpcBuild.partition(accessorBuild, i, tableSize), storedTuplePointer);
+            }
         }
     }
 
     public void join(ByteBuffer buffer, IFrameWriter writer) throws HyracksDataException {
         accessorProbe.reset(buffer);
         int tupleCount0 = accessorProbe.getTupleCount();
+        if (tableSize != 0) {
+            hashProbeFrame(tupleCount0);
+        }
+        int currentBuildFrame = -1;
         for (int i = 0; i < tupleCount0; ++i) {
             boolean matchFound = false;
             if (tableSize != 0) {
-                int entry = tpcProbe.partition(accessorProbe, i, tableSize);
+                int entry = probeEntries[i];
                 int offset = 0;
                 do {
-                    table.getTuplePointer(entry, offset++, storedTuplePointer);
+                    if (fingerprintedTable != null) {
+                        fingerprintedTable.getTuplePointer(entry, probeHashes[i], offset++, storedTuplePointer);
+                    } else {
+                        table.getTuplePointer(entry, offset++, storedTuplePointer);
+                    }
                     if (storedTuplePointer.frameIndex < 0)
                         break;
                     int bIndex = storedTuplePointer.frameIndex;
                     int tIndex = storedTuplePointer.tupleIndex;
-                    accessorBuild.reset(buffers.get(bIndex));
+                    if (nkc != null && buildNormalizedKeys.get(bIndex)[tIndex] != probeNormalizedKeys[i]) {
+                        continue;
+                    }
+                    if (bIndex != currentBuildFrame) {
+                        accessorBuild.reset(buffers.get(bIndex));
+                        currentBuildFrame = bIndex;
+                    }
                     int c = tpComparator.compare(accessorProbe, i, accessorBuild, tIndex);
                     if (c == 0) {
                         boolean predEval = evaluatePredicate(i, tIndex);
@@ -142,20 +205,62 @@ public class InMemoryHashJoin {
                     appender.reset(outBuffer, true);
                     if (!appender.appendConcat(accessorProbe, i, nullTupleBuild.getFieldEndOffsets(),
                             nullTupleBuild.getByteArray(), 0, nullTupleBuild.getSize())) {
-                        throw new HyracksDataException("Record size larger than frame size ("
-                                + appender.getBuffer().capacity() + ")");
+                        FrameUtils.flushLargeConcatTuple(ctx, accessorProbe, i, nullTupleBuild.getFieldEndOffsets(),
+                                nullTupleBuild.getByteArray(), 0, nullTupleBuild.getSize(), writer);
                     }
                 }
             }
         }
     }
 
+    /**
+     * Computes the hash table entries and hashes, and the normalized keys if enabled, of all tuples of the
+     * probe frame in one pass, so that the probe loop only walks hash chains.
+     */
+    private void hashProbeFrame(int tupleCount) throws HyracksDataException {
+        if (probeEntries.length < tupleCount) {
+            probeEntries = new int[tupleCount];
+        }
+        if (fingerprintedTable != null) {
+            if (probeHashes.length < tupleCount) {
+                probeHashes = new int[tupleCount];
+            }
+            for (int i = 0; i < tupleCount; ++i) {
+                probeHashes[i] = tpcProbe.partition(accessorProbe, i, Integer.MAX_VALUE);
+                probeEntries[i] = probeHashes[i] % tableSize;
+            }
+        } else {
+            for (int i = 0; i < tupleCount; ++i) {
+                probeEntries[i] = tpcProbe.partition(accessorProbe, i, tableSize);
+            }
+        }
+        if (nkc != null) {
+            if (probeNormalizedKeys.length < tupleCount) {
+                probeNormalizedKeys = new int[tupleCount];
+            }
+            for (int i = 0; i < tupleCount; ++i) {
+                probeNormalizedKeys[i] = normalize(accessorProbe, i, probeNormalizedKeyField);
+            }
+        }
+    }
+
+    private int normalize(FrameTupleAccessor accessor, int tIndex, int fIdx) {
+        int fStart = accessor.getFieldStartOffset(tIndex, fIdx);
+        int fEnd = accessor.getFieldEndOffset(tIndex, fIdx);
+        return nkc.normalize(accessor.getBuffer().array(), accessor.getTupleStartOffset(tIndex)
+                + accessor.getFieldSlotsLength() + fStart, fEnd - fStart);
+    }
+
     public void closeJoin(IFrameWriter writer) throws HyracksDataException {
         if (appender.getTupleCount() > 0) {
             flushFrame(outBuffer, writer);
         }
-        int nFrames = buffers.size();
+        int nFrames = 0;
+        for (ByteBuffer buffer : buffers) {
+            nFrames += buffer.capacity() / ctx.getFrameSize();
+        }
         buffers.clear();
+        buildNormalizedKeys.clear();
         ctx.deallocateFrames(nFrames);
         LOGGER.fine("InMemoryHashJoin has finished using " + nFrames + " frames for Thread ID "
                 + Thread.currentThread().getId() + ".");
@@ -183,12 +288,8 @@ public class InMemoryHashJoin {
                 flushFrame(outBuffer, writer);
                 appender.reset(outBuffer, true);
                 if (!appender.appendConcat(accessorProbe, probeSidetIx, accessorBuild, buildSidetIx)) {
-                    int tSize = accessorProbe.getTupleEndOffset(probeSidetIx)
-                            - accessorProbe.getTupleStartOffset(probeSidetIx)
-                            + accessorBuild.getTupleEndOffset(buildSidetIx)
-                            - accessorBuild.getTupleStartOffset(buildSidetIx);
-                    throw new HyracksDataException("Record size (" + tSize + ") larger than frame size ("
-                            + appender.getBuffer().capacity() + ")");
+                    FrameUtils.flushLargeConcatTuple(ctx, accessorProbe, probeSidetIx, accessorBuild, buildSidetIx,
+                            writer);
                 }
             }
         } else {
@@ -196,12 +297,8 @@ public class InMemoryHashJoin {
                 flushFrame(outBuffer, writer);
                 appender.reset(outBuffer, true);
                 if (!appender.appendConcat(accessorBuild, buildSidetIx, accessorProbe, probeSidetIx)) {
-                    int tSize = accessorProbe.getTupleEndOffset(probeSidetIx)
-                            - accessorProbe.getTupleStartOffset(probeSidetIx)
-                            + accessorBuild.getTupleEndOffset(buildSidetIx)
-                            - accessorBuild.getTupleStartOffset(buildSidetIx);
-                    throw new HyracksDataException("Record size (" + tSize + ") larger than frame size ("
-                            + appender.getBuffer().capacity() + ")");
+                    FrameUtils.flushLargeConcatTuple(ctx, accessorBuild, buildSidetIx, accessorProbe, probeSidetIx,
+                            writer);
                 }
             }
         }
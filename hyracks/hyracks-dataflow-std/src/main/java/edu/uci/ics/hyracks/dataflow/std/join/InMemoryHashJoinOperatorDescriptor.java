@@ -27,6 +27,7 @@ import edu.uci.ics.hyracks.api.dataflow.TaskId;
 import edu.uci.ics.hyracks.api.dataflow.value.IBinaryComparator;
 import edu.uci.ics.hyracks.api.dataflow.value.IBinaryComparatorFactory;
 import edu.uci.ics.hyracks.api.dataflow.value.IBinaryHashFunctionFactory;
+import edu.uci.ics.hyracks.api.dataflow.value.INormalizedKeyComputerFactory;
 import edu.uci.ics.hyracks.api.dataflow.value.INullWriter;
 import edu.uci.ics.hyracks.api.dataflow.value.INullWriterFactory;
 import edu.uci.ics.hyracks.api.dataflow.value.IPredicateEvaluator;
@@ -47,6 +48,7 @@ import edu.uci.ics.hyracks.dataflow.std.base.AbstractStateObject;
 import edu.uci.ics.hyracks.dataflow.std.base.AbstractUnaryInputSinkOperatorNodePushable;
 import edu.uci.ics.hyracks.dataflow.std.base.AbstractUnaryInputUnaryOutputOperatorNodePushable;
 import edu.uci.ics.hyracks.dataflow.std.structures.ISerializableTable;
+import edu.uci.ics.hyracks.dataflow.std.structures.OpenAddressingHashTable;
 import edu.uci.ics.hyracks.dataflow.std.structures.SerializableHashTable;
 
 public class InMemoryHashJoinOperatorDescriptor extends AbstractOperatorDescriptor {
@@ -59,6 +61,8 @@ public class InMemoryHashJoinOperatorDescriptor extends AbstractOperatorDescript
     private final boolean isLeftOuter;
     private final INullWriterFactory[] nullWriterFactories1;
     private final int tableSize;
+    private INormalizedKeyComputerFactory firstKeyNormalizerFactory;
+    private boolean openAddressingTable;
 
     public InMemoryHashJoinOperatorDescriptor(IOperatorDescriptorRegistry spec, int[] keys0, int[] keys1,
             IBinaryHashFunctionFactory[] hashFunctionFactories, IBinaryComparatorFactory[] comparatorFactories,
@@ -106,6 +110,23 @@ public class InMemoryHashJoinOperatorDescriptor extends AbstractOperatorDescript
     
     
 
+    /**
+     * Sets the normalized key computer factory of the first join key. The join compares normalized keys before
+     * comparing the keys of tuples that hash to the same entry. The normalized keys must be consistent with the
+     * comparator of the first key on both inputs.
+     */
+    public void setFirstKeyNormalizerFactory(INormalizedKeyComputerFactory firstKeyNormalizerFactory) {
+        this.firstKeyNormalizerFactory = firstKeyNormalizerFactory;
+    }
+
+    /**
+     * Sets whether the build side is indexed by an {@link OpenAddressingHashTable} instead of a
+     * {@link SerializableHashTable}.
+     */
+    public void setOpenAddressingTable(boolean openAddressingTable) {
+        this.openAddressingTable = openAddressingTable;
+    }
+
     @Override
     public void contributeActivities(IActivityGraphBuilder builder) {
         ActivityId hbaId = new ActivityId(odId, 0);
@@ -183,16 +204,21 @@ public class InMemoryHashJoinOperatorDescriptor extends AbstractOperatorDescript
                             .createPartitioner();
                     state = new HashBuildTaskState(ctx.getJobletContext().getJobId(), new TaskId(getActivityId(),
                             partition));
-                    ISerializableTable table = new SerializableHashTable(tableSize, ctx);
+                    ISerializableTable table = openAddressingTable ? new OpenAddressingHashTable(tableSize, ctx)
+                            : new SerializableHashTable(tableSize, ctx);
                     state.joiner = new InMemoryHashJoin(ctx, tableSize,
                             new FrameTupleAccessor(ctx.getFrameSize(), rd0), hpc0, new FrameTupleAccessor(
                                     ctx.getFrameSize(), rd1), hpc1, new FrameTuplePairComparator(keys0, keys1,
                                     comparators), isLeftOuter, nullWriters1, table, predEvaluator);
+                    if (firstKeyNormalizerFactory != null) {
+                        state.joiner.setNormalizedKeyComputer(
+                                firstKeyNormalizerFactory.createNormalizedKeyComputer(), keys0[0], keys1[0]);
+                    }
                 }
 
                 @Override
                 public void nextFrame(ByteBuffer buffer) throws HyracksDataException {
-                    ByteBuffer copyBuffer = ctx.allocateFrame();
+                    ByteBuffer copyBuffer = ctx.allocateFrame(buffer.capacity());
                     FrameUtils.copy(buffer, copyBuffer);
                     state.joiner.build(copyBuffer);
                 }
@@ -29,8 +29,8 @@ import edu.uci.ics.hyracks.api.io.FileReference;
 import edu.uci.ics.hyracks.dataflow.common.comm.io.ArrayTupleBuilder;
 import edu.uci.ics.hyracks.dataflow.common.comm.io.FrameTupleAccessor;
 import edu.uci.ics.hyracks.dataflow.common.comm.io.FrameTupleAppender;
+import edu.uci.ics.hyracks.dataflow.common.comm.io.LargeFrameReader;
 import edu.uci.ics.hyracks.dataflow.common.comm.util.FrameUtils;
-import edu.uci.ics.hyracks.dataflow.common.io.RunFileReader;
 import edu.uci.ics.hyracks.dataflow.common.io.RunFileWriter;
 
 public class NestedLoopJoin {
@@ -40,11 +40,14 @@ public class NestedLoopJoin {
     private final ITuplePairComparator tpComparator;
     private final ByteBuffer outBuffer;
     private final ByteBuffer innerBuffer;
+    // Regular frames for the outer block, reused from block to block
     private final List<ByteBuffer> outBuffers;
+    private int regularOuterFrameCount = 0;
+    // The frames of the current outer block in arrival order, and their size in frames
+    private final List<ByteBuffer> outerBlock;
+    private int currentMemSize = 0;
     private final int memSize;
     private final IHyracksTaskContext ctx;
-    private RunFileReader runFileReader;
-    private int currentMemSize = 0;
     private final RunFileWriter runFileWriter;
     private final boolean isLeftOuter;
     private final ArrayTupleBuilder nullTupleBuilder;
@@ -63,6 +66,7 @@ public class NestedLoopJoin {
         this.innerBuffer = ctx.allocateFrame();
         this.appender.reset(outBuffer, true);
         this.outBuffers = new ArrayList<ByteBuffer>();
+        this.outerBlock = new ArrayList<ByteBuffer>();
         this.memSize = memSize;
         if (memSize < 3) {
             throw new HyracksDataException("Not enough memory is available for Nested Loop Join");
@@ -86,7 +90,7 @@ public class NestedLoopJoin {
 
         FileReference file = ctx.getJobletContext().createManagedWorkspaceFile(
                 this.getClass().getSimpleName() + this.toString());
-        runFileWriter = new RunFileWriter(file, ctx.getIOManager());
+        runFileWriter = new RunFileWriter(file, ctx.getIOManager(), ctx.getFrameSize());
         runFileWriter.open();
     }
 
@@ -95,37 +99,53 @@ public class NestedLoopJoin {
     }
 
     public void join(ByteBuffer outerBuffer, IFrameWriter writer) throws HyracksDataException {
-        if (outBuffers.size() < memSize - 3) {
-            createAndCopyFrame(outerBuffer);
-            return;
-        }
-        if (currentMemSize < memSize - 3) {
-            reloadFrame(outerBuffer);
-            return;
-        }
-        runFileReader = runFileWriter.createReader();
-        runFileReader.open();
-        while (runFileReader.nextFrame(innerBuffer)) {
-            for (ByteBuffer outBuffer : outBuffers) {
-                blockJoin(outBuffer, innerBuffer, writer);
-            }
+        int frameCount = outerBuffer.capacity() / ctx.getFrameSize();
+        if (currentMemSize > 0 && currentMemSize + frameCount > memSize - 3) {
+            joinOuterBlock(writer);
         }
-        runFileReader.close();
-        currentMemSize = 0;
-        reloadFrame(outerBuffer);
+        copyFrame(outerBuffer);
     }
 
-    private void createAndCopyFrame(ByteBuffer outerBuffer) throws HyracksDataException {
-        ByteBuffer outerBufferCopy = ctx.allocateFrame();
+    /**
+     * Adds a copy of the outer frame to the outer block. Regular frames are reused across blocks; a large frame gets
+     * a copy of its own, which is released once its block is joined.
+     */
+    private void copyFrame(ByteBuffer outerBuffer) throws HyracksDataException {
+        ByteBuffer outerBufferCopy;
+        if (outerBuffer.capacity() == ctx.getFrameSize()) {
+            if (regularOuterFrameCount == outBuffers.size()) {
+                outBuffers.add(ctx.allocateFrame());
+            }
+            outerBufferCopy = outBuffers.get(regularOuterFrameCount++);
+        } else {
+            outerBufferCopy = ctx.allocateFrame(outerBuffer.capacity());
+        }
         FrameUtils.copy(outerBuffer, outerBufferCopy);
-        outBuffers.add(outerBufferCopy);
-        currentMemSize++;
+        outerBlock.add(outerBufferCopy);
+        currentMemSize += outerBufferCopy.capacity() / ctx.getFrameSize();
     }
 
-    private void reloadFrame(ByteBuffer outerBuffer) {
-        outBuffers.get(currentMemSize).clear();
-        FrameUtils.copy(outerBuffer, outBuffers.get(currentMemSize));
-        currentMemSize++;
+    private void joinOuterBlock(IFrameWriter writer) throws HyracksDataException {
+        LargeFrameReader innerReader = new LargeFrameReader(ctx, runFileWriter.createReader());
+        innerReader.open();
+        try {
+            ByteBuffer innerFrame;
+            while ((innerFrame = innerReader.nextFrame(innerBuffer)) != null) {
+                for (ByteBuffer outerBuffer : outerBlock) {
+                    blockJoin(outerBuffer, innerFrame, writer);
+                }
+            }
+        } finally {
+            innerReader.close();
+        }
+        for (ByteBuffer outerBuffer : outerBlock) {
+            if (outerBuffer.capacity() > ctx.getFrameSize()) {
+                ctx.deallocateFrames(outerBuffer.capacity() / ctx.getFrameSize());
+            }
+        }
+        outerBlock.clear();
+        regularOuterFrameCount = 0;
+        currentMemSize = 0;
     }
 
     private void blockJoin(ByteBuffer outerBuffer, ByteBuffer innerBuffer, IFrameWriter writer)
@@ -154,9 +174,8 @@ public class NestedLoopJoin {
                     flushFrame(outBuffer, writer);
                     appender.reset(outBuffer, true);
                     if (!appender.appendConcat(accessorOuter, i, ntFieldEndOffsets, ntByteArray, 0, ntSize)) {
-                        int tSize = accessorOuter.getTupleEndOffset(i) - accessorOuter.getTupleStartOffset(i) + ntSize;
-                        throw new HyracksDataException("Record size (" + tSize + ") larger than frame size ("
-                                + appender.getBuffer().capacity() + ")");
+                        FrameUtils.flushLargeConcatTuple(ctx, accessorOuter, i, ntFieldEndOffsets, ntByteArray, 0,
+                                ntSize, writer);
                     }
                 }
             }
@@ -187,10 +206,7 @@ public class NestedLoopJoin {
             flushFrame(outBuffer, writer);
             appender.reset(outBuffer, true);
             if (!appender.appendConcat(accessor1, tupleId1, accessor2, tupleId2)) {
-                int tSize = accessor1.getTupleEndOffset(tupleId1) - accessor1.getTupleStartOffset(tupleId1)
-                        + accessor2.getTupleEndOffset(tupleId2) - accessor2.getTupleStartOffset(tupleId2);
-                throw new HyracksDataException("Record size (" + tSize + ") larger than frame size ("
-                        + appender.getBuffer().capacity() + ")");
+                FrameUtils.flushLargeConcatTuple(ctx, accessor1, tupleId1, accessor2, tupleId2, writer);
             }
         }
     }
@@ -202,16 +218,8 @@ public class NestedLoopJoin {
     }
 
     public void closeJoin(IFrameWriter writer) throws HyracksDataException {
-        runFileReader = runFileWriter.createReader();
-        runFileReader.open();
-        while (runFileReader.nextFrame(innerBuffer)) {
-            for (int i = 0; i < currentMemSize; i++) {
-                blockJoin(outBuffers.get(i), innerBuffer, writer);
-            }
-        }
-        runFileReader.close();
+        joinOuterBlock(writer);
         outBuffers.clear();
-        currentMemSize = 0;
 
         if (appender.getTupleCount() > 0) {
             flushFrame(outBuffer, writer);
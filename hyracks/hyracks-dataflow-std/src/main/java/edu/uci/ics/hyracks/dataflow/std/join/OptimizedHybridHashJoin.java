@@ -22,6 +22,7 @@ import java.util.logging.Logger;
 import edu.uci.ics.hyracks.api.comm.IFrameWriter;
 import edu.uci.ics.hyracks.api.context.IHyracksTaskContext;
 import edu.uci.ics.hyracks.api.dataflow.value.IBinaryComparator;
+import edu.uci.ics.hyracks.api.dataflow.value.INormalizedKeyComputer;
 import edu.uci.ics.hyracks.api.dataflow.value.INullWriter;
 import edu.uci.ics.hyracks.api.dataflow.value.INullWriterFactory;
 import edu.uci.ics.hyracks.api.dataflow.value.IPredicateEvaluator;
@@ -29,13 +30,16 @@ import edu.uci.ics.hyracks.api.dataflow.value.ITuplePartitionComputer;
 import edu.uci.ics.hyracks.api.dataflow.value.RecordDescriptor;
 import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
 import edu.uci.ics.hyracks.api.io.FileReference;
+import edu.uci.ics.hyracks.api.io.IBlockCompressor;
 import edu.uci.ics.hyracks.dataflow.common.comm.io.FrameTupleAccessor;
 import edu.uci.ics.hyracks.dataflow.common.comm.io.FrameTupleAppender;
 import edu.uci.ics.hyracks.dataflow.common.comm.io.FrameTuplePairComparator;
 import edu.uci.ics.hyracks.dataflow.common.comm.util.FrameUtils;
 import edu.uci.ics.hyracks.dataflow.common.io.RunFileReader;
 import edu.uci.ics.hyracks.dataflow.common.io.RunFileWriter;
+import edu.uci.ics.hyracks.dataflow.std.structures.FrameBloomFilter;
 import edu.uci.ics.hyracks.dataflow.std.structures.ISerializableTable;
+import edu.uci.ics.hyracks.dataflow.std.structures.OpenAddressingHashTable;
 import edu.uci.ics.hyracks.dataflow.std.structures.SerializableHashTable;
 
 /**
@@ -52,6 +56,7 @@ public class OptimizedHybridHashJoin {
     private final int BUFFER_FOR_RESIDENT_PARTS = -1;
 
     private IHyracksTaskContext ctx;
+    private IBlockCompressor spillCompressor;
 
     private final String rel0Name;
     private final String rel1Name;
@@ -81,6 +86,7 @@ public class OptimizedHybridHashJoin {
     private int[] probePSizeInTups; //Size of probe partitions (in tuples)
     private int nextFreeBuffIx; //Index of next available free buffer to allocate/use
     private BitSet pStatus; //0=resident, 1=spilled
+    private BitSet largeTupParts; //Spilled build partitions holding tuples larger than a frame (never reloaded)
     private int numOfPartitions;
     private int memForJoin;
     private InMemoryHashJoin inMemJoiner; //Used for joining resident partitions
@@ -101,6 +107,13 @@ public class OptimizedHybridHashJoin {
 
     private boolean isTableEmpty; //Added for handling the case, where build side is empty (tableSize is 0)
     private boolean isReversed; //Added for handling correct calling for predicate-evaluator upon recursive calls that cause role-reversal
+    private INormalizedKeyComputer nkc; //Normalized key computer of the first join key, used by the in-memory hash join (optional)
+    private boolean openAddressingTable; //Whether the in-memory hash join uses an open-addressing table
+
+    private int bloomFilterFrames; //Frames for the bloom filter on the keys of spilled build tuples (0 = no filter)
+    private FrameBloomFilter bloomFilter;
+    private FrameTupleAccessor accessorBloom;
+    private int numOfPrunedProbeTups; //Probe tuples of spilled partitions dropped by the bloom filter
 
     private static final Logger LOGGER = Logger.getLogger(OptimizedHybridHashJoin.class.getName());
 
@@ -109,6 +122,7 @@ public class OptimizedHybridHashJoin {
             RecordDescriptor probeRd, ITuplePartitionComputer probeHpc, ITuplePartitionComputer buildHpc,
             IPredicateEvaluator predEval) {
         this.ctx = ctx;
+        this.spillCompressor = RunFileWriter.createSpillCompressor(ctx);
         this.memForJoin = memForJoin;
         this.buildRd = buildRd;
         this.probeRd = probeRd;
@@ -139,6 +153,7 @@ public class OptimizedHybridHashJoin {
             RecordDescriptor probeRd, ITuplePartitionComputer probeHpc, ITuplePartitionComputer buildHpc,
             IPredicateEvaluator predEval, boolean isLeftOuter, INullWriterFactory[] nullWriterFactories1) {
         this.ctx = ctx;
+        this.spillCompressor = RunFileWriter.createSpillCompressor(ctx);
         this.memForJoin = memForJoin;
         this.buildRd = buildRd;
         this.probeRd = probeRd;
@@ -174,6 +189,7 @@ public class OptimizedHybridHashJoin {
         curPBuff = new int[numOfPartitions];
         nextBuff = new int[memForJoin];
         pStatus = new BitSet(numOfPartitions);
+        largeTupParts = new BitSet(numOfPartitions);
         buildPSizeInTups = new int[numOfPartitions];
 
         buildPSizeInFrames = new int[numOfPartitions];
@@ -193,6 +209,10 @@ public class OptimizedHybridHashJoin {
 
         buildTupAppender = new FrameTupleAppender(ctx.getFrameSize());
 
+        if (bloomFilterFrames > 0 && !isLeftOuter) { //Probe tuples without a match must be kept for outer joins
+            bloomFilter = new FrameBloomFilter(ctx, bloomFilterFrames);
+            accessorBloom = new FrameTupleAccessor(ctx.getFrameSize(), buildRd);
+        }
     }
 
     public void build(ByteBuffer buffer) throws HyracksDataException {
@@ -213,6 +233,19 @@ public class OptimizedHybridHashJoin {
     }
 
     private void processTuple(int tid, int pid) throws HyracksDataException {
+        if (!fitsInFrame(accessorBuild, tid)) { //The tuple goes to the run file of its partition in a large frame
+            if (!pStatus.get(pid)) {
+                spillPartition(pid);
+                buildTupAppender.reset(memBuffs[pid], true);
+            }
+            RunFileWriter writer = getBuildWriter(pid);
+            if (bloomFilter != null) {
+                bloomFilter.add(FrameBloomFilter.hashKeys(accessorBuild, tid, buildKeys));
+            }
+            FrameUtils.flushLargeTuple(ctx, accessorBuild, tid, writer);
+            largeTupParts.set(pid);
+            return;
+        }
         ByteBuffer partition = memBuffs[curPBuff[pid]]; //Getting current buffer for the target partition
 
         if (!pStatus.get(pid)) { //resident partition
@@ -321,17 +354,34 @@ public class OptimizedHybridHashJoin {
                 + " for Thread ID " + Thread.currentThread().getId() + ".");
     }
 
+    private boolean fitsInFrame(FrameTupleAccessor accessor, int tid) {
+        //An empty frame holds the tuple, its end offset and the tuple count
+        return accessor.getTupleEndOffset(tid) - accessor.getTupleStartOffset(tid) + 8 <= ctx.getFrameSize();
+    }
+
     private void buildWrite(int pid, ByteBuffer buff) throws HyracksDataException {
+        RunFileWriter writer = getBuildWriter(pid);
+        if (bloomFilter != null) { //Every build tuple of a spilled partition is written here
+            accessorBloom.reset(buff);
+            int tupleCount = accessorBloom.getTupleCount();
+            for (int i = 0; i < tupleCount; ++i) {
+                bloomFilter.add(FrameBloomFilter.hashKeys(accessorBloom, i, buildKeys));
+            }
+        }
+        writer.nextFrame(buff);
+    }
+
+    private RunFileWriter getBuildWriter(int pid) throws HyracksDataException {
         RunFileWriter writer = buildRFWriters[pid];
         if (writer == null) {
             FileReference file = ctx.getJobletContext().createManagedWorkspaceFile(rel0Name);
             LOGGER.fine("OptimizedHybridHashJoin is creating a run file (" + file.getFile().getAbsolutePath()
                     + ") for partition:" + pid + " for Thread ID " + Thread.currentThread().getId() + ".");
-            writer = new RunFileWriter(file, ctx.getIOManager());
+            writer = new RunFileWriter(file, ctx.getIOManager(), ctx.getFrameSize(), spillCompressor);
             writer.open();
             buildRFWriters[pid] = writer;
         }
-        writer.nextFrame(buff);
+        return writer;
     }
 
     public void closeBuild() throws HyracksDataException {
@@ -446,6 +496,9 @@ public class OptimizedHybridHashJoin {
     private ArrayList<Integer> selectPartitionsToReload() {
         ArrayList<Integer> p = new ArrayList<Integer>();
         for (int i = pStatus.nextSetBit(0); i >= 0; i = pStatus.nextSetBit(i + 1)) {
+            if (largeTupParts.get(i)) { //Its run file holds large frames, which do not fit the buffer chains
+                continue;
+            }
             if (buildPSizeInFrames[i] > 0 && (freeFramesCounter - buildPSizeInFrames[i] >= 0)) {
                 p.add(i);
                 freeFramesCounter -= buildPSizeInFrames[i];
@@ -458,11 +511,15 @@ public class OptimizedHybridHashJoin {
     }
 
     private void createInMemoryJoiner(int inMemTupCount) throws HyracksDataException {
-        ISerializableTable table = new SerializableHashTable(inMemTupCount, ctx);
+        ISerializableTable table = openAddressingTable ? new OpenAddressingHashTable(inMemTupCount, ctx)
+                : new SerializableHashTable(inMemTupCount, ctx);
         this.inMemJoiner = new InMemoryHashJoin(ctx, inMemTupCount,
                 new FrameTupleAccessor(ctx.getFrameSize(), probeRd), probeHpc, new FrameTupleAccessor(
                         ctx.getFrameSize(), buildRd), buildHpc, new FrameTuplePairComparator(probeKeys, buildKeys,
                         comparators), isLeftOuter, nullWriters1, table, predEvaluator, isReversed);
+        if (nkc != null) {
+            inMemJoiner.setNormalizedKeyComputer(nkc, probeKeys[0], buildKeys[0]);
+        }
     }
 
     private void cacheInMemJoin() throws HyracksDataException {
@@ -502,6 +559,11 @@ public class OptimizedHybridHashJoin {
 
         probeTupAppenderToSpilled = new FrameTupleAppender(ctx.getFrameSize());
 
+        numOfPrunedProbeTups = 0;
+        if (bloomFilter != null && numOfSpilledParts == 0) { //Nothing to prune
+            bloomFilter.close();
+            bloomFilter = null;
+        }
     }
 
     public void probe(ByteBuffer buffer, IFrameWriter writer) throws HyracksDataException {
@@ -523,6 +585,16 @@ public class OptimizedHybridHashJoin {
 
             if (buildPSizeInTups[pid] > 0) { //Tuple has potential match from previous phase
                 if (pStatus.get(pid)) { //pid is Spilled
+                    if (bloomFilter != null
+                            && !bloomFilter.mightContain(FrameBloomFilter.hashKeys(accessorProbe, i, probeKeys))) {
+                        numOfPrunedProbeTups++; //No build tuple of the partition has this key
+                        continue;
+                    }
+                    if (!fitsInFrame(accessorProbe, i)) {
+                        FrameUtils.flushLargeTuple(ctx, accessorProbe, i, getProbeWriter(pid));
+                        probePSizeInTups[pid]++;
+                        continue;
+                    }
                     boolean needToClear = false;
                     buff = sPartBuffs[curPBuff[pid]];
                     while (true) {
@@ -534,6 +606,13 @@ public class OptimizedHybridHashJoin {
                         buff.clear();
                         needToClear = true;
                     }
+                } else if (!fitsInFrame(accessorProbe, i)) { //pid is Resident, joined in a large frame of its own
+                    ByteBuffer largeFrame = FrameUtils.copyToLargeFrame(ctx, accessorProbe, i);
+                    try {
+                        inMemJoiner.join(largeFrame, writer);
+                    } finally {
+                        ctx.deallocateFrames(largeFrame.capacity() / ctx.getFrameSize());
+                    }
                 } else { //pid is Resident
                     while (true) {
                         if (probeTupAppenderToResident.append(accessorProbe, i)) {
@@ -564,17 +643,27 @@ public class OptimizedHybridHashJoin {
             }
             closeProbeWriter(pid);
         }
+        if (bloomFilter != null) {
+            LOGGER.fine("OptimizedHybridHashJoin bloom filter has pruned " + numOfPrunedProbeTups
+                    + " probe tuples of spilled partitions for Thread ID " + Thread.currentThread().getId() + ".");
+            bloomFilter.close();
+            bloomFilter = null;
+        }
     }
 
     private void probeWrite(int pid, ByteBuffer buff) throws HyracksDataException {
+        getProbeWriter(pid).nextFrame(buff);
+    }
+
+    private RunFileWriter getProbeWriter(int pid) throws HyracksDataException {
         RunFileWriter pWriter = probeRFWriters[pid];
         if (pWriter == null) {
             FileReference file = ctx.getJobletContext().createManagedWorkspaceFile(rel1Name);
-            pWriter = new RunFileWriter(file, ctx.getIOManager());
+            pWriter = new RunFileWriter(file, ctx.getIOManager(), ctx.getFrameSize(), spillCompressor);
             pWriter.open();
             probeRFWriters[pid] = pWriter;
         }
-        pWriter.nextFrame(buff);
+        return pWriter;
     }
 
     private void closeProbeWriter(int pid) throws HyracksDataException {
@@ -665,4 +754,22 @@ public class OptimizedHybridHashJoin {
     public void setIsReversed(boolean b) {
         this.isReversed = b;
     }
+
+    public void setNormalizedKeyComputer(INormalizedKeyComputer nkc) {
+        this.nkc = nkc;
+    }
+
+    public void setOpenAddressingTable(boolean b) {
+        this.openAddressingTable = b;
+    }
+
+    /**
+     * Makes the join keep a bloom filter of the keys of the spilled build tuples in nFrames frames,
+     * and drop probe tuples of spilled partitions that the filter rejects, instead of spilling them.
+     * The filter hashes the bytes of the keys, so equal keys of both sides must have equal bytes. Must be
+     * called before initBuild(); the filter is ignored for outer joins.
+     */
+    public void setBloomFilter(int nFrames) {
+        this.bloomFilterFrames = nFrames;
+    }
 }
@@ -29,6 +29,8 @@ import edu.uci.ics.hyracks.api.dataflow.TaskId;
 import edu.uci.ics.hyracks.api.dataflow.value.IBinaryComparator;
 import edu.uci.ics.hyracks.api.dataflow.value.IBinaryComparatorFactory;
 import edu.uci.ics.hyracks.api.dataflow.value.IBinaryHashFunctionFamily;
+import edu.uci.ics.hyracks.api.dataflow.value.INormalizedKeyComputer;
+import edu.uci.ics.hyracks.api.dataflow.value.INormalizedKeyComputerFactory;
 import edu.uci.ics.hyracks.api.dataflow.value.INullWriter;
 import edu.uci.ics.hyracks.api.dataflow.value.INullWriterFactory;
 import edu.uci.ics.hyracks.api.dataflow.value.IPredicateEvaluator;
@@ -44,6 +46,7 @@ import edu.uci.ics.hyracks.api.job.IOperatorDescriptorRegistry;
 import edu.uci.ics.hyracks.api.job.JobId;
 import edu.uci.ics.hyracks.dataflow.common.comm.io.FrameTupleAccessor;
 import edu.uci.ics.hyracks.dataflow.common.comm.io.FrameTuplePairComparator;
+import edu.uci.ics.hyracks.dataflow.common.comm.io.LargeFrameReader;
 import edu.uci.ics.hyracks.dataflow.common.comm.util.FrameUtils;
 import edu.uci.ics.hyracks.dataflow.common.data.partition.FieldHashPartitionComputerFamily;
 import edu.uci.ics.hyracks.dataflow.common.data.partition.RepartitionComputerFamily;
@@ -54,6 +57,7 @@ import edu.uci.ics.hyracks.dataflow.std.base.AbstractStateObject;
 import edu.uci.ics.hyracks.dataflow.std.base.AbstractUnaryInputSinkOperatorNodePushable;
 import edu.uci.ics.hyracks.dataflow.std.base.AbstractUnaryInputUnaryOutputOperatorNodePushable;
 import edu.uci.ics.hyracks.dataflow.std.structures.ISerializableTable;
+import edu.uci.ics.hyracks.dataflow.std.structures.OpenAddressingHashTable;
 import edu.uci.ics.hyracks.dataflow.std.structures.SerializableHashTable;
 
 /**
@@ -119,6 +123,10 @@ public class OptimizedHybridHashJoinOperatorDescriptor extends AbstractOperatorD
     private final boolean isLeftOuter;
     private final INullWriterFactory[] nullWriterFactories1;
 
+    private INormalizedKeyComputerFactory firstKeyNormalizerFactory; //For in-mem HJ (optional)
+    private boolean openAddressingTable; //For in-mem HJ
+    private int bloomFilterFrames; //Frames of memsize used for the bloom filter of spilled build tuples
+
     //Flags added for test purpose
     private static boolean skipInMemoryHJ = false;
     private static boolean forceNLJ = false;
@@ -217,6 +225,7 @@ public class OptimizedHybridHashJoinOperatorDescriptor extends AbstractOperatorD
 
         private int memForJoin;
         private int numOfPartitions;
+        private int bloomFilterFrames;
         private OptimizedHybridHashJoin hybridHJ;
 
         public BuildAndPartitionTaskState() {
@@ -274,17 +283,20 @@ public class OptimizedHybridHashJoinOperatorDescriptor extends AbstractOperatorD
                 private BuildAndPartitionTaskState state = new BuildAndPartitionTaskState(ctx.getJobletContext()
                         .getJobId(), new TaskId(getActivityId(), partition));
 
-                ITuplePartitionComputer probeHpc = new FieldHashPartitionComputerFamily(probeKeys,
-                        hashFunctionGeneratorFactories).createPartitioner(0);
-                ITuplePartitionComputer buildHpc = new FieldHashPartitionComputerFamily(buildKeys,
-                        hashFunctionGeneratorFactories).createPartitioner(0);
+                ITuplePartitionComputerFamily probeHpcf = new FieldHashPartitionComputerFamily(probeKeys,
+                        hashFunctionGeneratorFactories);
+                ITuplePartitionComputerFamily buildHpcf = new FieldHashPartitionComputerFamily(buildKeys,
+                        hashFunctionGeneratorFactories);
+                ITuplePartitionComputer probeHpc = probeHpcf.createPartitioner(0);
+                ITuplePartitionComputer buildHpc = buildHpcf.createPartitioner(0);
 
                 @Override
                 public void open() throws HyracksDataException {
                     if (memsize <= 2) { //Dedicated buffers: One buffer to read and one buffer for output
                         throw new HyracksDataException("not enough memory for Hybrid Hash Join");
                     }
-                    state.memForJoin = memsize - 2;
+                    state.bloomFilterFrames = getBloomFilterFrames();
+                    state.memForJoin = memsize - 2 - state.bloomFilterFrames;
                     state.numOfPartitions = getNumberOfPartitions(state.memForJoin, inputsize0, fudgeFactor,
                             nPartitions);
                     if (!isLeftOuter) {
@@ -296,6 +308,9 @@ public class OptimizedHybridHashJoinOperatorDescriptor extends AbstractOperatorD
                                 PROBE_REL, BUILD_REL, probeKeys, buildKeys, comparators, probeRd, buildRd, probeHpc,
                                 buildHpc, predEvaluator, isLeftOuter, nullWriterFactories1);
                     }
+                    state.hybridHJ.setNormalizedKeyComputer(createNormalizedKeyComputer());
+                    state.hybridHJ.setOpenAddressingTable(openAddressingTable);
+                    state.hybridHJ.setBloomFilter(state.bloomFilterFrames);
 
                     state.hybridHJ.initBuild();
                     LOGGER.fine("OptimizedHybridHashJoin is starting the build phase with " + state.numOfPartitions
@@ -365,6 +380,7 @@ public class OptimizedHybridHashJoinOperatorDescriptor extends AbstractOperatorD
                     nullWriters1[i] = nullWriterFactories1[i].createNullWriter();
                 }
             }
+            final INormalizedKeyComputer nkc = createNormalizedKeyComputer();
 
             IOperatorNodePushable op = new AbstractUnaryInputUnaryOutputOperatorNodePushable() {
                 private BuildAndPartitionTaskState state;
@@ -485,21 +501,27 @@ public class OptimizedHybridHashJoinOperatorDescriptor extends AbstractOperatorD
                             rHHj = new OptimizedHybridHashJoin(ctx, state.memForJoin, n, PROBE_REL, BUILD_REL,
                                     probeKeys, buildKeys, comparators, probeRd, buildRd, probeHpc, buildHpc,
                                     predEvaluator); //checked-confirmed
+                            rHHj.setNormalizedKeyComputer(nkc);
+                            rHHj.setOpenAddressingTable(openAddressingTable);
+                            rHHj.setBloomFilter(state.bloomFilterFrames);
 
-                            buildSideReader.open();
+                            LargeFrameReader buildSideLargeReader = new LargeFrameReader(ctx, buildSideReader);
+                            buildSideLargeReader.open();
                             rHHj.initBuild();
                             rPartbuff.clear();
-                            while (buildSideReader.nextFrame(rPartbuff)) {
-                                rHHj.build(rPartbuff);
+                            ByteBuffer frame;
+                            while ((frame = buildSideLargeReader.nextFrame(rPartbuff)) != null) {
+                                rHHj.build(frame);
                             }
 
                             rHHj.closeBuild();
 
-                            probeSideReader.open();
+                            LargeFrameReader probeSideLargeReader = new LargeFrameReader(ctx, probeSideReader);
+                            probeSideLargeReader.open();
                             rHHj.initProbe();
                             rPartbuff.clear();
-                            while (probeSideReader.nextFrame(rPartbuff)) {
-                                rHHj.probe(rPartbuff, writer);
+                            while ((frame = probeSideLargeReader.nextFrame(rPartbuff)) != null) {
+                                rHHj.probe(frame, writer);
                             }
                             rHHj.closeProbe(writer);
 
@@ -554,19 +576,25 @@ public class OptimizedHybridHashJoinOperatorDescriptor extends AbstractOperatorD
                                     buildKeys, probeKeys, comparators, buildRd, probeRd, buildHpc, probeHpc,
                                     predEvaluator); //checked-confirmed
                             rHHj.setIsReversed(true); //Added to use predicateEvaluator (for inMemoryHashJoin) correctly
+                            rHHj.setNormalizedKeyComputer(nkc);
+                            rHHj.setOpenAddressingTable(openAddressingTable);
+                            rHHj.setBloomFilter(state.bloomFilterFrames);
 
-                            probeSideReader.open();
+                            LargeFrameReader probeSideLargeReader = new LargeFrameReader(ctx, probeSideReader);
+                            probeSideLargeReader.open();
                             rHHj.initBuild();
                             rPartbuff.clear();
-                            while (probeSideReader.nextFrame(rPartbuff)) {
-                                rHHj.build(rPartbuff);
+                            ByteBuffer frame;
+                            while ((frame = probeSideLargeReader.nextFrame(rPartbuff)) != null) {
+                                rHHj.build(frame);
                             }
                             rHHj.closeBuild();
                             rHHj.initProbe();
-                            buildSideReader.open();
+                            LargeFrameReader buildSideLargeReader = new LargeFrameReader(ctx, buildSideReader);
+                            buildSideLargeReader.open();
                             rPartbuff.clear();
-                            while (buildSideReader.nextFrame(rPartbuff)) {
-                                rHHj.probe(rPartbuff, writer);
+                            while ((frame = buildSideLargeReader.nextFrame(rPartbuff)) != null) {
+                                rHHj.probe(frame, writer);
                             }
                             rHHj.closeProbe(writer);
                             int maxAfterBuildSize = rHHj.getMaxBuildPartitionSize();
@@ -620,30 +648,37 @@ public class OptimizedHybridHashJoinOperatorDescriptor extends AbstractOperatorD
                         RecordDescriptor probeRDesc, ITuplePartitionComputer hpcRepLarger,
                         ITuplePartitionComputer hpcRepSmaller, RunFileReader bReader, RunFileReader pReader,
                         boolean reverse, int pid) throws HyracksDataException {
-                    ISerializableTable table = new SerializableHashTable(tabSize, ctx);
+                    ISerializableTable table = openAddressingTable ? new OpenAddressingHashTable(tabSize, ctx)
+                            : new SerializableHashTable(tabSize, ctx);
                     InMemoryHashJoin joiner = new InMemoryHashJoin(ctx, tabSize, new FrameTupleAccessor(
                             ctx.getFrameSize(), probeRDesc), hpcRepLarger, new FrameTupleAccessor(ctx.getFrameSize(),
                             buildRDesc), hpcRepSmaller, new FrameTuplePairComparator(pKeys, bKeys, comparators),
                             isLeftOuter, nullWriters1, table, predEvaluator, reverse);
+                    if (nkc != null) {
+                        joiner.setNormalizedKeyComputer(nkc, pKeys[0], bKeys[0]);
+                    }
 
-                    bReader.open();
+                    LargeFrameReader bLargeReader = new LargeFrameReader(ctx, bReader);
+                    bLargeReader.open();
                     rPartbuff.clear();
-                    while (bReader.nextFrame(rPartbuff)) {
-                        ByteBuffer copyBuffer = ctx.allocateFrame(); //We need to allocate a copyBuffer, because this buffer gets added to the buffers list in the InMemoryHashJoin
-                        FrameUtils.copy(rPartbuff, copyBuffer);
+                    ByteBuffer frame;
+                    while ((frame = bLargeReader.nextFrame(rPartbuff)) != null) {
+                        ByteBuffer copyBuffer = ctx.allocateFrame(frame.capacity()); //We need to allocate a copyBuffer, because this buffer gets added to the buffers list in the InMemoryHashJoin
+                        FrameUtils.copy(frame, copyBuffer);
                         FrameUtils.makeReadable(copyBuffer);
                         joiner.build(copyBuffer);
                         rPartbuff.clear();
                     }
-                    bReader.close();
+                    bLargeReader.close();
                     rPartbuff.clear();
                     // probe
-                    pReader.open();
-                    while (pReader.nextFrame(rPartbuff)) {
-                        joiner.join(rPartbuff, writer);
+                    LargeFrameReader pLargeReader = new LargeFrameReader(ctx, pReader);
+                    pLargeReader.open();
+                    while ((frame = pLargeReader.nextFrame(rPartbuff)) != null) {
+                        joiner.join(frame, writer);
                         rPartbuff.clear();
                     }
-                    pReader.close();
+                    pLargeReader.close();
                     joiner.closeJoin(writer);
                 }
 
@@ -656,32 +691,69 @@ public class OptimizedHybridHashJoinOperatorDescriptor extends AbstractOperatorD
                     nlj.setIsReversed(reverse);
 
                     ByteBuffer cacheBuff = ctx.allocateFrame();
-                    innerReader.open();
-                    while (innerReader.nextFrame(cacheBuff)) {
-                        FrameUtils.makeReadable(cacheBuff);
-                        nlj.cache(cacheBuff);
+                    LargeFrameReader innerLargeReader = new LargeFrameReader(ctx, innerReader);
+                    innerLargeReader.open();
+                    ByteBuffer frame;
+                    while ((frame = innerLargeReader.nextFrame(cacheBuff)) != null) {
+                        nlj.cache(frame);
                         cacheBuff.clear();
                     }
                     nlj.closeCache();
 
                     ByteBuffer joinBuff = ctx.allocateFrame();
-                    outerReader.open();
+                    LargeFrameReader outerLargeReader = new LargeFrameReader(ctx, outerReader);
+                    outerLargeReader.open();
 
-                    while (outerReader.nextFrame(joinBuff)) {
-                        FrameUtils.makeReadable(joinBuff);
-                        nlj.join(joinBuff, writer);
+                    while ((frame = outerLargeReader.nextFrame(joinBuff)) != null) {
+                        nlj.join(frame, writer);
                         joinBuff.clear();
                     }
 
                     nlj.closeJoin(writer);
-                    outerReader.close();
-                    innerReader.close();
+                    outerLargeReader.close();
+                    innerLargeReader.close();
                 }
             };
             return op;
         }
     }
 
+    private INormalizedKeyComputer createNormalizedKeyComputer() {
+        return firstKeyNormalizerFactory == null ? null : firstKeyNormalizerFactory.createNormalizedKeyComputer();
+    }
+
+    /**
+     * Sets the normalized key computer factory of the first join key. The in-memory hash joins compare normalized
+     * keys before comparing the keys of tuples that hash to the same entry. The normalized keys must be consistent
+     * with the comparator of the first key on both inputs.
+     */
+    public void setFirstKeyNormalizerFactory(INormalizedKeyComputerFactory firstKeyNormalizerFactory) {
+        this.firstKeyNormalizerFactory = firstKeyNormalizerFactory;
+    }
+
+    /**
+     * Sets whether the in-memory hash joins index the build side with an {@link OpenAddressingHashTable} instead of a
+     * {@link SerializableHashTable}.
+     */
+    public void setOpenAddressingTable(boolean openAddressingTable) {
+        this.openAddressingTable = openAddressingTable;
+    }
+
+    private int getBloomFilterFrames() {
+        //The filter only takes memory when enough is left for the partitions; outer joins cannot prune probe tuples
+        return (isLeftOuter || memsize - 2 - bloomFilterFrames < 2) ? 0 : bloomFilterFrames;
+    }
+
+    /**
+     * Sets the number of frames, out of the memory of the join, that hold a bloom filter on the keys of
+     * the spilled build tuples. Probe tuples of spilled partitions are dropped instead of spilled when the
+     * filter rejects them. The filter hashes the bytes of the keys, so it may only be enabled when keys
+     * that compare equal have equal bytes on both inputs. 0 (the default) disables the filter.
+     */
+    public void setBloomFilterFrames(int bloomFilterFrames) {
+        this.bloomFilterFrames = bloomFilterFrames;
+    }
+
     public void setSkipInMemHJ(boolean b) {
         skipInMemoryHJ = b;
     }
@@ -25,7 +25,7 @@ import edu.uci.ics.hyracks.api.dataflow.TaskId;
 import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
 import edu.uci.ics.hyracks.api.io.FileReference;
 import edu.uci.ics.hyracks.api.job.JobId;
-import edu.uci.ics.hyracks.dataflow.common.io.RunFileReader;
+import edu.uci.ics.hyracks.dataflow.common.comm.io.LargeFrameReader;
 import edu.uci.ics.hyracks.dataflow.common.io.RunFileWriter;
 import edu.uci.ics.hyracks.dataflow.std.base.AbstractStateObject;
 
@@ -49,7 +49,7 @@ public class MaterializerTaskState extends AbstractStateObject {
     public void open(IHyracksTaskContext ctx) throws HyracksDataException {
         FileReference file = ctx.getJobletContext().createManagedWorkspaceFile(
                 MaterializerTaskState.class.getSimpleName());
-        out = new RunFileWriter(file, ctx.getIOManager());
+        out = new RunFileWriter(file, ctx.getIOManager(), ctx.getFrameSize());
         out.open();
     }
 
@@ -61,15 +61,14 @@ public class MaterializerTaskState extends AbstractStateObject {
         out.nextFrame(buffer);
     }
 
-    public void writeOut(IFrameWriter writer, ByteBuffer frame) throws HyracksDataException {
-        RunFileReader in = out.createReader();
+    public void writeOut(IHyracksTaskContext ctx, IFrameWriter writer, ByteBuffer frame) throws HyracksDataException {
+        LargeFrameReader in = new LargeFrameReader(ctx, out.createReader());
         writer.open();
         try {
             in.open();
-            while (in.nextFrame(frame)) {
-                frame.flip();
-                writer.nextFrame(frame);
-                frame.clear();
+            ByteBuffer buffer;
+            while ((buffer = in.nextFrame(frame)) != null) {
+                writer.nextFrame(buffer);
             }
             in.close();
         } catch (Exception e) {
@@ -108,7 +108,7 @@ public class MaterializingOperatorDescriptor extends AbstractOperatorDescriptor
                 public void close() throws HyracksDataException {
                     state.close();
                     ByteBuffer frame = ctx.allocateFrame();
-                    state.writeOut(writer, frame);
+                    state.writeOut(ctx, writer, frame);
                 }
 
             };
@@ -169,7 +169,7 @@ public class MaterializingOperatorDescriptor extends AbstractOperatorDescriptor
                     ByteBuffer frame = ctx.allocateFrame();
                     MaterializerTaskState state = (MaterializerTaskState) ctx.getStateObject(new TaskId(new ActivityId(
                             getOperatorId(), MATERIALIZER_ACTIVITY_ID), partition));
-                    state.writeOut(writer, frame);
+                    state.writeOut(ctx, writer, frame);
                 }
 
                 @Override
@@ -175,7 +175,7 @@ public class SplitOperatorDescriptor extends AbstractOperatorDescriptor {
                     ByteBuffer frame = ctx.allocateFrame();
                     MaterializerTaskState state = (MaterializerTaskState) ctx.getStateObject(new TaskId(new ActivityId(
                             getOperatorId(), SPLITTER_MATERIALIZER_ACTIVITY_ID), partition));
-                    state.writeOut(writer, frame);
+                    state.writeOut(ctx, writer, frame);
                 }
 
                 @Override
@@ -54,6 +54,8 @@ public class ExternalSortOperatorDescriptor extends AbstractOperatorDescriptor {
 
     private Algorithm alg = Algorithm.MERGE_SORT;
 
+    private int sortParallelism = 1;
+
     public ExternalSortOperatorDescriptor(IOperatorDescriptorRegistry spec, int framesLimit, int[] sortFields,
             INormalizedKeyComputerFactory firstKeyNormalizerFactory, IBinaryComparatorFactory[] comparatorFactories,
             RecordDescriptor recordDescriptor, Algorithm alg) {
@@ -80,6 +82,14 @@ public class ExternalSortOperatorDescriptor extends AbstractOperatorDescriptor {
         recordDescriptors[0] = recordDescriptor;
     }
 
+    /**
+     * Sorts every partition with up to sortParallelism threads, and writes a run while the next one is sorted.
+     * Only merge sort is parallelized; the write overlap needs a framesLimit of at least 4 and halves the run size.
+     */
+    public void setSortParallelism(int sortParallelism) {
+        this.sortParallelism = sortParallelism;
+    }
+
     @Override
     public void contributeActivities(IActivityGraphBuilder builder) {
         SortActivity sa = new SortActivity(new ActivityId(odId, SORT_ACTIVITY_ID));
@@ -132,7 +142,7 @@ public class ExternalSortOperatorDescriptor extends AbstractOperatorDescriptor {
                 @Override
                 public void open() throws HyracksDataException {
                     runGen = new ExternalSortRunGenerator(ctx, sortFields, firstKeyNormalizerFactory,
-                            comparatorFactories, recordDescriptors[0], alg, framesLimit);
+                            comparatorFactories, recordDescriptors[0], alg, framesLimit, sortParallelism);
                     runGen.open();
                 }
 
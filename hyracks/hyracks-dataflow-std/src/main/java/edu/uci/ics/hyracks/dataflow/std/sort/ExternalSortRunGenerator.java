@@ -3,9 +3,9 @@
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
  * you may obtain a copy of the License from
- * 
+ *
  *     http://www.apache.org/licenses/LICENSE-2.0
- * 
+ *
  * Unless required by applicable law or agreed to in writing, software
  * distributed under the License is distributed on an "AS IS" BASIS,
  * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
@@ -17,6 +17,9 @@ package edu.uci.ics.hyracks.dataflow.std.sort;
 import java.nio.ByteBuffer;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 import edu.uci.ics.hyracks.api.comm.IFrameReader;
 import edu.uci.ics.hyracks.api.comm.IFrameWriter;
@@ -26,38 +29,75 @@ import edu.uci.ics.hyracks.api.dataflow.value.INormalizedKeyComputerFactory;
 import edu.uci.ics.hyracks.api.dataflow.value.RecordDescriptor;
 import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
 import edu.uci.ics.hyracks.api.io.FileReference;
+import edu.uci.ics.hyracks.api.io.IBlockCompressor;
 import edu.uci.ics.hyracks.dataflow.common.io.RunFileWriter;
 
+/**
+ * Sorts the input in memory-sized chunks and writes every chunk but the last one into a run.
+ * With a sort parallelism above 1, merge sorts run on several threads, and the memory is split between two
+ * sorters: while the frames of one sorter are written into a run in the background, the other one is filled and
+ * sorted. Both sorters together stay within framesLimit. The extra threads come from the executor of the node
+ * controller.
+ */
 public class ExternalSortRunGenerator implements IFrameWriter {
     private final IHyracksTaskContext ctx;
-    private final IFrameSorter frameSorter;
+    private final IBlockCompressor spillCompressor;
+    private final IFrameSorter[] frameSorters;
     private final List<IFrameReader> runs;
     private final int maxSortFrames;
 
+    private IFrameSorter frameSorter;
+    private int currentSorter;
+    private FutureTask<Void> pendingRun;
+    private RunFileWriter pendingRunWriter;
+
     public ExternalSortRunGenerator(IHyracksTaskContext ctx, int[] sortFields,
             INormalizedKeyComputerFactory firstKeyNormalizerFactory, IBinaryComparatorFactory[] comparatorFactories,
             RecordDescriptor recordDesc, Algorithm alg, int framesLimit) throws HyracksDataException {
+        this(ctx, sortFields, firstKeyNormalizerFactory, comparatorFactories, recordDesc, alg, framesLimit, 1);
+    }
+
+    public ExternalSortRunGenerator(IHyracksTaskContext ctx, int[] sortFields,
+            INormalizedKeyComputerFactory firstKeyNormalizerFactory, IBinaryComparatorFactory[] comparatorFactories,
+            RecordDescriptor recordDesc, Algorithm alg, int framesLimit, int sortParallelism)
+            throws HyracksDataException {
         this.ctx = ctx;
-        if (alg == Algorithm.MERGE_SORT) {
-            frameSorter = new FrameSorterMergeSort(ctx, sortFields, firstKeyNormalizerFactory, comparatorFactories,
-                    recordDesc);
-        } else {
-            frameSorter = new FrameSorterQuickSort(ctx, sortFields, firstKeyNormalizerFactory, comparatorFactories,
-                    recordDesc);
+        this.spillCompressor = RunFileWriter.createSpillCompressor(ctx);
+        /**
+         * every sorter holds its sort frames plus one output frame
+         */
+        boolean doubleBuffered = sortParallelism > 1 && framesLimit >= 4;
+        frameSorters = new IFrameSorter[doubleBuffered ? 2 : 1];
+        for (int i = 0; i < frameSorters.length; ++i) {
+            if (alg == Algorithm.MERGE_SORT) {
+                FrameSorterMergeSort sorter = new FrameSorterMergeSort(ctx, sortFields, firstKeyNormalizerFactory,
+                        comparatorFactories, recordDesc);
+                sorter.setParallelism(ctx.getExecutor(), sortParallelism);
+                frameSorters[i] = sorter;
+            } else {
+                frameSorters[i] = new FrameSorterQuickSort(ctx, sortFields, firstKeyNormalizerFactory,
+                        comparatorFactories, recordDesc);
+            }
         }
+        frameSorter = frameSorters[0];
         runs = new LinkedList<IFrameReader>();
-        maxSortFrames = framesLimit - 1;
+        maxSortFrames = doubleBuffered ? (framesLimit - 2) / 2 : framesLimit - 1;
     }
 
     @Override
     public void open() throws HyracksDataException {
         runs.clear();
-        frameSorter.reset();
+        for (IFrameSorter sorter : frameSorters) {
+            sorter.reset();
+        }
+        currentSorter = 0;
+        frameSorter = frameSorters[0];
     }
 
     @Override
     public void nextFrame(ByteBuffer buffer) throws HyracksDataException {
-        if (frameSorter.getFrameCount() >= maxSortFrames) {
+        int frameCount = frameSorter.getFrameCount();
+        if (frameCount > 0 && frameCount + buffer.capacity() / ctx.getFrameSize() > maxSortFrames) {
             flushFramesToRun();
         }
         frameSorter.insertFrame(buffer);
@@ -65,11 +105,23 @@ public class ExternalSortRunGenerator implements IFrameWriter {
 
     @Override
     public void close() throws HyracksDataException {
-        if (frameSorter.getFrameCount() > 0) {
-            if (runs.size() <= 0) {
-                frameSorter.sortFrames();
-            } else {
-                flushFramesToRun();
+        try {
+            if (frameSorter.getFrameCount() > 0) {
+                if (runs.size() <= 0 && pendingRun == null) {
+                    frameSorter.sortFrames();
+                } else {
+                    flushFramesToRun();
+                }
+            }
+            waitForPendingRun();
+        } finally {
+            /** on failure, the run being written must not outlive the operator */
+            abandonPendingRun();
+        }
+        for (IFrameSorter sorter : frameSorters) {
+            if (sorter != frameSorter) {
+                /** recycle the sort buffer of the idle sorter, the merger recycles the other one */
+                sorter.close();
             }
         }
     }
@@ -78,19 +130,98 @@ public class ExternalSortRunGenerator implements IFrameWriter {
         frameSorter.sortFrames();
         FileReference file = ctx.getJobletContext().createManagedWorkspaceFile(
                 ExternalSortRunGenerator.class.getSimpleName());
-        RunFileWriter writer = new RunFileWriter(file, ctx.getIOManager());
+        RunFileWriter writer = new RunFileWriter(file, ctx.getIOManager(), ctx.getFrameSize(), spillCompressor);
+        if (frameSorters.length == 1) {
+            writer.open();
+            try {
+                frameSorter.flushFrames(writer);
+            } finally {
+                writer.close();
+            }
+            frameSorter.reset();
+            runs.add(writer.createReader());
+            return;
+        }
+        /**
+         * the other sorter is only free once its run is written
+         */
+        waitForPendingRun();
+        writeRunInBackground(frameSorter, writer);
+        currentSorter = 1 - currentSorter;
+        frameSorter = frameSorters[currentSorter];
+    }
+
+    private void writeRunInBackground(final IFrameSorter sorter, final RunFileWriter writer)
+            throws HyracksDataException {
         writer.open();
+        pendingRunWriter = writer;
+        pendingRun = new FutureTask<Void>(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                try {
+                    sorter.flushFrames(writer);
+                } finally {
+                    writer.close();
+                }
+                sorter.reset();
+                return null;
+            }
+        });
+        ctx.getExecutor().execute(pendingRun);
+    }
+
+    private void waitForPendingRun() throws HyracksDataException {
+        if (pendingRun == null) {
+            return;
+        }
         try {
-            frameSorter.flushFrames(writer);
-        } finally {
-            writer.close();
+            pendingRun.get();
+        } catch (InterruptedException e) {
+            /** the run is still being written, so it is left for abandonPendingRun() */
+            Thread.currentThread().interrupt();
+            throw new HyracksDataException(e);
+        } catch (ExecutionException e) {
+            pendingRun = null;
+            pendingRunWriter = null;
+            if (e.getCause() instanceof HyracksDataException) {
+                throw (HyracksDataException) e.getCause();
+            }
+            throw new HyracksDataException(e.getCause());
+        }
+        pendingRun = null;
+        runs.add(pendingRunWriter.createReader());
+        pendingRunWriter = null;
+    }
+
+    /**
+     * Waits for the run being written, if any, and drops it. The writer closes its file whether it succeeds or not,
+     * so nothing is left running or open once this returns.
+     */
+    private void abandonPendingRun() {
+        if (pendingRun == null) {
+            return;
+        }
+        boolean interrupted = false;
+        while (true) {
+            try {
+                pendingRun.get();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            } catch (ExecutionException e) {
+                break;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
         }
-        frameSorter.reset();
-        runs.add(writer.createReader());
+        pendingRun = null;
+        pendingRunWriter = null;
     }
 
     @Override
     public void fail() throws HyracksDataException {
+        abandonPendingRun();
     }
 
     public IFrameSorter getFrameSorter() {
@@ -100,4 +231,4 @@ public class ExternalSortRunGenerator implements IFrameWriter {
     public List<IFrameReader> getRuns() {
         return runs;
     }
-}
\ No newline at end of file
+}
@@ -16,6 +16,7 @@ package edu.uci.ics.hyracks.dataflow.std.sort;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -27,8 +28,10 @@ import edu.uci.ics.hyracks.api.dataflow.value.INormalizedKeyComputer;
 import edu.uci.ics.hyracks.api.dataflow.value.RecordDescriptor;
 import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
 import edu.uci.ics.hyracks.api.io.FileReference;
+import edu.uci.ics.hyracks.api.io.IBlockCompressor;
 import edu.uci.ics.hyracks.dataflow.common.comm.io.FrameTupleAccessor;
 import edu.uci.ics.hyracks.dataflow.common.comm.io.FrameTupleAppender;
+import edu.uci.ics.hyracks.dataflow.common.comm.io.LargeFrameReader;
 import edu.uci.ics.hyracks.dataflow.common.comm.util.FrameUtils;
 import edu.uci.ics.hyracks.dataflow.common.io.RunFileReader;
 import edu.uci.ics.hyracks.dataflow.common.io.RunFileWriter;
@@ -55,8 +58,13 @@ import edu.uci.ics.hyracks.dataflow.common.io.RunFileWriter;
  */
 
 public class ExternalSortRunMerger {
+    /**
+     * Upper bound of the read-ahead frames per run during a merge.
+     */
+    public static final int MAX_READ_AHEAD_FRAMES = 4;
 
     private final IHyracksTaskContext ctx;
+    private final IBlockCompressor spillCompressor;
     private final List<IFrameReader> runs;
     private final int[] sortFields;
     private final IBinaryComparator[] comparators;
@@ -82,6 +90,7 @@ public class ExternalSortRunMerger {
             int[] sortFields, IBinaryComparator[] comparators, INormalizedKeyComputer nmkComputer,
             RecordDescriptor recordDesc, int framesLimit, IFrameWriter writer) {
         this.ctx = ctx;
+        this.spillCompressor = RunFileWriter.createSpillCompressor(ctx);
         this.frameSorter = frameSorter;
         this.runs = new LinkedList<IFrameReader>(runs);
         this.sortFields = sortFields;
@@ -98,6 +107,7 @@ public class ExternalSortRunMerger {
             IBinaryComparator[] comparators, INormalizedKeyComputer nmkComputer, RecordDescriptor recordDesc,
             int framesLimit, IFrameWriter writer) {
         this.ctx = ctx;
+        this.spillCompressor = RunFileWriter.createSpillCompressor(ctx);
         this.runs = new LinkedList<IFrameReader>(runs);
         this.sortFields = sortFields;
         this.comparators = comparators;
@@ -130,7 +140,7 @@ public class ExternalSortRunMerger {
                 for (int i = 0; i < framesLimit - 1; ++i) {
                     inFrames.add(ctx.allocateFrame());
                 }
-                int maxMergeWidth = framesLimit - 1;
+                int maxMergeWidth = planMergeWidth(runs.size(), framesLimit - 1);
                 while (runs.size() > maxMergeWidth) {
                     int generationSeparator = 0;
                     while (generationSeparator < runs.size() && runs.size() > maxMergeWidth) {
@@ -138,7 +148,8 @@ public class ExternalSortRunMerger {
                                 runs.size() - maxMergeWidth + 1);
                         FileReference newRun = ctx.createManagedWorkspaceFile(ExternalSortRunMerger.class
                                 .getSimpleName());
-                        IFrameWriter mergeResultWriter = new RunFileWriter(newRun, ctx.getIOManager());
+                        IFrameWriter mergeResultWriter = new RunFileWriter(newRun, ctx.getIOManager(),
+                                ctx.getFrameSize(), spillCompressor);
                         mergeResultWriter.open();
                         IFrameReader[] runCursors = new RunFileReader[mergeWidth];
                         for (int i = 0; i < mergeWidth; i++) {
@@ -166,19 +177,102 @@ public class ExternalSortRunMerger {
         }
     }
 
+    /**
+     * Trades fan-in against read-ahead: the frames that a narrower merge does not need as input frames become
+     * read-ahead frames of its runs. The width only shrinks as long as the intermediate merges do not have to
+     * rewrite more data than with the widest merge.
+     */
+    static int planMergeWidth(int nRuns, int inputFrames) {
+        if (inputFrames < 2) {
+            return inputFrames;
+        }
+        long cost = countIntermediateMergeCost(nRuns, inputFrames);
+        int width = inputFrames;
+        for (int readAhead = 1; readAhead <= MAX_READ_AHEAD_FRAMES; ++readAhead) {
+            int w = inputFrames / (1 + readAhead);
+            if (w < 2 || countIntermediateMergeCost(nRuns, w) > cost) {
+                break;
+            }
+            width = w;
+        }
+        return width;
+    }
+
+    /**
+     * Replays the merge schedule of {@link #process()} on runs of size 1.
+     *
+     * @return the total size of the runs written by the intermediate merges
+     */
+    static long countIntermediateMergeCost(int nRuns, int maxMergeWidth) {
+        List<Long> sizes = new ArrayList<Long>(Collections.nCopies(nRuns, 1L));
+        long cost = 0;
+        while (sizes.size() > maxMergeWidth) {
+            int generationSeparator = 0;
+            while (generationSeparator < sizes.size() && sizes.size() > maxMergeWidth) {
+                int mergeWidth = Math.min(Math.min(sizes.size() - generationSeparator, maxMergeWidth), sizes.size()
+                        - maxMergeWidth + 1);
+                List<Long> merged = sizes.subList(generationSeparator, generationSeparator + mergeWidth);
+                long size = 0;
+                for (long s : merged) {
+                    size += s;
+                }
+                merged.clear();
+                sizes.add(generationSeparator++, size);
+                cost += size;
+            }
+        }
+        return cost;
+    }
+
     private void merge(IFrameWriter mergeResultWriter, IFrameReader[] runCursors) throws HyracksDataException {
-        RunMergingFrameReader merger = new RunMergingFrameReader(ctx, runCursors, inFrames, sortFields, comparators,
-                nmkComputer, recordDesc);
+        /** the first runCursors.length frames are the merge input frames, the rest is spread as read-ahead */
+        int readAhead = Math.min(MAX_READ_AHEAD_FRAMES, inFrames.size() / runCursors.length - 1);
+        for (int i = 0, next = runCursors.length; readAhead > 0 && i < runCursors.length; ++i) {
+            if (runCursors[i] instanceof RunFileReader) {
+                ByteBuffer[] readAheadFrames = new ByteBuffer[readAhead];
+                for (int j = 0; j < readAhead; ++j) {
+                    readAheadFrames[j] = inFrames.get(next++);
+                }
+                ((RunFileReader) runCursors[i]).setReadAheadFrames(readAheadFrames);
+            }
+        }
+        LargeFrameReader merger = new LargeFrameReader(ctx, new RunMergingFrameReader(ctx, runCursors, inFrames,
+                sortFields, comparators, nmkComputer, recordDesc));
         merger.open();
         try {
-            while (merger.nextFrame(outFrame)) {
-                FrameUtils.flushFrame(outFrame, mergeResultWriter);
+            ByteBuffer frame;
+            while ((frame = merger.nextFrame(outFrame)) != null) {
+                FrameUtils.flushFrame(frame, mergeResultWriter);
             }
         } finally {
             merger.close();
         }
     }
 
+    /**
+     * Writes the first count tuples of the accessor's frame to the writer through buffer. A tuple that does not fit
+     * into a frame is written in a large frame of its own.
+     */
+    private void flushTuples(FrameTupleAccessor fta, int count, ByteBuffer buffer, IFrameWriter writer)
+            throws HyracksDataException {
+        outFrameAppender.reset(buffer, true);
+        for (int i = 0; i < count; i++) {
+            if (!outFrameAppender.append(fta, i)) {
+                if (outFrameAppender.getTupleCount() > 0) {
+                    FrameUtils.flushFrame(buffer, writer);
+                    outFrameAppender.reset(buffer, true);
+                }
+                if (!outFrameAppender.append(fta, i)) {
+                    FrameUtils.flushLargeTuple(ctx, fta, i, writer);
+                }
+            }
+        }
+        if (outFrameAppender.getTupleCount() > 0) {
+            FrameUtils.flushFrame(buffer, writer);
+        }
+        outFrameAppender.reset(buffer, true);
+    }
+
     public void processWithReplacementSelection() throws HyracksDataException {
         writer.open();
         try {
@@ -187,44 +281,35 @@ public class ExternalSortRunMerger {
             outFrameAppender = new FrameTupleAppender(ctx.getFrameSize());
             outFrameAppender.reset(outFrame, true);
             if (runs.size() == 1) {
+                LargeFrameReader run = new LargeFrameReader(ctx, runs.get(0));
+                ByteBuffer nextFrame = ctx.allocateFrame();
+                ByteBuffer frame;
                 if (outputLimit < 1) {
-                    runs.get(0).open();
-                    ByteBuffer nextFrame = ctx.allocateFrame();
-                    while (runs.get(0).nextFrame(nextFrame)) {
-                        FrameUtils.flushFrame(nextFrame, writer);
-                        outFrameAppender.reset(nextFrame, true);
+                    run.open();
+                    while ((frame = run.nextFrame(nextFrame)) != null) {
+                        FrameUtils.flushFrame(frame, writer);
                     }
+                    run.close();
                     return;
                 }
                 // Limit on the output size
                 int totalCount = 0;
-                runs.get(0).open();
+                run.open();
                 FrameTupleAccessor fta = new FrameTupleAccessor(ctx.getFrameSize(), recordDesc);
-                ByteBuffer nextFrame = ctx.allocateFrame();
-                while (totalCount <= outputLimit && runs.get(0).nextFrame(nextFrame)) {
-                    fta.reset(nextFrame);
+                while (totalCount < outputLimit && (frame = run.nextFrame(nextFrame)) != null) {
+                    fta.reset(frame);
                     int tupCount = fta.getTupleCount();
                     if ((totalCount + tupCount) < outputLimit) {
-                        FrameUtils.flushFrame(nextFrame, writer);
+                        FrameUtils.flushFrame(frame, writer);
                         totalCount += tupCount;
                         continue;
                     }
                     // The very last buffer, which exceeds the limit
                     int copyCount = outputLimit - totalCount;
-                    outFrameAppender.reset(outFrame, true);
-                    for (int i = 0; i < copyCount; i++) {
-                        if (!outFrameAppender.append(fta, i)) {
-                            throw new HyracksDataException("Record size ("
-                                    + (fta.getTupleEndOffset(i) - fta.getTupleStartOffset(i))
-                                    + ") larger than frame size (" + outFrameAppender.getBuffer().capacity() + ")");
-                        }
-                        totalCount++;
-                    }
-                }
-                if (outFrameAppender.getTupleCount() > 0) {
-                    FrameUtils.flushFrame(outFrame, writer);
-                    outFrameAppender.reset(outFrame, true);
+                    flushTuples(fta, copyCount, outFrame, writer);
+                    totalCount += copyCount;
                 }
+                run.close();
                 return;
             }
             // More than one run, actual merging is needed
@@ -260,7 +345,7 @@ public class ExternalSortRunMerger {
             }
         } else {
             newRun = ctx.createManagedWorkspaceFile(ExternalSortRunMerger.class.getSimpleName());
-            writer = new RunFileWriter(newRun, ctx.getIOManager());
+            writer = new RunFileWriter(newRun, ctx.getIOManager(), ctx.getFrameSize(), spillCompressor);
             writer.open();
         }
         try {
@@ -268,32 +353,26 @@ public class ExternalSortRunMerger {
             for (int i = 0; i < inFrames.size(); i++) {
                 runCursors[i] = runs.get(i);
             }
-            RunMergingFrameReader merger = new RunMergingFrameReader(ctx, runCursors, inFrames, sortFields,
-                    comparators, nmkComputer, recordDesc);
+            LargeFrameReader merger = new LargeFrameReader(ctx, new RunMergingFrameReader(ctx, runCursors,
+                    inFrames, sortFields, comparators, nmkComputer, recordDesc));
             merger.open();
             try {
-                while (merger.nextFrame(outFrame)) {
+                ByteBuffer frame;
+                while ((frame = merger.nextFrame(outFrame)) != null) {
                     if (outputLimit > 0 && finalPass) {
-                        outFrameAccessor.reset(outFrame);
+                        outFrameAccessor.reset(frame);
                         int count = outFrameAccessor.getTupleCount();
                         if ((currentSize + count) > outputLimit) {
-                            ByteBuffer b = ctx.allocateFrame();
-                            FrameTupleAppender partialAppender = new FrameTupleAppender(ctx.getFrameSize());
-                            partialAppender.reset(b, true);
                             int copyCount = outputLimit - currentSize;
-                            for (int i = 0; i < copyCount; i++) {
-                                partialAppender.append(outFrameAccessor, i);
-                                currentSize++;
-                            }
-                            FrameUtils.makeReadable(b);
-                            FrameUtils.flushFrame(b, writer);
+                            flushTuples(outFrameAccessor, copyCount, ctx.allocateFrame(), writer);
+                            currentSize += copyCount;
                             break;
                         } else {
-                            FrameUtils.flushFrame(outFrame, writer);
+                            FrameUtils.flushFrame(frame, writer);
                             currentSize += count;
                         }
                     } else {
-                        FrameUtils.flushFrame(outFrame, writer);
+                        FrameUtils.flushFrame(frame, writer);
                     }
                 }
             } finally {
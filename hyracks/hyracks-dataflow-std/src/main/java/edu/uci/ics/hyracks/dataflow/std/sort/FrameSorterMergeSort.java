@@ -16,7 +16,12 @@ package edu.uci.ics.hyracks.dataflow.std.sort;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 
 import edu.uci.ics.hyracks.api.comm.IFrameWriter;
 import edu.uci.ics.hyracks.api.context.IHyracksTaskContext;
@@ -24,6 +29,7 @@ import edu.uci.ics.hyracks.api.dataflow.value.IBinaryComparator;
 import edu.uci.ics.hyracks.api.dataflow.value.IBinaryComparatorFactory;
 import edu.uci.ics.hyracks.api.dataflow.value.INormalizedKeyComputer;
 import edu.uci.ics.hyracks.api.dataflow.value.INormalizedKeyComputerFactory;
+import edu.uci.ics.hyracks.api.dataflow.value.IWideNormalizedKeyComputer;
 import edu.uci.ics.hyracks.api.dataflow.value.RecordDescriptor;
 import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
 import edu.uci.ics.hyracks.dataflow.common.comm.io.FrameTupleAccessor;
@@ -32,58 +38,105 @@ import edu.uci.ics.hyracks.dataflow.common.comm.util.FrameUtils;
 import edu.uci.ics.hyracks.dataflow.common.util.IntSerDeUtils;
 
 public class FrameSorterMergeSort implements IFrameSorter {
+    /**
+     * Below this number of tuples, a parallel sort costs more in task overhead than it saves.
+     */
+    public static final int MIN_PARALLEL_TUPLES = 8192;
+
     private final IHyracksTaskContext ctx;
     private final int[] sortFields;
     private final INormalizedKeyComputer nkc;
-    private final IBinaryComparator[] comparators;
+    private final IWideNormalizedKeyComputer wideNkc;
+    /**
+     * number of normalized key ints per tuple
+     */
+    private final int nkLength;
+    /**
+     * number of ints per tuple in tPointers: frame index, tuple start, tuple end, normalized key
+     */
+    private final int tpSize;
+    private final IBinaryComparatorFactory[] comparatorFactories;
+    private final RecordDescriptor recordDescriptor;
     private final List<ByteBuffer> buffers;
 
     private final FrameTupleAccessor fta1;
-    private final FrameTupleAccessor fta2;
 
     private final FrameTupleAppender appender;
 
     private final ByteBuffer outFrame;
 
     private int dataFrameCount;
+    /**
+     * frames of memory held by the data frames, where a large frame counts as several frames
+     */
+    private int memoryFrameCount;
     private int[] tPointers;
     private int[] tPointersTemp;
     private int tupleCount;
 
+    private Merger[] mergers;
+    private Executor executor;
+
     public FrameSorterMergeSort(IHyracksTaskContext ctx, int[] sortFields,
             INormalizedKeyComputerFactory firstKeyNormalizerFactory, IBinaryComparatorFactory[] comparatorFactories,
             RecordDescriptor recordDescriptor) throws HyracksDataException {
         this.ctx = ctx;
         this.sortFields = sortFields;
         nkc = firstKeyNormalizerFactory == null ? null : firstKeyNormalizerFactory.createNormalizedKeyComputer();
-        comparators = new IBinaryComparator[comparatorFactories.length];
-        for (int i = 0; i < comparatorFactories.length; ++i) {
-            comparators[i] = comparatorFactories[i].createBinaryComparator();
-        }
+        wideNkc = nkc instanceof IWideNormalizedKeyComputer ? (IWideNormalizedKeyComputer) nkc : null;
+        nkLength = wideNkc == null ? 1 : wideNkc.getNormalizedKeyLength();
+        tpSize = 3 + nkLength;
+        this.comparatorFactories = comparatorFactories;
+        this.recordDescriptor = recordDescriptor;
+        mergers = new Merger[] { new Merger(comparatorFactories, recordDescriptor) };
         buffers = new ArrayList<ByteBuffer>();
         fta1 = new FrameTupleAccessor(ctx.getFrameSize(), recordDescriptor);
-        fta2 = new FrameTupleAccessor(ctx.getFrameSize(), recordDescriptor);
         appender = new FrameTupleAppender(ctx.getFrameSize());
         outFrame = ctx.allocateFrame();
 
         dataFrameCount = 0;
     }
 
+    /**
+     * Lets the merge phases of {@link #sortFrames()} run on the calling thread and up to parallelism - 1
+     * threads of the given executor. Inputs smaller than {@link #MIN_PARALLEL_TUPLES} tuples are still sorted on
+     * the calling thread.
+     */
+    public void setParallelism(Executor executor, int parallelism) {
+        if (parallelism <= 1) {
+            this.executor = null;
+            mergers = new Merger[] { mergers[0] };
+            return;
+        }
+        this.executor = executor;
+        Merger[] newMergers = new Merger[parallelism];
+        for (int i = 0; i < parallelism; ++i) {
+            newMergers[i] = i < mergers.length ? mergers[i] : new Merger(comparatorFactories, recordDescriptor);
+        }
+        mergers = newMergers;
+    }
+
     @Override
     public void reset() {
         dataFrameCount = 0;
+        memoryFrameCount = 0;
         tupleCount = 0;
+        releaseLargeFrames();
     }
 
     @Override
     public int getFrameCount() {
-        return dataFrameCount;
+        return memoryFrameCount;
     }
 
     @Override
     public void insertFrame(ByteBuffer buffer) throws HyracksDataException {
         ByteBuffer copyFrame;
-        if (dataFrameCount == buffers.size()) {
+        if (buffer.capacity() > ctx.getFrameSize()) {
+            /** a large frame gets a buffer of its own until the next reset */
+            copyFrame = ctx.allocateFrame(buffer.capacity());
+            buffers.add(dataFrameCount, copyFrame);
+        } else if (dataFrameCount == buffers.size()) {
             copyFrame = ctx.allocateFrame();
             buffers.add(copyFrame);
         } else {
@@ -91,6 +144,18 @@ public class FrameSorterMergeSort implements IFrameSorter {
         }
         FrameUtils.copy(buffer, copyFrame);
         ++dataFrameCount;
+        memoryFrameCount += copyFrame.capacity() / ctx.getFrameSize();
+    }
+
+    private void releaseLargeFrames() {
+        Iterator<ByteBuffer> i = buffers.iterator();
+        while (i.hasNext()) {
+            ByteBuffer buffer = i.next();
+            if (buffer.capacity() > ctx.getFrameSize()) {
+                ctx.deallocateFrames(buffer.capacity() / ctx.getFrameSize());
+                i.remove();
+            }
+        }
     }
 
     @Override
@@ -102,7 +167,8 @@ public class FrameSorterMergeSort implements IFrameSorter {
             tupleCount += fta1.getTupleCount();
         }
         int sfIdx = sortFields[0];
-        tPointers = tPointers == null || tPointers.length < tupleCount * 4 ? new int[tupleCount * 4] : tPointers;
+        tPointers = tPointers == null || tPointers.length < tupleCount * tpSize ? new int[tupleCount * tpSize]
+                : tPointers;
         int ptr = 0;
         for (int i = 0; i < nBuffers; ++i) {
             fta1.reset(buffers.get(i));
@@ -111,13 +177,18 @@ public class FrameSorterMergeSort implements IFrameSorter {
             for (int j = 0; j < tCount; ++j) {
                 int tStart = fta1.getTupleStartOffset(j);
                 int tEnd = fta1.getTupleEndOffset(j);
-                tPointers[ptr * 4] = i;
-                tPointers[ptr * 4 + 1] = tStart;
-                tPointers[ptr * 4 + 2] = tEnd;
+                tPointers[ptr * tpSize] = i;
+                tPointers[ptr * tpSize + 1] = tStart;
+                tPointers[ptr * tpSize + 2] = tEnd;
                 int f0StartRel = fta1.getFieldStartOffset(j, sfIdx);
                 int f0EndRel = fta1.getFieldEndOffset(j, sfIdx);
                 int f0Start = f0StartRel + tStart + fta1.getFieldSlotsLength();
-                tPointers[ptr * 4 + 3] = nkc == null ? 0 : nkc.normalize(array, f0Start, f0EndRel - f0StartRel);
+                if (wideNkc != null) {
+                    wideNkc.normalize(array, f0Start, f0EndRel - f0StartRel, tPointers, ptr * tpSize + 3);
+                } else {
+                    tPointers[ptr * tpSize + 3] = nkc == null ? 0 : nkc.normalize(array, f0Start, f0EndRel
+                            - f0StartRel);
+                }
                 ++ptr;
             }
         }
@@ -131,17 +202,16 @@ public class FrameSorterMergeSort implements IFrameSorter {
     public void flushFrames(IFrameWriter writer) throws HyracksDataException {
         appender.reset(outFrame, true);
         for (int ptr = 0; ptr < tupleCount; ++ptr) {
-            int i = tPointers[ptr * 4];
-            int tStart = tPointers[ptr * 4 + 1];
-            int tEnd = tPointers[ptr * 4 + 2];
+            int i = tPointers[ptr * tpSize];
+            int tStart = tPointers[ptr * tpSize + 1];
+            int tEnd = tPointers[ptr * tpSize + 2];
             ByteBuffer buffer = buffers.get(i);
             fta1.reset(buffer);
             if (!appender.append(fta1, tStart, tEnd)) {
                 FrameUtils.flushFrame(outFrame, writer);
                 appender.reset(outFrame, true);
                 if (!appender.append(fta1, tStart, tEnd)) {
-                    throw new HyracksDataException("Record size (" + (tEnd - tStart) + ") larger than frame size ("
-                            + appender.getBuffer().capacity() + ")");
+                    FrameUtils.flushLargeTuple(ctx, fta1, tStart, tEnd, writer);
                 }
             }
         }
@@ -157,13 +227,10 @@ public class FrameSorterMergeSort implements IFrameSorter {
         /** bottom-up merge */
         while (step < len) {
             /** merge */
-            for (int i = offset; i < end; i += 2 * step) {
-                int next = i + step;
-                if (next < end) {
-                    merge(i, next, step, Math.min(step, end - next));
-                } else {
-                    System.arraycopy(tPointers, i * 4, tPointersTemp, i * 4, (end - i) * 4);
-                }
+            if (executor == null || len < MIN_PARALLEL_TUPLES) {
+                mergers[0].mergeLevel(offset, end, end, step);
+            } else {
+                mergeLevelInParallel(offset, end, step);
             }
             /** prepare next phase merge */
             step *= 2;
@@ -174,84 +241,197 @@ public class FrameSorterMergeSort implements IFrameSorter {
     }
 
     /**
-     * Merge two subarrays into one
-     *
-     * @throws HyracksDataException
+     * Splits the merges of one phase into contiguous ranges, one per merger, and runs all but the last one in the
+     * executor. The merges of a phase are independent, and a phase only starts when the previous one is done.
      */
-    private void merge(int start1, int start2, int len1, int len2) throws HyracksDataException {
-        int targetPos = start1;
-        int pos1 = start1;
-        int pos2 = start2;
-        int end1 = start1 + len1 - 1;
-        int end2 = start2 + len2 - 1;
-        while (pos1 <= end1 && pos2 <= end2) {
-            int cmp = compare(pos1, pos2);
-            if (cmp <= 0) {
-                copy(pos1, targetPos);
-                pos1++;
+    private void mergeLevelInParallel(int offset, int end, int step) throws HyracksDataException {
+        int nMerges = (end - offset + 2 * step - 1) / (2 * step);
+        int nTasks = Math.min(mergers.length, nMerges);
+        if (nTasks <= 1) {
+            mergers[0].mergeLevel(offset, end, end, step);
+            return;
+        }
+        List<FutureTask<Void>> tasks = new ArrayList<FutureTask<Void>>(nTasks - 1);
+        int from = offset;
+        int lastFrom = offset;
+        for (int t = 0; t < nTasks; ++t) {
+            int mergesInTask = nMerges / nTasks + (t < nMerges % nTasks ? 1 : 0);
+            int to = Math.min(end, from + mergesInTask * 2 * step);
+            if (t < nTasks - 1) {
+                FutureTask<Void> task = new FutureTask<Void>(new MergeTask(mergers[t], from, to, end, step));
+                tasks.add(task);
+                executor.execute(task);
             } else {
-                copy(pos2, targetPos);
-                pos2++;
+                lastFrom = from;
             }
-            targetPos++;
+            from = to;
         }
-        if (pos1 <= end1) {
-            int rest = end1 - pos1 + 1;
-            System.arraycopy(tPointers, pos1 * 4, tPointersTemp, targetPos * 4, rest * 4);
+        HyracksDataException failure = null;
+        try {
+            mergers[nTasks - 1].mergeLevel(lastFrom, end, end, step);
+        } catch (HyracksDataException e) {
+            failure = e;
         }
-        if (pos2 <= end2) {
-            int rest = end2 - pos2 + 1;
-            System.arraycopy(tPointers, pos2 * 4, tPointersTemp, targetPos * 4, rest * 4);
+        /** the other tasks use tPointers too, so they are awaited even if this one failed */
+        boolean interrupted = false;
+        for (FutureTask<Void> task : tasks) {
+            while (true) {
+                try {
+                    task.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause() instanceof HyracksDataException ? (HyracksDataException) e.getCause()
+                                : new HyracksDataException(e.getCause());
+                    }
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw failure;
         }
     }
 
-    private void copy(int src, int dest) {
-        tPointersTemp[dest * 4] = tPointers[src * 4];
-        tPointersTemp[dest * 4 + 1] = tPointers[src * 4 + 1];
-        tPointersTemp[dest * 4 + 2] = tPointers[src * 4 + 2];
-        tPointersTemp[dest * 4 + 3] = tPointers[src * 4 + 3];
+    private class MergeTask implements Callable<Void> {
+        private final Merger merger;
+        private final int from;
+        private final int to;
+        private final int end;
+        private final int step;
+
+        MergeTask(Merger merger, int from, int to, int end, int step) {
+            this.merger = merger;
+            this.from = from;
+            this.to = to;
+            this.end = end;
+            this.step = step;
+        }
+
+        @Override
+        public Void call() throws HyracksDataException {
+            merger.mergeLevel(from, to, end, step);
+            return null;
+        }
     }
 
-    private int compare(int tp1, int tp2) throws HyracksDataException {
-        int i1 = tPointers[tp1 * 4];
-        int j1 = tPointers[tp1 * 4 + 1];
-        int v1 = tPointers[tp1 * 4 + 3];
+    /**
+     * Merges runs of tPointers into tPointersTemp. Comparators and accessors are not thread-safe, so every
+     * thread taking part in a sort uses its own merger.
+     */
+    private class Merger {
+        private final IBinaryComparator[] comparators;
+        private final FrameTupleAccessor fta1;
+        private final FrameTupleAccessor fta2;
 
-        int tp2i = tPointers[tp2 * 4];
-        int tp2j = tPointers[tp2 * 4 + 1];
-        int tp2v = tPointers[tp2 * 4 + 3];
+        Merger(IBinaryComparatorFactory[] comparatorFactories, RecordDescriptor recordDescriptor) {
+            comparators = new IBinaryComparator[comparatorFactories.length];
+            for (int i = 0; i < comparatorFactories.length; ++i) {
+                comparators[i] = comparatorFactories[i].createBinaryComparator();
+            }
+            fta1 = new FrameTupleAccessor(ctx.getFrameSize(), recordDescriptor);
+            fta2 = new FrameTupleAccessor(ctx.getFrameSize(), recordDescriptor);
+        }
 
-        if (v1 != tp2v) {
-            return ((((long) v1) & 0xffffffffL) < (((long) tp2v) & 0xffffffffL)) ? -1 : 1;
+        /**
+         * Merges the pairs of runs of length step that start in [from, to); end is the end of the sorted range.
+         */
+        void mergeLevel(int from, int to, int end, int step) throws HyracksDataException {
+            for (int i = from; i < to; i += 2 * step) {
+                int next = i + step;
+                if (next < end) {
+                    merge(i, next, step, Math.min(step, end - next));
+                } else {
+                    System.arraycopy(tPointers, i * tpSize, tPointersTemp, i * tpSize, (end - i) * tpSize);
+                }
+            }
         }
-        int i2 = tp2i;
-        int j2 = tp2j;
-        ByteBuffer buf1 = buffers.get(i1);
-        ByteBuffer buf2 = buffers.get(i2);
-        byte[] b1 = buf1.array();
-        byte[] b2 = buf2.array();
-        fta1.reset(buf1);
-        fta2.reset(buf2);
-        for (int f = 0; f < comparators.length; ++f) {
-            int fIdx = sortFields[f];
-            int f1Start = fIdx == 0 ? 0 : IntSerDeUtils.getInt(buf1.array(), j1 + (fIdx - 1) * 4);
-            int f1End = IntSerDeUtils.getInt(buf1.array(), j1 + fIdx * 4);
-            int s1 = j1 + fta1.getFieldSlotsLength() + f1Start;
-            int l1 = f1End - f1Start;
-            int f2Start = fIdx == 0 ? 0 : IntSerDeUtils.getInt(buf2.array(), j2 + (fIdx - 1) * 4);
-            int f2End = IntSerDeUtils.getInt(buf2.array(), j2 + fIdx * 4);
-            int s2 = j2 + fta2.getFieldSlotsLength() + f2Start;
-            int l2 = f2End - f2Start;
-            int c = comparators[f].compare(b1, s1, l1, b2, s2, l2);
-            if (c != 0) {
-                return c;
+
+        /**
+         * Merge two subarrays into one
+         *
+         * @throws HyracksDataException
+         */
+        private void merge(int start1, int start2, int len1, int len2) throws HyracksDataException {
+            int targetPos = start1;
+            int pos1 = start1;
+            int pos2 = start2;
+            int end1 = start1 + len1 - 1;
+            int end2 = start2 + len2 - 1;
+            while (pos1 <= end1 && pos2 <= end2) {
+                int cmp = compare(pos1, pos2);
+                if (cmp <= 0) {
+                    copy(pos1, targetPos);
+                    pos1++;
+                } else {
+                    copy(pos2, targetPos);
+                    pos2++;
+                }
+                targetPos++;
+            }
+            if (pos1 <= end1) {
+                int rest = end1 - pos1 + 1;
+                System.arraycopy(tPointers, pos1 * tpSize, tPointersTemp, targetPos * tpSize, rest * tpSize);
+            }
+            if (pos2 <= end2) {
+                int rest = end2 - pos2 + 1;
+                System.arraycopy(tPointers, pos2 * tpSize, tPointersTemp, targetPos * tpSize, rest * tpSize);
+            }
+        }
+
+        private void copy(int src, int dest) {
+            System.arraycopy(tPointers, src * tpSize, tPointersTemp, dest * tpSize, tpSize);
+        }
+
+        private int compare(int tp1, int tp2) throws HyracksDataException {
+            int i1 = tPointers[tp1 * tpSize];
+            int j1 = tPointers[tp1 * tpSize + 1];
+
+            int tp2i = tPointers[tp2 * tpSize];
+            int tp2j = tPointers[tp2 * tpSize + 1];
+
+            for (int k = 3; k < tpSize; ++k) {
+                int v1 = tPointers[tp1 * tpSize + k];
+                int tp2v = tPointers[tp2 * tpSize + k];
+                if (v1 != tp2v) {
+                    return ((((long) v1) & 0xffffffffL) < (((long) tp2v) & 0xffffffffL)) ? -1 : 1;
+                }
+            }
+            int i2 = tp2i;
+            int j2 = tp2j;
+            ByteBuffer buf1 = buffers.get(i1);
+            ByteBuffer buf2 = buffers.get(i2);
+            byte[] b1 = buf1.array();
+            byte[] b2 = buf2.array();
+            fta1.reset(buf1);
+            fta2.reset(buf2);
+            for (int f = 0; f < comparators.length; ++f) {
+                int fIdx = sortFields[f];
+                int f1Start = fIdx == 0 ? 0 : IntSerDeUtils.getInt(buf1.array(), j1 + (fIdx - 1) * 4);
+                int f1End = IntSerDeUtils.getInt(buf1.array(), j1 + fIdx * 4);
+                int s1 = j1 + fta1.getFieldSlotsLength() + f1Start;
+                int l1 = f1End - f1Start;
+                int f2Start = fIdx == 0 ? 0 : IntSerDeUtils.getInt(buf2.array(), j2 + (fIdx - 1) * 4);
+                int f2End = IntSerDeUtils.getInt(buf2.array(), j2 + fIdx * 4);
+                int s2 = j2 + fta2.getFieldSlotsLength() + f2Start;
+                int l2 = f2End - f2Start;
+                int c = comparators[f].compare(b1, s1, l1, b2, s2, l2);
+                if (c != 0) {
+                    return c;
+                }
             }
+            return 0;
         }
-        return 0;
     }
 
     @Override
     public void close() {
+        releaseLargeFrames();
         this.buffers.clear();
     }
 }
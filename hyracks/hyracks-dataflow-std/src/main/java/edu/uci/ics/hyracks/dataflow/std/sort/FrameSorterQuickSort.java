@@ -16,6 +16,7 @@ package edu.uci.ics.hyracks.dataflow.std.sort;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 import edu.uci.ics.hyracks.api.comm.IFrameWriter;
@@ -24,6 +25,7 @@ import edu.uci.ics.hyracks.api.dataflow.value.IBinaryComparator;
 import edu.uci.ics.hyracks.api.dataflow.value.IBinaryComparatorFactory;
 import edu.uci.ics.hyracks.api.dataflow.value.INormalizedKeyComputer;
 import edu.uci.ics.hyracks.api.dataflow.value.INormalizedKeyComputerFactory;
+import edu.uci.ics.hyracks.api.dataflow.value.IWideNormalizedKeyComputer;
 import edu.uci.ics.hyracks.api.dataflow.value.RecordDescriptor;
 import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
 import edu.uci.ics.hyracks.dataflow.common.comm.io.FrameTupleAccessor;
@@ -34,6 +36,15 @@ public class FrameSorterQuickSort implements IFrameSorter {
     private final IHyracksTaskContext ctx;
     private final int[] sortFields;
     private final INormalizedKeyComputer nkc;
+    private final IWideNormalizedKeyComputer wideNkc;
+    /**
+     * number of normalized key ints per tuple
+     */
+    private final int nkLength;
+    /**
+     * number of ints per tuple in tPointers: frame index, tuple start, tuple end, normalized key
+     */
+    private final int tpSize;
     private final IBinaryComparator[] comparators;
     private final List<ByteBuffer> buffers;
 
@@ -45,8 +56,13 @@ public class FrameSorterQuickSort implements IFrameSorter {
     private final ByteBuffer outFrame;
 
     private int dataFrameCount;
+    /**
+     * frames of memory held by the data frames, where a large frame counts as several frames
+     */
+    private int memoryFrameCount;
     private int[] tPointers;
     private int tupleCount;
+    private final int[] pivotKey;
 
     public FrameSorterQuickSort(IHyracksTaskContext ctx, int[] sortFields,
             INormalizedKeyComputerFactory firstKeyNormalizerFactory, IBinaryComparatorFactory[] comparatorFactories,
@@ -54,6 +70,10 @@ public class FrameSorterQuickSort implements IFrameSorter {
         this.ctx = ctx;
         this.sortFields = sortFields;
         nkc = firstKeyNormalizerFactory == null ? null : firstKeyNormalizerFactory.createNormalizedKeyComputer();
+        wideNkc = nkc instanceof IWideNormalizedKeyComputer ? (IWideNormalizedKeyComputer) nkc : null;
+        nkLength = wideNkc == null ? 1 : wideNkc.getNormalizedKeyLength();
+        tpSize = 3 + nkLength;
+        pivotKey = new int[nkLength];
         comparators = new IBinaryComparator[comparatorFactories.length];
         for (int i = 0; i < comparatorFactories.length; ++i) {
             comparators[i] = comparatorFactories[i].createBinaryComparator();
@@ -70,18 +90,24 @@ public class FrameSorterQuickSort implements IFrameSorter {
     @Override
     public void reset() {
         dataFrameCount = 0;
+        memoryFrameCount = 0;
         tupleCount = 0;
+        releaseLargeFrames();
     }
 
     @Override
     public int getFrameCount() {
-        return dataFrameCount;
+        return memoryFrameCount;
     }
 
     @Override
     public void insertFrame(ByteBuffer buffer) throws HyracksDataException {
         ByteBuffer copyFrame;
-        if (dataFrameCount == buffers.size()) {
+        if (buffer.capacity() > ctx.getFrameSize()) {
+            /** a large frame gets a buffer of its own until the next reset */
+            copyFrame = ctx.allocateFrame(buffer.capacity());
+            buffers.add(dataFrameCount, copyFrame);
+        } else if (dataFrameCount == buffers.size()) {
             copyFrame = ctx.allocateFrame();
             buffers.add(copyFrame);
         } else {
@@ -89,6 +115,18 @@ public class FrameSorterQuickSort implements IFrameSorter {
         }
         FrameUtils.copy(buffer, copyFrame);
         ++dataFrameCount;
+        memoryFrameCount += copyFrame.capacity() / ctx.getFrameSize();
+    }
+
+    private void releaseLargeFrames() {
+        Iterator<ByteBuffer> i = buffers.iterator();
+        while (i.hasNext()) {
+            ByteBuffer buffer = i.next();
+            if (buffer.capacity() > ctx.getFrameSize()) {
+                ctx.deallocateFrames(buffer.capacity() / ctx.getFrameSize());
+                i.remove();
+            }
+        }
     }
 
     @Override
@@ -100,7 +138,8 @@ public class FrameSorterQuickSort implements IFrameSorter {
             tupleCount += fta1.getTupleCount();
         }
         int sfIdx = sortFields[0];
-        tPointers = tPointers == null || tPointers.length < tupleCount * 4 ? new int[tupleCount * 4] : tPointers;
+        tPointers = tPointers == null || tPointers.length < tupleCount * tpSize ? new int[tupleCount * tpSize]
+                : tPointers;
         int ptr = 0;
         for (int i = 0; i < nBuffers; ++i) {
             fta1.reset(buffers.get(i));
@@ -109,13 +148,18 @@ public class FrameSorterQuickSort implements IFrameSorter {
             for (int j = 0; j < tCount; ++j) {
                 int tStart = fta1.getTupleStartOffset(j);
                 int tEnd = fta1.getTupleEndOffset(j);
-                tPointers[ptr * 4] = i;
-                tPointers[ptr * 4 + 1] = tStart;
-                tPointers[ptr * 4 + 2] = tEnd;
+                tPointers[ptr * tpSize] = i;
+                tPointers[ptr * tpSize + 1] = tStart;
+                tPointers[ptr * tpSize + 2] = tEnd;
                 int f0StartRel = fta1.getFieldStartOffset(j, sfIdx);
                 int f0EndRel = fta1.getFieldEndOffset(j, sfIdx);
                 int f0Start = f0StartRel + tStart + fta1.getFieldSlotsLength();
-                tPointers[ptr * 4 + 3] = nkc == null ? 0 : nkc.normalize(array, f0Start, f0EndRel - f0StartRel);
+                if (wideNkc != null) {
+                    wideNkc.normalize(array, f0Start, f0EndRel - f0StartRel, tPointers, ptr * tpSize + 3);
+                } else {
+                    tPointers[ptr * tpSize + 3] = nkc == null ? 0 : nkc.normalize(array, f0Start, f0EndRel
+                            - f0StartRel);
+                }
                 ++ptr;
             }
         }
@@ -128,17 +172,16 @@ public class FrameSorterQuickSort implements IFrameSorter {
     public void flushFrames(IFrameWriter writer) throws HyracksDataException {
         appender.reset(outFrame, true);
         for (int ptr = 0; ptr < tupleCount; ++ptr) {
-            int i = tPointers[ptr * 4];
-            int tStart = tPointers[ptr * 4 + 1];
-            int tEnd = tPointers[ptr * 4 + 2];
+            int i = tPointers[ptr * tpSize];
+            int tStart = tPointers[ptr * tpSize + 1];
+            int tEnd = tPointers[ptr * tpSize + 2];
             ByteBuffer buffer = buffers.get(i);
             fta1.reset(buffer);
             if (!appender.append(fta1, tStart, tEnd)) {
                 FrameUtils.flushFrame(outFrame, writer);
                 appender.reset(outFrame, true);
                 if (!appender.append(fta1, tStart, tEnd)) {
-                    throw new HyracksDataException("Record size (" + (tEnd - tStart) + ") larger than frame size ("
-                            + appender.getBuffer().capacity() + ")");
+                    FrameUtils.flushLargeTuple(ctx, fta1, tStart, tEnd, writer);
                 }
             }
         }
@@ -149,9 +192,13 @@ public class FrameSorterQuickSort implements IFrameSorter {
 
     private void sort(int[] tPointers, int offset, int length) throws HyracksDataException {
         int m = offset + (length >> 1);
-        int mi = tPointers[m * 4];
-        int mj = tPointers[m * 4 + 1];
-        int mv = tPointers[m * 4 + 3];
+        int mi = tPointers[m * tpSize];
+        int mj = tPointers[m * tpSize + 1];
+        /**
+         * the pivot moves while partitioning, so its key is copied out; the recursive calls only start after the
+         * partitioning loop, hence one buffer is enough
+         */
+        System.arraycopy(tPointers, m * tpSize + 3, pivotKey, 0, nkLength);
 
         int a = offset;
         int b = a;
@@ -159,7 +206,7 @@ public class FrameSorterQuickSort implements IFrameSorter {
         int d = c;
         while (true) {
             while (b <= c) {
-                int cmp = compare(tPointers, b, mi, mj, mv);
+                int cmp = compare(tPointers, b, mi, mj, pivotKey);
                 if (cmp > 0) {
                     break;
                 }
@@ -169,7 +216,7 @@ public class FrameSorterQuickSort implements IFrameSorter {
                 ++b;
             }
             while (c >= b) {
-                int cmp = compare(tPointers, c, mi, mj, mv);
+                int cmp = compare(tPointers, c, mi, mj, pivotKey);
                 if (cmp < 0) {
                     break;
                 }
@@ -199,10 +246,10 @@ public class FrameSorterQuickSort implements IFrameSorter {
     }
 
     private void swap(int x[], int a, int b) {
-        for (int i = 0; i < 4; ++i) {
-            int t = x[a * 4 + i];
-            x[a * 4 + i] = x[b * 4 + i];
-            x[b * 4 + i] = t;
+        for (int i = 0; i < tpSize; ++i) {
+            int t = x[a * tpSize + i];
+            x[a * tpSize + i] = x[b * tpSize + i];
+            x[b * tpSize + i] = t;
         }
     }
 
@@ -212,12 +259,14 @@ public class FrameSorterQuickSort implements IFrameSorter {
         }
     }
 
-    private int compare(int[] tPointers, int tp1, int tp2i, int tp2j, int tp2v) throws HyracksDataException {
-        int i1 = tPointers[tp1 * 4];
-        int j1 = tPointers[tp1 * 4 + 1];
-        int v1 = tPointers[tp1 * 4 + 3];
-        if (v1 != tp2v) {
-            return ((((long) v1) & 0xffffffffL) < (((long) tp2v) & 0xffffffffL)) ? -1 : 1;
+    private int compare(int[] tPointers, int tp1, int tp2i, int tp2j, int[] tp2v) throws HyracksDataException {
+        int i1 = tPointers[tp1 * tpSize];
+        int j1 = tPointers[tp1 * tpSize + 1];
+        for (int k = 0, v1Idx = tp1 * tpSize + 3; k < nkLength; ++k) {
+            int v1 = tPointers[v1Idx + k];
+            if (v1 != tp2v[k]) {
+                return ((((long) v1) & 0xffffffffL) < (((long) tp2v[k]) & 0xffffffffL)) ? -1 : 1;
+            }
         }
         int i2 = tp2i;
         int j2 = tp2j;
@@ -247,6 +296,7 @@ public class FrameSorterQuickSort implements IFrameSorter {
 
     @Override
     public void close() {
+        releaseLargeFrames();
         this.buffers.clear();
     }
 }
\ No newline at end of file
@@ -27,6 +27,7 @@ import edu.uci.ics.hyracks.api.dataflow.value.INormalizedKeyComputerFactory;
 import edu.uci.ics.hyracks.api.dataflow.value.RecordDescriptor;
 import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
 import edu.uci.ics.hyracks.api.io.FileReference;
+import edu.uci.ics.hyracks.api.io.IBlockCompressor;
 import edu.uci.ics.hyracks.dataflow.common.comm.io.FrameTupleAccessor;
 import edu.uci.ics.hyracks.dataflow.common.comm.io.FrameTupleAppender;
 import edu.uci.ics.hyracks.dataflow.common.comm.util.FrameUtils;
@@ -79,6 +80,7 @@ import edu.uci.ics.hyracks.dataflow.common.io.RunFileWriter;
 public class OptimizedExternalSortRunGeneratorWithLimit implements IRunGenerator {
 
     private final IHyracksTaskContext ctx;
+    private final IBlockCompressor spillCompressor;
     private final int[] sortFields;
     private final INormalizedKeyComputer nkc;
     private final IBinaryComparatorFactory[] comparatorFactories;
@@ -121,6 +123,7 @@ public class OptimizedExternalSortRunGeneratorWithLimit implements IRunGenerator
             RecordDescriptor recordDesc, int memSize, int limit) {
 
         this.ctx = ctx;
+        this.spillCompressor = RunFileWriter.createSpillCompressor(ctx);
         this.sortFields = sortFields;
         nkc = firstKeyNormalizerFactory == null ? null : firstKeyNormalizerFactory.createNormalizedKeyComputer();
         this.comparatorFactories = comparatorFactories;
@@ -175,6 +178,10 @@ public class OptimizedExternalSortRunGeneratorWithLimit implements IRunGenerator
 
             allocationPtr.clear();
             int tLength = inputAccessor.getTupleEndOffset(i) - inputAccessor.getTupleStartOffset(i);
+            if (tLength + 8 > ctx.getFrameSize()) {
+                writeLargeTupleRun(inputAccessor, i);
+                continue;
+            }
             memMgr.allocate(tLength, allocationPtr);
             while (allocationPtr.isNull()) {
                 int unAllocSize = -1;
@@ -408,6 +415,24 @@ public class OptimizedExternalSortRunGeneratorWithLimit implements IRunGenerator
 
     }
 
+    /**
+     * A tuple that does not fit into a frame cannot be held by the memory manager, so it is written into a run of
+     * its own, in a large frame.
+     */
+    private void writeLargeTupleRun(FrameTupleAccessor accessor, int tIndex) throws HyracksDataException {
+        FileReference file = ctx.getJobletContext().createManagedWorkspaceFile(
+                ExternalSortRunGenerator.class.getSimpleName());
+        RunFileWriter largeTupleWriter = new RunFileWriter(file, ctx.getIOManager(), ctx.getFrameSize(),
+                spillCompressor);
+        largeTupleWriter.open();
+        try {
+            FrameUtils.flushLargeTuple(ctx, accessor, tIndex, largeTupleWriter);
+        } finally {
+            largeTupleWriter.close();
+        }
+        runs.add(largeTupleWriter.createReader());
+    }
+
     private void openNewRun() throws HyracksDataException {
         if (writer != null) { // There is a prev run, so flush its tuples and
                               // close it first
@@ -421,7 +446,7 @@ public class OptimizedExternalSortRunGeneratorWithLimit implements IRunGenerator
 
         FileReference file = ctx.getJobletContext().createManagedWorkspaceFile(
                 ExternalSortRunGenerator.class.getSimpleName());
-        writer = new RunFileWriter(file, ctx.getIOManager());
+        writer = new RunFileWriter(file, ctx.getIOManager(), ctx.getFrameSize(), spillCompressor);
         writer.open();
         curRunId++;
         newRun = true;
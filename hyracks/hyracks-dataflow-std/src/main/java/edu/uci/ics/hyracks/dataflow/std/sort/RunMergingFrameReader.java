@@ -15,39 +15,58 @@
 package edu.uci.ics.hyracks.dataflow.std.sort;
 
 import java.nio.ByteBuffer;
-import java.util.Comparator;
 import java.util.List;
 
+import edu.uci.ics.hyracks.api.comm.FrameHelper;
 import edu.uci.ics.hyracks.api.comm.IFrameReader;
-import edu.uci.ics.hyracks.api.comm.IFrameTupleAccessor;
 import edu.uci.ics.hyracks.api.context.IHyracksTaskContext;
 import edu.uci.ics.hyracks.api.dataflow.value.IBinaryComparator;
 import edu.uci.ics.hyracks.api.dataflow.value.INormalizedKeyComputer;
+import edu.uci.ics.hyracks.api.dataflow.value.IWideNormalizedKeyComputer;
 import edu.uci.ics.hyracks.api.dataflow.value.RecordDescriptor;
 import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
 import edu.uci.ics.hyracks.dataflow.common.comm.io.FrameTupleAccessor;
 import edu.uci.ics.hyracks.dataflow.common.comm.io.FrameTupleAppender;
-import edu.uci.ics.hyracks.dataflow.std.util.ReferenceEntry;
-import edu.uci.ics.hyracks.dataflow.std.util.ReferencedPriorityQueue;
+import edu.uci.ics.hyracks.dataflow.common.comm.io.LargeFrameReader;
+import edu.uci.ics.hyracks.dataflow.std.util.LoserTree;
 
+/**
+ * Merges sorted runs of regular frames. Large frames in the runs, sent as a large frame header followed by regular
+ * frames, are reassembled, and a tuple that does not fit into an output frame is returned the same way, as a large
+ * frame header followed by the regular frames of a large frame that holds the tuple.
+ */
 public class RunMergingFrameReader implements IFrameReader {
     private final IHyracksTaskContext ctx;
     private final IFrameReader[] runCursors;
+    private final LargeFrameReader[] runReaders;
     private final List<ByteBuffer> inFrames;
     private final int[] sortFields;
     private final IBinaryComparator[] comparators;
     private final INormalizedKeyComputer nmkComputer;
     private final RecordDescriptor recordDesc;
     private final FrameTupleAppender outFrameAppender;
-    private ReferencedPriorityQueue topTuples;
+    private LoserTree topTuples;
     private int[] tupleIndexes;
     private FrameTupleAccessor[] tupleAccessors;
+    /**
+     * start and length of every sort field of the current tuple of every run: run * 2 * sortFields.length + 2 * f
+     */
+    private int[] fieldPointers;
+    /**
+     * the large frame being returned, and the index of its next regular frame
+     */
+    private ByteBuffer largeFrame;
+    private int largeFrameIndex;
 
     public RunMergingFrameReader(IHyracksTaskContext ctx, IFrameReader[] runCursors, List<ByteBuffer> inFrames,
             int[] sortFields, IBinaryComparator[] comparators, INormalizedKeyComputer nmkComputer,
             RecordDescriptor recordDesc) {
         this.ctx = ctx;
         this.runCursors = runCursors;
+        runReaders = new LargeFrameReader[runCursors.length];
+        for (int i = 0; i < runCursors.length; ++i) {
+            runReaders[i] = new LargeFrameReader(ctx, runCursors[i]);
+        }
         this.inFrames = inFrames;
         this.sortFields = sortFields;
         this.comparators = comparators;
@@ -58,41 +77,54 @@ public class RunMergingFrameReader implements IFrameReader {
 
     @Override
     public void open() throws HyracksDataException {
+        int nkLength = nmkComputer == null ? 0 : nmkComputer instanceof IWideNormalizedKeyComputer
+                ? ((IWideNormalizedKeyComputer) nmkComputer).getNormalizedKeyLength() : 1;
         tupleAccessors = new FrameTupleAccessor[runCursors.length];
-        Comparator<ReferenceEntry> comparator = createEntryComparator(comparators);
-        topTuples = new ReferencedPriorityQueue(ctx.getFrameSize(), recordDesc, runCursors.length, comparator,
-                sortFields, nmkComputer);
         tupleIndexes = new int[runCursors.length];
-        for (int i = 0; i < runCursors.length; i++) {
-            tupleIndexes[i] = 0;
-            int runIndex = topTuples.peek().getRunid();
-            runCursors[runIndex].open();
-            if (runCursors[runIndex].nextFrame(inFrames.get(runIndex))) {
+        fieldPointers = new int[runCursors.length * 2 * sortFields.length];
+        topTuples = new LoserTree(runCursors.length, nkLength, new LoserTree.IRunComparator() {
+            @Override
+            public int compare(int run1, int run2) throws HyracksDataException {
+                return compareTuples(run1, run2);
+            }
+        });
+        for (int runIndex = 0; runIndex < runCursors.length; runIndex++) {
+            tupleIndexes[runIndex] = 0;
+            runReaders[runIndex].open();
+            ByteBuffer frame = runReaders[runIndex].nextFrame(inFrames.get(runIndex));
+            if (frame != null) {
                 tupleAccessors[runIndex] = new FrameTupleAccessor(ctx.getFrameSize(), recordDesc);
-                tupleAccessors[runIndex].reset(inFrames.get(runIndex));
-                setNextTopTuple(runIndex, tupleIndexes, runCursors, tupleAccessors, topTuples);
+                tupleAccessors[runIndex].reset(frame);
+                setNextTopTuple(runIndex);
             } else {
-                closeRun(runIndex, runCursors, tupleAccessors);
-                topTuples.pop();
+                closeRun(runIndex);
+                topTuples.setExhausted(runIndex);
             }
         }
+        topTuples.init();
     }
 
     @Override
     public boolean nextFrame(ByteBuffer buffer) throws HyracksDataException {
+        if (largeFrame != null) {
+            nextLargeFramePart(buffer);
+            return true;
+        }
         outFrameAppender.reset(buffer, true);
-        while (!topTuples.areRunsExhausted()) {
-            ReferenceEntry top = topTuples.peek();
-            int runIndex = top.getRunid();
-            FrameTupleAccessor fta = top.getAccessor();
-            int tupleIndex = top.getTupleIndex();
-
-            if (!outFrameAppender.append(fta, tupleIndex)) {
+        int runIndex;
+        while ((runIndex = topTuples.peek()) >= 0) {
+            if (!outFrameAppender.append(tupleAccessors[runIndex], tupleIndexes[runIndex])) {
+                if (outFrameAppender.getTupleCount() == 0) {
+                    putLargeTuple(runIndex, buffer);
+                    ++tupleIndexes[runIndex];
+                    setNextTopTuple(runIndex);
+                    topTuples.replayWinner();
+                }
                 return true;
             }
-
             ++tupleIndexes[runIndex];
-            setNextTopTuple(runIndex, tupleIndexes, runCursors, tupleAccessors, topTuples);
+            setNextTopTuple(runIndex);
+            topTuples.replayWinner();
         }
 
         if (outFrameAppender.getTupleCount() > 0) {
@@ -103,80 +135,104 @@ public class RunMergingFrameReader implements IFrameReader {
 
     @Override
     public void close() throws HyracksDataException {
+        releaseLargeFrame();
         for (int i = 0; i < runCursors.length; ++i) {
-            closeRun(i, runCursors, tupleAccessors);
+            closeRun(i);
         }
     }
 
-    private void setNextTopTuple(int runIndex, int[] tupleIndexes, IFrameReader[] runCursors,
-            FrameTupleAccessor[] tupleAccessors, ReferencedPriorityQueue topTuples) throws HyracksDataException {
-        boolean exists = hasNextTuple(runIndex, tupleIndexes, runCursors, tupleAccessors);
-        if (exists) {
-            topTuples.popAndReplace(tupleAccessors[runIndex], tupleIndexes[runIndex]);
-        } else {
-            topTuples.pop();
-            closeRun(runIndex, runCursors, tupleAccessors);
+    /**
+     * Copies the tuple into a large frame of its own and puts the large frame header into buffer.
+     */
+    private void putLargeTuple(int runIndex, ByteBuffer buffer) throws HyracksDataException {
+        FrameTupleAccessor fta = tupleAccessors[runIndex];
+        int tupleIndex = tupleIndexes[runIndex];
+        // The tuple is followed by its end offset and the tuple count.
+        largeFrame = ctx.allocateFrame(fta.getTupleEndOffset(tupleIndex) - fta.getTupleStartOffset(tupleIndex) + 8);
+        outFrameAppender.reset(largeFrame, true);
+        outFrameAppender.append(fta, tupleIndex);
+        largeFrameIndex = 0;
+        FrameHelper.putLargeFrameHeader(buffer, largeFrame.capacity() / buffer.capacity());
+    }
+
+    private void nextLargeFramePart(ByteBuffer buffer) {
+        int frameSize = buffer.capacity();
+        System.arraycopy(largeFrame.array(), largeFrameIndex * frameSize, buffer.array(), 0, frameSize);
+        if (++largeFrameIndex * frameSize == largeFrame.capacity()) {
+            releaseLargeFrame();
         }
     }
 
-    private boolean hasNextTuple(int runIndex, int[] tupleIndexes, IFrameReader[] runCursors,
-            FrameTupleAccessor[] tupleAccessors) throws HyracksDataException {
-        if (tupleAccessors[runIndex] == null || runCursors[runIndex] == null) {
-            return false;
-        } else if (tupleIndexes[runIndex] >= tupleAccessors[runIndex].getTupleCount()) {
-            ByteBuffer buf = tupleAccessors[runIndex].getBuffer(); // same-as-inFrames.get(runIndex)
-            if (runCursors[runIndex].nextFrame(buf)) {
-                tupleIndexes[runIndex] = 0;
-                return hasNextTuple(runIndex, tupleIndexes, runCursors, tupleAccessors);
-            } else {
+    private void releaseLargeFrame() {
+        if (largeFrame != null) {
+            ctx.deallocateFrames(largeFrame.capacity() / ctx.getFrameSize());
+            largeFrame = null;
+        }
+    }
+
+    /**
+     * Loads the current tuple of the run into the tree, or marks the run as exhausted.
+     */
+    private void setNextTopTuple(int runIndex) throws HyracksDataException {
+        if (!hasNextTuple(runIndex)) {
+            topTuples.setExhausted(runIndex);
+            closeRun(runIndex);
+            return;
+        }
+        FrameTupleAccessor fta = tupleAccessors[runIndex];
+        int tupleIndex = tupleIndexes[runIndex];
+        int tStart = fta.getTupleStartOffset(tupleIndex) + fta.getFieldSlotsLength();
+        int base = runIndex * 2 * sortFields.length;
+        for (int f = 0; f < sortFields.length; ++f) {
+            int fStart = fta.getFieldStartOffset(tupleIndex, sortFields[f]);
+            fieldPointers[base + 2 * f] = tStart + fStart;
+            fieldPointers[base + 2 * f + 1] = fta.getFieldEndOffset(tupleIndex, sortFields[f]) - fStart;
+        }
+        byte[] b = fta.getBuffer().array();
+        if (nmkComputer instanceof IWideNormalizedKeyComputer) {
+            ((IWideNormalizedKeyComputer) nmkComputer).normalize(b, fieldPointers[base], fieldPointers[base + 1],
+                    topTuples.getNormalizedKeys(), runIndex * topTuples.getNormalizedKeyLength());
+        } else if (nmkComputer != null) {
+            topTuples.getNormalizedKeys()[runIndex] = nmkComputer.normalize(b, fieldPointers[base],
+                    fieldPointers[base + 1]);
+        }
+    }
+
+    private boolean hasNextTuple(int runIndex) throws HyracksDataException {
+        while (tupleAccessors[runIndex] != null && runCursors[runIndex] != null) {
+            if (tupleIndexes[runIndex] < tupleAccessors[runIndex].getTupleCount()) {
+                return true;
+            }
+            ByteBuffer frame = runReaders[runIndex].nextFrame(inFrames.get(runIndex));
+            if (frame == null) {
                 return false;
             }
-        } else {
-            return true;
+            tupleAccessors[runIndex].reset(frame);
+            tupleIndexes[runIndex] = 0;
         }
+        return false;
     }
 
-    private void closeRun(int index, IFrameReader[] runCursors, IFrameTupleAccessor[] tupleAccessors)
-            throws HyracksDataException {
+    private void closeRun(int index) throws HyracksDataException {
         if (runCursors[index] != null) {
-            runCursors[index].close();
+            runReaders[index].close();
             runCursors[index] = null;
             tupleAccessors[index] = null;
         }
     }
 
-    private Comparator<ReferenceEntry> createEntryComparator(final IBinaryComparator[] comparators) {
-        return new Comparator<ReferenceEntry>() {
-            public int compare(ReferenceEntry tp1, ReferenceEntry tp2) {
-                int nmk1 = tp1.getNormalizedKey();
-                int nmk2 = tp2.getNormalizedKey();
-                if (nmk1 != nmk2) {
-                    return ((((long) nmk1) & 0xffffffffL) < (((long) nmk2) & 0xffffffffL)) ? -1 : 1;
-                }
-                FrameTupleAccessor fta1 = (FrameTupleAccessor) tp1.getAccessor();
-                FrameTupleAccessor fta2 = (FrameTupleAccessor) tp2.getAccessor();
-                byte[] b1 = fta1.getBuffer().array();
-                byte[] b2 = fta2.getBuffer().array();
-                int[] tPointers1 = tp1.getTPointers();
-                int[] tPointers2 = tp2.getTPointers();
-
-                for (int f = 0; f < sortFields.length; ++f) {
-                    int c;
-                    try {
-                        c = comparators[f].compare(b1, tPointers1[2 * f + 1], tPointers1[2 * f + 2], b2,
-                                tPointers2[2 * f + 1], tPointers2[2 * f + 2]);
-                        if (c != 0) {
-                            return c;
-                        }
-                    } catch (HyracksDataException e) {
-                        throw new IllegalArgumentException(e);
-                    }
-
-                }
-                int runid1 = tp1.getRunid();
-                int runid2 = tp2.getRunid();
-                return runid1 < runid2 ? -1 : (runid1 == runid2 ? 0 : 1);
+    private int compareTuples(int run1, int run2) throws HyracksDataException {
+        byte[] b1 = tupleAccessors[run1].getBuffer().array();
+        byte[] b2 = tupleAccessors[run2].getBuffer().array();
+        int base1 = run1 * 2 * sortFields.length;
+        int base2 = run2 * 2 * sortFields.length;
+        for (int f = 0; f < sortFields.length; ++f) {
+            int c = comparators[f].compare(b1, fieldPointers[base1 + 2 * f], fieldPointers[base1 + 2 * f + 1], b2,
+                    fieldPointers[base2 + 2 * f], fieldPointers[base2 + 2 * f + 1]);
+            if (c != 0) {
+                return c;
             }
-        };
+        }
+        return 0;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.hyracks.dataflow.std.structures;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import edu.uci.ics.hyracks.api.comm.IFrameTupleAccessor;
+import edu.uci.ics.hyracks.api.context.IHyracksTaskContext;
+import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
+import edu.uci.ics.hyracks.data.std.accessors.MurmurHash3BinaryHash;
+
+/**
+ * A bloom filter over 32-bit key hashes whose bits live in frames of the task. All bits of a key
+ * are set in a single 64-bit word, so adding or testing a key touches one word only.
+ * The hash must be computed with a hash function that maps equal keys to equal hashes on both
+ * sides of the operator using the filter, such as {@link #hashKeys}.
+ */
+public class FrameBloomFilter {
+
+    private static final int WORD_SIZE = 8;
+    private static final int NUM_BITS_PER_KEY = 3;
+
+    private final IHyracksTaskContext ctx;
+    private final ByteBuffer[] frames;
+    private final int wordsPerFrame;
+    private final long numWords;
+
+    public FrameBloomFilter(IHyracksTaskContext ctx, int nFrames) throws HyracksDataException {
+        this.ctx = ctx;
+        frames = new ByteBuffer[nFrames];
+        for (int i = 0; i < nFrames; ++i) {
+            frames[i] = ctx.allocateFrame();
+            Arrays.fill(frames[i].array(), (byte) 0);
+        }
+        wordsPerFrame = ctx.getFrameSize() / WORD_SIZE;
+        numWords = (long) wordsPerFrame * nFrames;
+    }
+
+    public void add(int hash) {
+        long h = mix(hash);
+        int word = getWord(h);
+        ByteBuffer frame = frames[word / wordsPerFrame];
+        int offset = (word % wordsPerFrame) * WORD_SIZE;
+        frame.putLong(offset, frame.getLong(offset) | getMask(h));
+    }
+
+    public boolean mightContain(int hash) {
+        long h = mix(hash);
+        int word = getWord(h);
+        long mask = getMask(h);
+        return (frames[word / wordsPerFrame].getLong((word % wordsPerFrame) * WORD_SIZE) & mask) == mask;
+    }
+
+    /**
+     * Hashes the bytes of the key fields of a tuple with MurmurHash3. The hash does not depend on the
+     * hash functions of the operator, which may have a small range, but it maps equal keys to equal
+     * hashes only if equal keys have equal bytes.
+     */
+    public static int hashKeys(IFrameTupleAccessor accessor, int tIndex, int[] keyFields) {
+        byte[] bytes = accessor.getBuffer().array();
+        int fieldsStart = accessor.getTupleStartOffset(tIndex) + accessor.getFieldSlotsLength();
+        int h = 0;
+        for (int i = 0; i < keyFields.length; ++i) {
+            int fStart = accessor.getFieldStartOffset(tIndex, keyFields[i]);
+            int fEnd = accessor.getFieldEndOffset(tIndex, keyFields[i]);
+            h = MurmurHash3BinaryHash.hash(bytes, fieldsStart + fStart, fEnd - fStart, h);
+        }
+        return h;
+    }
+
+    public int getFrameCount() {
+        return frames.length;
+    }
+
+    public void close() {
+        ctx.deallocateFrames(frames.length);
+    }
+
+    private int getWord(long h) {
+        return (int) ((h >>> 32) % numWords);
+    }
+
+    private static long getMask(long h) {
+        long mask = 0;
+        for (int i = 0; i < NUM_BITS_PER_KEY; ++i) {
+            mask |= 1L << ((h >>> (i * 6)) & 63);
+        }
+        return mask;
+    }
+
+    // 64-bit finalizer of MurmurHash3, so that word and bit positions do not depend on the same hash bits
+    private static long mix(int hash) {
+        long k = hash;
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
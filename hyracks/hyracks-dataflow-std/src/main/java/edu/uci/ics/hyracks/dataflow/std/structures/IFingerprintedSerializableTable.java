@@ -0,0 +1,36 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.hyracks.dataflow.std.structures;
+
+import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
+
+/**
+ * A serializable table that also keeps a fingerprint of the full hash of the key of every tuple pointer, so that a
+ * lookup skips most of the tuples of its entry whose keys differ without comparing them. The entry must be derived
+ * from the hash the same way on insert and lookup.
+ */
+public interface IFingerprintedSerializableTable extends ISerializableTable {
+
+    /**
+     * Inserts the tuple pointer into the entry, together with the fingerprint of the hash of its key.
+     */
+    public void insert(int entry, int hash, TuplePointer tuplePointer) throws HyracksDataException;
+
+    /**
+     * Gets the offset-th tuple pointer of the entry among those whose fingerprint matches the hash, or a frame index
+     * of -1 when there is none. A matching fingerprint does not mean the keys are equal.
+     */
+    public void getTuplePointer(int entry, int hash, int offset, TuplePointer tuplePointer);
+}
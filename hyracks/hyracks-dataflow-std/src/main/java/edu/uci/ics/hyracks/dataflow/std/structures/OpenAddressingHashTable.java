@@ -0,0 +1,381 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.hyracks.dataflow.std.structures;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.uci.ics.hyracks.api.context.IHyracksTaskContext;
+import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
+
+/**
+ * A serializable table that keys an open-addressing array of slots on the distinct entries. A slot is: entry, tuple.
+ * The tuple of an entry with a single tuple pointer is packed into the slot: a 7-bit fingerprint of the full hash of
+ * the key, the frame index and the tuple index. The tuples of an entry with several tuple pointers are chained in
+ * nodes, and the slot holds the tail of the chain instead. A node is: fIndex; fingerprint, tIndex; next. The nodes of
+ * an entry form a ring, so its tail leads back to its head and tuples are returned in insertion order. A tuple pointer
+ * whose indexes are too large to be packed also goes into a node. Tuples inserted without a hash match every lookup.
+ * An entry is found by linear probing from its home slot, which only walks the slots of other entries, never their
+ * tuples, so inserting many tuples with the same entry takes constant time per tuple.
+ * Both arrays are spread over frames. The slot array starts with one frame and is rehashed into twice as many slots
+ * when it is 75% full, so it follows the number of distinct entries rather than the table size. The node array grows
+ * by one frame at a time. {@link #reset()} gives all the frames back but the first slot frame.
+ * Where {@link SerializableHashTable} takes 8 bytes per entry of the table, and 16 bytes for the first tuple of an
+ * entry and 8 for each further tuple (plus the copies left behind when an entry outgrows its space), this table takes
+ * 11 to 21 bytes per distinct entry, and 12 more bytes for every tuple of an entry with several tuples, or whose
+ * pointer is too large to be packed.
+ */
+public class OpenAddressingHashTable implements IFingerprintedSerializableTable {
+
+    private static final int INT_SIZE = 4;
+    private static final int SLOT_INTS = 2;
+    private static final int NODE_INTS = 3;
+    private static final int EMPTY = -1;
+    private static final double MAX_LOAD_FACTOR = 0.75;
+    private static final int MAX_CAPACITY = 1 << 30;
+    private static final int TUPLE_INDEX_BITS = 24;
+    private static final int TUPLE_INDEX_MASK = (1 << TUPLE_INDEX_BITS) - 1;
+    private static final int FINGERPRINT_BITS = 7;
+    private static final int PACKED_POINTER_BITS = Integer.SIZE - 1 - FINGERPRINT_BITS;
+    private static final int ANY_FINGERPRINT = 0;
+
+    private final IHyracksTaskContext ctx;
+    private final int slotsPerFrame;
+    private final int nodesPerFrame;
+    private final int minCapacity;
+    private final int maxCapacity;
+    private final int maxEntryCount;
+    // A packed tuple pointer is: frame index, tuple index; the tuple index takes enough bits for a full frame
+    private final int packedTupleIndexBits;
+    private final int packedFrameIndexLimit;
+    private List<ByteBuffer> slotFrames = new ArrayList<ByteBuffer>();
+    private final List<ByteBuffer> nodeFrames = new ArrayList<ByteBuffer>();
+    private int capacity;
+    private int shift;
+    private int growEntryCount;
+    private int entryCount = 0;
+    private int nodeCount = 0;
+    private int tupleCount = 0;
+
+    // Position of the last lookup, so that walking the tuples of an entry does not restart from its head
+    private int cursorEntry = -1;
+    private int cursorFingerprint;
+    private int cursorOffset;
+    private int cursorNode;
+    private int cursorTail;
+
+    /**
+     * @param tableSize
+     *            the number of entries, which bounds the number of slots
+     */
+    public OpenAddressingHashTable(int tableSize, final IHyracksTaskContext ctx) throws HyracksDataException {
+        this.ctx = ctx;
+        slotsPerFrame = ctx.getFrameSize() / (SLOT_INTS * INT_SIZE);
+        nodesPerFrame = ctx.getFrameSize() / (NODE_INTS * INT_SIZE);
+        maxCapacity = getCapacity((int) Math.min(MAX_CAPACITY, (long) Math.ceil(tableSize / MAX_LOAD_FACTOR)));
+        minCapacity = Math.min(maxCapacity, Math.max(2, Integer.highestOneBit(slotsPerFrame)));
+        maxEntryCount = (int) (maxCapacity * MAX_LOAD_FACTOR);
+        // A frame holds fewer tuples than it holds ints, as every tuple has an end offset
+        packedTupleIndexBits = Math.min(PACKED_POINTER_BITS - 1,
+                Integer.SIZE - Integer.numberOfLeadingZeros(ctx.getFrameSize() / INT_SIZE - 1));
+        packedFrameIndexLimit = 1 << (PACKED_POINTER_BITS - packedTupleIndexBits);
+        setCapacity(minCapacity);
+        slotFrames = allocateSlotFrames(capacity);
+    }
+
+    @Override
+    public void insert(int entry, TuplePointer pointer) throws HyracksDataException {
+        insertWithFingerprint(entry, ANY_FINGERPRINT, pointer);
+    }
+
+    @Override
+    public void insert(int entry, int hash, TuplePointer pointer) throws HyracksDataException {
+        insertWithFingerprint(entry, getFingerprint(hash), pointer);
+    }
+
+    @Override
+    public void getTuplePointer(int entry, int offset, TuplePointer dataPointer) {
+        lookup(entry, ANY_FINGERPRINT, offset, dataPointer);
+    }
+
+    @Override
+    public void getTuplePointer(int entry, int hash, int offset, TuplePointer dataPointer) {
+        lookup(entry, getFingerprint(hash), offset, dataPointer);
+    }
+
+    @Override
+    public int getFrameCount() {
+        return slotFrames.size() + nodeFrames.size();
+    }
+
+    /**
+     * @return the largest number of frames the table holds while inserting one more tuple pointer, which is more than
+     *         {@link #getFrameCount()} if it needs a new node frame, or has to rehash its slots
+     */
+    public int getFrameCountForInsert() {
+        int nFrames = getFrameCount() + 1;
+        if (entryCount == growEntryCount && capacity < maxCapacity) {
+            // The old and the new slot frames are held while rehashing
+            nFrames += getSlotFrameCount(capacity * 2);
+        }
+        return nFrames;
+    }
+
+    @Override
+    public int getTupleCount() {
+        return tupleCount;
+    }
+
+    @Override
+    public void reset() {
+        int nFrames = nodeFrames.size();
+        nodeFrames.clear();
+        if (capacity > minCapacity) {
+            nFrames += slotFrames.size();
+            setCapacity(minCapacity);
+            slotFrames.subList(getSlotFrameCount(capacity), slotFrames.size()).clear();
+            nFrames -= slotFrames.size();
+        }
+        ctx.deallocateFrames(nFrames);
+        clearSlots(slotFrames, capacity);
+        entryCount = 0;
+        nodeCount = 0;
+        tupleCount = 0;
+        cursorEntry = -1;
+    }
+
+    @Override
+    public void close() {
+        int nFrames = slotFrames.size() + nodeFrames.size();
+        slotFrames.clear();
+        nodeFrames.clear();
+        entryCount = 0;
+        nodeCount = 0;
+        tupleCount = 0;
+        cursorEntry = -1;
+        ctx.deallocateFrames(nFrames);
+    }
+
+    private void insertWithFingerprint(int entry, int fingerprint, TuplePointer pointer) throws HyracksDataException {
+        if ((pointer.tupleIndex & ~TUPLE_INDEX_MASK) != 0) {
+            throw new HyracksDataException("Tuple index " + pointer.tupleIndex + " does not fit in "
+                    + TUPLE_INDEX_BITS + " bits");
+        }
+        cursorEntry = -1;
+        int slot = findSlot(slotFrames, capacity, shift, entry);
+        int tuple;
+        if (getInt(slotFrames, slotsPerFrame, SLOT_INTS, slot, 0) == EMPTY) {
+            if (entryCount == growEntryCount) {
+                if (capacity == maxCapacity) {
+                    throw new HyracksDataException("More than " + maxEntryCount + " entries in the table");
+                }
+                grow();
+                slot = findSlot(slotFrames, capacity, shift, entry);
+            }
+            if (pointer.frameIndex < packedFrameIndexLimit && pointer.tupleIndex < 1 << packedTupleIndexBits) {
+                tuple = fingerprint << PACKED_POINTER_BITS | pointer.frameIndex << packedTupleIndexBits
+                        | pointer.tupleIndex;
+            } else {
+                int node = addNode(fingerprint, pointer.frameIndex, pointer.tupleIndex);
+                setNext(node, node);
+                tuple = ~node;
+            }
+            setInt(slotFrames, slotsPerFrame, SLOT_INTS, slot, 0, entry);
+            entryCount++;
+        } else {
+            tuple = getInt(slotFrames, slotsPerFrame, SLOT_INTS, slot, 1);
+            int tail;
+            if (tuple >= 0) {
+                // The entry gets a second tuple pointer, so its packed one moves into a node
+                tail = addNode(tuple >>> PACKED_POINTER_BITS, getPackedFrameIndex(tuple), getPackedTupleIndex(tuple));
+                setNext(tail, tail);
+            } else {
+                tail = ~tuple;
+            }
+            int node = addNode(fingerprint, pointer.frameIndex, pointer.tupleIndex);
+            setNext(node, getNext(tail));
+            setNext(tail, node);
+            tuple = ~node;
+        }
+        setInt(slotFrames, slotsPerFrame, SLOT_INTS, slot, 1, tuple);
+        tupleCount++;
+    }
+
+    private void lookup(int entry, int fingerprint, int offset, TuplePointer dataPointer) {
+        int node;
+        int tail;
+        int remaining;
+        if (entry == cursorEntry && fingerprint == cursorFingerprint && offset == cursorOffset + 1) {
+            tail = cursorTail;
+            node = cursorNode == tail ? EMPTY : getNext(cursorNode);
+            remaining = 1;
+        } else {
+            int slot = findSlot(slotFrames, capacity, shift, entry);
+            if (getInt(slotFrames, slotsPerFrame, SLOT_INTS, slot, 0) == EMPTY) {
+                tail = EMPTY;
+                node = EMPTY;
+            } else {
+                int tuple = getInt(slotFrames, slotsPerFrame, SLOT_INTS, slot, 1);
+                if (tuple >= 0) {
+                    if (offset == 0 && matches(fingerprint, tuple >>> PACKED_POINTER_BITS)) {
+                        setCursor(entry, fingerprint, offset, EMPTY, EMPTY);
+                        dataPointer.frameIndex = getPackedFrameIndex(tuple);
+                        dataPointer.tupleIndex = getPackedTupleIndex(tuple);
+                        return;
+                    }
+                    tail = EMPTY;
+                    node = EMPTY;
+                } else {
+                    tail = ~tuple;
+                    node = getNext(tail);
+                }
+            }
+            remaining = offset + 1;
+        }
+        // Walk the ring from the node up to the tail, counting the tuples whose fingerprint matches
+        while (node != EMPTY) {
+            int fingerprintAndIndex = getInt(nodeFrames, nodesPerFrame, NODE_INTS, node, 1);
+            if (matches(fingerprint, fingerprintAndIndex >>> TUPLE_INDEX_BITS) && --remaining == 0) {
+                setCursor(entry, fingerprint, offset, node, tail);
+                dataPointer.frameIndex = getInt(nodeFrames, nodesPerFrame, NODE_INTS, node, 0);
+                dataPointer.tupleIndex = fingerprintAndIndex & TUPLE_INDEX_MASK;
+                return;
+            }
+            node = node == tail ? EMPTY : getNext(node);
+        }
+        cursorEntry = -1;
+        dataPointer.frameIndex = -1;
+        dataPointer.tupleIndex = -1;
+    }
+
+    private void setCursor(int entry, int fingerprint, int offset, int node, int tail) {
+        cursorEntry = entry;
+        cursorFingerprint = fingerprint;
+        cursorOffset = offset;
+        cursorNode = node;
+        cursorTail = tail;
+    }
+
+    private static boolean matches(int fingerprint, int tupleFingerprint) {
+        return fingerprint == ANY_FINGERPRINT || tupleFingerprint == ANY_FINGERPRINT || tupleFingerprint == fingerprint;
+    }
+
+    private int getPackedFrameIndex(int tuple) {
+        return (tuple & ((1 << PACKED_POINTER_BITS) - 1)) >>> packedTupleIndexBits;
+    }
+
+    private int getPackedTupleIndex(int tuple) {
+        return tuple & ((1 << packedTupleIndexBits) - 1);
+    }
+
+    private int addNode(int fingerprint, int frameIndex, int tupleIndex) throws HyracksDataException {
+        if (nodeCount == nodeFrames.size() * nodesPerFrame) {
+            nodeFrames.add(ctx.allocateFrame());
+        }
+        int node = nodeCount++;
+        setInt(nodeFrames, nodesPerFrame, NODE_INTS, node, 0, frameIndex);
+        setInt(nodeFrames, nodesPerFrame, NODE_INTS, node, 1, fingerprint << TUPLE_INDEX_BITS | tupleIndex);
+        return node;
+    }
+
+    private int getNext(int node) {
+        return getInt(nodeFrames, nodesPerFrame, NODE_INTS, node, 2);
+    }
+
+    private void setNext(int node, int next) {
+        setInt(nodeFrames, nodesPerFrame, NODE_INTS, node, 2, next);
+    }
+
+    /**
+     * Rehashes the slots into twice as many.
+     */
+    private void grow() throws HyracksDataException {
+        List<ByteBuffer> oldSlotFrames = slotFrames;
+        int oldCapacity = capacity;
+        setCapacity(capacity * 2);
+        slotFrames = allocateSlotFrames(capacity);
+        for (int oldSlot = 0; oldSlot < oldCapacity; ++oldSlot) {
+            int entry = getInt(oldSlotFrames, slotsPerFrame, SLOT_INTS, oldSlot, 0);
+            if (entry != EMPTY) {
+                int slot = findSlot(slotFrames, capacity, shift, entry);
+                setInt(slotFrames, slotsPerFrame, SLOT_INTS, slot, 0, entry);
+                setInt(slotFrames, slotsPerFrame, SLOT_INTS, slot, 1,
+                        getInt(oldSlotFrames, slotsPerFrame, SLOT_INTS, oldSlot, 1));
+            }
+        }
+        ctx.deallocateFrames(oldSlotFrames.size());
+    }
+
+    private void setCapacity(int capacity) {
+        this.capacity = capacity;
+        shift = Integer.SIZE - Integer.numberOfTrailingZeros(capacity);
+        growEntryCount = capacity == maxCapacity ? maxEntryCount : (int) (capacity * MAX_LOAD_FACTOR);
+    }
+
+    private List<ByteBuffer> allocateSlotFrames(int capacity) throws HyracksDataException {
+        List<ByteBuffer> frames = new ArrayList<ByteBuffer>();
+        int nFrames = getSlotFrameCount(capacity);
+        for (int i = 0; i < nFrames; ++i) {
+            frames.add(ctx.allocateFrame());
+        }
+        clearSlots(frames, capacity);
+        return frames;
+    }
+
+    private int getSlotFrameCount(int capacity) {
+        return (capacity + slotsPerFrame - 1) / slotsPerFrame;
+    }
+
+    private void clearSlots(List<ByteBuffer> frames, int capacity) {
+        for (int slot = 0; slot < capacity; ++slot) {
+            setInt(frames, slotsPerFrame, SLOT_INTS, slot, 0, EMPTY);
+        }
+    }
+
+    /**
+     * Returns the slot of the entry, or the empty slot that ends its probe sequence.
+     */
+    private int findSlot(List<ByteBuffer> frames, int capacity, int shift, int entry) {
+        // Fibonacci hashing spreads consecutive entries over the slot array
+        int slot = (entry * 0x9E3779B9) >>> shift;
+        int e;
+        while ((e = getInt(frames, slotsPerFrame, SLOT_INTS, slot, 0)) != EMPTY && e != entry) {
+            slot = (slot + 1) & (capacity - 1);
+        }
+        return slot;
+    }
+
+    private static int getCapacity(int minCapacity) {
+        return minCapacity <= 2 ? 2 : Integer.highestOneBit(minCapacity - 1) << 1;
+    }
+
+    /**
+     * Takes the fingerprint from the top bits of the mixed hash, which the entry, a remainder of the
+     * hash, does not determine. Never returns {@link #ANY_FINGERPRINT}.
+     */
+    private static int getFingerprint(int hash) {
+        int fingerprint = (hash * 0x9E3779B9) >>> (Integer.SIZE - FINGERPRINT_BITS);
+        return fingerprint == ANY_FINGERPRINT ? 1 : fingerprint;
+    }
+
+    private static int getInt(List<ByteBuffer> frames, int perFrame, int ints, int index, int field) {
+        return frames.get(index / perFrame).getInt(((index % perFrame) * ints + field) * INT_SIZE);
+    }
+
+    private static void setInt(List<ByteBuffer> frames, int perFrame, int ints, int index, int field, int value) {
+        frames.get(index / perFrame).putInt(((index % perFrame) * ints + field) * INT_SIZE, value);
+    }
+}
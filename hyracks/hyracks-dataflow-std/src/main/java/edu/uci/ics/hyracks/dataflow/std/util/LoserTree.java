@@ -0,0 +1,140 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.hyracks.dataflow.std.util;
+
+import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
+
+/**
+ * A tournament tree of losers over the current heads of n sorted runs. Every inner node keeps the run that lost the
+ * match played there, so replacing the winner's head replays only the matches on the path from its leaf to the
+ * root: one comparison per level.
+ * Runs are compared by their normalized keys first, held in this tree as unsigned ints; only equal keys fall back
+ * to the {@link IRunComparator}. Exhausted runs lose every match, and ties go to the run with the lower index.
+ */
+public class LoserTree {
+    public interface IRunComparator {
+        public int compare(int run1, int run2) throws HyracksDataException;
+    }
+
+    private final int nRuns;
+    private final int nkLength;
+    private final int[] normalizedKeys;
+    private final boolean[] exhausted;
+    private final IRunComparator comparator;
+    /**
+     * tree[0] is the winner, tree[1..nRuns-1] the losers of the inner nodes; the leaf of run r is node nRuns + r
+     */
+    private final int[] tree;
+    private int nActiveRuns;
+
+    /**
+     * @param nkLength
+     *            number of normalized key ints per run, 0 if there is no normalized key
+     */
+    public LoserTree(int nRuns, int nkLength, IRunComparator comparator) {
+        if (nRuns < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.nRuns = nRuns;
+        this.nkLength = nkLength;
+        this.comparator = comparator;
+        normalizedKeys = new int[nRuns * nkLength];
+        exhausted = new boolean[nRuns];
+        tree = new int[nRuns];
+    }
+
+    /**
+     * The normalized key of run r lives at [r * getNormalizedKeyLength(), (r + 1) * getNormalizedKeyLength()).
+     */
+    public int[] getNormalizedKeys() {
+        return normalizedKeys;
+    }
+
+    public int getNormalizedKeyLength() {
+        return nkLength;
+    }
+
+    public void setExhausted(int run) {
+        if (!exhausted[run]) {
+            exhausted[run] = true;
+            --nActiveRuns;
+        }
+    }
+
+    /**
+     * Plays the whole tournament, once the heads (or exhaustion) of all runs are set.
+     */
+    public void init() throws HyracksDataException {
+        nActiveRuns = 0;
+        for (int r = 0; r < nRuns; ++r) {
+            if (!exhausted[r]) {
+                ++nActiveRuns;
+            }
+        }
+        int[] winners = new int[2 * nRuns];
+        for (int r = 0; r < nRuns; ++r) {
+            winners[nRuns + r] = r;
+        }
+        for (int node = nRuns - 1; node > 0; --node) {
+            int left = winners[2 * node];
+            int right = winners[2 * node + 1];
+            if (less(right, left)) {
+                winners[node] = right;
+                tree[node] = left;
+            } else {
+                winners[node] = left;
+                tree[node] = right;
+            }
+        }
+        tree[0] = winners[1];
+    }
+
+    /**
+     * @return the run with the smallest head, or -1 if all runs are exhausted
+     */
+    public int peek() {
+        return nActiveRuns > 0 ? tree[0] : -1;
+    }
+
+    /**
+     * Restores the tree after the head of the winning run has been replaced or the run has been exhausted.
+     */
+    public void replayWinner() throws HyracksDataException {
+        int winner = tree[0];
+        for (int node = (nRuns + winner) >>> 1; node > 0; node >>>= 1) {
+            int opponent = tree[node];
+            if (less(opponent, winner)) {
+                tree[node] = winner;
+                winner = opponent;
+            }
+        }
+        tree[0] = winner;
+    }
+
+    private boolean less(int run1, int run2) throws HyracksDataException {
+        if (exhausted[run1] || exhausted[run2]) {
+            return !exhausted[run1] || (exhausted[run2] && run1 < run2);
+        }
+        for (int i = run1 * nkLength, j = run2 * nkLength, end = i + nkLength; i < end; ++i, ++j) {
+            int k1 = normalizedKeys[i];
+            int k2 = normalizedKeys[j];
+            if (k1 != k2) {
+                return (((long) k1) & 0xffffffffL) < (((long) k2) & 0xffffffffL);
+            }
+        }
+        int c = comparator.compare(run1, run2);
+        return c < 0 || (c == 0 && run1 < run2);
+    }
+}
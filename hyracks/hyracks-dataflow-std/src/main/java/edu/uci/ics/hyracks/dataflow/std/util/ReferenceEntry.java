@@ -15,6 +15,7 @@
 package edu.uci.ics.hyracks.dataflow.std.util;
 
 import edu.uci.ics.hyracks.api.dataflow.value.INormalizedKeyComputer;
+import edu.uci.ics.hyracks.api.dataflow.value.IWideNormalizedKeyComputer;
 import edu.uci.ics.hyracks.dataflow.common.comm.io.FrameTupleAccessor;
 
 public class ReferenceEntry {
@@ -22,6 +23,7 @@ public class ReferenceEntry {
     private FrameTupleAccessor acccessor;
     private int tupleIndex;
     private int[] tPointers;
+    private final int[] normalizedKeys;
 
     public ReferenceEntry(int runid, FrameTupleAccessor fta, int tupleIndex, int[] keyFields,
             INormalizedKeyComputer nmkComputer) {
@@ -29,6 +31,8 @@ public class ReferenceEntry {
         this.runid = runid;
         this.acccessor = fta;
         this.tPointers = new int[1 + 2 * keyFields.length];
+        this.normalizedKeys = new int[nmkComputer instanceof IWideNormalizedKeyComputer
+                ? ((IWideNormalizedKeyComputer) nmkComputer).getNormalizedKeyLength() : 1];
         if (fta != null) {
             initTPointer(fta, tupleIndex, keyFields, nmkComputer);
         }
@@ -58,6 +62,13 @@ public class ReferenceEntry {
         return tPointers[0];
     }
 
+    /**
+     * @return all ints of the normalized key; the first one is {@link #getNormalizedKey()}
+     */
+    public int[] getNormalizedKeys() {
+        return normalizedKeys;
+    }
+
     public void setTupleIndex(int tupleIndex, int[] keyFields, INormalizedKeyComputer nmkComputer) {
         initTPointer(acccessor, tupleIndex, keyFields, nmkComputer);
     }
@@ -72,11 +83,15 @@ public class ReferenceEntry {
                     + fta.getFieldStartOffset(tupleIndex, fIdx);
             tPointers[2 * f + 2] = fta.getFieldEndOffset(tupleIndex, fIdx) - fta.getFieldStartOffset(tupleIndex, fIdx);
             if (f == 0) {
-                if (nmkComputer != null) {
-                    tPointers[0] = nmkComputer.normalize(b1, tPointers[1], tPointers[2]);
+                if (nmkComputer instanceof IWideNormalizedKeyComputer) {
+                    ((IWideNormalizedKeyComputer) nmkComputer).normalize(b1, tPointers[1], tPointers[2],
+                            normalizedKeys, 0);
+                } else if (nmkComputer != null) {
+                    normalizedKeys[0] = nmkComputer.normalize(b1, tPointers[1], tPointers[2]);
                 } else {
-                    tPointers[0] = 0;
+                    normalizedKeys[0] = 0;
                 }
+                tPointers[0] = normalizedKeys[0];
             }
         }
     }
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.hyracks.dataflow.std.sort;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ExternalSortRunMergerTest {
+    @Test
+    public void intermediateMergeCostTest() {
+        // Nothing is merged twice if the final merge can take all runs
+        Assert.assertEquals(0, ExternalSortRunMerger.countIntermediateMergeCost(0, 2));
+        Assert.assertEquals(0, ExternalSortRunMerger.countIntermediateMergeCost(1, 2));
+        Assert.assertEquals(0, ExternalSortRunMerger.countIntermediateMergeCost(8, 8));
+        // One intermediate merge of the two runs that do not fit
+        Assert.assertEquals(2, ExternalSortRunMerger.countIntermediateMergeCost(4, 3));
+        // Three merges of three runs each leave three runs for the final merge
+        Assert.assertEquals(9, ExternalSortRunMerger.countIntermediateMergeCost(9, 3));
+        // A binary merge of 8 runs rewrites every run in each of the two intermediate levels
+        Assert.assertEquals(16, ExternalSortRunMerger.countIntermediateMergeCost(8, 2));
+    }
+
+    @Test
+    public void mergeWidthWithoutFramesTest() {
+        Assert.assertEquals(0, ExternalSortRunMerger.planMergeWidth(10, 0));
+        Assert.assertEquals(1, ExternalSortRunMerger.planMergeWidth(10, 1));
+        Assert.assertEquals(2, ExternalSortRunMerger.planMergeWidth(10, 2));
+        Assert.assertEquals(3, ExternalSortRunMerger.planMergeWidth(10, 3));
+    }
+
+    @Test
+    public void mergeWidthTest() {
+        // All runs fit in the final merge either way, so the spare frames become read-ahead frames
+        Assert.assertEquals(4, ExternalSortRunMerger.planMergeWidth(4, 20));
+        Assert.assertEquals(10, ExternalSortRunMerger.planMergeWidth(10, 20));
+        // Halving the width would add intermediate merges
+        Assert.assertEquals(20, ExternalSortRunMerger.planMergeWidth(11, 20));
+        Assert.assertEquals(20, ExternalSortRunMerger.planMergeWidth(1000, 20));
+    }
+
+    @Test
+    public void mergeWidthNeverCostsMoreTest() {
+        for (int nRuns = 0; nRuns <= 300; ++nRuns) {
+            for (int inputFrames = 2; inputFrames <= 64; ++inputFrames) {
+                int width = ExternalSortRunMerger.planMergeWidth(nRuns, inputFrames);
+                String msg = nRuns + " runs, " + inputFrames + " frames";
+                Assert.assertTrue(msg, width >= 2 && width <= inputFrames);
+                Assert.assertTrue(msg, isPlannedWidth(width, inputFrames));
+                long cost = ExternalSortRunMerger.countIntermediateMergeCost(nRuns, width);
+                Assert.assertTrue(msg, cost <= ExternalSortRunMerger.countIntermediateMergeCost(nRuns, inputFrames));
+            }
+        }
+    }
+
+    private static boolean isPlannedWidth(int width, int inputFrames) {
+        for (int readAhead = 0; readAhead <= ExternalSortRunMerger.MAX_READ_AHEAD_FRAMES; ++readAhead) {
+            if (width == inputFrames / (1 + readAhead)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,299 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.hyracks.dataflow.std.test.group;
+
+import java.io.DataOutput;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.uci.ics.hyracks.api.comm.IFrameTupleAccessor;
+import edu.uci.ics.hyracks.api.context.IHyracksTaskContext;
+import edu.uci.ics.hyracks.api.dataflow.value.ISerializerDeserializer;
+import edu.uci.ics.hyracks.api.dataflow.value.RecordDescriptor;
+import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
+import edu.uci.ics.hyracks.dataflow.common.comm.io.ArrayTupleBuilder;
+import edu.uci.ics.hyracks.dataflow.common.comm.io.FrameTupleAccessor;
+import edu.uci.ics.hyracks.dataflow.common.comm.io.FrameTupleAppender;
+import edu.uci.ics.hyracks.dataflow.common.data.marshalling.FloatSerializerDeserializer;
+import edu.uci.ics.hyracks.dataflow.common.data.marshalling.IntegerSerializerDeserializer;
+import edu.uci.ics.hyracks.dataflow.std.group.AggregateState;
+import edu.uci.ics.hyracks.dataflow.std.group.IAggregatorDescriptor;
+import edu.uci.ics.hyracks.dataflow.std.group.IBatchAggregatorDescriptor;
+import edu.uci.ics.hyracks.dataflow.std.group.IFieldAggregateDescriptor;
+import edu.uci.ics.hyracks.dataflow.std.group.IFieldAggregateDescriptorFactory;
+import edu.uci.ics.hyracks.dataflow.std.group.aggregators.AvgFieldGroupAggregatorFactory;
+import edu.uci.ics.hyracks.dataflow.std.group.aggregators.CountFieldAggregatorFactory;
+import edu.uci.ics.hyracks.dataflow.std.group.aggregators.FloatSumFieldAggregatorFactory;
+import edu.uci.ics.hyracks.dataflow.std.group.aggregators.IntSumFieldAggregatorFactory;
+import edu.uci.ics.hyracks.dataflow.std.group.aggregators.MultiFieldsAggregatorFactory;
+
+/**
+ * Aggregates the same input into binary states with the batch path of the primitive aggregators, with their
+ * per-tuple path, and with the generic per-tuple path of MultiFieldsAggregatorFactory, and checks that all produce
+ * the same groups.
+ */
+public class MultiFieldsAggregatorFactoryTest {
+    private static final int FRAME_SIZE = 32768;
+    private static final int N_GROUPS = 37;
+    private static final int[] KEY_FIELDS = new int[] { 0 };
+
+    private static final RecordDescriptor IN_DESC = new RecordDescriptor(new ISerializerDeserializer[] {
+            IntegerSerializerDeserializer.INSTANCE, IntegerSerializerDeserializer.INSTANCE,
+            FloatSerializerDeserializer.INSTANCE });
+
+    private static final RecordDescriptor OUT_DESC = new RecordDescriptor(new ISerializerDeserializer[] {
+            IntegerSerializerDeserializer.INSTANCE, IntegerSerializerDeserializer.INSTANCE,
+            FloatSerializerDeserializer.INSTANCE, IntegerSerializerDeserializer.INSTANCE,
+            FloatSerializerDeserializer.INSTANCE });
+
+    private static final IFieldAggregateDescriptorFactory[] FIELD_FACTORIES = new IFieldAggregateDescriptorFactory[] {
+            new IntSumFieldAggregatorFactory(1, false), new FloatSumFieldAggregatorFactory(2, false),
+            new CountFieldAggregatorFactory(false), new AvgFieldGroupAggregatorFactory(1, false) };
+
+    @Test
+    public void batchTest() throws HyracksDataException {
+        List<ByteBuffer> input = createInput(3000);
+        IAggregatorDescriptor batchAggregator = createAggregator(FIELD_FACTORIES);
+        Assert.assertTrue(batchAggregator instanceof IBatchAggregatorDescriptor);
+
+        IFieldAggregateDescriptorFactory[] hidden = new IFieldAggregateDescriptorFactory[FIELD_FACTORIES.length];
+        for (int i = 0; i < hidden.length; ++i) {
+            hidden[i] = new NonPrimitiveFieldAggregateDescriptorFactory(FIELD_FACTORIES[i]);
+        }
+        IAggregatorDescriptor genericAggregator = createAggregator(hidden);
+        Assert.assertFalse(genericAggregator instanceof IBatchAggregatorDescriptor);
+
+        List<ByteBuffer> expected = aggregate(input, genericAggregator, false);
+        checkResults(input, expected);
+        assertSameResults(expected, aggregate(input, batchAggregator, false));
+        assertSameResults(expected, aggregate(input, batchAggregator, true));
+    }
+
+    private static IAggregatorDescriptor createAggregator(IFieldAggregateDescriptorFactory[] fieldFactories)
+            throws HyracksDataException {
+        return new MultiFieldsAggregatorFactory(fieldFactories).createAggregator(null, IN_DESC, OUT_DESC,
+                KEY_FIELDS, KEY_FIELDS);
+    }
+
+    private static List<ByteBuffer> createInput(int nTuples) throws HyracksDataException {
+        Random rnd = new Random(3);
+        List<ByteBuffer> frames = new ArrayList<ByteBuffer>();
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_SIZE);
+        FrameTupleAppender appender = new FrameTupleAppender(FRAME_SIZE);
+        appender.reset(frame, true);
+        ArrayTupleBuilder tb = new ArrayTupleBuilder(IN_DESC.getFieldCount());
+        for (int i = 0; i < nTuples; ++i) {
+            tb.reset();
+            tb.addField(IntegerSerializerDeserializer.INSTANCE, rnd.nextInt(N_GROUPS));
+            tb.addField(IntegerSerializerDeserializer.INSTANCE, rnd.nextInt(2000) - 1000);
+            tb.addField(FloatSerializerDeserializer.INSTANCE, rnd.nextFloat() * 100);
+            if (!appender.append(tb.getFieldEndOffsets(), tb.getByteArray(), 0, tb.getSize())) {
+                frames.add(frame);
+                frame = ByteBuffer.allocate(FRAME_SIZE);
+                appender.reset(frame, true);
+                Assert.assertTrue(appender.append(tb.getFieldEndOffsets(), tb.getByteArray(), 0, tb.getSize()));
+            }
+        }
+        frames.add(frame);
+        return frames;
+    }
+
+    /**
+     * Groups the input the way a group table does: the first tuple of a group initializes its state tuple, and the
+     * others are aggregated into it, a frame at a time on the batch path.
+     * 
+     * @return the final results, one tuple per group, in the order of the keys
+     */
+    private static List<ByteBuffer> aggregate(List<ByteBuffer> input, IAggregatorDescriptor aggregator,
+            boolean batch) throws HyracksDataException {
+        ByteBuffer stateFrame = ByteBuffer.allocate(FRAME_SIZE);
+        FrameTupleAppender stateAppender = new FrameTupleAppender(FRAME_SIZE);
+        stateAppender.reset(stateFrame, true);
+        FrameTupleAccessor stateAccessor = new FrameTupleAccessor(FRAME_SIZE, OUT_DESC);
+        stateAccessor.reset(stateFrame);
+        ArrayTupleBuilder tb = new ArrayTupleBuilder(OUT_DESC.getFieldCount());
+        AggregateState[] states = new AggregateState[N_GROUPS];
+        int[] stateTuples = new int[N_GROUPS];
+
+        FrameTupleAccessor accessor = new FrameTupleAccessor(FRAME_SIZE, IN_DESC);
+        int[] tIndexes = new int[FRAME_SIZE];
+        byte[][] stateData = new byte[FRAME_SIZE][];
+        int[] stateOffsets = new int[FRAME_SIZE];
+        for (ByteBuffer frame : input) {
+            accessor.reset(frame);
+            int count = 0;
+            for (int tIndex = 0; tIndex < accessor.getTupleCount(); ++tIndex) {
+                int key = getInt(accessor, tIndex, 0);
+                if (states[key] == null) {
+                    states[key] = aggregator.createAggregateStates();
+                    tb.reset();
+                    tb.addField(accessor, tIndex, 0);
+                    aggregator.init(tb, accessor, tIndex, states[key]);
+                    Assert.assertTrue(stateAppender.append(tb.getFieldEndOffsets(), tb.getByteArray(), 0,
+                            tb.getSize()));
+                    stateTuples[key] = stateAppender.getTupleCount() - 1;
+                } else if (batch) {
+                    int stateTuple = stateTuples[key];
+                    tIndexes[count] = tIndex;
+                    stateData[count] = stateFrame.array();
+                    stateOffsets[count] = stateAccessor.getTupleStartOffset(stateTuple)
+                            + stateAccessor.getFieldSlotsLength()
+                            + stateAccessor.getFieldStartOffset(stateTuple, KEY_FIELDS.length);
+                    ++count;
+                } else {
+                    aggregator.aggregate(accessor, tIndex, stateAccessor, stateTuples[key], states[key]);
+                }
+            }
+            if (count > 0) {
+                ((IBatchAggregatorDescriptor) aggregator).aggregate(accessor, tIndexes, stateData, stateOffsets,
+                        count);
+            }
+        }
+
+        List<ByteBuffer> results = new ArrayList<ByteBuffer>();
+        for (int key = 0; key < N_GROUPS; ++key) {
+            Assert.assertNotNull(states[key]);
+            tb.reset();
+            tb.addField(stateAccessor, stateTuples[key], 0);
+            aggregator.outputFinalResult(tb, stateAccessor, stateTuples[key], states[key]);
+            results.add(ByteBuffer.wrap(Arrays.copyOf(tb.getByteArray(), tb.getSize())));
+        }
+        aggregator.close();
+        return results;
+    }
+
+    private static void checkResults(List<ByteBuffer> input, List<ByteBuffer> results) {
+        Map<Integer, int[]> expected = new HashMap<Integer, int[]>();
+        Map<Integer, Float> floatSums = new HashMap<Integer, Float>();
+        FrameTupleAccessor accessor = new FrameTupleAccessor(FRAME_SIZE, IN_DESC);
+        for (ByteBuffer frame : input) {
+            accessor.reset(frame);
+            for (int tIndex = 0; tIndex < accessor.getTupleCount(); ++tIndex) {
+                int key = getInt(accessor, tIndex, 0);
+                int[] sumAndCount = expected.get(key);
+                if (sumAndCount == null) {
+                    sumAndCount = new int[2];
+                    expected.put(key, sumAndCount);
+                    floatSums.put(key, 0f);
+                }
+                sumAndCount[0] += getInt(accessor, tIndex, 1);
+                sumAndCount[1]++;
+                floatSums.put(key, floatSums.get(key) + Float.intBitsToFloat(getInt(accessor, tIndex, 2)));
+            }
+        }
+        for (int key = 0; key < N_GROUPS; ++key) {
+            ByteBuffer result = results.get(key);
+            int[] sumAndCount = expected.get(key);
+            Assert.assertEquals(key, result.getInt(0));
+            Assert.assertEquals(sumAndCount[0], result.getInt(4));
+            Assert.assertEquals(floatSums.get(key), result.getFloat(8), 1e-3 * Math.abs(floatSums.get(key)));
+            Assert.assertEquals(sumAndCount[1], result.getInt(12));
+            Assert.assertEquals((float) sumAndCount[0] / sumAndCount[1], result.getFloat(16), 0);
+        }
+    }
+
+    private static void assertSameResults(List<ByteBuffer> expected, List<ByteBuffer> actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); ++i) {
+            Assert.assertTrue("group " + i, Arrays.equals(expected.get(i).array(), actual.get(i).array()));
+        }
+    }
+
+    private static int getInt(IFrameTupleAccessor accessor, int tIndex, int fIndex) {
+        return accessor.getBuffer().getInt(
+                accessor.getTupleStartOffset(tIndex) + accessor.getFieldSlotsLength()
+                        + accessor.getFieldStartOffset(tIndex, fIndex));
+    }
+
+    /**
+     * Hides that a field aggregator is primitive, so that MultiFieldsAggregatorFactory falls back to its generic
+     * per-tuple path.
+     */
+    private static class NonPrimitiveFieldAggregateDescriptorFactory implements IFieldAggregateDescriptorFactory {
+        private static final long serialVersionUID = 1L;
+
+        private final IFieldAggregateDescriptorFactory factory;
+
+        NonPrimitiveFieldAggregateDescriptorFactory(IFieldAggregateDescriptorFactory factory) {
+            this.factory = factory;
+        }
+
+        @Override
+        public IFieldAggregateDescriptor createAggregator(IHyracksTaskContext ctx,
+                RecordDescriptor inRecordDescriptor, RecordDescriptor outRecordDescriptor)
+                throws HyracksDataException {
+            final IFieldAggregateDescriptor aggregator = factory.createAggregator(ctx, inRecordDescriptor,
+                    outRecordDescriptor);
+            return new IFieldAggregateDescriptor() {
+                @Override
+                public void init(IFrameTupleAccessor accessor, int tIndex, DataOutput fieldOutput,
+                        AggregateState state) throws HyracksDataException {
+                    aggregator.init(accessor, tIndex, fieldOutput, state);
+                }
+
+                @Override
+                public void reset() {
+                    aggregator.reset();
+                }
+
+                @Override
+                public void aggregate(IFrameTupleAccessor accessor, int tIndex, byte[] data, int offset,
+                        AggregateState state) throws HyracksDataException {
+                    aggregator.aggregate(accessor, tIndex, data, offset, state);
+                }
+
+                @Override
+                public void outputPartialResult(DataOutput fieldOutput, byte[] data, int offset,
+                        AggregateState state) throws HyracksDataException {
+                    aggregator.outputPartialResult(fieldOutput, data, offset, state);
+                }
+
+                @Override
+                public void outputFinalResult(DataOutput fieldOutput, byte[] data, int offset, AggregateState state)
+                        throws HyracksDataException {
+                    aggregator.outputFinalResult(fieldOutput, data, offset, state);
+                }
+
+                @Override
+                public boolean needsBinaryState() {
+                    return aggregator.needsBinaryState();
+                }
+
+                @Override
+                public boolean needsObjectState() {
+                    return aggregator.needsObjectState();
+                }
+
+                @Override
+                public AggregateState createState() {
+                    return aggregator.createState();
+                }
+
+                @Override
+                public void close() {
+                    aggregator.close();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.hyracks.dataflow.std.test.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
+import edu.uci.ics.hyracks.dataflow.std.util.LoserTree;
+
+public class LoserTreeTest {
+    private static final int FULL_KEY = 0;
+    private static final int PREFIX_KEY = 1;
+    private static final int NO_KEY = 2;
+
+    @Test
+    public void singleRunTest() throws HyracksDataException {
+        int[][] runs = new int[][] { { -3, 0, 0, 7, Integer.MAX_VALUE } };
+        for (int keyMode = FULL_KEY; keyMode <= NO_KEY; ++keyMode) {
+            checkMerge(runs, keyMode);
+        }
+    }
+
+    @Test
+    public void emptyRunsTest() throws HyracksDataException {
+        for (int nRuns = 1; nRuns <= 9; ++nRuns) {
+            checkMerge(new int[nRuns][0], FULL_KEY);
+        }
+        int[][] runs = new int[][] { {}, { 5, 6 }, {}, {}, { 1, 5 }, {} };
+        for (int keyMode = FULL_KEY; keyMode <= NO_KEY; ++keyMode) {
+            checkMerge(runs, keyMode);
+        }
+    }
+
+    @Test
+    public void tiesTest() throws HyracksDataException {
+        // Equal heads must come out in run order
+        int[][] runs = new int[][] { { 1, 1, 2 }, { 1, 2, 2 }, { 0, 1, 2 }, { 2 }, { 1 } };
+        for (int keyMode = FULL_KEY; keyMode <= NO_KEY; ++keyMode) {
+            checkMerge(runs, keyMode);
+        }
+    }
+
+    @Test
+    public void randomRunsTest() throws HyracksDataException {
+        // Runs of random lengths are exhausted in an arbitrary order; values span the sign bit so that the unsigned
+        // normalized keys are exercised as well
+        Random rnd = new Random(17);
+        for (int nRuns = 1; nRuns <= 33; ++nRuns) {
+            for (int iter = 0; iter < 10; ++iter) {
+                int[][] runs = new int[nRuns][];
+                for (int r = 0; r < nRuns; ++r) {
+                    runs[r] = new int[rnd.nextInt(4) == 0 ? 0 : rnd.nextInt(100)];
+                    for (int i = 0; i < runs[r].length; ++i) {
+                        runs[r][i] = iter % 2 == 0 ? rnd.nextInt() : rnd.nextInt(50) - 25;
+                    }
+                    Arrays.sort(runs[r]);
+                }
+                checkMerge(runs, iter % 3);
+            }
+        }
+    }
+
+    private static void checkMerge(final int[][] runs, int keyMode) throws HyracksDataException {
+        int nRuns = runs.length;
+        final int[] heads = new int[nRuns];
+        LoserTree tree = new LoserTree(nRuns, keyMode == NO_KEY ? 0 : 1, new LoserTree.IRunComparator() {
+            @Override
+            public int compare(int run1, int run2) {
+                int v1 = runs[run1][heads[run1]];
+                int v2 = runs[run2][heads[run2]];
+                return v1 < v2 ? -1 : (v1 == v2 ? 0 : 1);
+            }
+        });
+        for (int r = 0; r < nRuns; ++r) {
+            setHead(tree, runs, r, 0, keyMode);
+        }
+        tree.init();
+
+        List<long[]> expected = new ArrayList<long[]>();
+        for (int r = 0; r < nRuns; ++r) {
+            for (int v : runs[r]) {
+                expected.add(new long[] { v, r });
+            }
+        }
+        Collections.sort(expected, new Comparator<long[]>() {
+            @Override
+            public int compare(long[] o1, long[] o2) {
+                return o1[0] != o2[0] ? (o1[0] < o2[0] ? -1 : 1) : (o1[1] < o2[1] ? -1 : (o1[1] == o2[1] ? 0 : 1));
+            }
+        });
+
+        int n = 0;
+        int winner;
+        while ((winner = tree.peek()) >= 0) {
+            Assert.assertTrue(n < expected.size());
+            Assert.assertEquals(expected.get(n)[1], winner);
+            Assert.assertEquals(expected.get(n)[0], runs[winner][heads[winner]]);
+            ++n;
+            setHead(tree, runs, winner, ++heads[winner], keyMode);
+            tree.replayWinner();
+        }
+        Assert.assertEquals(expected.size(), n);
+    }
+
+    private static void setHead(LoserTree tree, int[][] runs, int run, int head, int keyMode) {
+        if (head >= runs[run].length) {
+            tree.setExhausted(run);
+            return;
+        }
+        // Flipping the sign bit makes the unsigned order of the key the signed order of the value
+        int key = runs[run][head] ^ Integer.MIN_VALUE;
+        if (keyMode == FULL_KEY) {
+            tree.getNormalizedKeys()[run] = key;
+        } else if (keyMode == PREFIX_KEY) {
+            tree.getNormalizedKeys()[run] = key >>> 28;
+        }
+    }
+}
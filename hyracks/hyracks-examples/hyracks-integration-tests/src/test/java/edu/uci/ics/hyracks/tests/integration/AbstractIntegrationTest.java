@@ -175,6 +175,13 @@ public abstract class AbstractIntegrationTest {
         return resultRecords;
     }
 
+    protected List<String> runTestAndReadResults(JobSpecification spec, ResultSetId resultSetId) throws Exception {
+        JobId jobId = executeTest(spec);
+        List<String> results = readResults(spec, jobId, resultSetId);
+        hcc.waitForCompletion(jobId);
+        return results;
+    }
+
     protected boolean runTestAndCompareResults(JobSpecification spec, String[] expectedFileNames) throws Exception {
         JobId jobId = executeTest(spec);
 
@@ -16,13 +16,17 @@ package edu.uci.ics.hyracks.tests.integration;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
 
+import org.junit.Assert;
 import org.junit.Test;
 
 import edu.uci.ics.hyracks.api.constraints.PartitionConstraintHelper;
 import edu.uci.ics.hyracks.api.dataflow.IConnectorDescriptor;
 import edu.uci.ics.hyracks.api.dataflow.value.IBinaryComparatorFactory;
 import edu.uci.ics.hyracks.api.dataflow.value.IBinaryHashFunctionFactory;
+import edu.uci.ics.hyracks.api.dataflow.value.IBinaryHashFunctionFamily;
 import edu.uci.ics.hyracks.api.dataflow.value.ISerializerDeserializer;
 import edu.uci.ics.hyracks.api.dataflow.value.RecordDescriptor;
 import edu.uci.ics.hyracks.api.dataset.ResultSetId;
@@ -30,6 +34,7 @@ import edu.uci.ics.hyracks.api.io.FileReference;
 import edu.uci.ics.hyracks.api.job.JobSpecification;
 import edu.uci.ics.hyracks.data.std.accessors.PointableBinaryComparatorFactory;
 import edu.uci.ics.hyracks.data.std.accessors.PointableBinaryHashFunctionFactory;
+import edu.uci.ics.hyracks.data.std.accessors.UTF8StringBinaryHashFunctionFamily;
 import edu.uci.ics.hyracks.data.std.primitive.UTF8StringPointable;
 import edu.uci.ics.hyracks.dataflow.common.data.marshalling.FloatSerializerDeserializer;
 import edu.uci.ics.hyracks.dataflow.common.data.marshalling.IntegerSerializerDeserializer;
@@ -40,8 +45,12 @@ import edu.uci.ics.hyracks.dataflow.common.data.parsers.IValueParserFactory;
 import edu.uci.ics.hyracks.dataflow.common.data.parsers.IntegerParserFactory;
 import edu.uci.ics.hyracks.dataflow.common.data.parsers.UTF8StringParserFactory;
 import edu.uci.ics.hyracks.dataflow.common.data.partition.FieldHashPartitionComputerFactory;
+import edu.uci.ics.hyracks.dataflow.common.data.partition.FieldHashPartitionComputerFamily;
 import edu.uci.ics.hyracks.dataflow.std.base.AbstractSingleActivityOperatorDescriptor;
 import edu.uci.ics.hyracks.dataflow.std.connectors.MToNPartitioningConnectorDescriptor;
+import edu.uci.ics.hyracks.dataflow.std.connectors.MToNReplicatingConnectorDescriptor;
+import edu.uci.ics.hyracks.dataflow.std.connectors.MToNSkewAwarePartitioningConnectorDescriptor;
+import edu.uci.ics.hyracks.dataflow.std.connectors.MToNSkewAwarePartitioningConnectorDescriptor.HeavyHitterPolicy;
 import edu.uci.ics.hyracks.dataflow.std.connectors.OneToOneConnectorDescriptor;
 import edu.uci.ics.hyracks.dataflow.std.file.ConstantFileSplitProvider;
 import edu.uci.ics.hyracks.dataflow.std.file.DelimitedDataTupleParserFactory;
@@ -50,6 +59,7 @@ import edu.uci.ics.hyracks.dataflow.std.file.FileSplit;
 import edu.uci.ics.hyracks.dataflow.std.file.IFileSplitProvider;
 import edu.uci.ics.hyracks.dataflow.std.file.ITupleParserFactory;
 import edu.uci.ics.hyracks.dataflow.std.group.HashSpillableTableFactory;
+import edu.uci.ics.hyracks.dataflow.std.group.IAggregatorDescriptorFactory;
 import edu.uci.ics.hyracks.dataflow.std.group.IFieldAggregateDescriptorFactory;
 import edu.uci.ics.hyracks.dataflow.std.group.aggregators.AvgFieldGroupAggregatorFactory;
 import edu.uci.ics.hyracks.dataflow.std.group.aggregators.AvgFieldMergeAggregatorFactory;
@@ -60,8 +70,10 @@ import edu.uci.ics.hyracks.dataflow.std.group.aggregators.MinMaxStringFieldAggre
 import edu.uci.ics.hyracks.dataflow.std.group.aggregators.MultiFieldsAggregatorFactory;
 import edu.uci.ics.hyracks.dataflow.std.group.external.ExternalGroupOperatorDescriptor;
 import edu.uci.ics.hyracks.dataflow.std.group.hash.HashGroupOperatorDescriptor;
+import edu.uci.ics.hyracks.dataflow.std.group.hybridhash.HybridHashGroupOperatorDescriptor;
 import edu.uci.ics.hyracks.dataflow.std.group.preclustered.PreclusteredGroupOperatorDescriptor;
 import edu.uci.ics.hyracks.dataflow.std.result.ResultWriterOperatorDescriptor;
+import edu.uci.ics.hyracks.tests.util.HeavyHitterFingerprints;
 import edu.uci.ics.hyracks.tests.util.ResultSerializerFactoryProvider;
 
 /**
@@ -145,6 +157,74 @@ public class AggregationTest extends AbstractIntegrationTest {
         runTest(spec);
     }
 
+    @Test
+    public void singleKeySumSpillingInmemGroupTest() throws Exception {
+        // Small frames make the groups of each partition overflow a few frames, so the runs go several levels deep
+        List<String> expected = runSingleKeySumInmemGroup(-1);
+        Assert.assertEquals(1500, expected.size());
+        Assert.assertEquals(expected, runSingleKeySumInmemGroup(4));
+        Assert.assertEquals(expected, runSingleKeySumInmemGroup(16));
+    }
+
+    /**
+     * @param framesLimit
+     *            the frame limit of the group-by, or -1 to keep all groups in memory
+     * @return the sorted output lines
+     */
+    private List<String> runSingleKeySumInmemGroup(int framesLimit) throws Exception {
+        JobSpecification spec = new JobSpecification();
+        spec.setFrameSize(1024);
+
+        FileScanOperatorDescriptor csvScanner = new FileScanOperatorDescriptor(spec, splitProvider, tupleParserFactory,
+                desc);
+
+        PartitionConstraintHelper.addAbsoluteLocationConstraint(spec, csvScanner, NC2_ID);
+
+        RecordDescriptor outputRec = new RecordDescriptor(new ISerializerDeserializer[] {
+                UTF8StringSerializerDeserializer.INSTANCE, IntegerSerializerDeserializer.INSTANCE,
+                IntegerSerializerDeserializer.INSTANCE, FloatSerializerDeserializer.INSTANCE });
+
+        int[] keyFields = new int[] { 0 };
+        int tableSize = 8;
+
+        IBinaryComparatorFactory[] comparatorFactories = new IBinaryComparatorFactory[] {
+                PointableBinaryComparatorFactory.of(UTF8StringPointable.FACTORY) };
+        MultiFieldsAggregatorFactory aggregatorFactory = new MultiFieldsAggregatorFactory(
+                new IFieldAggregateDescriptorFactory[] { new IntSumFieldAggregatorFactory(1, true),
+                        new IntSumFieldAggregatorFactory(3, true), new FloatSumFieldAggregatorFactory(5, true) });
+        HashGroupOperatorDescriptor grouper;
+        if (framesLimit < 0) {
+            grouper = new HashGroupOperatorDescriptor(spec, keyFields, new FieldHashPartitionComputerFactory(
+                    keyFields, new IBinaryHashFunctionFactory[] { PointableBinaryHashFunctionFactory
+                            .of(UTF8StringPointable.FACTORY) }), comparatorFactories, aggregatorFactory, outputRec,
+                    tableSize);
+        } else {
+            grouper = new HashGroupOperatorDescriptor(spec, keyFields, new FieldHashPartitionComputerFamily(keyFields,
+                    new IBinaryHashFunctionFamily[] { UTF8StringBinaryHashFunctionFamily.INSTANCE }),
+                    comparatorFactories, aggregatorFactory, outputRec, tableSize, framesLimit);
+        }
+
+        PartitionConstraintHelper.addAbsoluteLocationConstraint(spec, grouper, NC2_ID, NC1_ID);
+
+        IConnectorDescriptor conn1 = new MToNPartitioningConnectorDescriptor(spec,
+                new FieldHashPartitionComputerFactory(keyFields,
+                        new IBinaryHashFunctionFactory[] { PointableBinaryHashFunctionFactory
+                                .of(UTF8StringPointable.FACTORY) }));
+        spec.connect(conn1, csvScanner, 0, grouper, 0);
+
+        AbstractSingleActivityOperatorDescriptor printer = getPrinter(spec, "singleKeySumSpillingInmemGroupTest");
+
+        PartitionConstraintHelper.addAbsoluteLocationConstraint(spec, printer, NC2_ID, NC1_ID);
+
+        IConnectorDescriptor conn2 = new OneToOneConnectorDescriptor(spec);
+        spec.connect(conn2, grouper, 0, printer, 0);
+
+        spec.addRoot(printer);
+        List<String> results = runTestAndReadResults(spec, spec.getResultSetIds().get(0));
+        Collections.sort(results);
+        return results;
+    }
+
     @Test
     public void singleKeySumPreClusterGroupTest() throws Exception {
         JobSpecification spec = new JobSpecification();
@@ -234,6 +314,354 @@ public class AggregationTest extends AbstractIntegrationTest {
         runTest(spec);
     }
 
+    @Test
+    public void singleKeySumExtGroupOpenAddressingTest() throws Exception {
+        List<String> expected = runSingleKeySumExtGroup(false);
+        Assert.assertEquals(1500, expected.size());
+        Assert.assertEquals(expected, runSingleKeySumExtGroup(true));
+    }
+
+    /**
+     * @param openAddressing
+     *            whether the spillable table indexes the groups with an open-addressing table
+     * @return the sorted output lines
+     */
+    private List<String> runSingleKeySumExtGroup(boolean openAddressing) throws Exception {
+        JobSpecification spec = new JobSpecification();
+
+        FileScanOperatorDescriptor csvScanner = new FileScanOperatorDescriptor(spec, splitProvider, tupleParserFactory,
+                desc);
+
+        PartitionConstraintHelper.addAbsoluteLocationConstraint(spec, csvScanner, NC2_ID);
+
+        RecordDescriptor outputRec = new RecordDescriptor(new ISerializerDeserializer[] {
+                UTF8StringSerializerDeserializer.INSTANCE, IntegerSerializerDeserializer.INSTANCE,
+                IntegerSerializerDeserializer.INSTANCE, IntegerSerializerDeserializer.INSTANCE });
+
+        int[] keyFields = new int[] { 0 };
+        int frameLimits = 4;
+        int tableSize = 8;
+
+        ExternalGroupOperatorDescriptor grouper = new ExternalGroupOperatorDescriptor(spec, keyFields, frameLimits,
+                new IBinaryComparatorFactory[] { PointableBinaryComparatorFactory.of(UTF8StringPointable.FACTORY) },
+                new UTF8StringNormalizedKeyComputerFactory(), new MultiFieldsAggregatorFactory(
+                        new IFieldAggregateDescriptorFactory[] { new IntSumFieldAggregatorFactory(1, false),
+                                new IntSumFieldAggregatorFactory(3, false),
+                                new IntSumFieldAggregatorFactory(4, false) }), new MultiFieldsAggregatorFactory(
+                        new IFieldAggregateDescriptorFactory[] { new IntSumFieldAggregatorFactory(1, false),
+                                new IntSumFieldAggregatorFactory(2, false),
+                                new IntSumFieldAggregatorFactory(3, false) }), outputRec,
+                new HashSpillableTableFactory(new FieldHashPartitionComputerFactory(keyFields,
+                        new IBinaryHashFunctionFactory[] { PointableBinaryHashFunctionFactory
+                                .of(UTF8StringPointable.FACTORY) }), tableSize, openAddressing), true);
+
+        PartitionConstraintHelper.addAbsoluteLocationConstraint(spec, grouper, NC2_ID, NC1_ID);
+
+        IConnectorDescriptor conn1 = new MToNPartitioningConnectorDescriptor(spec,
+                new FieldHashPartitionComputerFactory(keyFields,
+                        new IBinaryHashFunctionFactory[] { PointableBinaryHashFunctionFactory
+                                .of(UTF8StringPointable.FACTORY) }));
+        spec.connect(conn1, csvScanner, 0, grouper, 0);
+
+        ResultSetId rsId = new ResultSetId(1);
+        AbstractSingleActivityOperatorDescriptor printer = new ResultWriterOperatorDescriptor(spec, rsId, false, false,
+                ResultSerializerFactoryProvider.INSTANCE.getResultSerializerFactoryProvider());
+        spec.addResultSetId(rsId);
+
+        PartitionConstraintHelper.addAbsoluteLocationConstraint(spec, printer, NC1_ID);
+
+        IConnectorDescriptor conn2 = new MToNReplicatingConnectorDescriptor(spec);
+        spec.connect(conn2, grouper, 0, printer, 0);
+
+        spec.addRoot(printer);
+        List<String> results = runTestAndReadResults(spec, rsId);
+        Collections.sort(results);
+        return results;
+    }
+
+    @Test
+    public void singleKeySumHybridHashGroupTest() throws Exception {
+        List<String> expected = runSingleKeyIntSumInmemGroup();
+        Assert.assertEquals(1500, expected.size());
+        // Enough frames to keep all groups of the global group-by in memory
+        Assert.assertEquals(expected, runSingleKeySumHybridHashGroup(64, 0.8));
+        /*
+         * With 1 KB frames, the 4 group frames of the smallest global group-by hold about a hundred groups, while
+         * each of its partitions gets about 750, so its spilled partitions are grouped again over several levels.
+         */
+        Assert.assertEquals(expected, runSingleKeySumHybridHashGroup(6, 1));
+        // A max group ratio of 0 makes the partial group-by pass its input through after its first full table
+        Assert.assertEquals(expected, runSingleKeySumHybridHashGroup(6, 0));
+    }
+
+    /**
+     * The reference grouping for the hybrid hash group-by: the in-memory hash group-by without a frame limit.
+     *
+     * @return the sorted output lines
+     */
+    private List<String> runSingleKeyIntSumInmemGroup() throws Exception {
+        JobSpecification spec = new JobSpecification();
+
+        FileScanOperatorDescriptor csvScanner = new FileScanOperatorDescriptor(spec, splitProvider, tupleParserFactory,
+                desc);
+
+        PartitionConstraintHelper.addAbsoluteLocationConstraint(spec, csvScanner, NC2_ID);
+
+        RecordDescriptor outputRec = new RecordDescriptor(new ISerializerDeserializer[] {
+                UTF8StringSerializerDeserializer.INSTANCE, IntegerSerializerDeserializer.INSTANCE,
+                IntegerSerializerDeserializer.INSTANCE, IntegerSerializerDeserializer.INSTANCE });
+
+        int[] keyFields = new int[] { 0 };
+        int tableSize = 8;
+
+        FieldHashPartitionComputerFactory tpcf = new FieldHashPartitionComputerFactory(keyFields,
+                new IBinaryHashFunctionFactory[] { PointableBinaryHashFunctionFactory
+                        .of(UTF8StringPointable.FACTORY) });
+        HashGroupOperatorDescriptor grouper = new HashGroupOperatorDescriptor(spec, keyFields, tpcf,
+                new IBinaryComparatorFactory[] { PointableBinaryComparatorFactory.of(UTF8StringPointable.FACTORY) },
+                new MultiFieldsAggregatorFactory(new IFieldAggregateDescriptorFactory[] {
+                        new IntSumFieldAggregatorFactory(1, true), new IntSumFieldAggregatorFactory(3, true),
+                        new IntSumFieldAggregatorFactory(4, true) }), outputRec, tableSize);
+
+        PartitionConstraintHelper.addAbsoluteLocationConstraint(spec, grouper, NC2_ID, NC1_ID);
+
+        IConnectorDescriptor conn1 = new MToNPartitioningConnectorDescriptor(spec, tpcf);
+        spec.connect(conn1, csvScanner, 0, grouper, 0);
+
+        ResultSetId rsId = new ResultSetId(1);
+        AbstractSingleActivityOperatorDescriptor printer = new ResultWriterOperatorDescriptor(spec, rsId, false, false,
+                ResultSerializerFactoryProvider.INSTANCE.getResultSerializerFactoryProvider());
+        spec.addResultSetId(rsId);
+
+        PartitionConstraintHelper.addAbsoluteLocationConstraint(spec, printer, NC1_ID);
+
+        IConnectorDescriptor conn2 = new MToNReplicatingConnectorDescriptor(spec);
+        spec.connect(conn2, grouper, 0, printer, 0);
+
+        spec.addRoot(printer);
+        List<String> results = runTestAndReadResults(spec, rsId);
+        Collections.sort(results);
+        return results;
+    }
+
+    /**
+     * Groups locally with a partial hybrid hash group-by and merges the partial groups with a global one, both on
+     * 1 KB frames.
+     *
+     * @param framesLimit
+     *            the frame limit of the global group-by; the partial group-by gets the smallest one, 4
+     * @param maxGroupRatio
+     *            the max group ratio of the partial group-by
+     * @return the sorted output lines
+     */
+    private List<String> runSingleKeySumHybridHashGroup(int framesLimit, double maxGroupRatio) throws Exception {
+        JobSpecification spec = new JobSpecification();
+        spec.setFrameSize(1024);
+
+        FileScanOperatorDescriptor csvScanner = new FileScanOperatorDescriptor(spec, splitProvider, tupleParserFactory,
+                desc);
+
+        PartitionConstraintHelper.addAbsoluteLocationConstraint(spec, csvScanner, NC2_ID);
+
+        // Integer sums only, so that the partial groups add up to the same result in any order
+        RecordDescriptor outputRec = new RecordDescriptor(new ISerializerDeserializer[] {
+                UTF8StringSerializerDeserializer.INSTANCE, IntegerSerializerDeserializer.INSTANCE,
+                IntegerSerializerDeserializer.INSTANCE, IntegerSerializerDeserializer.INSTANCE });
+
+        int[] keyFields = new int[] { 0 };
+        int tableSize = 8;
+
+        HybridHashGroupOperatorDescriptor localGrouper = new HybridHashGroupOperatorDescriptor(spec, keyFields, 4,
+                tableSize,
+                new IBinaryComparatorFactory[] { PointableBinaryComparatorFactory.of(UTF8StringPointable.FACTORY) },
+                new IBinaryHashFunctionFamily[] { UTF8StringBinaryHashFunctionFamily.INSTANCE },
+                new MultiFieldsAggregatorFactory(new IFieldAggregateDescriptorFactory[] {
+                        new IntSumFieldAggregatorFactory(1, false), new IntSumFieldAggregatorFactory(3, false),
+                        new IntSumFieldAggregatorFactory(4, false) }), null, outputRec, true);
+        localGrouper.setMaxGroupRatio(maxGroupRatio);
+
+        PartitionConstraintHelper.addAbsoluteLocationConstraint(spec, localGrouper, NC2_ID);
+
+        IConnectorDescriptor conn0 = new OneToOneConnectorDescriptor(spec);
+        spec.connect(conn0, csvScanner, 0, localGrouper, 0);
+
+        HybridHashGroupOperatorDescriptor grouper = new HybridHashGroupOperatorDescriptor(spec, keyFields,
+                framesLimit, tableSize,
+                new IBinaryComparatorFactory[] { PointableBinaryComparatorFactory.of(UTF8StringPointable.FACTORY) },
+                new IBinaryHashFunctionFamily[] { UTF8StringBinaryHashFunctionFamily.INSTANCE },
+                new MultiFieldsAggregatorFactory(new IFieldAggregateDescriptorFactory[] {
+                        new IntSumFieldAggregatorFactory(1, false), new IntSumFieldAggregatorFactory(2, false),
+                        new IntSumFieldAggregatorFactory(3, false) }), new MultiFieldsAggregatorFactory(
+                        new IFieldAggregateDescriptorFactory[] { new IntSumFieldAggregatorFactory(1, false),
+                                new IntSumFieldAggregatorFactory(2, false),
+                                new IntSumFieldAggregatorFactory(3, false) }), outputRec, false);
+
+        PartitionConstraintHelper.addAbsoluteLocationConstraint(spec, grouper, NC2_ID, NC1_ID);
+
+        IConnectorDescriptor conn1 = new MToNPartitioningConnectorDescriptor(spec,
+                new FieldHashPartitionComputerFactory(keyFields,
+                        new IBinaryHashFunctionFactory[] { PointableBinaryHashFunctionFactory
+                                .of(UTF8StringPointable.FACTORY) }));
+        spec.connect(conn1, localGrouper, 0, grouper, 0);
+
+        ResultSetId rsId = new ResultSetId(1);
+        AbstractSingleActivityOperatorDescriptor printer = new ResultWriterOperatorDescriptor(spec, rsId, false, false,
+                ResultSerializerFactoryProvider.INSTANCE.getResultSerializerFactoryProvider());
+        spec.addResultSetId(rsId);
+
+        PartitionConstraintHelper.addAbsoluteLocationConstraint(spec, printer, NC1_ID);
+
+        IConnectorDescriptor conn2 = new MToNReplicatingConnectorDescriptor(spec);
+        spec.connect(conn2, grouper, 0, printer, 0);
+
+        spec.addRoot(printer);
+        List<String> results = runTestAndReadResults(spec, rsId);
+        Collections.sort(results);
+        return results;
+    }
+
+    @Test
+    public void singleKeySumSkewAwareHybridHashGroupTest() throws Exception {
+        List<String> expected = runSingleKeySumSkewAwareHybridHashGroup(false, null);
+        Assert.assertEquals(1500, expected.size());
+        Assert.assertEquals(expected, runSingleKeySumSkewAwareHybridHashGroup(true,
+                HeavyHitterFingerprints.ofUTF8StringKeys("993", "967", "930", "928")));
+        Assert.assertEquals(expected, runSingleKeySumSkewAwareHybridHashGroup(true, null));
+    }
+
+    @Test
+    public void singleKeySumSkewAwareGlobalGroupRejectedTest() throws Exception {
+        JobSpecification spec = new JobSpecification();
+
+        FileScanOperatorDescriptor csvScanner = new FileScanOperatorDescriptor(spec, splitProvider, tupleParserFactory,
+                desc);
+
+        PartitionConstraintHelper.addAbsoluteLocationConstraint(spec, csvScanner, NC2_ID);
+
+        RecordDescriptor outputRec = new RecordDescriptor(new ISerializerDeserializer[] {
+                UTF8StringSerializerDeserializer.INSTANCE, IntegerSerializerDeserializer.INSTANCE });
+
+        int[] keyFields = new int[] { 0 };
+        IAggregatorDescriptorFactory aggregatorFactory = new MultiFieldsAggregatorFactory(
+                new IFieldAggregateDescriptorFactory[] { new IntSumFieldAggregatorFactory(1, false) });
+        HybridHashGroupOperatorDescriptor grouper = new HybridHashGroupOperatorDescriptor(spec, keyFields, 6, 8,
+                new IBinaryComparatorFactory[] { PointableBinaryComparatorFactory.of(UTF8StringPointable.FACTORY) },
+                new IBinaryHashFunctionFamily[] { UTF8StringBinaryHashFunctionFamily.INSTANCE }, aggregatorFactory,
+                aggregatorFactory, outputRec, false);
+
+        PartitionConstraintHelper.addAbsoluteLocationConstraint(spec, grouper, NC2_ID, NC1_ID);
+
+        // A global group-by would return a detected heavy hitter as several groups
+        IConnectorDescriptor conn0 = new MToNSkewAwarePartitioningConnectorDescriptor(spec,
+                new FieldHashPartitionComputerFactory(keyFields,
+                        new IBinaryHashFunctionFactory[] { PointableBinaryHashFunctionFactory
+                                .of(UTF8StringPointable.FACTORY) }));
+        spec.connect(conn0, csvScanner, 0, grouper, 0);
+
+        ResultSetId rsId = new ResultSetId(1);
+        AbstractSingleActivityOperatorDescriptor printer = new ResultWriterOperatorDescriptor(spec, rsId, false, false,
+                ResultSerializerFactoryProvider.INSTANCE.getResultSerializerFactoryProvider());
+        spec.addResultSetId(rsId);
+
+        PartitionConstraintHelper.addAbsoluteLocationConstraint(spec, printer, NC1_ID);
+
+        IConnectorDescriptor conn1 = new MToNReplicatingConnectorDescriptor(spec);
+        spec.connect(conn1, grouper, 0, printer, 0);
+
+        spec.addRoot(printer);
+        try {
+            runTest(spec);
+        } catch (Exception e) {
+            return;
+        }
+        Assert.fail("Detected heavy hitters were spread into a global group-by");
+    }
+
+    /**
+     * Groups locally behind the input connector and merges the partial groups behind a plain hash connector.
+     *
+     * @param skewAware
+     *            whether the input connector is the skew-aware one, spreading the given heavy hitters or, if none
+     *            are given, the detected ones
+     * @return the sorted output lines
+     */
+    private List<String> runSingleKeySumSkewAwareHybridHashGroup(boolean skewAware, int[] heavyHitters)
+            throws Exception {
+        JobSpecification spec = new JobSpecification();
+
+        FileScanOperatorDescriptor csvScanner = new FileScanOperatorDescriptor(spec, splitProvider, tupleParserFactory,
+                desc);
+
+        PartitionConstraintHelper.addAbsoluteLocationConstraint(spec, csvScanner, NC2_ID);
+
+        // Integer sums only, so that the partial groups add up to the same result in any order
+        RecordDescriptor outputRec = new RecordDescriptor(new ISerializerDeserializer[] {
+                UTF8StringSerializerDeserializer.INSTANCE, IntegerSerializerDeserializer.INSTANCE,
+                IntegerSerializerDeserializer.INSTANCE, IntegerSerializerDeserializer.INSTANCE });
+
+        int[] keyFields = new int[] { 0 };
+        int frameLimits = 6;
+        int tableSize = 8;
+
+        HybridHashGroupOperatorDescriptor localGrouper = new HybridHashGroupOperatorDescriptor(spec, keyFields,
+                frameLimits, tableSize,
+                new IBinaryComparatorFactory[] { PointableBinaryComparatorFactory.of(UTF8StringPointable.FACTORY) },
+                new IBinaryHashFunctionFamily[] { UTF8StringBinaryHashFunctionFamily.INSTANCE },
+                new MultiFieldsAggregatorFactory(new IFieldAggregateDescriptorFactory[] {
+                        new IntSumFieldAggregatorFactory(1, false), new IntSumFieldAggregatorFactory(3, false),
+                        new IntSumFieldAggregatorFactory(4, false) }), null, outputRec, true);
+
+        PartitionConstraintHelper.addAbsoluteLocationConstraint(spec, localGrouper, NC2_ID, NC1_ID);
+
+        FieldHashPartitionComputerFactory tpcf = new FieldHashPartitionComputerFactory(keyFields,
+                new IBinaryHashFunctionFactory[] { PointableBinaryHashFunctionFactory
+                        .of(UTF8StringPointable.FACTORY) });
+        IConnectorDescriptor conn0;
+        if (!skewAware) {
+            conn0 = new MToNPartitioningConnectorDescriptor(spec, tpcf);
+        } else if (heavyHitters != null) {
+            conn0 = new MToNSkewAwarePartitioningConnectorDescriptor(spec, tpcf, heavyHitters,
+                    HeavyHitterPolicy.SPREAD);
+        } else {
+            MToNSkewAwarePartitioningConnectorDescriptor detectingConn;
+            detectingConn = new MToNSkewAwarePartitioningConnectorDescriptor(spec, tpcf);
+            detectingConn.setMinShare(0.01);
+            conn0 = detectingConn;
+        }
+        spec.connect(conn0, csvScanner, 0, localGrouper, 0);
+
+        HybridHashGroupOperatorDescriptor grouper = new HybridHashGroupOperatorDescriptor(spec, keyFields,
+                frameLimits, tableSize,
+                new IBinaryComparatorFactory[] { PointableBinaryComparatorFactory.of(UTF8StringPointable.FACTORY) },
+                new IBinaryHashFunctionFamily[] { UTF8StringBinaryHashFunctionFamily.INSTANCE },
+                new MultiFieldsAggregatorFactory(new IFieldAggregateDescriptorFactory[] {
+                        new IntSumFieldAggregatorFactory(1, false), new IntSumFieldAggregatorFactory(2, false),
+                        new IntSumFieldAggregatorFactory(3, false) }), new MultiFieldsAggregatorFactory(
+                        new IFieldAggregateDescriptorFactory[] { new IntSumFieldAggregatorFactory(1, false),
+                                new IntSumFieldAggregatorFactory(2, false),
+                                new IntSumFieldAggregatorFactory(3, false) }), outputRec, false);
+
+        PartitionConstraintHelper.addAbsoluteLocationConstraint(spec, grouper, NC2_ID, NC1_ID);
+
+        IConnectorDescriptor conn1 = new MToNPartitioningConnectorDescriptor(spec, tpcf);
+        spec.connect(conn1, localGrouper, 0, grouper, 0);
+
+        ResultSetId rsId = new ResultSetId(1);
+        AbstractSingleActivityOperatorDescriptor printer = new ResultWriterOperatorDescriptor(spec, rsId, false, false,
+                ResultSerializerFactoryProvider.INSTANCE.getResultSerializerFactoryProvider());
+        spec.addResultSetId(rsId);
+
+        PartitionConstraintHelper.addAbsoluteLocationConstraint(spec, printer, NC1_ID);
+
+        IConnectorDescriptor conn2 = new MToNReplicatingConnectorDescriptor(spec);
+        spec.connect(conn2, grouper, 0, printer, 0);
+
+        spec.addRoot(printer);
+        List<String> results = runTestAndReadResults(spec, rsId);
+        Collections.sort(results);
+        return results;
+    }
+
     @Test
     public void singleKeyAvgInmemGroupTest() throws Exception {
         JobSpecification spec = new JobSpecification();
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.hyracks.tests.integration;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.uci.ics.hyracks.api.constraints.PartitionConstraintHelper;
+import edu.uci.ics.hyracks.api.dataflow.IOperatorDescriptor;
+import edu.uci.ics.hyracks.api.dataflow.value.IBinaryComparatorFactory;
+import edu.uci.ics.hyracks.api.dataflow.value.IBinaryHashFunctionFactory;
+import edu.uci.ics.hyracks.api.dataflow.value.IBinaryHashFunctionFamily;
+import edu.uci.ics.hyracks.api.dataflow.value.ISerializerDeserializer;
+import edu.uci.ics.hyracks.api.dataflow.value.RecordDescriptor;
+import edu.uci.ics.hyracks.api.io.FileReference;
+import edu.uci.ics.hyracks.api.job.JobSpecification;
+import edu.uci.ics.hyracks.data.std.accessors.PointableBinaryComparatorFactory;
+import edu.uci.ics.hyracks.data.std.accessors.PointableBinaryHashFunctionFactory;
+import edu.uci.ics.hyracks.data.std.accessors.UTF8StringBinaryHashFunctionFamily;
+import edu.uci.ics.hyracks.data.std.primitive.UTF8StringPointable;
+import edu.uci.ics.hyracks.dataflow.common.data.marshalling.UTF8StringSerializerDeserializer;
+import edu.uci.ics.hyracks.dataflow.common.data.parsers.IValueParserFactory;
+import edu.uci.ics.hyracks.dataflow.common.data.parsers.UTF8StringParserFactory;
+import edu.uci.ics.hyracks.dataflow.std.connectors.OneToOneConnectorDescriptor;
+import edu.uci.ics.hyracks.dataflow.std.file.ConstantFileSplitProvider;
+import edu.uci.ics.hyracks.dataflow.std.file.DelimitedDataTupleParserFactory;
+import edu.uci.ics.hyracks.dataflow.std.file.FileScanOperatorDescriptor;
+import edu.uci.ics.hyracks.dataflow.std.file.FileSplit;
+import edu.uci.ics.hyracks.dataflow.std.file.PlainFileWriterOperatorDescriptor;
+import edu.uci.ics.hyracks.dataflow.std.join.GraceHashJoinOperatorDescriptor;
+import edu.uci.ics.hyracks.dataflow.std.join.HybridHashJoinOperatorDescriptor;
+import edu.uci.ics.hyracks.dataflow.std.join.InMemoryHashJoinOperatorDescriptor;
+import edu.uci.ics.hyracks.dataflow.std.join.JoinComparatorFactory;
+import edu.uci.ics.hyracks.dataflow.std.join.NestedLoopJoinOperatorDescriptor;
+import edu.uci.ics.hyracks.dataflow.std.join.OptimizedHybridHashJoinOperatorDescriptor;
+import edu.uci.ics.hyracks.dataflow.std.sort.ExternalSortOperatorDescriptor;
+
+/**
+ * The scanner puts a record larger than the frame size into a large frame of its own. The sort and the joins must pass
+ * such records through, spilling included.
+ */
+public class LargeRecordTest extends AbstractIntegrationTest {
+
+    private static final RecordDescriptor DESC = new RecordDescriptor(new ISerializerDeserializer[] {
+            UTF8StringSerializerDeserializer.INSTANCE, UTF8StringSerializerDeserializer.INSTANCE });
+
+    private static final IBinaryHashFunctionFactory HASH_FUNCTION_FACTORY = PointableBinaryHashFunctionFactory
+            .of(UTF8StringPointable.FACTORY);
+
+    private static final IBinaryComparatorFactory COMPARATOR_FACTORY = PointableBinaryComparatorFactory
+            .of(UTF8StringPointable.FACTORY);
+
+    private static final RecordDescriptor JOIN_DESC = new RecordDescriptor(new ISerializerDeserializer[] {
+            UTF8StringSerializerDeserializer.INSTANCE, UTF8StringSerializerDeserializer.INSTANCE,
+            UTF8StringSerializerDeserializer.INSTANCE, UTF8StringSerializerDeserializer.INSTANCE });
+
+    @Test
+    public void scanSortTest() throws Exception {
+        JobSpecification spec = new JobSpecification();
+        File input = createTempFile();
+        List<String> expected = writeLargeRecords(input, spec.getFrameSize(), 2000);
+        Collections.sort(expected);
+
+        FileScanOperatorDescriptor scanner = createScanner(spec, input);
+
+        // Four frames are not enough for the input, so the sort spills runs holding the large records
+        ExternalSortOperatorDescriptor sorter = new ExternalSortOperatorDescriptor(spec, 4, new int[] { 0 },
+                new IBinaryComparatorFactory[] { COMPARATOR_FACTORY }, DESC);
+        PartitionConstraintHelper.addAbsoluteLocationConstraint(spec, sorter, NC1_ID);
+
+        File output = createTempFile();
+        IOperatorDescriptor writer = createFileWriter(spec, output);
+
+        spec.connect(new OneToOneConnectorDescriptor(spec), scanner, 0, sorter, 0);
+        spec.connect(new OneToOneConnectorDescriptor(spec), sorter, 0, writer, 0);
+        spec.addRoot(writer);
+        runTest(spec);
+
+        Assert.assertEquals(expected, readLines(output));
+    }
+
+    @Test
+    public void inMemoryHashJoinTest() throws Exception {
+        JobSpecification spec = new JobSpecification();
+        InMemoryHashJoinOperatorDescriptor join = new InMemoryHashJoinOperatorDescriptor(spec, new int[] { 0 },
+                new int[] { 0 }, new IBinaryHashFunctionFactory[] { HASH_FUNCTION_FACTORY },
+                new IBinaryComparatorFactory[] { COMPARATOR_FACTORY }, JOIN_DESC, 128);
+        runSelfJoin(spec, join);
+    }
+
+    @Test
+    public void graceHashJoinTest() throws Exception {
+        JobSpecification spec = new JobSpecification();
+        GraceHashJoinOperatorDescriptor join = new GraceHashJoinOperatorDescriptor(spec, 5, 100, 100, 1.2,
+                new int[] { 0 }, new int[] { 0 }, new IBinaryHashFunctionFactory[] { HASH_FUNCTION_FACTORY },
+                new IBinaryComparatorFactory[] { COMPARATOR_FACTORY }, JOIN_DESC, null);
+        runSelfJoin(spec, join);
+    }
+
+    @Test
+    public void hybridHashJoinTest() throws Exception {
+        JobSpecification spec = new JobSpecification();
+        HybridHashJoinOperatorDescriptor join = new HybridHashJoinOperatorDescriptor(spec, 6, 100, 100, 1.2,
+                new int[] { 0 }, new int[] { 0 }, new IBinaryHashFunctionFactory[] { HASH_FUNCTION_FACTORY },
+                new IBinaryComparatorFactory[] { COMPARATOR_FACTORY }, JOIN_DESC, null);
+        runSelfJoin(spec, join);
+    }
+
+    @Test
+    public void optimizedHybridHashJoinTest() throws Exception {
+        JobSpecification spec = new JobSpecification();
+        OptimizedHybridHashJoinOperatorDescriptor join = new OptimizedHybridHashJoinOperatorDescriptor(spec, 10,
+                100, 1.2, new int[] { 0 }, new int[] { 0 },
+                new IBinaryHashFunctionFamily[] { UTF8StringBinaryHashFunctionFamily.INSTANCE },
+                new IBinaryComparatorFactory[] { COMPARATOR_FACTORY }, JOIN_DESC, new JoinComparatorFactory(
+                        COMPARATOR_FACTORY, 0, 0), new JoinComparatorFactory(COMPARATOR_FACTORY, 0, 0), null);
+        runSelfJoin(spec, join);
+    }
+
+    @Test
+    public void nestedLoopJoinTest() throws Exception {
+        JobSpecification spec = new JobSpecification();
+        NestedLoopJoinOperatorDescriptor join = new NestedLoopJoinOperatorDescriptor(spec, new JoinComparatorFactory(
+                COMPARATOR_FACTORY, 0, 0), JOIN_DESC, 4, false, null);
+        runSelfJoin(spec, join);
+    }
+
+    /**
+     * Joins the large record file with itself on the key, with little memory for the join, and checks that every
+     * record is joined with itself.
+     */
+    private void runSelfJoin(JobSpecification spec, IOperatorDescriptor join) throws Exception {
+        File input = createTempFile();
+        List<String> records = writeLargeRecords(input, spec.getFrameSize(), 500);
+        List<String> expected = new ArrayList<String>();
+        for (String record : records) {
+            expected.add(record + "|" + record);
+        }
+        Collections.sort(expected);
+
+        FileScanOperatorDescriptor probeScanner = createScanner(spec, input);
+        FileScanOperatorDescriptor buildScanner = createScanner(spec, input);
+        PartitionConstraintHelper.addAbsoluteLocationConstraint(spec, join, NC1_ID);
+
+        File output = createTempFile();
+        IOperatorDescriptor writer = createFileWriter(spec, output);
+
+        spec.connect(new OneToOneConnectorDescriptor(spec), probeScanner, 0, join, 0);
+        spec.connect(new OneToOneConnectorDescriptor(spec), buildScanner, 0, join, 1);
+        spec.connect(new OneToOneConnectorDescriptor(spec), join, 0, writer, 0);
+        spec.addRoot(writer);
+        runTest(spec);
+
+        List<String> actual = readLines(output);
+        Collections.sort(actual);
+        Assert.assertEquals(expected, actual);
+    }
+
+    /**
+     * Writes records with zero-padded keys, so that the lines sort in key order. Every hundredth record is larger
+     * than a frame.
+     */
+    private List<String> writeLargeRecords(File file, int frameSize, int nRecords) throws Exception {
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < frameSize + 1024; ++i) {
+            large.append((char) ('a' + i % 26));
+        }
+        List<String> lines = new ArrayList<String>();
+        FileWriter writer = new FileWriter(file);
+        try {
+            for (int i = 0; i < nRecords; ++i) {
+                String line = String.format("%05d", (i * 7919) % nRecords) + "|"
+                        + (i % 100 == 50 ? large.toString() : "small" + i);
+                writer.write(line + "\n");
+                lines.add(line);
+            }
+        } finally {
+            writer.close();
+        }
+        return lines;
+    }
+
+    private List<String> readLines(File file) throws Exception {
+        List<String> lines = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+
+    private FileScanOperatorDescriptor createScanner(JobSpecification spec, File input) {
+        FileScanOperatorDescriptor scanner = new FileScanOperatorDescriptor(spec, new ConstantFileSplitProvider(
+                new FileSplit[] { new FileSplit(NC1_ID, new FileReference(input)) }),
+                new DelimitedDataTupleParserFactory(new IValueParserFactory[] { UTF8StringParserFactory.INSTANCE,
+                        UTF8StringParserFactory.INSTANCE }, '|'), DESC);
+        PartitionConstraintHelper.addAbsoluteLocationConstraint(spec, scanner, NC1_ID);
+        return scanner;
+    }
+
+    private IOperatorDescriptor createFileWriter(JobSpecification spec, File output) {
+        IOperatorDescriptor writer = new PlainFileWriterOperatorDescriptor(spec, new ConstantFileSplitProvider(
+                new FileSplit[] { new FileSplit(NC1_ID, new FileReference(output)) }), "|");
+        PartitionConstraintHelper.addAbsoluteLocationConstraint(spec, writer, NC1_ID);
+        return writer;
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.hyracks.tests.io;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.uci.ics.hyracks.api.context.IHyracksTaskContext;
+import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
+import edu.uci.ics.hyracks.api.io.IBlockCompressor;
+import edu.uci.ics.hyracks.dataflow.common.comm.io.LargeFrameReader;
+import edu.uci.ics.hyracks.dataflow.common.io.RunFileReader;
+import edu.uci.ics.hyracks.dataflow.common.io.RunFileWriter;
+import edu.uci.ics.hyracks.dataflow.common.io.compression.LZBlockCompressorFactory;
+import edu.uci.ics.hyracks.test.support.TestUtils;
+
+/**
+ * Reads runs back with and without read-ahead frames. The compressed runs mix frames that are stored compressed
+ * with frames that do not shrink and are stored as they are. Runs with large frames are read back with a
+ * LargeFrameReader.
+ */
+public class RunFileReaderTest {
+    private static final int FRAME_SIZE = 4096;
+    private static final int FRAME_COUNT = 50;
+
+    private final IHyracksTaskContext ctx = TestUtils.create(FRAME_SIZE);
+
+    @Test
+    public void uncompressedTest() throws HyracksDataException {
+        readBack(null);
+    }
+
+    @Test
+    public void compressedTest() throws HyracksDataException {
+        readBack(LZBlockCompressorFactory.INSTANCE.createBlockCompressor());
+    }
+
+    @Test
+    public void compressedEarlyCloseTest() throws HyracksDataException {
+        List<ByteBuffer> frames = createFrames();
+        RunFileReader reader = writeRun(frames, LZBlockCompressorFactory.INSTANCE.createBlockCompressor());
+        ByteBuffer[] readAheadFrames = allocateFrames(4);
+        reader.setReadAheadFrames(readAheadFrames);
+        reader.open();
+        ByteBuffer buffer = ctx.allocateFrame();
+        Assert.assertTrue(reader.nextFrame(buffer));
+        assertFrame(frames.get(0), buffer);
+        // Closing with reads in flight must wait for them before the frames are handed back
+        reader.close();
+        // Read-ahead frames are lent for one open/close cycle only
+        Assert.assertEquals(frames.size(), readAll(reader).size());
+    }
+
+    @Test
+    public void uncompressedLargeFrameTest() throws HyracksDataException {
+        readBackLargeFrames(null);
+    }
+
+    @Test
+    public void compressedLargeFrameTest() throws HyracksDataException {
+        readBackLargeFrames(LZBlockCompressorFactory.INSTANCE.createBlockCompressor());
+    }
+
+    private void readBack(IBlockCompressor compressor) throws HyracksDataException {
+        List<ByteBuffer> frames = createFrames();
+        RunFileReader reader = writeRun(frames, compressor);
+        assertFrames(frames, readAll(reader));
+        for (int readAhead = 1; readAhead <= FRAME_COUNT + 1; readAhead *= 2) {
+            reader.setReadAheadFrames(allocateFrames(readAhead));
+            assertFrames(frames, readAll(reader));
+        }
+        reader.setReadAheadFrames(allocateFrames(FRAME_COUNT + 1));
+        assertFrames(frames, readAll(reader));
+    }
+
+    private void readBackLargeFrames(IBlockCompressor compressor) throws HyracksDataException {
+        List<ByteBuffer> frames = createFrames();
+        for (int i = 0; i < frames.size(); i += 5) {
+            ByteBuffer frame = ctx.allocateFrame((2 + i % 3) * FRAME_SIZE);
+            Arrays.fill(frame.array(), (byte) i);
+            frames.set(i, frame);
+        }
+        for (ByteBuffer frame : frames) {
+            // a negative tuple count would make the frame a large frame header
+            frame.putInt(frame.capacity() - 4, 1);
+        }
+        RunFileReader reader = writeRun(frames, compressor);
+        for (int readAhead = 0; readAhead <= 4; readAhead += 4) {
+            reader.setReadAheadFrames(allocateFrames(readAhead));
+            LargeFrameReader in = new LargeFrameReader(ctx, reader);
+            in.open();
+            try {
+                ByteBuffer buffer = ctx.allocateFrame();
+                for (ByteBuffer expected : frames) {
+                    ByteBuffer actual = in.nextFrame(buffer);
+                    Assert.assertNotNull(actual);
+                    Assert.assertEquals(expected.capacity(), actual.capacity());
+                    Assert.assertTrue(Arrays.equals(expected.array(), actual.array()));
+                }
+                Assert.assertNull(in.nextFrame(buffer));
+            } finally {
+                in.close();
+            }
+        }
+    }
+
+    private List<ByteBuffer> createFrames() throws HyracksDataException {
+        Random rnd = new Random(42);
+        List<ByteBuffer> frames = new ArrayList<ByteBuffer>();
+        for (int i = 0; i < FRAME_COUNT; ++i) {
+            ByteBuffer frame = ctx.allocateFrame();
+            byte[] bytes = frame.array();
+            if (i % 3 == 0) {
+                // incompressible
+                rnd.nextBytes(bytes);
+            } else {
+                Arrays.fill(bytes, (byte) i);
+                for (int j = 0; j < 64; ++j) {
+                    bytes[rnd.nextInt(bytes.length)] = (byte) rnd.nextInt();
+                }
+            }
+            frames.add(frame);
+        }
+        return frames;
+    }
+
+    private RunFileReader writeRun(List<ByteBuffer> frames, IBlockCompressor compressor) throws HyracksDataException {
+        RunFileWriter writer = new RunFileWriter(ctx.createManagedWorkspaceFile(RunFileReaderTest.class
+                .getSimpleName()), ctx.getIOManager(), FRAME_SIZE, compressor);
+        writer.open();
+        long size = 0;
+        for (ByteBuffer frame : frames) {
+            frame.clear();
+            writer.nextFrame(frame);
+            size += frame.capacity();
+        }
+        writer.close();
+        if (compressor != null) {
+            Assert.assertTrue(writer.getFileSize() < size);
+        }
+        return writer.createReader();
+    }
+
+    private List<ByteBuffer> readAll(RunFileReader reader) throws HyracksDataException {
+        List<ByteBuffer> frames = new ArrayList<ByteBuffer>();
+        reader.open();
+        try {
+            ByteBuffer buffer = ctx.allocateFrame();
+            while (reader.nextFrame(buffer)) {
+                frames.add(buffer);
+                buffer = ctx.allocateFrame();
+            }
+        } finally {
+            reader.close();
+        }
+        return frames;
+    }
+
+    private ByteBuffer[] allocateFrames(int n) throws HyracksDataException {
+        ByteBuffer[] frames = new ByteBuffer[n];
+        for (int i = 0; i < n; ++i) {
+            frames[i] = ctx.allocateFrame();
+        }
+        return frames;
+    }
+
+    private static void assertFrames(List<ByteBuffer> expected, List<ByteBuffer> actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); ++i) {
+            assertFrame(expected.get(i), actual.get(i));
+        }
+    }
+
+    private static void assertFrame(ByteBuffer expected, ByteBuffer actual) {
+        Assert.assertEquals(FRAME_SIZE, actual.position());
+        Assert.assertTrue(Arrays.equals(expected.array(), actual.array()));
+    }
+}
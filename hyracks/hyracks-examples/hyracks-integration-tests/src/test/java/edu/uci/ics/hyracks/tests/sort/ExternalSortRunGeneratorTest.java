@@ -0,0 +1,179 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.hyracks.tests.sort;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.uci.ics.hyracks.api.comm.IFrameWriter;
+import edu.uci.ics.hyracks.api.context.IHyracksTaskContext;
+import edu.uci.ics.hyracks.api.dataflow.value.IBinaryComparator;
+import edu.uci.ics.hyracks.api.dataflow.value.IBinaryComparatorFactory;
+import edu.uci.ics.hyracks.api.dataflow.value.ISerializerDeserializer;
+import edu.uci.ics.hyracks.api.dataflow.value.RecordDescriptor;
+import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
+import edu.uci.ics.hyracks.data.std.accessors.PointableBinaryComparatorFactory;
+import edu.uci.ics.hyracks.data.std.primitive.IntegerPointable;
+import edu.uci.ics.hyracks.dataflow.common.comm.io.ArrayTupleBuilder;
+import edu.uci.ics.hyracks.dataflow.common.comm.io.FrameTupleAccessor;
+import edu.uci.ics.hyracks.dataflow.common.comm.io.FrameTupleAppender;
+import edu.uci.ics.hyracks.dataflow.common.data.marshalling.IntegerSerializerDeserializer;
+import edu.uci.ics.hyracks.dataflow.common.data.normalizers.IntegerNormalizedKeyComputerFactory;
+import edu.uci.ics.hyracks.dataflow.std.sort.Algorithm;
+import edu.uci.ics.hyracks.dataflow.std.sort.ExternalSortRunGenerator;
+import edu.uci.ics.hyracks.dataflow.std.sort.ExternalSortRunMerger;
+import edu.uci.ics.hyracks.test.support.TestUtils;
+
+/**
+ * Sorts the same input with the serial run generator and with the parallel one, which merge sorts on several
+ * threads and writes runs in the background, and checks that both produce the same output.
+ */
+public class ExternalSortRunGeneratorTest {
+    private static final int FRAME_SIZE = 32768;
+    private static final int FRAMES_LIMIT = 16;
+    private static final int[] SORT_FIELDS = new int[] { 0, 1 };
+
+    private static final RecordDescriptor DESC = new RecordDescriptor(new ISerializerDeserializer[] {
+            IntegerSerializerDeserializer.INSTANCE, IntegerSerializerDeserializer.INSTANCE });
+
+    private static final IBinaryComparatorFactory[] COMPARATOR_FACTORIES = new IBinaryComparatorFactory[] {
+            PointableBinaryComparatorFactory.of(IntegerPointable.FACTORY),
+            PointableBinaryComparatorFactory.of(IntegerPointable.FACTORY) };
+
+    private final IHyracksTaskContext ctx = TestUtils.create(FRAME_SIZE);
+
+    @Test
+    public void parallelMergeSortTest() throws HyracksDataException {
+        List<ByteBuffer> input = createInput(200000, 50000);
+        List<Long> expected = sort(input, Algorithm.MERGE_SORT, 1);
+        Assert.assertEquals(200000, expected.size());
+        for (int i = 1; i < expected.size(); ++i) {
+            Assert.assertTrue(expected.get(i - 1) < expected.get(i));
+        }
+        Assert.assertEquals(expected, sort(input, Algorithm.MERGE_SORT, 4));
+        Assert.assertEquals(expected, sort(input, Algorithm.MERGE_SORT, 2));
+    }
+
+    @Test
+    public void backgroundRunWriterQuickSortTest() throws HyracksDataException {
+        // Quick sort is not parallelized, but its runs are still written in the background
+        List<ByteBuffer> input = createInput(100000, 1000);
+        Assert.assertEquals(sort(input, Algorithm.QUICK_SORT, 1), sort(input, Algorithm.QUICK_SORT, 4));
+    }
+
+    @Test
+    public void inMemoryTest() throws HyracksDataException {
+        // Fits in memory, so no run is written on either path
+        List<ByteBuffer> input = createInput(3000, 100);
+        Assert.assertEquals(sort(input, Algorithm.MERGE_SORT, 1), sort(input, Algorithm.MERGE_SORT, 4));
+    }
+
+    @Test
+    public void failWhileWritingRunTest() throws HyracksDataException {
+        List<ByteBuffer> input = createInput(100000, 1000);
+        ExternalSortRunGenerator runGen = new ExternalSortRunGenerator(ctx, SORT_FIELDS,
+                new IntegerNormalizedKeyComputerFactory(), COMPARATOR_FACTORIES, DESC, Algorithm.MERGE_SORT,
+                FRAMES_LIMIT, 4);
+        runGen.open();
+        for (ByteBuffer frame : input) {
+            runGen.nextFrame(frame);
+        }
+        // A run is being written in the background; fail() must wait for it instead of leaving it running
+        runGen.fail();
+        runGen.fail();
+    }
+
+    /**
+     * Returns the (key, sequence number) pairs in output order, each packed into a long.
+     */
+    private List<Long> sort(List<ByteBuffer> input, Algorithm alg, int sortParallelism)
+            throws HyracksDataException {
+        ExternalSortRunGenerator runGen = new ExternalSortRunGenerator(ctx, SORT_FIELDS,
+                new IntegerNormalizedKeyComputerFactory(), COMPARATOR_FACTORIES, DESC, alg, FRAMES_LIMIT,
+                sortParallelism);
+        runGen.open();
+        for (ByteBuffer frame : input) {
+            runGen.nextFrame(frame);
+        }
+        runGen.close();
+
+        IBinaryComparator[] comparators = new IBinaryComparator[COMPARATOR_FACTORIES.length];
+        for (int i = 0; i < comparators.length; ++i) {
+            comparators[i] = COMPARATOR_FACTORIES[i].createBinaryComparator();
+        }
+        final List<Long> output = new ArrayList<Long>();
+        final FrameTupleAccessor accessor = new FrameTupleAccessor(FRAME_SIZE, DESC);
+        ExternalSortRunMerger merger = new ExternalSortRunMerger(ctx, runGen.getFrameSorter(), runGen.getRuns(),
+                SORT_FIELDS, comparators, new IntegerNormalizedKeyComputerFactory().createNormalizedKeyComputer(),
+                DESC, FRAMES_LIMIT, new IFrameWriter() {
+                    @Override
+                    public void open() throws HyracksDataException {
+                    }
+
+                    @Override
+                    public void nextFrame(ByteBuffer buffer) throws HyracksDataException {
+                        accessor.reset(buffer);
+                        for (int i = 0; i < accessor.getTupleCount(); ++i) {
+                            long key = getInt(accessor, i, 0);
+                            long seq = getInt(accessor, i, 1);
+                            output.add((key << 32) | seq);
+                        }
+                    }
+
+                    @Override
+                    public void fail() throws HyracksDataException {
+                    }
+
+                    @Override
+                    public void close() throws HyracksDataException {
+                    }
+                });
+        merger.process();
+        return output;
+    }
+
+    private List<ByteBuffer> createInput(int nTuples, int nKeys) throws HyracksDataException {
+        List<ByteBuffer> frames = new ArrayList<ByteBuffer>();
+        Random rnd = new Random(nTuples);
+        FrameTupleAppender appender = new FrameTupleAppender(FRAME_SIZE);
+        ArrayTupleBuilder tb = new ArrayTupleBuilder(2);
+        ByteBuffer frame = ctx.allocateFrame();
+        appender.reset(frame, true);
+        for (int i = 0; i < nTuples; ++i) {
+            tb.reset();
+            tb.addField(IntegerSerializerDeserializer.INSTANCE, rnd.nextInt(nKeys));
+            tb.addField(IntegerSerializerDeserializer.INSTANCE, i);
+            if (!appender.append(tb.getFieldEndOffsets(), tb.getByteArray(), 0, tb.getSize())) {
+                frames.add(frame);
+                frame = ctx.allocateFrame();
+                appender.reset(frame, true);
+                appender.append(tb.getFieldEndOffsets(), tb.getByteArray(), 0, tb.getSize());
+            }
+        }
+        frames.add(frame);
+        return frames;
+    }
+
+    private static int getInt(FrameTupleAccessor accessor, int tIndex, int fIndex) {
+        int start = accessor.getTupleStartOffset(tIndex) + accessor.getFieldSlotsLength()
+                + accessor.getFieldStartOffset(tIndex, fIndex);
+        return IntegerPointable.getInteger(accessor.getBuffer().array(), start);
+    }
+}
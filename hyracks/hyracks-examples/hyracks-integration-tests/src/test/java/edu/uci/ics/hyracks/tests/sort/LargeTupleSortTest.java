@@ -0,0 +1,259 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.hyracks.tests.sort;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.uci.ics.hyracks.api.comm.IFrameReader;
+import edu.uci.ics.hyracks.api.comm.IFrameWriter;
+import edu.uci.ics.hyracks.api.context.IHyracksTaskContext;
+import edu.uci.ics.hyracks.api.dataflow.value.IBinaryComparator;
+import edu.uci.ics.hyracks.api.dataflow.value.IBinaryComparatorFactory;
+import edu.uci.ics.hyracks.api.dataflow.value.ISerializerDeserializer;
+import edu.uci.ics.hyracks.api.dataflow.value.RecordDescriptor;
+import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
+import edu.uci.ics.hyracks.data.std.accessors.PointableBinaryComparatorFactory;
+import edu.uci.ics.hyracks.data.std.primitive.IntegerPointable;
+import edu.uci.ics.hyracks.dataflow.common.comm.io.ArrayTupleBuilder;
+import edu.uci.ics.hyracks.dataflow.common.comm.io.FrameTupleAccessor;
+import edu.uci.ics.hyracks.dataflow.common.comm.io.FrameTupleAppender;
+import edu.uci.ics.hyracks.dataflow.common.comm.util.FrameUtils;
+import edu.uci.ics.hyracks.dataflow.common.data.marshalling.IntegerSerializerDeserializer;
+import edu.uci.ics.hyracks.dataflow.common.data.normalizers.IntegerNormalizedKeyComputerFactory;
+import edu.uci.ics.hyracks.dataflow.std.sort.Algorithm;
+import edu.uci.ics.hyracks.dataflow.std.sort.ExternalSortRunGenerator;
+import edu.uci.ics.hyracks.dataflow.std.sort.ExternalSortRunMerger;
+import edu.uci.ics.hyracks.dataflow.std.sort.IRunGenerator;
+import edu.uci.ics.hyracks.dataflow.std.sort.OptimizedExternalSortRunGenerator;
+import edu.uci.ics.hyracks.dataflow.std.sort.OptimizedExternalSortRunGeneratorWithLimit;
+import edu.uci.ics.hyracks.test.support.TestUtils;
+
+/**
+ * Sorts input in which some tuples do not fit into a frame. The sorts spill runs and merge them in several passes,
+ * so the large tuples go through the frame sorters, the run files and the run merger.
+ */
+public class LargeTupleSortTest {
+    private static final int FRAME_SIZE = 4096;
+    private static final int FRAMES_LIMIT = 8;
+    private static final int N_TUPLES = 5000;
+    private static final int LARGE_TUPLE_INTERVAL = 251;
+    private static final int[] SORT_FIELDS = new int[] { 0, 1 };
+
+    // The third field holds the payload, which is only checked for its length and content
+    private static final RecordDescriptor DESC = new RecordDescriptor(new ISerializerDeserializer[] {
+            IntegerSerializerDeserializer.INSTANCE, IntegerSerializerDeserializer.INSTANCE, null });
+
+    private static final IBinaryComparatorFactory[] COMPARATOR_FACTORIES = new IBinaryComparatorFactory[] {
+            PointableBinaryComparatorFactory.of(IntegerPointable.FACTORY),
+            PointableBinaryComparatorFactory.of(IntegerPointable.FACTORY) };
+
+    private final IHyracksTaskContext ctx = TestUtils.create(FRAME_SIZE);
+
+    private final int[] payloadLengths = new int[N_TUPLES];
+
+    @Test
+    public void mergeSortTest() throws HyracksDataException {
+        List<ByteBuffer> input = createInput();
+        Assert.assertEquals(expectedOutput(input, N_TUPLES), sort(input, Algorithm.MERGE_SORT, 1));
+        Assert.assertEquals(expectedOutput(input, N_TUPLES), sort(input, Algorithm.MERGE_SORT, 4));
+    }
+
+    @Test
+    public void quickSortTest() throws HyracksDataException {
+        List<ByteBuffer> input = createInput();
+        Assert.assertEquals(expectedOutput(input, N_TUPLES), sort(input, Algorithm.QUICK_SORT, 1));
+    }
+
+    @Test
+    public void replacementSelectionTest() throws HyracksDataException {
+        List<ByteBuffer> input = createInput();
+        IRunGenerator runGen = new OptimizedExternalSortRunGenerator(ctx, SORT_FIELDS,
+                new IntegerNormalizedKeyComputerFactory(), COMPARATOR_FACTORIES, DESC, FRAMES_LIMIT);
+        Assert.assertEquals(expectedOutput(input, N_TUPLES), sortWithReplacementSelection(input, runGen, -1));
+    }
+
+    @Test
+    public void replacementSelectionWithLimitTest() throws HyracksDataException {
+        List<ByteBuffer> input = createInput();
+        int limit = 1000;
+        IRunGenerator runGen = new OptimizedExternalSortRunGeneratorWithLimit(ctx, SORT_FIELDS,
+                new IntegerNormalizedKeyComputerFactory(), COMPARATOR_FACTORIES, DESC, FRAMES_LIMIT, limit);
+        Assert.assertEquals(expectedOutput(input, limit), sortWithReplacementSelection(input, runGen, limit));
+    }
+
+    private List<Long> sort(List<ByteBuffer> input, Algorithm alg, int sortParallelism)
+            throws HyracksDataException {
+        ExternalSortRunGenerator runGen = new ExternalSortRunGenerator(ctx, SORT_FIELDS,
+                new IntegerNormalizedKeyComputerFactory(), COMPARATOR_FACTORIES, DESC, alg, FRAMES_LIMIT,
+                sortParallelism);
+        generateRuns(input, runGen);
+        Assert.assertFalse(runGen.getRuns().isEmpty());
+        List<Long> output = new ArrayList<Long>();
+        ExternalSortRunMerger merger = new ExternalSortRunMerger(ctx, runGen.getFrameSorter(), runGen.getRuns(),
+                SORT_FIELDS, createComparators(), new IntegerNormalizedKeyComputerFactory()
+                        .createNormalizedKeyComputer(), DESC, FRAMES_LIMIT, createOutputWriter(output));
+        merger.process();
+        return output;
+    }
+
+    private List<Long> sortWithReplacementSelection(List<ByteBuffer> input, IRunGenerator runGen, int outputLimit)
+            throws HyracksDataException {
+        generateRuns(input, runGen);
+        List<IFrameReader> runs = runGen.getRuns();
+        // Each large tuple is a run of its own, so there are more runs than the merger can merge in one pass
+        Assert.assertTrue(runs.size() > FRAMES_LIMIT);
+        List<Long> output = new ArrayList<Long>();
+        ExternalSortRunMerger merger = new ExternalSortRunMerger(ctx, outputLimit, runs, SORT_FIELDS,
+                createComparators(), new IntegerNormalizedKeyComputerFactory().createNormalizedKeyComputer(), DESC,
+                FRAMES_LIMIT, createOutputWriter(output));
+        merger.processWithReplacementSelection();
+        return output;
+    }
+
+    private void generateRuns(List<ByteBuffer> input, IFrameWriter runGen) throws HyracksDataException {
+        runGen.open();
+        for (ByteBuffer frame : input) {
+            runGen.nextFrame(frame);
+        }
+        runGen.close();
+    }
+
+    private IBinaryComparator[] createComparators() {
+        IBinaryComparator[] comparators = new IBinaryComparator[COMPARATOR_FACTORIES.length];
+        for (int i = 0; i < comparators.length; ++i) {
+            comparators[i] = COMPARATOR_FACTORIES[i].createBinaryComparator();
+        }
+        return comparators;
+    }
+
+    /**
+     * Collects the (key, sequence number) pairs in output order, each packed into a long, and checks the payloads.
+     */
+    private IFrameWriter createOutputWriter(final List<Long> output) {
+        final FrameTupleAccessor accessor = new FrameTupleAccessor(FRAME_SIZE, DESC);
+        return new IFrameWriter() {
+            @Override
+            public void open() throws HyracksDataException {
+            }
+
+            @Override
+            public void nextFrame(ByteBuffer buffer) throws HyracksDataException {
+                accessor.reset(buffer);
+                for (int i = 0; i < accessor.getTupleCount(); ++i) {
+                    long key = getInt(accessor, i, 0);
+                    int seq = getInt(accessor, i, 1);
+                    Assert.assertEquals(payloadLengths[seq], accessor.getFieldLength(i, 2));
+                    int start = accessor.getTupleStartOffset(i) + accessor.getFieldSlotsLength()
+                            + accessor.getFieldStartOffset(i, 2);
+                    for (int j = 0; j < payloadLengths[seq]; ++j) {
+                        Assert.assertEquals((byte) (seq + j), buffer.array()[start + j]);
+                    }
+                    output.add((key << 32) | seq);
+                }
+            }
+
+            @Override
+            public void fail() throws HyracksDataException {
+            }
+
+            @Override
+            public void close() throws HyracksDataException {
+            }
+        };
+    }
+
+    private List<Long> expectedOutput(List<ByteBuffer> input, int limit) {
+        List<Long> expected = new ArrayList<Long>();
+        FrameTupleAccessor accessor = new FrameTupleAccessor(FRAME_SIZE, DESC);
+        for (ByteBuffer frame : input) {
+            accessor.reset(frame);
+            for (int i = 0; i < accessor.getTupleCount(); ++i) {
+                expected.add(((long) getInt(accessor, i, 0) << 32) | getInt(accessor, i, 1));
+            }
+        }
+        Assert.assertEquals(N_TUPLES, expected.size());
+        Collections.sort(expected);
+        return expected.subList(0, limit);
+    }
+
+    /**
+     * Every {@link #LARGE_TUPLE_INTERVAL}th tuple carries a payload that spans several frames, and arrives in a large
+     * frame of its own as it would from a scan.
+     */
+    private List<ByteBuffer> createInput() throws HyracksDataException {
+        final List<ByteBuffer> frames = new ArrayList<ByteBuffer>();
+        IFrameWriter largeFrameCollector = new IFrameWriter() {
+            @Override
+            public void open() throws HyracksDataException {
+            }
+
+            @Override
+            public void nextFrame(ByteBuffer buffer) throws HyracksDataException {
+                ByteBuffer copy = ByteBuffer.allocate(buffer.capacity());
+                FrameUtils.copy(buffer, copy);
+                frames.add(copy);
+            }
+
+            @Override
+            public void fail() throws HyracksDataException {
+            }
+
+            @Override
+            public void close() throws HyracksDataException {
+            }
+        };
+        Random rnd = new Random(N_TUPLES);
+        FrameTupleAppender appender = new FrameTupleAppender(FRAME_SIZE);
+        ArrayTupleBuilder tb = new ArrayTupleBuilder(3);
+        ByteBuffer frame = ctx.allocateFrame();
+        appender.reset(frame, true);
+        for (int i = 0; i < N_TUPLES; ++i) {
+            payloadLengths[i] = i % LARGE_TUPLE_INTERVAL == 0 ? FRAME_SIZE + rnd.nextInt(4 * FRAME_SIZE) : rnd
+                    .nextInt(20);
+            byte[] payload = new byte[payloadLengths[i]];
+            for (int j = 0; j < payload.length; ++j) {
+                payload[j] = (byte) (i + j);
+            }
+            tb.reset();
+            tb.addField(IntegerSerializerDeserializer.INSTANCE, rnd.nextInt(N_TUPLES / 10));
+            tb.addField(IntegerSerializerDeserializer.INSTANCE, i);
+            tb.addField(payload, 0, payload.length);
+            if (!appender.append(tb.getFieldEndOffsets(), tb.getByteArray(), 0, tb.getSize())) {
+                frames.add(frame);
+                frame = ctx.allocateFrame();
+                appender.reset(frame, true);
+                if (!appender.append(tb.getFieldEndOffsets(), tb.getByteArray(), 0, tb.getSize())) {
+                    FrameUtils.flushLargeTuple(ctx, tb.getFieldEndOffsets(), tb.getByteArray(), 0, tb.getSize(),
+                            largeFrameCollector);
+                }
+            }
+        }
+        frames.add(frame);
+        return frames;
+    }
+
+    private static int getInt(FrameTupleAccessor accessor, int tIndex, int fIndex) {
+        int start = accessor.getTupleStartOffset(tIndex) + accessor.getFieldSlotsLength()
+                + accessor.getFieldStartOffset(tIndex, fIndex);
+        return IntegerPointable.getInteger(accessor.getBuffer().array(), start);
+    }
+}
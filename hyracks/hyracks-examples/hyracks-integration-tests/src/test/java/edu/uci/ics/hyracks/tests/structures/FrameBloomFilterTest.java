@@ -0,0 +1,146 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.hyracks.tests.structures;
+
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.uci.ics.hyracks.api.context.IHyracksTaskContext;
+import edu.uci.ics.hyracks.api.dataflow.value.ISerializerDeserializer;
+import edu.uci.ics.hyracks.api.dataflow.value.RecordDescriptor;
+import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
+import edu.uci.ics.hyracks.dataflow.common.comm.io.ArrayTupleBuilder;
+import edu.uci.ics.hyracks.dataflow.common.comm.io.FrameTupleAccessor;
+import edu.uci.ics.hyracks.dataflow.common.comm.io.FrameTupleAppender;
+import edu.uci.ics.hyracks.dataflow.common.data.marshalling.IntegerSerializerDeserializer;
+import edu.uci.ics.hyracks.dataflow.common.data.marshalling.UTF8StringSerializerDeserializer;
+import edu.uci.ics.hyracks.dataflow.std.structures.FrameBloomFilter;
+import edu.uci.ics.hyracks.test.support.TestUtils;
+
+public class FrameBloomFilterTest {
+    private static final int FRAME_SIZE = 32768;
+
+    private static final RecordDescriptor DESC = new RecordDescriptor(new ISerializerDeserializer[] {
+            UTF8StringSerializerDeserializer.INSTANCE, IntegerSerializerDeserializer.INSTANCE });
+
+    private static final RecordDescriptor SWAPPED_DESC = new RecordDescriptor(new ISerializerDeserializer[] {
+            IntegerSerializerDeserializer.INSTANCE, UTF8StringSerializerDeserializer.INSTANCE });
+
+    private final IHyracksTaskContext ctx = TestUtils.create(FRAME_SIZE);
+
+    @Test
+    public void noFalseNegativesTest() throws HyracksDataException {
+        FrameBloomFilter filter = new FrameBloomFilter(ctx, 4);
+        int nKeys = 20000;
+        for (int i = 0; i < nKeys; ++i) {
+            filter.add(i * 0x9E3779B9);
+        }
+        for (int i = 0; i < nKeys; ++i) {
+            Assert.assertTrue(filter.mightContain(i * 0x9E3779B9));
+        }
+        // 20000 keys in 16384 words of 64 bits set 3 bits each: about 0.03% of the other keys pass
+        int falsePositives = 0;
+        for (int i = nKeys; i < 2 * nKeys; ++i) {
+            if (filter.mightContain(i * 0x9E3779B9)) {
+                ++falsePositives;
+            }
+        }
+        Assert.assertTrue("false positives: " + falsePositives, falsePositives < nKeys / 100);
+        Assert.assertEquals(4, filter.getFrameCount());
+        filter.close();
+    }
+
+    @Test
+    public void stringKeyHashTest() throws HyracksDataException {
+        FrameTupleAccessor accessor = new FrameTupleAccessor(FRAME_SIZE, DESC);
+        FrameTupleAccessor swappedAccessor = new FrameTupleAccessor(FRAME_SIZE, SWAPPED_DESC);
+        ByteBuffer frame = ctx.allocateFrame();
+        ByteBuffer swappedFrame = ctx.allocateFrame();
+        Set<Integer> hashes = new HashSet<Integer>();
+        int nKeys = 0;
+        for (int first = 0; first < 5000; first += nKeys) {
+            fill(frame, swappedFrame, first);
+            accessor.reset(frame);
+            swappedAccessor.reset(swappedFrame);
+            nKeys = accessor.getTupleCount();
+            for (int i = 0; i < nKeys; ++i) {
+                int h = FrameBloomFilter.hashKeys(accessor, i, new int[] { 0 });
+                // Equal keys hash alike whatever the position of the key field and the other fields
+                Assert.assertEquals(h, FrameBloomFilter.hashKeys(swappedAccessor, i, new int[] { 1 }));
+                hashes.add(h);
+            }
+        }
+        // The hash spreads short numeric strings, which the UTF8 string hash function family maps to a few values
+        Assert.assertTrue("distinct hashes: " + hashes.size(), hashes.size() > 4990);
+    }
+
+    @Test
+    public void stringKeyFilterTest() throws HyracksDataException {
+        FrameBloomFilter filter = new FrameBloomFilter(ctx, 1);
+        FrameTupleAccessor accessor = new FrameTupleAccessor(FRAME_SIZE, DESC);
+        FrameTupleAccessor swappedAccessor = new FrameTupleAccessor(FRAME_SIZE, SWAPPED_DESC);
+        ByteBuffer frame = ctx.allocateFrame();
+        ByteBuffer swappedFrame = ctx.allocateFrame();
+        fill(frame, swappedFrame, 0);
+        accessor.reset(frame);
+        swappedAccessor.reset(swappedFrame);
+        int nKeys = accessor.getTupleCount();
+        for (int i = 0; i < nKeys; ++i) {
+            filter.add(FrameBloomFilter.hashKeys(accessor, i, new int[] { 0 }));
+        }
+        for (int i = 0; i < nKeys; ++i) {
+            Assert.assertTrue(filter.mightContain(FrameBloomFilter.hashKeys(swappedAccessor, i, new int[] { 1 })));
+        }
+        fill(frame, swappedFrame, 100000);
+        swappedAccessor.reset(swappedFrame);
+        int falsePositives = 0;
+        for (int i = 0; i < swappedAccessor.getTupleCount(); ++i) {
+            if (filter.mightContain(FrameBloomFilter.hashKeys(swappedAccessor, i, new int[] { 1 }))) {
+                ++falsePositives;
+            }
+        }
+        Assert.assertTrue("false positives: " + falsePositives, falsePositives < nKeys / 20);
+        filter.close();
+    }
+
+    /**
+     * Fills both frames with the keys first, first + 1, ... as strings, paired with an int in either order.
+     */
+    private void fill(ByteBuffer frame, ByteBuffer swappedFrame, int first) throws HyracksDataException {
+        FrameTupleAppender appender = new FrameTupleAppender(FRAME_SIZE);
+        FrameTupleAppender swappedAppender = new FrameTupleAppender(FRAME_SIZE);
+        appender.reset(frame, true);
+        swappedAppender.reset(swappedFrame, true);
+        ArrayTupleBuilder tb = new ArrayTupleBuilder(2);
+        ArrayTupleBuilder swappedTb = new ArrayTupleBuilder(2);
+        for (int key = first;; ++key) {
+            tb.reset();
+            tb.addField(UTF8StringSerializerDeserializer.INSTANCE, String.valueOf(key));
+            tb.addField(IntegerSerializerDeserializer.INSTANCE, key % 7);
+            swappedTb.reset();
+            swappedTb.addField(IntegerSerializerDeserializer.INSTANCE, -key);
+            swappedTb.addField(UTF8StringSerializerDeserializer.INSTANCE, String.valueOf(key));
+            if (!appender.append(tb.getFieldEndOffsets(), tb.getByteArray(), 0, tb.getSize())
+                    || !swappedAppender.append(swappedTb.getFieldEndOffsets(), swappedTb.getByteArray(), 0,
+                            swappedTb.getSize())) {
+                return;
+            }
+        }
+    }
+}
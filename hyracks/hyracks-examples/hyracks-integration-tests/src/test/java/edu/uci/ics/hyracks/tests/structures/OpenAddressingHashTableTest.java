@@ -0,0 +1,259 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.hyracks.tests.structures;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.uci.ics.hyracks.api.context.IHyracksTaskContext;
+import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
+import edu.uci.ics.hyracks.dataflow.std.structures.OpenAddressingHashTable;
+import edu.uci.ics.hyracks.dataflow.std.structures.SerializableHashTable;
+import edu.uci.ics.hyracks.dataflow.std.structures.TuplePointer;
+import edu.uci.ics.hyracks.test.support.TestUtils;
+
+public class OpenAddressingHashTableTest {
+    private static final int FRAME_SIZE = 32768;
+    private static final int TABLE_SIZE = 1 << 20;
+
+    private final IHyracksTaskContext ctx = TestUtils.create(FRAME_SIZE);
+
+    @Test
+    public void duplicateKeysTest() throws HyracksDataException {
+        OpenAddressingHashTable table = new OpenAddressingHashTable(TABLE_SIZE, ctx);
+        // The slots start with one frame
+        Assert.assertEquals(1, table.getFrameCount());
+        Map<Integer, List<TuplePointer>> expected = new LinkedHashMap<Integer, List<TuplePointer>>();
+        int nTuples = 200000;
+        for (int i = 0; i < nTuples; ++i) {
+            // Almost every tuple has the same entry
+            insert(table, expected, i % 1000 == 0 ? i : 7, i / 100, i % 100);
+        }
+        Assert.assertEquals(nTuples, table.getTupleCount());
+        // The 201 entries fit in the first slot frame, and only the tuples of entry 7 take nodes, one frame per 2730
+        int nodesPerFrame = FRAME_SIZE / 12;
+        int nNodes = nTuples - nTuples / 1000;
+        Assert.assertEquals(1 + (nNodes + nodesPerFrame - 1) / nodesPerFrame, table.getFrameCount());
+        verify(table, expected);
+        table.close();
+    }
+
+    @Test
+    public void fullTableTest() throws HyracksDataException {
+        // 2048 slots, of which at most 1536 are used, so the probe sequences get long
+        int tableSize = 1536;
+        OpenAddressingHashTable table = new OpenAddressingHashTable(tableSize, ctx);
+        Map<Integer, List<TuplePointer>> expected = new LinkedHashMap<Integer, List<TuplePointer>>();
+        for (int round = 0; round < 5; ++round) {
+            for (int entry = 0; entry < tableSize - 1; ++entry) {
+                insert(table, expected, entry, round, entry);
+            }
+        }
+        verify(table, expected);
+        assertMissing(table, tableSize - 1);
+        Assert.assertEquals(1 + ((tableSize - 1) * 5 + FRAME_SIZE / 12 - 1) / (FRAME_SIZE / 12), table.getFrameCount());
+        insert(table, expected, tableSize - 1, 5, 0);
+        try {
+            insert(table, expected, tableSize, 5, 1);
+            Assert.fail("An entry was inserted into a full table");
+        } catch (HyracksDataException e) {
+            // Expected, the table size bounds the slots
+        }
+        table.close();
+    }
+
+    @Test
+    public void randomEntriesTest() throws HyracksDataException {
+        OpenAddressingHashTable table = new OpenAddressingHashTable(TABLE_SIZE, ctx);
+        Map<Integer, List<TuplePointer>> expected = new LinkedHashMap<Integer, List<TuplePointer>>();
+        Random rnd = new Random(50);
+        for (int i = 0; i < 100000; ++i) {
+            insert(table, expected, rnd.nextInt(TABLE_SIZE), i / 100, i % 100);
+        }
+        verify(table, expected);
+        // Lookups out of order must not follow the cursor of the previous lookup
+        for (Map.Entry<Integer, List<TuplePointer>> e : expected.entrySet()) {
+            List<TuplePointer> pointers = e.getValue();
+            for (int offset = pointers.size() - 1; offset >= 0; --offset) {
+                assertPointer(table, e.getKey(), offset, pointers.get(offset));
+            }
+        }
+        table.close();
+    }
+
+    @Test
+    public void fingerprintTest() throws HyracksDataException {
+        OpenAddressingHashTable table = new OpenAddressingHashTable(TABLE_SIZE, ctx);
+        // The three hashes have different fingerprints and are all inserted into entry 1
+        int[] hashes = new int[] { 1, 2, 1, 1, 2, TABLE_SIZE + 1 };
+        Map<Integer, List<TuplePointer>> expected = new LinkedHashMap<Integer, List<TuplePointer>>();
+        for (int i = 0; i < hashes.length; ++i) {
+            TuplePointer pointer = new TuplePointer();
+            pointer.frameIndex = 0;
+            pointer.tupleIndex = i;
+            table.insert(1, hashes[i], pointer);
+            List<TuplePointer> pointers = expected.get(hashes[i]);
+            if (pointers == null) {
+                pointers = new ArrayList<TuplePointer>();
+                expected.put(hashes[i], pointers);
+            }
+            pointers.add(pointer);
+        }
+        for (Map.Entry<Integer, List<TuplePointer>> e : expected.entrySet()) {
+            // A lookup only returns the tuples of its fingerprint, in insertion order
+            List<TuplePointer> pointers = e.getValue();
+            TuplePointer actual = new TuplePointer();
+            for (int offset = 0; offset < pointers.size(); ++offset) {
+                table.getTuplePointer(1, e.getKey(), offset, actual);
+                Assert.assertEquals(pointers.get(offset).tupleIndex, actual.tupleIndex);
+            }
+            table.getTuplePointer(1, e.getKey(), pointers.size(), actual);
+            Assert.assertEquals(-1, actual.frameIndex);
+        }
+        // A lookup without a hash returns them all
+        TuplePointer actual = new TuplePointer();
+        for (int i = 0; i < hashes.length; ++i) {
+            table.getTuplePointer(1, i, actual);
+            Assert.assertEquals(i, actual.tupleIndex);
+        }
+        table.getTuplePointer(1, hashes.length, actual);
+        Assert.assertEquals(-1, actual.frameIndex);
+        table.close();
+    }
+
+    @Test
+    public void resetTest() throws HyracksDataException {
+        OpenAddressingHashTable table = new OpenAddressingHashTable(TABLE_SIZE, ctx);
+        Map<Integer, List<TuplePointer>> expected = new LinkedHashMap<Integer, List<TuplePointer>>();
+        for (int i = 0; i < 10000; ++i) {
+            insert(table, expected, i % 10, 0, i);
+        }
+        for (int i = 0; i < 10000; ++i) {
+            insert(table, expected, 10 + i, 1, i);
+        }
+        Assert.assertTrue(table.getFrameCount() > 1);
+        table.reset();
+        // The frames are given back but the first slot frame
+        Assert.assertEquals(1, table.getFrameCount());
+        Assert.assertEquals(0, table.getTupleCount());
+        assertMissing(table, 3);
+        assertMissing(table, 5000);
+        expected.clear();
+        for (int i = 0; i < 100; ++i) {
+            insert(table, expected, i % 20, 1, i);
+        }
+        verify(table, expected);
+        table.close();
+    }
+
+    @Test
+    public void largePointersTest() throws HyracksDataException {
+        OpenAddressingHashTable table = new OpenAddressingHashTable(TABLE_SIZE, ctx);
+        Map<Integer, List<TuplePointer>> expected = new LinkedHashMap<Integer, List<TuplePointer>>();
+        // Pointers too large to be packed into the slot go into nodes, also for entries with a single tuple
+        insert(table, expected, 1, 1 << 20, 3);
+        insert(table, expected, 2, 3, 1 << 20);
+        insert(table, expected, 3, 4, 5);
+        insert(table, expected, 3, Integer.MAX_VALUE, 6);
+        insert(table, expected, 4, 7, 8);
+        verify(table, expected);
+        Assert.assertEquals(2, table.getFrameCount());
+        table.close();
+    }
+
+    @Test
+    public void footprintTest() throws HyracksDataException {
+        // Unique keys, with as many entries as tuples
+        int nTuples = 100000;
+        int[] entries = new int[nTuples];
+        for (int i = 0; i < nTuples; ++i) {
+            entries[i] = i;
+        }
+        assertSmallerFootprint(nTuples, entries);
+        // 100 tuples for each of 1000 keys
+        for (int i = 0; i < nTuples; ++i) {
+            entries[i] = i % 1000;
+        }
+        assertSmallerFootprint(1000, entries);
+        // 1000 groups in a large table
+        Random rnd = new Random(50);
+        entries = new int[1000];
+        for (int i = 0; i < entries.length; ++i) {
+            entries[i] = rnd.nextInt(TABLE_SIZE);
+        }
+        assertSmallerFootprint(TABLE_SIZE, entries);
+    }
+
+    private void assertSmallerFootprint(int tableSize, int[] entries) throws HyracksDataException {
+        OpenAddressingHashTable table = new OpenAddressingHashTable(tableSize, ctx);
+        SerializableHashTable chainedTable = new SerializableHashTable(tableSize, ctx);
+        Map<Integer, List<TuplePointer>> expected = new LinkedHashMap<Integer, List<TuplePointer>>();
+        for (int i = 0; i < entries.length; ++i) {
+            insert(table, expected, entries[i], i / 100, i % 100);
+            chainedTable.insert(entries[i], expected.get(entries[i]).get(expected.get(entries[i]).size() - 1));
+        }
+        verify(table, expected);
+        Assert.assertTrue(table.getFrameCount() + " frames, " + chainedTable.getFrameCount() + " for the chained table",
+                table.getFrameCount() < chainedTable.getFrameCount());
+        table.close();
+        chainedTable.close();
+    }
+
+    private void insert(OpenAddressingHashTable table, Map<Integer, List<TuplePointer>> expected, int entry,
+            int frameIndex, int tupleIndex) throws HyracksDataException {
+        TuplePointer pointer = new TuplePointer();
+        pointer.frameIndex = frameIndex;
+        pointer.tupleIndex = tupleIndex;
+        table.insert(entry, pointer);
+        List<TuplePointer> pointers = expected.get(entry);
+        if (pointers == null) {
+            pointers = new ArrayList<TuplePointer>();
+            expected.put(entry, pointers);
+        }
+        pointers.add(pointer);
+    }
+
+    private void verify(OpenAddressingHashTable table, Map<Integer, List<TuplePointer>> expected) {
+        for (Map.Entry<Integer, List<TuplePointer>> e : expected.entrySet()) {
+            List<TuplePointer> pointers = e.getValue();
+            for (int offset = 0; offset < pointers.size(); ++offset) {
+                assertPointer(table, e.getKey(), offset, pointers.get(offset));
+            }
+            TuplePointer end = new TuplePointer();
+            table.getTuplePointer(e.getKey(), pointers.size(), end);
+            Assert.assertEquals(-1, end.frameIndex);
+        }
+    }
+
+    private void assertPointer(OpenAddressingHashTable table, int entry, int offset, TuplePointer expected) {
+        TuplePointer actual = new TuplePointer();
+        table.getTuplePointer(entry, offset, actual);
+        Assert.assertEquals(expected.frameIndex, actual.frameIndex);
+        Assert.assertEquals(expected.tupleIndex, actual.tupleIndex);
+    }
+
+    private void assertMissing(OpenAddressingHashTable table, int entry) {
+        TuplePointer pointer = new TuplePointer();
+        table.getTuplePointer(entry, 0, pointer);
+        Assert.assertEquals(-1, pointer.frameIndex);
+        Assert.assertEquals(-1, pointer.tupleIndex);
+    }
+}
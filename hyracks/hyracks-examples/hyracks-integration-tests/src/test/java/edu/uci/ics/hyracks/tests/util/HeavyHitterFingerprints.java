@@ -0,0 +1,60 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.hyracks.tests.util;
+
+import java.nio.ByteBuffer;
+
+import edu.uci.ics.hyracks.api.dataflow.value.IBinaryHashFunctionFactory;
+import edu.uci.ics.hyracks.api.dataflow.value.ISerializerDeserializer;
+import edu.uci.ics.hyracks.api.dataflow.value.ITuplePartitionComputer;
+import edu.uci.ics.hyracks.api.dataflow.value.RecordDescriptor;
+import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
+import edu.uci.ics.hyracks.data.std.accessors.PointableBinaryHashFunctionFactory;
+import edu.uci.ics.hyracks.data.std.primitive.UTF8StringPointable;
+import edu.uci.ics.hyracks.dataflow.common.comm.io.ArrayTupleBuilder;
+import edu.uci.ics.hyracks.dataflow.common.comm.io.FrameTupleAccessor;
+import edu.uci.ics.hyracks.dataflow.common.comm.io.FrameTupleAppender;
+import edu.uci.ics.hyracks.dataflow.common.data.marshalling.UTF8StringSerializerDeserializer;
+import edu.uci.ics.hyracks.dataflow.common.data.partition.FieldHashPartitionComputerFactory;
+import edu.uci.ics.hyracks.dataflow.std.connectors.MToNSkewAwarePartitioningConnectorDescriptor;
+
+/**
+ * Computes the fingerprints of string keys that are given to {@link MToNSkewAwarePartitioningConnectorDescriptor} as
+ * heavy hitters, for keys hashed as UTF8StringPointable.
+ */
+public class HeavyHitterFingerprints {
+    private static final int FRAME_SIZE = 256;
+
+    public static int[] ofUTF8StringKeys(String... keys) throws HyracksDataException {
+        ITuplePartitionComputer tpc = new FieldHashPartitionComputerFactory(new int[] { 0 },
+                new IBinaryHashFunctionFactory[] { PointableBinaryHashFunctionFactory.of(UTF8StringPointable.FACTORY) })
+                .createPartitioner();
+        FrameTupleAccessor accessor = new FrameTupleAccessor(FRAME_SIZE, new RecordDescriptor(
+                new ISerializerDeserializer[] { UTF8StringSerializerDeserializer.INSTANCE }));
+        FrameTupleAppender appender = new FrameTupleAppender(FRAME_SIZE);
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_SIZE);
+        ArrayTupleBuilder tb = new ArrayTupleBuilder(1);
+        int[] fingerprints = new int[keys.length];
+        for (int i = 0; i < keys.length; ++i) {
+            tb.reset();
+            tb.addField(UTF8StringSerializerDeserializer.INSTANCE, keys[i]);
+            appender.reset(frame, true);
+            appender.append(tb.getFieldEndOffsets(), tb.getByteArray(), 0, tb.getSize());
+            accessor.reset(frame);
+            fingerprints[i] = MToNSkewAwarePartitioningConnectorDescriptor.getFingerprint(tpc, accessor, 0);
+        }
+        return fingerprints;
+    }
+}
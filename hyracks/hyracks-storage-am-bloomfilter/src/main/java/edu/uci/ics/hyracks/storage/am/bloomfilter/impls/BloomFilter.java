@@ -34,11 +34,27 @@ public class BloomFilter {
     private final static int NUM_HASHES_USED_OFFSET = NUM_PAGES_OFFSET + 4; // 4
     private final static int NUM_ELEMENTS_OFFSET = NUM_HASHES_USED_OFFSET + 4; // 8
     private final static int NUM_BITS_OFFSET = NUM_ELEMENTS_OFFSET + 8; // 12
+    private final static int LAYOUT_OFFSET = NUM_BITS_OFFSET + 8; // 20
+
+    /**
+     * Marks a blocked filter in the metadata; any other value is the classic layout, so filters written before the
+     * layout was recorded stay readable.
+     */
+    private final static int BLOCKED_LAYOUT = 0x424C4B44;
+
+    /**
+     * A blocked filter sets all the bits of a key in one block of this many bits (a 64-byte cache line), so a lookup
+     * pins one page and touches one cache line.
+     */
+    private final static int BLOCK_BITS = 512;
 
     private final IBufferCache bufferCache;
     private final IFileMapProvider fileMapProvider;
     private final FileReference file;
     private final int[] keyFields;
+    private final boolean buildBlocked;
+    private final int maxBitmapPages;
+    private final BloomFilterBitmapBudget bitmapBudget;
     private int fileId = -1;
     private boolean isActivated = false;
 
@@ -46,17 +62,48 @@ public class BloomFilter {
     private int numHashes;
     private long numElements;
     private long numBits;
+    private boolean blocked;
+    private ByteBuffer bitmap;
     private final int numBitsPerPage;
+    private final int numBlocksPerPage;
     private final static byte[] ZERO_BUFFER = new byte[131072]; // 128kb
     private final static long SEED = 0L;
 
     public BloomFilter(IBufferCache bufferCache, IFileMapProvider fileMapProvider, FileReference file, int[] keyFields)
             throws HyracksDataException {
+        this(bufferCache, fileMapProvider, file, keyFields, false, 0);
+    }
+
+    /**
+     * @param buildBlocked
+     *            whether the filters built by this instance are blocked; an existing filter is read in the layout it
+     *            was built with
+     * @param maxBitmapPages
+     *            the largest filter, in pages, that is copied into an off-heap bitmap when it is activated, so that
+     *            lookups pin no pages at all; 0 never copies a filter
+     */
+    public BloomFilter(IBufferCache bufferCache, IFileMapProvider fileMapProvider, FileReference file,
+            int[] keyFields, boolean buildBlocked, int maxBitmapPages) throws HyracksDataException {
+        this(bufferCache, fileMapProvider, file, keyFields, buildBlocked, maxBitmapPages, null);
+    }
+
+    /**
+     * @param bitmapBudget
+     *            the budget that the bitmap of this filter is taken from, shared with other filters, or null to copy
+     *            every filter of at most maxBitmapPages pages
+     */
+    public BloomFilter(IBufferCache bufferCache, IFileMapProvider fileMapProvider, FileReference file,
+            int[] keyFields, boolean buildBlocked, int maxBitmapPages, BloomFilterBitmapBudget bitmapBudget)
+            throws HyracksDataException {
         this.bufferCache = bufferCache;
         this.fileMapProvider = fileMapProvider;
         this.file = file;
         this.keyFields = keyFields;
+        this.buildBlocked = buildBlocked;
+        this.maxBitmapPages = maxBitmapPages;
+        this.bitmapBudget = bitmapBudget;
         this.numBitsPerPage = bufferCache.getPageSize() * Byte.SIZE;
+        this.numBlocksPerPage = numBitsPerPage / BLOCK_BITS;
     }
 
     public int getFileId() {
@@ -86,9 +133,19 @@ public class BloomFilter {
             return false;
         }
         MurmurHash128Bit.hash3_x64_128(tuple, keyFields, SEED, hashes);
+        if (blocked) {
+            return containsBlocked(hashes);
+        }
         for (int i = 0; i < numHashes; ++i) {
             long hash = Math.abs((hashes[0] + (long) i * hashes[1]) % numBits);
 
+            if (bitmap != null) {
+                // the pages of bits are contiguous in the bitmap.
+                if ((bitmap.get((int) (hash >> 3)) & (1 << (int) (hash & 0x07))) == 0) {
+                    return false;
+                }
+                continue;
+            }
             // we increment the page id by one, since the metadata page id of the filter is 0.
             ICachedPage page = bufferCache.pin(
                     BufferedFileHandle.getDiskPageId(fileId, (int) (hash / numBitsPerPage) + 1), false);
@@ -111,6 +168,49 @@ public class BloomFilter {
         return true;
     }
 
+    private boolean containsBlocked(long[] hashes) throws HyracksDataException {
+        long block = getBlock(hashes);
+        if (bitmap != null) {
+            return isBlockSet(bitmap, (int) (block * (BLOCK_BITS >> 3)), hashes);
+        }
+        // we increment the page id by one, since the metadata page id of the filter is 0.
+        ICachedPage page = bufferCache.pin(
+                BufferedFileHandle.getDiskPageId(fileId, (int) (block / numBlocksPerPage) + 1), false);
+        page.acquireReadLatch();
+        try {
+            return isBlockSet(page.getBuffer(), (int) (block % numBlocksPerPage) * (BLOCK_BITS >> 3), hashes);
+        } finally {
+            page.releaseReadLatch();
+            bufferCache.unpin(page);
+        }
+    }
+
+    private long getBlock(long[] hashes) {
+        return getBlock(hashes, numBits);
+    }
+
+    private static long getBlock(long[] hashes, long numBits) {
+        return Math.abs(hashes[0] % (numBits / BLOCK_BITS));
+    }
+
+    /**
+     * The bits of a key in its block are derived from the second half of its hash; the odd step keeps them
+     * distinct.
+     */
+    private static int getBitInBlock(long[] hashes, int i) {
+        return ((int) hashes[1] + i * ((int) (hashes[1] >>> 32) | 1)) & (BLOCK_BITS - 1);
+    }
+
+    private boolean isBlockSet(ByteBuffer buffer, int blockOffset, long[] hashes) {
+        for (int i = 0; i < numHashes; ++i) {
+            int bit = getBitInBlock(hashes, i);
+            if ((buffer.get(blockOffset + (bit >> 3)) & (1 << (bit & 0x07))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private void prepareFile() throws HyracksDataException {
         boolean fileIsMapped = false;
         synchronized (fileMapProvider) {
@@ -144,6 +244,7 @@ public class BloomFilter {
             metaPage.getBuffer().putInt(NUM_HASHES_USED_OFFSET, 0);
             metaPage.getBuffer().putLong(NUM_ELEMENTS_OFFSET, 0L);
             metaPage.getBuffer().putLong(NUM_BITS_OFFSET, 0L);
+            metaPage.getBuffer().putInt(LAYOUT_OFFSET, 0);
         } finally {
             metaPage.releaseWriteLatch(true);
             bufferCache.unpin(metaPage);
@@ -158,9 +259,54 @@ public class BloomFilter {
 
         prepareFile();
         readBloomFilterMetaData();
+        loadBitmap();
         isActivated = true;
     }
 
+    /**
+     * Copies the bits of a small filter into an off-heap bitmap, if the budget has room for it.
+     */
+    private void loadBitmap() throws HyracksDataException {
+        releaseBitmap();
+        if (numPages == 0 || numPages > maxBitmapPages) {
+            return;
+        }
+        int pageSize = bufferCache.getPageSize();
+        if (bitmapBudget != null && !bitmapBudget.reserve((long) numPages * pageSize)) {
+            return;
+        }
+        ByteBuffer newBitmap = null;
+        try {
+            newBitmap = ByteBuffer.allocateDirect(numPages * pageSize);
+            for (int i = 1; i <= numPages; ++i) {
+                ICachedPage page = bufferCache.pin(BufferedFileHandle.getDiskPageId(fileId, i), false);
+                page.acquireReadLatch();
+                try {
+                    newBitmap.position((i - 1) * pageSize);
+                    newBitmap.put(page.getBuffer().array(), 0, pageSize);
+                } finally {
+                    page.releaseReadLatch();
+                    bufferCache.unpin(page);
+                }
+            }
+            newBitmap.clear();
+            bitmap = newBitmap;
+        } finally {
+            if (bitmap == null && bitmapBudget != null) {
+                bitmapBudget.release((long) numPages * pageSize);
+            }
+        }
+    }
+
+    private void releaseBitmap() {
+        if (bitmap != null) {
+            if (bitmapBudget != null) {
+                bitmapBudget.release(bitmap.capacity());
+            }
+            bitmap = null;
+        }
+    }
+
     private void readBloomFilterMetaData() throws HyracksDataException {
         ICachedPage metaPage = bufferCache.pin(BufferedFileHandle.getDiskPageId(fileId, METADATA_PAGE_ID), false);
         metaPage.acquireReadLatch();
@@ -169,6 +315,7 @@ public class BloomFilter {
             numHashes = metaPage.getBuffer().getInt(NUM_HASHES_USED_OFFSET);
             numElements = metaPage.getBuffer().getLong(NUM_ELEMENTS_OFFSET);
             numBits = metaPage.getBuffer().getLong(NUM_BITS_OFFSET);
+            blocked = metaPage.getBuffer().getInt(LAYOUT_OFFSET) == BLOCKED_LAYOUT;
         } finally {
             metaPage.releaseReadLatch();
             bufferCache.unpin(metaPage);
@@ -180,6 +327,7 @@ public class BloomFilter {
             return;
         }
         bufferCache.closeFile(fileId);
+        releaseBitmap();
         isActivated = false;
     }
 
@@ -201,6 +349,45 @@ public class BloomFilter {
         return new BloomFilterBuilder(numElements, numHashes, numBitsPerElement);
     }
 
+    /**
+     * Creates a builder for at most maxNumElements elements, for when their exact number is only known after they
+     * are all added. The filter is built in memory for maxNumElements elements, and shrunk to the number of added
+     * elements before it is written out.
+     */
+    public IIndexBulkLoader createShrinkingBuilder(long maxNumElements, int numHashes, int numBitsPerElement)
+            throws HyracksDataException {
+        return new ShrinkingBloomFilterBuilder(maxNumElements, numHashes, numBitsPerElement);
+    }
+
+    private static void initPage(byte[] array) {
+        int numRounds = array.length / ZERO_BUFFER.length;
+        int leftOver = array.length % ZERO_BUFFER.length;
+        int destPos = 0;
+        for (int i = 0; i < numRounds; i++) {
+            System.arraycopy(ZERO_BUFFER, 0, array, destPos, ZERO_BUFFER.length);
+            destPos = (i + 1) * ZERO_BUFFER.length;
+        }
+        if (leftOver > 0) {
+            System.arraycopy(ZERO_BUFFER, 0, array, destPos, leftOver);
+        }
+    }
+
+    private void persistBloomFilterMetaData(int numPages, int numHashes, long numElements, long numBits)
+            throws HyracksDataException {
+        ICachedPage metaPage = bufferCache.pin(BufferedFileHandle.getDiskPageId(fileId, METADATA_PAGE_ID), false);
+        metaPage.acquireWriteLatch();
+        try {
+            metaPage.getBuffer().putInt(NUM_PAGES_OFFSET, numPages);
+            metaPage.getBuffer().putInt(NUM_HASHES_USED_OFFSET, numHashes);
+            metaPage.getBuffer().putLong(NUM_ELEMENTS_OFFSET, numElements);
+            metaPage.getBuffer().putLong(NUM_BITS_OFFSET, numBits);
+            metaPage.getBuffer().putInt(LAYOUT_OFFSET, buildBlocked ? BLOCKED_LAYOUT : 0);
+        } finally {
+            metaPage.releaseWriteLatch(true);
+            bufferCache.unpin(metaPage);
+        }
+    }
+
     public class BloomFilterBuilder implements IIndexBulkLoader {
         private final long[] hashes = new long[2];
         private final long numElements;
@@ -215,13 +402,20 @@ public class BloomFilter {
 
             this.numElements = numElements;
             this.numHashes = numHashes;
-            numBits = this.numElements * numBitsPerElement;
-            long tmp = (long) Math.ceil(numBits / (double) numBitsPerPage);
+            long tmp;
+            if (buildBlocked) {
+                long numBlocks = (this.numElements * numBitsPerElement + BLOCK_BITS - 1) / BLOCK_BITS;
+                numBits = numBlocks * BLOCK_BITS;
+                tmp = (numBlocks + numBlocksPerPage - 1) / numBlocksPerPage;
+            } else {
+                numBits = this.numElements * numBitsPerElement;
+                tmp = (long) Math.ceil(numBits / (double) numBitsPerPage);
+            }
             if (tmp > Integer.MAX_VALUE) {
                 throw new HyracksDataException("Cannot create a bloom filter with his huge number of pages.");
             }
             numPages = (int) tmp;
-            persistBloomFilterMetaData();
+            persistBloomFilterMetaData(numPages, numHashes, numElements, numBits);
             readBloomFilterMetaData();
             int currentPageId = 1;
             while (currentPageId <= numPages) {
@@ -237,33 +431,6 @@ public class BloomFilter {
             }
         }
 
-        private void initPage(byte[] array) {
-            int numRounds = array.length / ZERO_BUFFER.length;
-            int leftOver = array.length % ZERO_BUFFER.length;
-            int destPos = 0;
-            for (int i = 0; i < numRounds; i++) {
-                System.arraycopy(ZERO_BUFFER, 0, array, destPos, ZERO_BUFFER.length);
-                destPos = (i + 1) * ZERO_BUFFER.length;
-            }
-            if (leftOver > 0) {
-                System.arraycopy(ZERO_BUFFER, 0, array, destPos, leftOver);
-            }
-        }
-
-        private void persistBloomFilterMetaData() throws HyracksDataException {
-            ICachedPage metaPage = bufferCache.pin(BufferedFileHandle.getDiskPageId(fileId, METADATA_PAGE_ID), false);
-            metaPage.acquireWriteLatch();
-            try {
-                metaPage.getBuffer().putInt(NUM_PAGES_OFFSET, numPages);
-                metaPage.getBuffer().putInt(NUM_HASHES_USED_OFFSET, numHashes);
-                metaPage.getBuffer().putLong(NUM_ELEMENTS_OFFSET, numElements);
-                metaPage.getBuffer().putLong(NUM_BITS_OFFSET, numBits);
-            } finally {
-                metaPage.releaseWriteLatch(true);
-                bufferCache.unpin(metaPage);
-            }
-        }
-
         @Override
         public void add(ITupleReference tuple) throws IndexException, HyracksDataException {
             if (numPages == 0) {
@@ -271,6 +438,10 @@ public class BloomFilter {
                         "Cannot add elements to this filter since it is supposed to be empty (number of elements hint passed to the filter during construction was 0).");
             }
             MurmurHash128Bit.hash3_x64_128(tuple, keyFields, SEED, hashes);
+            if (blocked) {
+                addBlocked();
+                return;
+            }
             for (int i = 0; i < numHashes; ++i) {
                 long hash = Math.abs((hashes[0] + (long) i * hashes[1]) % numBits);
 
@@ -294,9 +465,129 @@ public class BloomFilter {
             }
         }
 
+        private void addBlocked() throws HyracksDataException {
+            long block = getBlock(hashes);
+            // we increment the page id by one, since the metadata page id of the filter is 0.
+            ICachedPage page = bufferCache.pin(
+                    BufferedFileHandle.getDiskPageId(fileId, (int) (block / numBlocksPerPage) + 1), false);
+            page.acquireWriteLatch();
+            try {
+                ByteBuffer buffer = page.getBuffer();
+                int blockOffset = (int) (block % numBlocksPerPage) * (BLOCK_BITS >> 3);
+                for (int i = 0; i < numHashes; ++i) {
+                    int bit = getBitInBlock(hashes, i);
+                    int byteIndex = blockOffset + (bit >> 3);
+                    buffer.put(byteIndex, (byte) (buffer.get(byteIndex) | (1 << (bit & 0x07))));
+                }
+            } finally {
+                page.releaseWriteLatch(true);
+                bufferCache.unpin(page);
+            }
+        }
+
         @Override
         public void end() throws HyracksDataException, IndexException {
+            loadBitmap();
         }
 
     }
-}
\ No newline at end of file
+
+    /**
+     * Sets the bits in memory, in a filter whose number of bits (or blocks) is a power of two. At the end, the filter
+     * is folded in halves while half of it is still as large as the added elements need: the second half is or-ed
+     * into the first. A bit (or block) position taken modulo half the size is its position in the folded filter, so
+     * every added element is still found.
+     */
+    private class ShrinkingBloomFilterBuilder implements IIndexBulkLoader {
+        private final long[] hashes = new long[2];
+        private final int numHashes;
+        private final int numBitsPerElement;
+        private final long maxNumBits;
+        private long numBits;
+        private long numElements;
+        private byte[] bits;
+
+        public ShrinkingBloomFilterBuilder(long maxNumElements, int numHashes, int numBitsPerElement)
+                throws HyracksDataException {
+            if (!isActivated) {
+                throw new HyracksDataException("Failed to create the bloom filter builder since it is not activated.");
+            }
+            this.numHashes = numHashes;
+            this.numBitsPerElement = numBitsPerElement;
+            maxNumBits = getShrinkableNumBits(maxNumElements * numBitsPerElement);
+            if (maxNumBits / Byte.SIZE > Integer.MAX_VALUE) {
+                throw new HyracksDataException("Cannot create a bloom filter with his huge number of bits.");
+            }
+        }
+
+        private long getShrinkableNumBits(long minNumBits) {
+            long unit = buildBlocked ? BLOCK_BITS : Long.SIZE;
+            long n = unit;
+            while (n < minNumBits) {
+                n <<= 1;
+            }
+            return n;
+        }
+
+        @Override
+        public void add(ITupleReference tuple) throws IndexException, HyracksDataException {
+            if (bits == null) {
+                // the bits are only allocated once there are elements.
+                numBits = maxNumBits;
+                bits = new byte[(int) (numBits / Byte.SIZE)];
+            }
+            ++numElements;
+            MurmurHash128Bit.hash3_x64_128(tuple, keyFields, SEED, hashes);
+            if (buildBlocked) {
+                int blockOffset = (int) getBlock(hashes, numBits) * (BLOCK_BITS >> 3);
+                for (int i = 0; i < numHashes; ++i) {
+                    int bit = getBitInBlock(hashes, i);
+                    bits[blockOffset + (bit >> 3)] |= 1 << (bit & 0x07);
+                }
+                return;
+            }
+            for (int i = 0; i < numHashes; ++i) {
+                long hash = Math.abs((hashes[0] + (long) i * hashes[1]) % numBits);
+                bits[(int) (hash >> 3)] |= 1 << (int) (hash & 0x07);
+            }
+        }
+
+        @Override
+        public void end() throws HyracksDataException, IndexException {
+            if (numElements == 0) {
+                persistBloomFilterMetaData(0, numHashes, 0L, 0L);
+                readBloomFilterMetaData();
+                return;
+            }
+            long minNumBits = getShrinkableNumBits(numElements * numBitsPerElement);
+            while (numBits > minNumBits) {
+                int half = (int) (numBits / Byte.SIZE / 2);
+                for (int i = 0; i < half; ++i) {
+                    bits[i] |= bits[half + i];
+                }
+                numBits >>= 1;
+            }
+            int numBytes = (int) (numBits / Byte.SIZE);
+            int bytesPerPage = buildBlocked ? numBlocksPerPage * (BLOCK_BITS >> 3) : numBitsPerPage / Byte.SIZE;
+            int numPages = (numBytes + bytesPerPage - 1) / bytesPerPage;
+            persistBloomFilterMetaData(numPages, numHashes, numElements, numBits);
+            readBloomFilterMetaData();
+            for (int i = 0; i < numPages; ++i) {
+                // we increment the page id by one, since the metadata page id of the filter is 0.
+                ICachedPage page = bufferCache.pin(BufferedFileHandle.getDiskPageId(fileId, i + 1), true);
+                page.acquireWriteLatch();
+                try {
+                    byte[] array = page.getBuffer().array();
+                    initPage(array);
+                    System.arraycopy(bits, i * bytesPerPage, array, 0, Math.min(bytesPerPage, numBytes - i
+                            * bytesPerPage));
+                } finally {
+                    page.releaseWriteLatch(true);
+                    bufferCache.unpin(page);
+                }
+            }
+            bits = null;
+            loadBitmap();
+        }
+    }
+}
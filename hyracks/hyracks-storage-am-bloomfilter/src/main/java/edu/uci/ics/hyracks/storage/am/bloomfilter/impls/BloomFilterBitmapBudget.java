@@ -0,0 +1,52 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.hyracks.storage.am.bloomfilter.impls;
+
+/**
+ * The off-heap memory that the bitmaps of a set of bloom filters may take together. A filter only gets a bitmap while
+ * the budget has room for it; otherwise its lookups pin its pages.
+ */
+public class BloomFilterBitmapBudget {
+    private final long maxBytes;
+    private long reservedBytes;
+
+    public BloomFilterBitmapBudget(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("negative bitmap budget: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    synchronized boolean reserve(long bytes) {
+        if (reservedBytes + bytes > maxBytes) {
+            return false;
+        }
+        reservedBytes += bytes;
+        return true;
+    }
+
+    synchronized void release(long bytes) {
+        reservedBytes -= bytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized long getReservedBytes() {
+        return reservedBytes;
+    }
+}
@@ -24,15 +24,43 @@ public class BloomFilterFactory {
     private final IBufferCache bufferCache;
     private final IFileMapProvider fileMapProvider;
     private final int[] bloomFilterKeyFields;
+    private final boolean blocked;
+    private final int maxBitmapPages;
+    private final BloomFilterBitmapBudget bitmapBudget;
 
     public BloomFilterFactory(IBufferCache bufferCache, IFileMapProvider fileMapProvider, int[] bloomFilterKeyFields) {
+        this(bufferCache, fileMapProvider, bloomFilterKeyFields, false, 0);
+    }
+
+    /**
+     * @param blocked
+     *            whether the filters are built blocked, with one page pin per lookup
+     * @param maxBitmapPages
+     *            the largest filter, in pages, that is kept in an off-heap bitmap while it is active
+     */
+    public BloomFilterFactory(IBufferCache bufferCache, IFileMapProvider fileMapProvider, int[] bloomFilterKeyFields,
+            boolean blocked, int maxBitmapPages) {
+        this(bufferCache, fileMapProvider, bloomFilterKeyFields, blocked, maxBitmapPages, null);
+    }
+
+    /**
+     * @param bitmapBudget
+     *            the budget that the bitmaps of the filters are taken from, which may be shared with other factories,
+     *            or null for no bound
+     */
+    public BloomFilterFactory(IBufferCache bufferCache, IFileMapProvider fileMapProvider, int[] bloomFilterKeyFields,
+            boolean blocked, int maxBitmapPages, BloomFilterBitmapBudget bitmapBudget) {
         this.bufferCache = bufferCache;
         this.fileMapProvider = fileMapProvider;
         this.bloomFilterKeyFields = bloomFilterKeyFields;
+        this.blocked = blocked;
+        this.maxBitmapPages = maxBitmapPages;
+        this.bitmapBudget = bitmapBudget;
     }
 
     public BloomFilter createBloomFiltertInstance(FileReference file) throws HyracksDataException {
-        return new BloomFilter(bufferCache, fileMapProvider, file, bloomFilterKeyFields);
+        return new BloomFilter(bufferCache, fileMapProvider, file, bloomFilterKeyFields, blocked, maxBitmapPages,
+                bitmapBudget);
     }
 
     public int[] getBloomFilterKeyFields() {
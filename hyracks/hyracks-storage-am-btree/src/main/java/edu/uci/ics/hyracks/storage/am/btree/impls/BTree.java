@@ -26,6 +26,8 @@ import edu.uci.ics.hyracks.api.dataflow.value.ISerializerDeserializer;
 import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
 import edu.uci.ics.hyracks.api.io.FileReference;
 import edu.uci.ics.hyracks.data.std.primitive.IntegerPointable;
+import edu.uci.ics.hyracks.dataflow.common.comm.io.ArrayTupleBuilder;
+import edu.uci.ics.hyracks.dataflow.common.comm.io.ArrayTupleReference;
 import edu.uci.ics.hyracks.dataflow.common.data.accessors.ITupleReference;
 import edu.uci.ics.hyracks.dataflow.common.data.marshalling.IntegerSerializerDeserializer;
 import edu.uci.ics.hyracks.dataflow.common.util.TupleUtils;
@@ -849,6 +851,52 @@ public class BTree extends AbstractTreeIndex {
         }
     }
 
+    /**
+     * Finds the first or the last tuple of the tree by descending its leftmost or rightmost path. Meant for trees
+     * that are no longer modified, such as bulk loaded ones.
+     *
+     * @param numFields
+     *            the number of (leading) fields of the tuple to return
+     * @return a copy of the fields of the tuple, or null if the tree is empty
+     */
+    public ITupleReference getBoundaryTuple(boolean last, int numFields) throws HyracksDataException {
+        MultiComparator cmp = MultiComparator.create(cmpFactories);
+        IBTreeInteriorFrame interiorFrame = (IBTreeInteriorFrame) interiorFrameFactory.createFrame();
+        interiorFrame.setMultiComparator(cmp);
+        ITreeIndexFrame leafFrame = leafFrameFactory.createFrame();
+        leafFrame.setMultiComparator(cmp);
+        int pageId = rootPage;
+        while (true) {
+            ICachedPage node = bufferCache.pin(BufferedFileHandle.getDiskPageId(fileId, pageId), false);
+            node.acquireReadLatch();
+            try {
+                interiorFrame.setPage(node);
+                if (interiorFrame.isLeaf()) {
+                    leafFrame.setPage(node);
+                    int tupleCount = leafFrame.getTupleCount();
+                    if (tupleCount == 0) {
+                        return null;
+                    }
+                    ITreeIndexTupleReference tuple = leafFrame.createTupleReference();
+                    tuple.resetByTupleIndex(leafFrame, last ? tupleCount - 1 : 0);
+                    ArrayTupleBuilder tupleBuilder = new ArrayTupleBuilder(numFields);
+                    TupleUtils.copyTuple(tupleBuilder, tuple, numFields);
+                    ArrayTupleReference tupleCopy = new ArrayTupleReference();
+                    tupleCopy.reset(tupleBuilder.getFieldEndOffsets(), tupleBuilder.getByteArray());
+                    return tupleCopy;
+                }
+                if (last || interiorFrame.getTupleCount() == 0) {
+                    pageId = interiorFrame.getRightmostChildPageId();
+                } else {
+                    pageId = interiorFrame.getLeftmostChildPageId();
+                }
+            } finally {
+                node.releaseReadLatch();
+                bufferCache.unpin(node);
+            }
+        }
+    }
+
     @Override
     public ITreeIndexAccessor createAccessor(IModificationOperationCallback modificationCallback,
             ISearchOperationCallback searchCallback) {
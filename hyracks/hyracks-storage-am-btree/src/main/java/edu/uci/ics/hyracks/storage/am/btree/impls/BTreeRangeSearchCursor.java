@@ -31,6 +31,7 @@ import edu.uci.ics.hyracks.storage.am.common.api.IndexException;
 import edu.uci.ics.hyracks.storage.am.common.ophelpers.FindTupleMode;
 import edu.uci.ics.hyracks.storage.am.common.ophelpers.FindTupleNoExactMatchPolicy;
 import edu.uci.ics.hyracks.storage.am.common.ophelpers.MultiComparator;
+import edu.uci.ics.hyracks.storage.common.buffercache.AdaptiveReadAhead;
 import edu.uci.ics.hyracks.storage.common.buffercache.IBufferCache;
 import edu.uci.ics.hyracks.storage.common.buffercache.ICachedPage;
 import edu.uci.ics.hyracks.storage.common.file.BufferedFileHandle;
@@ -40,6 +41,10 @@ public class BTreeRangeSearchCursor implements ITreeIndexCursor {
     private final IBTreeLeafFrame frame;
     private final ITreeIndexTupleReference frameTuple;
     private final boolean exclusiveLatchNodes;
+    // Leaf pages of a sequential scan (e.g. a merge) are pinned without promoting them in the buffer cache.
+    private final boolean sequentialScan;
+    // Bulk-loaded leaves are mostly laid out in key order, so long scans read ahead along the leaf chain.
+    private final AdaptiveReadAhead readAhead;
     private boolean isPageDirty;
 
     private IBufferCache bufferCache = null;
@@ -70,9 +75,15 @@ public class BTreeRangeSearchCursor implements ITreeIndexCursor {
     private ITupleReference highKey;
 
     public BTreeRangeSearchCursor(IBTreeLeafFrame frame, boolean exclusiveLatchNodes) {
+        this(frame, exclusiveLatchNodes, false);
+    }
+
+    public BTreeRangeSearchCursor(IBTreeLeafFrame frame, boolean exclusiveLatchNodes, boolean sequentialScan) {
         this.frame = frame;
         this.frameTuple = frame.createTupleReference();
         this.exclusiveLatchNodes = exclusiveLatchNodes;
+        this.sequentialScan = sequentialScan;
+        this.readAhead = new AdaptiveReadAhead(exclusiveLatchNodes ? 0 : AdaptiveReadAhead.DEFAULT_MAX_WINDOW);
         this.reusablePredicate = new RangePredicate();
         this.reconciliationTuple = new ArrayTupleReference();
     }
@@ -113,7 +124,9 @@ public class BTreeRangeSearchCursor implements ITreeIndexCursor {
 
     private void fetchNextLeafPage(int nextLeafPage) throws HyracksDataException {
         do {
-            ICachedPage nextLeaf = bufferCache.pin(BufferedFileHandle.getDiskPageId(fileId, nextLeafPage), false);
+            readAhead.notifyPageAccess(bufferCache, fileId, nextLeafPage);
+            ICachedPage nextLeaf = bufferCache.pin(BufferedFileHandle.getDiskPageId(fileId, nextLeafPage), false,
+                    sequentialScan);
             if (exclusiveLatchNodes) {
                 nextLeaf.acquireWriteLatch();
                 page.releaseWriteLatch(isPageDirty);
@@ -257,6 +270,7 @@ public class BTreeRangeSearchCursor implements ITreeIndexCursor {
         page = initialState.getPage();
         isPageDirty = false;
         frame.setPage(page);
+        readAhead.reset(Integer.MAX_VALUE);
 
         pred = (RangePredicate) searchPred;
         lowKeyCmp = pred.getLowKeyComparator();
@@ -21,6 +21,7 @@ import edu.uci.ics.hyracks.storage.am.common.api.ISearchPredicate;
 import edu.uci.ics.hyracks.storage.am.common.api.ITreeIndexCursor;
 import edu.uci.ics.hyracks.storage.am.common.api.ITreeIndexFrame;
 import edu.uci.ics.hyracks.storage.am.common.api.ITreeIndexTupleReference;
+import edu.uci.ics.hyracks.storage.common.buffercache.AdaptiveReadAhead;
 import edu.uci.ics.hyracks.storage.common.buffercache.IBufferCache;
 import edu.uci.ics.hyracks.storage.common.buffercache.ICachedPage;
 import edu.uci.ics.hyracks.storage.common.file.BufferedFileHandle;
@@ -36,10 +37,12 @@ public class TreeIndexDiskOrderScanCursor implements ITreeIndexCursor {
 
     private final ITreeIndexFrame frame;
     private final ITreeIndexTupleReference frameTuple;
+    private final AdaptiveReadAhead readAhead;
 
     public TreeIndexDiskOrderScanCursor(ITreeIndexFrame frame) {
         this.frame = frame;
         this.frameTuple = frame.createTupleReference();
+        this.readAhead = new AdaptiveReadAhead();
     }
 
     @Override
@@ -66,7 +69,9 @@ public class TreeIndexDiskOrderScanCursor implements ITreeIndexCursor {
             page.releaseReadLatch();
             bufferCache.unpin(page);
 
-            ICachedPage nextPage = bufferCache.pin(BufferedFileHandle.getDiskPageId(fileId, currentPageId), false);
+            readAhead.notifyPageAccess(bufferCache, fileId, currentPageId);
+            ICachedPage nextPage = bufferCache.pin(BufferedFileHandle.getDiskPageId(fileId, currentPageId), false,
+                    true);
             nextPage.acquireReadLatch();
 
             page = nextPage;
@@ -114,6 +119,8 @@ public class TreeIndexDiskOrderScanCursor implements ITreeIndexCursor {
         page = initialState.getPage();
         tupleIndex = 0;
         frame.setPage(page);
+        readAhead.reset(maxPageId);
+        readAhead.notifyPageAccess(bufferCache, fileId, currentPageId);
         positionToNextLeaf(false);
     }
 
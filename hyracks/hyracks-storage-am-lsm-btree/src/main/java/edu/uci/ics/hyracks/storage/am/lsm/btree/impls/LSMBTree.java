@@ -16,20 +16,22 @@
 package edu.uci.ics.hyracks.storage.am.lsm.btree.impls;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import edu.uci.ics.hyracks.api.dataflow.value.IBinaryComparatorFactory;
 import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
 import edu.uci.ics.hyracks.api.io.FileReference;
-import edu.uci.ics.hyracks.data.std.primitive.IntegerPointable;
 import edu.uci.ics.hyracks.dataflow.common.data.accessors.ITupleReference;
 import edu.uci.ics.hyracks.storage.am.bloomfilter.impls.BloomCalculations;
 import edu.uci.ics.hyracks.storage.am.bloomfilter.impls.BloomFilter;
 import edu.uci.ics.hyracks.storage.am.bloomfilter.impls.BloomFilterFactory;
 import edu.uci.ics.hyracks.storage.am.bloomfilter.impls.BloomFilterSpecification;
 import edu.uci.ics.hyracks.storage.am.btree.impls.BTree;
-import edu.uci.ics.hyracks.storage.am.btree.impls.BTree.BTreeAccessor;
 import edu.uci.ics.hyracks.storage.am.btree.impls.BTree.BTreeBulkLoader;
 import edu.uci.ics.hyracks.storage.am.btree.impls.BTreeRangeSearchCursor;
 import edu.uci.ics.hyracks.storage.am.btree.impls.RangePredicate;
@@ -54,6 +56,7 @@ import edu.uci.ics.hyracks.storage.am.common.ophelpers.MultiComparator;
 import edu.uci.ics.hyracks.storage.am.common.tuples.PermutingTupleReference;
 import edu.uci.ics.hyracks.storage.am.lsm.btree.tuples.LSMBTreeTupleReference;
 import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMComponent;
+import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMComponentFilter;
 import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMComponentFilterFactory;
 import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMComponentFilterFrameFactory;
 import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMHarness;
@@ -64,6 +67,7 @@ import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMIndexAccessor;
 import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMIndexAccessorInternal;
 import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMIndexFileManager;
 import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMIndexOperationContext;
+import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMMergeOperation;
 import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMMergePolicy;
 import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMOperationTracker;
 import edu.uci.ics.hyracks.storage.am.lsm.common.api.IVirtualBufferCache;
@@ -72,6 +76,7 @@ import edu.uci.ics.hyracks.storage.am.lsm.common.impls.AbstractLSMIndex;
 import edu.uci.ics.hyracks.storage.am.lsm.common.impls.BlockingIOOperationCallbackWrapper;
 import edu.uci.ics.hyracks.storage.am.lsm.common.impls.LSMComponentFileReferences;
 import edu.uci.ics.hyracks.storage.am.lsm.common.impls.LSMComponentFilterManager;
+import edu.uci.ics.hyracks.storage.am.lsm.common.impls.LSMComponentKeyRange;
 import edu.uci.ics.hyracks.storage.am.lsm.common.impls.LSMIndexSearchCursor;
 import edu.uci.ics.hyracks.storage.am.lsm.common.impls.LSMTreeIndexAccessor;
 import edu.uci.ics.hyracks.storage.am.lsm.common.impls.TreeIndexFactory;
@@ -93,7 +98,15 @@ public class LSMBTree extends AbstractLSMIndex implements ITreeIndex {
 
     private final boolean needKeyDupCheck;
     private final int[] btreeFields;
-
+    // The most tuples in a slice of the output of a merge, or 0 if merges do not split their output.
+    private final long maxSliceTuples;
+
+    /**
+     * @param maxSliceTuples
+     *            the most tuples that a merge writes into one disk component, or 0 for no limit. A merge that writes
+     *            more splits its output into slices with disjoint key ranges, and a later merge keeps the slices
+     *            whose key ranges do not overlap the newer components it merges instead of rewriting them.
+     */
     public LSMBTree(List<IVirtualBufferCache> virtualBufferCaches, ITreeIndexFrameFactory interiorFrameFactory,
             ITreeIndexFrameFactory insertLeafFrameFactory, ITreeIndexFrameFactory deleteLeafFrameFactory,
             ILSMIndexFileManager fileManager, TreeIndexFactory<BTree> diskBTreeFactory,
@@ -103,7 +116,7 @@ public class LSMBTree extends AbstractLSMIndex implements ITreeIndex {
             IFileMapProvider diskFileMapProvider, int fieldCount, IBinaryComparatorFactory[] cmpFactories,
             ILSMMergePolicy mergePolicy, ILSMOperationTracker opTracker, ILSMIOOperationScheduler ioScheduler,
             ILSMIOOperationCallback ioOpCallback, boolean needKeyDupCheck, int[] btreeFields, int[] filterFields,
-            boolean durable) {
+            boolean durable, long maxSliceTuples) {
         super(virtualBufferCaches, diskBTreeFactory.getBufferCache(), fileManager, diskFileMapProvider,
                 bloomFilterFalsePositiveRate, mergePolicy, opTracker, ioScheduler, ioOpCallback, filterFrameFactory,
                 filterManager, filterFields, durable);
@@ -127,6 +140,11 @@ public class LSMBTree extends AbstractLSMIndex implements ITreeIndex {
                 filterFactory);
         this.needKeyDupCheck = needKeyDupCheck;
         this.btreeFields = btreeFields;
+        if (maxSliceTuples < 0) {
+            throw new IllegalArgumentException("The number of tuples of a slice should not be negative, but it is "
+                    + maxSliceTuples);
+        }
+        this.maxSliceTuples = maxSliceTuples;
     }
 
     // Without memory components
@@ -146,6 +164,7 @@ public class LSMBTree extends AbstractLSMIndex implements ITreeIndex {
         bulkLoadComponentFactory = new LSMBTreeDiskComponentFactory(bulkLoadBTreeFactory, bloomFilterFactory, null);
         this.needKeyDupCheck = needKeyDupCheck;
         this.btreeFields = null;
+        this.maxSliceTuples = 0;
     }
 
     @Override
@@ -312,31 +331,150 @@ public class LSMBTree extends AbstractLSMIndex implements ITreeIndex {
                 }
                 // The current mutable component is always added
                 operationalComponents.add(0, memoryComponents.get(cmc));
-                if (filterManager != null) {
-                    for (ILSMComponent c : immutableComponents) {
-                        if (c.getLSMComponentFilter().satisfy(
-                                ((AbstractSearchPredicate) ctx.getSearchPredicate()).getMinFilterTuple(),
-                                ((AbstractSearchPredicate) ctx.getSearchPredicate()).getMaxFilterTuple(),
-                                ((LSMBTreeOpContext) ctx).filterCmp)) {
-                            operationalComponents.add(c);
-                        }
+                for (ILSMComponent c : immutableComponents) {
+                    if (!isInKeyRange((LSMBTreeDiskComponent) c, ctx)) {
+                        continue;
+                    }
+                    if (filterManager == null
+                            || c.getLSMComponentFilter().satisfy(
+                                    ((AbstractSearchPredicate) ctx.getSearchPredicate()).getMinFilterTuple(),
+                                    ((AbstractSearchPredicate) ctx.getSearchPredicate()).getMaxFilterTuple(),
+                                    ((LSMBTreeOpContext) ctx).filterCmp)) {
+                        operationalComponents.add(c);
                     }
-                } else {
-                    operationalComponents.addAll(immutableComponents);
                 }
 
                 break;
             case MERGE:
                 operationalComponents.addAll(ctx.getComponentsToBeMerged());
+                addWholeSlices(operationalComponents);
                 break;
             case FULL_MERGE:
                 operationalComponents.addAll(immutableComponents);
+                addWholeSlices(operationalComponents);
                 break;
             default:
                 throw new UnsupportedOperationException("Operation " + ctx.getOperation() + " not supported.");
         }
     }
 
+    /**
+     * Extends the components of a merge to all the slices of the merges that wrote its newest and oldest components:
+     * the slices of a merge replace its merged components together. The slices of a single merge are not merged
+     * again, since their key ranges are disjoint already.
+     */
+    private void addWholeSlices(List<ILSMComponent> mergingComponents) {
+        if (mergingComponents.isEmpty()) {
+            return;
+        }
+        List<ILSMComponent> immutableComponents = diskComponents;
+        ILSMComponent newest = mergingComponents.get(0);
+        ILSMComponent oldest = mergingComponents.get(mergingComponents.size() - 1);
+        String newestSliceGroup = getSliceGroup(newest);
+        String oldestSliceGroup = getSliceGroup(oldest);
+        if (newestSliceGroup != null && newestSliceGroup.equals(oldestSliceGroup)) {
+            mergingComponents.clear();
+            return;
+        }
+        int start = immutableComponents.indexOf(newest);
+        while (newestSliceGroup != null && start > 0
+                && newestSliceGroup.equals(getSliceGroup(immutableComponents.get(start - 1)))) {
+            mergingComponents.add(0, immutableComponents.get(--start));
+        }
+        int end = immutableComponents.indexOf(oldest);
+        while (oldestSliceGroup != null && end >= 0 && end < immutableComponents.size() - 1
+                && oldestSliceGroup.equals(getSliceGroup(immutableComponents.get(end + 1)))) {
+            mergingComponents.add(immutableComponents.get(++end));
+        }
+    }
+
+    private String getSliceGroup(ILSMComponent component) {
+        return fileManager.getSliceGroup(((LSMBTreeDiskComponent) component).getBTree().getFileReference().getFile()
+                .getName());
+    }
+
+    /**
+     * Finds the slices of the oldest merging component that the merge keeps as they are: those whose key ranges do
+     * not overlap the keys of the newer merging components. The slices of a merge are disjoint, so the keys that the
+     * merge writes stay outside of the key ranges of the slices that it keeps.
+     */
+    private List<ILSMComponent> getCarriedSlices(List<ILSMComponent> mergingComponents) throws HyracksDataException {
+        int firstSlice = mergingComponents.size() - 1;
+        String sliceGroup = getSliceGroup(mergingComponents.get(firstSlice));
+        if (sliceGroup == null) {
+            return Collections.emptyList();
+        }
+        while (firstSlice > 0 && sliceGroup.equals(getSliceGroup(mergingComponents.get(firstSlice - 1)))) {
+            firstSlice--;
+        }
+        if (firstSlice == 0) {
+            return Collections.emptyList();
+        }
+        MultiComparator cmp = MultiComparator.create(cmpFactories);
+        LSMComponentKeyRange newerKeyRange = new LSMComponentKeyRange(cmpFactories);
+        for (int i = 0; i < firstSlice; i++) {
+            ILSMComponentFilter keyRange = ((LSMBTreeDiskComponent) mergingComponents.get(i)).getKeyRange();
+            if (keyRange.getMinTuple() != null) {
+                newerKeyRange.update(keyRange.getMinTuple(), cmp);
+                newerKeyRange.update(keyRange.getMaxTuple(), cmp);
+            }
+        }
+        List<ILSMComponent> carriedSlices = new ArrayList<ILSMComponent>();
+        for (int i = firstSlice; i < mergingComponents.size(); i++) {
+            ILSMComponentFilter keyRange = ((LSMBTreeDiskComponent) mergingComponents.get(i)).getKeyRange();
+            // An empty slice is dropped rather than kept.
+            if (keyRange.getMinTuple() != null
+                    && (newerKeyRange.getMinTuple() == null || !keyRange.satisfy(newerKeyRange.getMinTuple(),
+                            newerKeyRange.getMaxTuple(), cmp))) {
+                carriedSlices.add(mergingComponents.get(i));
+            }
+        }
+        return carriedSlices;
+    }
+
+    /**
+     * @return whether the key range of a disk component overlaps the keys a search looks for
+     */
+    private boolean isInKeyRange(LSMBTreeDiskComponent component, ILSMIndexOperationContext ctx)
+            throws HyracksDataException {
+        ILSMComponentFilter keyRange = component.getKeyRange();
+        if (keyRange == null || keyRange.getMinTuple() == null
+                || !(ctx.getSearchPredicate() instanceof RangePredicate)) {
+            return true;
+        }
+        RangePredicate pred = (RangePredicate) ctx.getSearchPredicate();
+        // A prefix search compares the key fields of its prefix only.
+        if (pred.getLowKey() != null) {
+            MultiComparator lowKeyCmp = pred.getLowKeyComparator() != null ? pred.getLowKeyComparator()
+                    : ((LSMBTreeOpContext) ctx).cmp;
+            if (lowKeyCmp.compare(pred.getLowKey(), keyRange.getMaxTuple()) > 0) {
+                return false;
+            }
+        }
+        if (pred.getHighKey() != null) {
+            MultiComparator highKeyCmp = pred.getHighKeyComparator() != null ? pred.getHighKeyComparator()
+                    : ((LSMBTreeOpContext) ctx).cmp;
+            if (highKeyCmp.compare(pred.getHighKey(), keyRange.getMinTuple()) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sets the key range of a disk component from its first and last keys.
+     */
+    private void loadKeyRange(LSMBTreeDiskComponent component) throws HyracksDataException {
+        LSMComponentKeyRange keyRange = new LSMComponentKeyRange(cmpFactories);
+        ITupleReference minTuple = component.getBTree().getBoundaryTuple(false, cmpFactories.length);
+        if (minTuple != null) {
+            MultiComparator cmp = MultiComparator.create(cmpFactories);
+            keyRange.update(minTuple, cmp);
+            keyRange.update(component.getBTree().getBoundaryTuple(true, cmpFactories.length), cmp);
+        }
+        component.setKeyRange(keyRange);
+    }
+
     @Override
     public void modify(IIndexOperationContext ictx, ITupleReference tuple) throws HyracksDataException, IndexException {
         LSMBTreeOpContext ctx = (LSMBTreeOpContext) ictx;
@@ -454,27 +592,17 @@ public class LSMBTree extends AbstractLSMIndex implements ITreeIndex {
                 NoOpOperationCallback.INSTANCE);
 
         RangePredicate nullPred = new RangePredicate(null, null, true, true, null, null);
-        IIndexCursor countingCursor = ((BTreeAccessor) accessor).createCountingSearchCursor();
-        accessor.search(countingCursor, nullPred);
-        long numElements = 0L;
-        try {
-            while (countingCursor.hasNext()) {
-                countingCursor.next();
-                ITupleReference countTuple = countingCursor.getTuple();
-                numElements = IntegerPointable.getInteger(countTuple.getFieldData(0), countTuple.getFieldStart(0));
-            }
-        } finally {
-            countingCursor.close();
-        }
-
-        int maxBucketsPerElement = BloomCalculations.maxBucketsPerElement(numElements);
+        // The component is flushed in one scan: the bloom filter is sized for an upper bound of its number of tuples,
+        // and shrunk once they are all added.
+        long maxNumElements = flushingComponent.getNumModifications();
+        int maxBucketsPerElement = BloomCalculations.maxBucketsPerElement(maxNumElements);
         BloomFilterSpecification bloomFilterSpec = BloomCalculations.computeBloomSpec(maxBucketsPerElement,
                 bloomFilterFalsePositiveRate);
 
         LSMBTreeDiskComponent component = createDiskComponent(componentFactory, flushOp.getBTreeFlushTarget(),
                 flushOp.getBloomFilterFlushTarget(), true);
-        IIndexBulkLoader bulkLoader = component.getBTree().createBulkLoader(1.0f, false, numElements, false);
-        IIndexBulkLoader builder = component.getBloomFilter().createBuilder(numElements,
+        IIndexBulkLoader bulkLoader = component.getBTree().createBulkLoader(1.0f, false, maxNumElements, false);
+        IIndexBulkLoader builder = component.getBloomFilter().createShrinkingBuilder(maxNumElements,
                 bloomFilterSpec.getNumHashes(), bloomFilterSpec.getNumBucketsPerElements());
 
         IIndexCursor scanCursor = accessor.createSearchCursor(false);
@@ -490,6 +618,7 @@ public class LSMBTree extends AbstractLSMIndex implements ITreeIndex {
             builder.end();
         }
         bulkLoader.end();
+        loadKeyRange(component);
 
         if (component.getLSMComponentFilter() != null) {
             List<ITupleReference> filterTuples = new ArrayList<ITupleReference>();
@@ -513,16 +642,30 @@ public class LSMBTree extends AbstractLSMIndex implements ITreeIndex {
             returnDeletedTuples = true;
         }
         ITreeIndexCursor cursor = new LSMBTreeRangeSearchCursor(opCtx, returnDeletedTuples);
+        List<ILSMComponent> carriedSlices = maxSliceTuples > 0 ? getCarriedSlices(mergingComponents) : Collections
+                .<ILSMComponent> emptyList();
+        LSMComponentFileReferences relMergeFileRefs = getMergeFileReferences(mergingComponents, 0);
+        ILSMIndexAccessorInternal accessor = new LSMBTreeAccessor(lsmHarness, opCtx);
+        ioScheduler.scheduleOperation(new LSMBTreeMergeOperation(accessor, mergingComponents, carriedSlices, cursor,
+                relMergeFileRefs.getInsertIndexFileReference(), relMergeFileRefs.getBloomFilterFileReference(),
+                callback, fileManager.getBaseDir()));
+    }
+
+    /**
+     * @return the files of the given slice of the output of a merge, or those of its single output if merges do not
+     *         split their output
+     */
+    private LSMComponentFileReferences getMergeFileReferences(List<ILSMComponent> mergingComponents, int slice)
+            throws HyracksDataException {
         BTree firstBTree = ((LSMBTreeDiskComponent) mergingComponents.get(0)).getBTree();
         BTree lastBTree = ((LSMBTreeDiskComponent) mergingComponents.get(mergingComponents.size() - 1)).getBTree();
         FileReference firstFile = diskFileMapProvider.lookupFileName(firstBTree.getFileId());
         FileReference lastFile = diskFileMapProvider.lookupFileName(lastBTree.getFileId());
-        LSMComponentFileReferences relMergeFileRefs = fileManager.getRelMergeFileReference(firstFile.getFile()
-                .getName(), lastFile.getFile().getName());
-        ILSMIndexAccessorInternal accessor = new LSMBTreeAccessor(lsmHarness, opCtx);
-        ioScheduler.scheduleOperation(new LSMBTreeMergeOperation(accessor, mergingComponents, cursor, relMergeFileRefs
-                .getInsertIndexFileReference(), relMergeFileRefs.getBloomFilterFileReference(), callback, fileManager
-                .getBaseDir()));
+        if (maxSliceTuples == 0) {
+            return fileManager.getRelMergeFileReference(firstFile.getFile().getName(), lastFile.getFile().getName());
+        }
+        return fileManager.getRelMergeSliceFileReference(firstFile.getFile().getName(), lastFile.getFile().getName(),
+                slice);
     }
 
     @Override
@@ -530,49 +673,130 @@ public class LSMBTree extends AbstractLSMIndex implements ITreeIndex {
         LSMBTreeMergeOperation mergeOp = (LSMBTreeMergeOperation) operation;
         ITreeIndexCursor cursor = mergeOp.getCursor();
         RangePredicate rangePred = new RangePredicate(null, null, true, true, null, null);
-        ILSMIndexOperationContext opCtx = ((LSMIndexSearchCursor) cursor).getOpCtx();
+        LSMBTreeOpContext opCtx = (LSMBTreeOpContext) ((LSMIndexSearchCursor) cursor).getOpCtx();
+        // The merge exits all the merging components, but only reads those that it rewrites.
         opCtx.getComponentHolder().addAll(mergeOp.getMergingComponents());
-        search(opCtx, cursor, rangePred);
-        List<ILSMComponent> mergedComponents = mergeOp.getMergingComponents();
+        List<ILSMComponent> mergedComponents = new ArrayList<ILSMComponent>(mergeOp.getMergingComponents());
+        mergedComponents.removeAll(mergeOp.getCarriedSlices());
+        cursor.open(new LSMBTreeCursorInitialState(insertLeafFrameFactory, opCtx.cmp, opCtx.bloomFilterCmp,
+                lsmHarness, rangePred, opCtx.searchCallback, mergedComponents), rangePred);
 
         long numElements = 0L;
         for (int i = 0; i < mergedComponents.size(); ++i) {
             numElements += ((LSMBTreeDiskComponent) mergedComponents.get(i)).getBloomFilter().getNumElements();
         }
 
-        int maxBucketsPerElement = BloomCalculations.maxBucketsPerElement(numElements);
-        BloomFilterSpecification bloomFilterSpec = BloomCalculations.computeBloomSpec(maxBucketsPerElement,
-                bloomFilterFalsePositiveRate);
+        List<ILSMComponent> slices = new ArrayList<ILSMComponent>();
         LSMBTreeDiskComponent mergedComponent = createDiskComponent(componentFactory, mergeOp.getBTreeMergeTarget(),
                 mergeOp.getBloomFilterMergeTarget(), true);
-
-        IIndexBulkLoader bulkLoader = mergedComponent.getBTree().createBulkLoader(1.0f, false, numElements, false);
-        IIndexBulkLoader builder = mergedComponent.getBloomFilter().createBuilder(numElements,
-                bloomFilterSpec.getNumHashes(), bloomFilterSpec.getNumBucketsPerElements());
+        MergeSliceLoader sliceLoader = new MergeSliceLoader(mergedComponent, numElements, mergeOp);
         try {
             while (cursor.hasNext()) {
                 cursor.next();
                 ITupleReference frameTuple = cursor.getTuple();
-                builder.add(frameTuple);
-                bulkLoader.add(frameTuple);
+                if (maxSliceTuples > 0 && sliceLoader.numTuples == maxSliceTuples) {
+                    sliceLoader.end(mergedComponents);
+                    slices.add(sliceLoader.component);
+                    LSMComponentFileReferences sliceFileRefs = getMergeFileReferences(mergeOp.getMergingComponents(),
+                            slices.size());
+                    sliceLoader = new MergeSliceLoader(createDiskComponent(componentFactory,
+                            sliceFileRefs.getInsertIndexFileReference(), sliceFileRefs.getBloomFilterFileReference(),
+                            true), numElements, mergeOp);
+                }
+                sliceLoader.add(frameTuple);
             }
         } finally {
             cursor.close();
-            builder.end();
         }
-        bulkLoader.end();
+        sliceLoader.end(mergedComponents);
+        slices.add(sliceLoader.component);
 
-        if (mergedComponent.getLSMComponentFilter() != null) {
-            List<ITupleReference> filterTuples = new ArrayList<ITupleReference>();
-            for (int i = 0; i < mergeOp.getMergingComponents().size(); ++i) {
-                filterTuples.add(mergeOp.getMergingComponents().get(i).getLSMComponentFilter().getMinTuple());
-                filterTuples.add(mergeOp.getMergingComponents().get(i).getLSMComponentFilter().getMaxTuple());
+        for (ILSMComponent carriedSlice : mergeOp.getCarriedSlices()) {
+            slices.add(carrySlice((LSMBTreeDiskComponent) carriedSlice,
+                    getMergeFileReferences(mergeOp.getMergingComponents(), slices.size())));
+        }
+        mergedComponent.setOtherSlices(new ArrayList<ILSMComponent>(slices.subList(1, slices.size())));
+        return mergedComponent;
+    }
+
+    /**
+     * Writes a slice of the output of a merge: all of it if merges do not split their output.
+     */
+    private class MergeSliceLoader {
+        private final LSMBTreeDiskComponent component;
+        private final IIndexBulkLoader bulkLoader;
+        private final IIndexBulkLoader builder;
+        private long numTuples;
+
+        public MergeSliceLoader(LSMBTreeDiskComponent component, long numElements, ILSMMergeOperation mergeOp)
+                throws HyracksDataException, IndexException {
+            this.component = component;
+            if (maxSliceTuples == 0) {
+                int maxBucketsPerElement = BloomCalculations.maxBucketsPerElement(numElements);
+                BloomFilterSpecification bloomFilterSpec = BloomCalculations.computeBloomSpec(maxBucketsPerElement,
+                        bloomFilterFalsePositiveRate);
+                builder = component.getBloomFilter().createBuilder(numElements, bloomFilterSpec.getNumHashes(),
+                        bloomFilterSpec.getNumBucketsPerElements());
+            } else {
+                // The bloom filter of a slice is sized for a full slice, and shrunk once its tuples are all added.
+                numElements = Math.min(numElements, maxSliceTuples);
+                int maxBucketsPerElement = BloomCalculations.maxBucketsPerElement(numElements);
+                BloomFilterSpecification bloomFilterSpec = BloomCalculations.computeBloomSpec(maxBucketsPerElement,
+                        bloomFilterFalsePositiveRate);
+                builder = component.getBloomFilter().createShrinkingBuilder(numElements,
+                        bloomFilterSpec.getNumHashes(), bloomFilterSpec.getNumBucketsPerElements());
             }
-            filterManager.updateFilterInfo(mergedComponent.getLSMComponentFilter(), filterTuples);
-            filterManager.writeFilterInfo(mergedComponent.getLSMComponentFilter(), mergedComponent.getBTree());
+            bulkLoader = createRateLimitedBulkLoader(
+                    component.getBTree().createBulkLoader(1.0f, false, numElements, false), mergeOp);
         }
 
-        return mergedComponent;
+        public void add(ITupleReference tuple) throws HyracksDataException, IndexException {
+            builder.add(tuple);
+            bulkLoader.add(tuple);
+            numTuples++;
+        }
+
+        public void end(List<ILSMComponent> mergedComponents) throws HyracksDataException, IndexException {
+            builder.end();
+            bulkLoader.end();
+            loadKeyRange(component);
+
+            if (component.getLSMComponentFilter() != null) {
+                List<ITupleReference> filterTuples = new ArrayList<ITupleReference>();
+                for (int i = 0; i < mergedComponents.size(); ++i) {
+                    filterTuples.add(mergedComponents.get(i).getLSMComponentFilter().getMinTuple());
+                    filterTuples.add(mergedComponents.get(i).getLSMComponentFilter().getMaxTuple());
+                }
+                filterManager.updateFilterInfo(component.getLSMComponentFilter(), filterTuples);
+                filterManager.writeFilterInfo(component.getLSMComponentFilter(), component.getBTree());
+            }
+        }
+    }
+
+    /**
+     * Keeps a slice that a merge does not rewrite: its files are linked under the names of a slice of the output of
+     * the merge, so that the slices of the merge are valid together. The old names go away with the merged
+     * components.
+     */
+    private LSMBTreeDiskComponent carrySlice(LSMBTreeDiskComponent slice, LSMComponentFileReferences sliceFileRefs)
+            throws HyracksDataException, IndexException {
+        linkFile(sliceFileRefs.getInsertIndexFileReference(), slice.getBTree().getFileReference());
+        linkFile(sliceFileRefs.getBloomFilterFileReference(), slice.getBloomFilter().getFileReference());
+        LSMBTreeDiskComponent carriedSlice = createDiskComponent(componentFactory,
+                sliceFileRefs.getInsertIndexFileReference(), sliceFileRefs.getBloomFilterFileReference(), false);
+        carriedSlice.setCarriedOver(true);
+        return carriedSlice;
+    }
+
+    private void linkFile(FileReference link, FileReference file) throws HyracksDataException {
+        Path linkPath = link.getFile().toPath();
+        try {
+            // A link that is already there is left over by a merge of the same components that failed.
+            Files.deleteIfExists(linkPath);
+            Files.createLink(linkPath, file.getFile().toPath());
+        } catch (IOException e) {
+            throw new HyracksDataException("Failed to link " + link + " to " + file, e);
+        }
     }
 
     protected LSMBTreeDiskComponent createDiskComponent(LSMBTreeDiskComponentFactory factory,
@@ -591,6 +815,9 @@ public class LSMBTree extends AbstractLSMIndex implements ITreeIndex {
         if (component.getLSMComponentFilter() != null) {
             filterManager.readFilterInfo(component.getLSMComponentFilter(), component.getBTree());
         }
+        if (!createComponent) {
+            loadKeyRange(component);
+        }
         return component;
     }
 
@@ -725,6 +952,7 @@ public class LSMBTree extends AbstractLSMIndex implements ITreeIndex {
                 if (isEmptyComponent) {
                     cleanupArtifacts();
                 } else {
+                    loadKeyRange((LSMBTreeDiskComponent) component);
                     lsmHarness.addBulkLoadedComponent(component);
                 }
             }
@@ -87,6 +87,8 @@ public class LSMBTreeFileManager extends AbstractLSMIndexFileManager {
 
         // List of valid BTree files.
         cleanupAndGetValidFilesInternal(getCompoundFilter(transactionFilter, btreeFilter), btreeFactory, allBTreeFiles);
+        // The bloom filters of the slices that are deleted here are deleted along with the other invalid ones.
+        deleteIncompleteSlices(allBTreeFiles);
         HashSet<String> btreeFilesSet = new HashSet<String>();
         for (ComparableFileName cmpFileName : allBTreeFiles) {
             int index = cmpFileName.fileName.lastIndexOf(SPLIT_STRING);
@@ -133,6 +135,10 @@ public class LSMBTreeFileManager extends AbstractLSMIndexFileManager {
                 validComparableBloomFilterFiles.add(currentBloomFilter);
                 lastBTree = currentBTree;
                 lastBloomFilter = currentBloomFilter;
+            } else if (currentBTree.isSliceOf(lastBTree) && currentBloomFilter.isSliceOf(lastBloomFilter)) {
+                // The slices of a merge are valid together.
+                validComparableBTreeFiles.add(currentBTree);
+                validComparableBloomFilterFiles.add(currentBloomFilter);
             } else if (currentBTree.interval[0].compareTo(lastBTree.interval[0]) >= 0
                     && currentBTree.interval[1].compareTo(lastBTree.interval[1]) <= 0
                     && currentBloomFilter.interval[0].compareTo(lastBloomFilter.interval[0]) >= 0
@@ -15,6 +15,7 @@
 
 package edu.uci.ics.hyracks.storage.am.lsm.btree.impls;
 
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -25,25 +26,40 @@ import edu.uci.ics.hyracks.api.io.IODeviceHandle;
 import edu.uci.ics.hyracks.storage.am.common.api.ITreeIndexCursor;
 import edu.uci.ics.hyracks.storage.am.common.api.IndexException;
 import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMComponent;
-import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMIOOperation;
 import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMIOOperationCallback;
+import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMIORateLimiter;
 import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMIndexAccessorInternal;
+import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMMergeOperation;
 
-public class LSMBTreeMergeOperation implements ILSMIOOperation {
+public class LSMBTreeMergeOperation implements ILSMMergeOperation {
 
     private final ILSMIndexAccessorInternal accessor;
     private final List<ILSMComponent> mergingComponents;
+    private final List<ILSMComponent> carriedSlices;
     private final ITreeIndexCursor cursor;
     private final FileReference btreeMergeTarget;
     private final FileReference bloomFilterMergeTarget;
     private final ILSMIOOperationCallback callback;
     private final String indexIdentifier;
+    private ILSMIORateLimiter rateLimiter;
 
     public LSMBTreeMergeOperation(ILSMIndexAccessorInternal accessor, List<ILSMComponent> mergingComponents,
             ITreeIndexCursor cursor, FileReference btreeMergeTarget, FileReference bloomFilterMergeTarget,
             ILSMIOOperationCallback callback, String indexIdentifier) {
+        this(accessor, mergingComponents, Collections.<ILSMComponent> emptyList(), cursor, btreeMergeTarget,
+                bloomFilterMergeTarget, callback, indexIdentifier);
+    }
+
+    /**
+     * @param carriedSlices
+     *            the slices among the merging components that the merge keeps as they are, rather than rewrites
+     */
+    public LSMBTreeMergeOperation(ILSMIndexAccessorInternal accessor, List<ILSMComponent> mergingComponents,
+            List<ILSMComponent> carriedSlices, ITreeIndexCursor cursor, FileReference btreeMergeTarget,
+            FileReference bloomFilterMergeTarget, ILSMIOOperationCallback callback, String indexIdentifier) {
         this.accessor = accessor;
         this.mergingComponents = mergingComponents;
+        this.carriedSlices = carriedSlices;
         this.cursor = cursor;
         this.btreeMergeTarget = btreeMergeTarget;
         this.bloomFilterMergeTarget = bloomFilterMergeTarget;
@@ -97,6 +113,20 @@ public class LSMBTreeMergeOperation implements ILSMIOOperation {
         return mergingComponents;
     }
 
+    public List<ILSMComponent> getCarriedSlices() {
+        return carriedSlices;
+    }
+
+    @Override
+    public ILSMIORateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    @Override
+    public void setRateLimiter(ILSMIORateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
     @Override
     public String getIndexUniqueIdentifier() {
         return indexIdentifier;
@@ -33,6 +33,7 @@ import edu.uci.ics.hyracks.storage.am.common.api.ISearchPredicate;
 import edu.uci.ics.hyracks.storage.am.common.api.ITreeIndexAccessor;
 import edu.uci.ics.hyracks.storage.am.common.api.IndexException;
 import edu.uci.ics.hyracks.storage.am.common.impls.NoOpOperationCallback;
+import edu.uci.ics.hyracks.storage.am.common.ophelpers.IndexOperation;
 import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMComponent;
 import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMComponent.LSMComponentType;
 import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMIndexOperationContext;
@@ -195,7 +196,9 @@ public class LSMBTreeRangeSearchCursor extends LSMIndexSearchCursor {
             ILSMComponent component = operationalComponents.get(i);
             BTree btree;
             IBTreeLeafFrame leafFrame = (IBTreeLeafFrame) lsmInitialState.getLeafFrameFactory().createFrame();
-            rangeCursors[i] = new BTreeRangeSearchCursor(leafFrame, false);
+            // Merges read each disk component exactly once, so don't let them push hot pages out of the cache.
+            rangeCursors[i] = new BTreeRangeSearchCursor(leafFrame, false, component.getType() == LSMComponentType.DISK
+                    && opCtx.getOperation() == IndexOperation.MERGE);
             if (component.getType() == LSMComponentType.MEMORY) {
                 includeMutableComponent = true;
                 btree = (BTree) ((LSMBTreeMemoryComponent) component).getBTree();
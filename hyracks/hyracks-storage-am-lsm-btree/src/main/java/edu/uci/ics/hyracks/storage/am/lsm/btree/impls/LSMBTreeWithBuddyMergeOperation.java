@@ -24,11 +24,12 @@ import edu.uci.ics.hyracks.api.io.IODeviceHandle;
 import edu.uci.ics.hyracks.storage.am.common.api.ITreeIndexCursor;
 import edu.uci.ics.hyracks.storage.am.common.api.IndexException;
 import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMComponent;
-import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMIOOperation;
 import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMIOOperationCallback;
+import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMIORateLimiter;
 import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMIndexAccessorInternal;
+import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMMergeOperation;
 
-public class LSMBTreeWithBuddyMergeOperation implements ILSMIOOperation {
+public class LSMBTreeWithBuddyMergeOperation implements ILSMMergeOperation {
 
 	private final ILSMIndexAccessorInternal accessor;
 	private final List<ILSMComponent> mergingComponents;
@@ -39,6 +40,7 @@ public class LSMBTreeWithBuddyMergeOperation implements ILSMIOOperation {
 	private final ILSMIOOperationCallback callback;
 	private final String indexIdentifier;
 	private final boolean keepDeletedTuples;
+	private ILSMIORateLimiter rateLimiter;
 
 	public LSMBTreeWithBuddyMergeOperation(ILSMIndexAccessorInternal accessor,
 			List<ILSMComponent> mergingComponents, ITreeIndexCursor cursor,
@@ -125,6 +127,16 @@ public class LSMBTreeWithBuddyMergeOperation implements ILSMIOOperation {
 		return mergingComponents;
 	}
 
+	@Override
+	public ILSMIORateLimiter getRateLimiter() {
+		return rateLimiter;
+	}
+
+	@Override
+	public void setRateLimiter(ILSMIORateLimiter rateLimiter) {
+		this.rateLimiter = rateLimiter;
+	}
+
 	public boolean isKeepDeletedTuples() {
 		return keepDeletedTuples;
 	}
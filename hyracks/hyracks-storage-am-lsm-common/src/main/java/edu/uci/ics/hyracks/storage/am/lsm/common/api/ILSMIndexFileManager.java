@@ -40,6 +40,19 @@ public interface ILSMIndexFileManager {
     public LSMComponentFileReferences getRelMergeFileReference(String firstFileName, String lastFileName)
             throws HyracksDataException;
 
+    /**
+     * @return the files of the given slice of the output of a merge, for a merge that splits its output by key range.
+     *         The slices of a merge share the timestamp interval of the merge and are numbered from 0.
+     */
+    public LSMComponentFileReferences getRelMergeSliceFileReference(String firstFileName, String lastFileName,
+            int slice) throws HyracksDataException;
+
+    /**
+     * @return the timestamp interval of the merge that wrote the file, if the file belongs to one of its slices, or
+     *         null otherwise
+     */
+    public String getSliceGroup(String fileName);
+
     public String getBaseDir();
 
     // Deletes invalid files, and returns list of valid files from baseDir.
@@ -0,0 +1,28 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.hyracks.storage.am.lsm.common.api;
+
+import java.util.List;
+
+public interface ILSMMergeOperation extends ILSMIOOperation {
+    public List<ILSMComponent> getMergingComponents();
+
+    /**
+     * @return the rate limiter that the merge takes tokens from for the pages it writes, or null for no limit
+     */
+    public ILSMIORateLimiter getRateLimiter();
+
+    public void setRateLimiter(ILSMIORateLimiter rateLimiter);
+}
@@ -14,11 +14,19 @@
  */
 package edu.uci.ics.hyracks.storage.am.lsm.common.impls;
 
+import java.util.Collections;
+import java.util.List;
+
 import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
+import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMComponent;
 import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMComponentFilter;
 
 public abstract class AbstractDiskLSMComponent extends AbstractLSMComponent {
 
+    private ILSMComponentFilter keyRange;
+    private List<ILSMComponent> otherSlices = Collections.emptyList();
+    private boolean carriedOver;
+
     public AbstractDiskLSMComponent(ILSMComponentFilter filter) {
         super(filter);
         state = ComponentState.READABLE_UNWRITABLE;
@@ -97,6 +105,40 @@ public abstract class AbstractDiskLSMComponent extends AbstractLSMComponent {
 
     public abstract long getComponentSize();
 
+    /**
+     * @return the range of the keys of the component, or null if the index does not keep track of it
+     */
+    public ILSMComponentFilter getKeyRange() {
+        return keyRange;
+    }
+
+    public void setKeyRange(ILSMComponentFilter keyRange) {
+        this.keyRange = keyRange;
+    }
+
+    /**
+     * @return the other slices of the output of the merge that returned this component, if the merge split its output
+     *         by key range
+     */
+    public List<ILSMComponent> getOtherSlices() {
+        return otherSlices;
+    }
+
+    public void setOtherSlices(List<ILSMComponent> otherSlices) {
+        this.otherSlices = otherSlices;
+    }
+
+    /**
+     * @return whether the component is a slice that a merge kept as it was, rather than rewrote
+     */
+    public boolean isCarriedOver() {
+        return carriedOver;
+    }
+
+    public void setCarriedOver(boolean carriedOver) {
+        this.carriedOver = carriedOver;
+    }
+
     public abstract int getFileReferenceCount();
 
 }
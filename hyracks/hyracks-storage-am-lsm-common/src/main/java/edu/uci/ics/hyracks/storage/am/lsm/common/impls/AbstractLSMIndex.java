@@ -22,6 +22,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
+import edu.uci.ics.hyracks.storage.am.common.api.IIndexBulkLoader;
 import edu.uci.ics.hyracks.storage.am.common.api.ITreeIndex;
 import edu.uci.ics.hyracks.storage.am.common.api.ITreeIndexMetaDataFrame;
 import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMComponent;
@@ -30,8 +31,10 @@ import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMComponentFilterFrameFac
 import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMHarness;
 import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMIOOperationCallback;
 import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMIOOperationScheduler;
+import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMIORateLimiter;
 import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMIndexFileManager;
 import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMIndexInternal;
+import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMMergeOperation;
 import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMMergePolicy;
 import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMOperationTracker;
 import edu.uci.ics.hyracks.storage.am.lsm.common.api.IVirtualBufferCache;
@@ -41,6 +44,8 @@ import edu.uci.ics.hyracks.storage.common.file.BufferedFileHandle;
 import edu.uci.ics.hyracks.storage.common.file.IFileMapProvider;
 
 public abstract class AbstractLSMIndex implements ILSMIndexInternal {
+    private static final int FLUSH_BATCH_SIZE = 64;
+
     protected final ILSMHarness lsmHarness;
 
     protected final ILSMIOOperationScheduler ioScheduler;
@@ -65,6 +70,7 @@ public abstract class AbstractLSMIndex implements ILSMIndexInternal {
 
     protected boolean isActivated;
     protected final AtomicBoolean[] flushRequests;
+    protected final LSMIOStatistics ioStatistics = new LSMIOStatistics();
 
     public AbstractLSMIndex(List<IVirtualBufferCache> virtualBufferCaches, IBufferCache diskBufferCache,
             ILSMIndexFileManager fileManager, IFileMapProvider diskFileMapProvider,
@@ -136,16 +142,23 @@ public abstract class AbstractLSMIndex implements ILSMIndexInternal {
 
     protected void forceFlushDirtyPages(IBufferCache bufferCache, int fileId, int startPageId, int endPageId)
             throws HyracksDataException {
+        // Flush the pages in batches, so that the buffer cache can coalesce consecutive dirty pages into single writes.
+        List<ICachedPage> pages = new ArrayList<ICachedPage>(FLUSH_BATCH_SIZE);
         for (int i = startPageId; i <= endPageId; i++) {
             ICachedPage page = bufferCache.tryPin(BufferedFileHandle.getDiskPageId(fileId, i));
             // If tryPin returns null, it means the page is not cached, and therefore cannot be dirty.
-            if (page == null) {
-                continue;
+            if (page != null) {
+                pages.add(page);
             }
-            try {
-                bufferCache.flushDirtyPage(page);
-            } finally {
-                bufferCache.unpin(page);
+            if (pages.size() == FLUSH_BATCH_SIZE || (i == endPageId && !pages.isEmpty())) {
+                try {
+                    bufferCache.flushDirtyPages(pages);
+                } finally {
+                    for (ICachedPage p : pages) {
+                        bufferCache.unpin(p);
+                    }
+                    pages.clear();
+                }
             }
         }
         // Forces all pages of given file to disk. This guarantees the data makes it to disk.
@@ -190,6 +203,18 @@ public abstract class AbstractLSMIndex implements ILSMIndexInternal {
         }
     }
 
+    /**
+     * Makes a bulk loader of a merge take tokens from the rate limiter of the merge for every page it adds, if the
+     * scheduler of the merge limits its rate.
+     */
+    protected IIndexBulkLoader createRateLimitedBulkLoader(IIndexBulkLoader bulkLoader, ILSMMergeOperation mergeOp) {
+        ILSMIORateLimiter rateLimiter = mergeOp.getRateLimiter();
+        if (rateLimiter == null) {
+            return bulkLoader;
+        }
+        return new RateLimitedBulkLoader(bulkLoader, rateLimiter, diskBufferCache.getPageSize());
+    }
+
     @Override
     public void addComponent(ILSMComponent c) throws HyracksDataException {
         diskComponents.add(0, c);
@@ -201,6 +226,7 @@ public abstract class AbstractLSMIndex implements ILSMIndexInternal {
         int swapIndex = diskComponents.indexOf(mergedComponents.get(0));
         diskComponents.removeAll(mergedComponents);
         diskComponents.add(swapIndex, newComponent);
+        diskComponents.addAll(swapIndex + 1, ((AbstractDiskLSMComponent) newComponent).getOtherSlices());
     }
 
     @Override
@@ -244,6 +270,10 @@ public abstract class AbstractLSMIndex implements ILSMIndexInternal {
         return diskBufferCache;
     }
 
+    public LSMIOStatistics getIOStatistics() {
+        return ioStatistics;
+    }
+
     public boolean isEmptyIndex() throws HyracksDataException {
         boolean isModified = false;
         for (ILSMComponent c : memoryComponents) {
@@ -27,7 +27,9 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
 import edu.uci.ics.hyracks.api.io.FileReference;
@@ -44,6 +46,7 @@ public abstract class AbstractLSMIndexFileManager implements ILSMIndexFileManage
 
     protected static final String SPLIT_STRING = "_";
     protected static final String BLOOM_FILTER_STRING = "f";
+    protected static final String SLICE_STRING = "s";
     protected static final String TRANSACTION_PREFIX = ".T";
 
     protected final IFileMapProvider fileMapProvider;
@@ -182,6 +185,70 @@ public abstract class AbstractLSMIndexFileManager implements ILSMIndexFileManage
                 + lastTimestampRange[1]), null, null);
     }
 
+    @Override
+    public LSMComponentFileReferences getRelMergeSliceFileReference(String firstFileName, String lastFileName,
+            int slice) throws HyracksDataException {
+        LSMComponentFileReferences relMergeFileRefs = getRelMergeFileReference(firstFileName, lastFileName);
+        return new LSMComponentFileReferences(getSliceFile(relMergeFileRefs.getInsertIndexFileReference(), slice),
+                getSliceFile(relMergeFileRefs.getDeleteIndexFileReference(), slice), getSliceFile(
+                        relMergeFileRefs.getBloomFilterFileReference(), slice));
+    }
+
+    /**
+     * The slice number follows the timestamp interval in the name of a file, so that the files of one slice still
+     * share the name up to their last split string.
+     */
+    private FileReference getSliceFile(FileReference mergeFile, int slice) {
+        if (mergeFile == null) {
+            return null;
+        }
+        File file = mergeFile.getFile();
+        String[] nameParts = file.getName().split(SPLIT_STRING, 3);
+        String sliceName = nameParts[0] + SPLIT_STRING + nameParts[1] + SPLIT_STRING + SLICE_STRING + slice;
+        if (nameParts.length > 2) {
+            sliceName += SPLIT_STRING + nameParts[2];
+        }
+        return createMergeFile(new File(file.getParentFile(), sliceName).getPath());
+    }
+
+    @Override
+    public String getSliceGroup(String fileName) {
+        String[] nameParts = fileName.split(SPLIT_STRING);
+        if (getSlice(nameParts) < 0) {
+            return null;
+        }
+        return nameParts[0] + SPLIT_STRING + nameParts[1];
+    }
+
+    private static int getSlice(String[] nameParts) {
+        if (nameParts.length > 2 && nameParts[2].matches(SLICE_STRING + "[0-9]+")) {
+            return Integer.parseInt(nameParts[2].substring(SLICE_STRING.length()));
+        }
+        return -1;
+    }
+
+    /**
+     * Deletes the slices of the merges that did not complete. A merge marks the first slice of its output as valid
+     * after all the others, so the slices of a merge are all there if its first slice is.
+     */
+    protected void deleteIncompleteSlices(List<ComparableFileName> files) {
+        Set<String> completeMerges = new HashSet<String>();
+        for (ComparableFileName cmpFileName : files) {
+            if (cmpFileName.slice == 0) {
+                completeMerges.add(cmpFileName.getSliceGroup());
+            }
+        }
+        Iterator<ComparableFileName> fileIter = files.iterator();
+        while (fileIter.hasNext()) {
+            ComparableFileName cmpFileName = fileIter.next();
+            if (cmpFileName.slice > 0 && !completeMerges.contains(cmpFileName.getSliceGroup())) {
+                File invalidFile = new File(cmpFileName.fullPath);
+                invalidFile.delete();
+                fileIter.remove();
+            }
+        }
+    }
+
     @Override
     public List<LSMComponentFileReferences> cleanupAndGetValidFiles() throws HyracksDataException, IndexException {
         List<LSMComponentFileReferences> validFiles = new ArrayList<LSMComponentFileReferences>();
@@ -191,8 +258,9 @@ public abstract class AbstractLSMIndexFileManager implements ILSMIndexFileManage
         // There are two types of invalid files:
         // (1) The isValid flag is not set
         // (2) The file's interval is contained by some other file
-        // Here, we only filter out (1).
+        // Here, we only filter out (1), and the slices of the merges that did not complete.
         cleanupAndGetValidFilesInternal(fileNameFilter, treeFactory, allFiles);
+        deleteIncompleteSlices(allFiles);
 
         if (allFiles.isEmpty()) {
             return validFiles;
@@ -215,6 +283,9 @@ public abstract class AbstractLSMIndexFileManager implements ILSMIndexFileManage
             if (current.interval[0].compareTo(last.interval[1]) > 0) {
                 validComparableFiles.add(current);
                 last = current;
+            } else if (current.isSliceOf(last)) {
+                // The slices of a merge are valid together.
+                validComparableFiles.add(current);
             } else if (current.interval[0].compareTo(last.interval[0]) >= 0
                     && current.interval[1].compareTo(last.interval[1]) <= 0) {
                 // The current file is completely contained in the interval of the
@@ -286,12 +357,24 @@ public abstract class AbstractLSMIndexFileManager implements ILSMIndexFileManage
 
         // Timestamp interval.
         public final String[] interval;
+        // The number of the slice of the merge that wrote the file, or -1.
+        public final int slice;
 
         public ComparableFileName(FileReference fileRef) {
             this.fileRef = fileRef;
             this.fullPath = fileRef.getFile().getAbsolutePath();
             this.fileName = fileRef.getFile().getName();
             interval = fileName.split(SPLIT_STRING);
+            slice = getSlice(interval);
+        }
+
+        public String getSliceGroup() {
+            return interval[0] + SPLIT_STRING + interval[1];
+        }
+
+        public boolean isSliceOf(ComparableFileName b) {
+            return slice >= 0 && b.slice >= 0 && interval[0].equals(b.interval[0])
+                    && interval[1].equals(b.interval[1]);
         }
 
         @Override
@@ -300,7 +383,11 @@ public abstract class AbstractLSMIndexFileManager implements ILSMIndexFileManage
             if (startCmp != 0) {
                 return startCmp;
             }
-            return b.interval[1].compareTo(interval[1]);
+            int endCmp = b.interval[1].compareTo(interval[1]);
+            if (endCmp != 0) {
+                return endCmp;
+            }
+            return Integer.compare(slice, b.slice);
         }
     }
 
@@ -311,7 +398,11 @@ public abstract class AbstractLSMIndexFileManager implements ILSMIndexFileManage
             if (cmp != 0) {
                 return cmp;
             }
-            return -a.interval[1].compareTo(b.interval[1]);
+            cmp = -a.interval[1].compareTo(b.interval[1]);
+            if (cmp != 0) {
+                return cmp;
+            }
+            return Integer.compare(a.slice, b.slice);
         }
     }
 
@@ -15,6 +15,7 @@
 package edu.uci.ics.hyracks.storage.am.lsm.common.impls;
 
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
 import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMComponentFilter;
@@ -25,6 +26,7 @@ public abstract class AbstractMemoryLSMComponent extends AbstractLSMComponent {
     private int writerCount;
     private final IVirtualBufferCache vbc;
     private final AtomicBoolean isModified;
+    private final AtomicLong numModifications;
     private boolean requestedToBeActive;
 
     public AbstractMemoryLSMComponent(IVirtualBufferCache vbc, boolean isActive, ILSMComponentFilter filter) {
@@ -37,6 +39,7 @@ public abstract class AbstractMemoryLSMComponent extends AbstractLSMComponent {
             state = ComponentState.INACTIVE;
         }
         isModified = new AtomicBoolean();
+        numModifications = new AtomicLong();
     }
 
     public AbstractMemoryLSMComponent(IVirtualBufferCache vbc, boolean isActive) {
@@ -185,12 +188,25 @@ public abstract class AbstractMemoryLSMComponent extends AbstractLSMComponent {
         return isModified.get();
     }
 
+    public void incrementNumModifications() {
+        numModifications.incrementAndGet();
+    }
+
+    /**
+     * A modification adds at most one tuple to the index of the component (or to its B-tree of deleted keys), so this
+     * is an upper bound of its number of tuples, which a flush can use instead of counting them.
+     */
+    public long getNumModifications() {
+        return numModifications.get();
+    }
+
     public boolean isFull() {
         return vbc.isFull();
     }
 
     protected void reset() throws HyracksDataException {
         isModified.set(false);
+        numModifications.set(0L);
         if (filter != null) {
             filter.reset();
         }
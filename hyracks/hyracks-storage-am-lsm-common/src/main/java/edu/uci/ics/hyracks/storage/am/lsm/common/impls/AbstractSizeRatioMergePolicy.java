@@ -0,0 +1,173 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.hyracks.storage.am.lsm.common.impls;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
+import edu.uci.ics.hyracks.storage.am.common.api.IndexException;
+import edu.uci.ics.hyracks.storage.am.common.impls.NoOpOperationCallback;
+import edu.uci.ics.hyracks.storage.am.common.ophelpers.MultiComparator;
+import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMComponent;
+import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMComponent.ComponentState;
+import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMComponentFilter;
+import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMIndex;
+import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMIndexAccessor;
+import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMMergePolicy;
+
+/**
+ * A merge policy that groups the disk components into levels by size. The components of level 0 are no larger than
+ * a flushed component (on average), and the components of each next level are up to size-ratio times larger.
+ * Subclasses choose which components of the levels to merge. Whatever they choose, the number of disk components
+ * is bounded by max-component-count: beyond it, the newest components are merged. Components at either end of a
+ * choice whose key ranges overlap none of the others are left out of the merge. The index may still leave out the
+ * slices of the oldest merged component that do not overlap the newer ones, if its merges split their output into
+ * slices.
+ * The write and read amplification of an index are counted by the {@link LSMIOStatistics} of the index.
+ */
+public abstract class AbstractSizeRatioMergePolicy implements ILSMMergePolicy {
+    private static final Logger LOGGER = Logger.getLogger(AbstractSizeRatioMergePolicy.class.getName());
+
+    protected double sizeRatio;
+    protected int maxComponentCount;
+
+    @Override
+    public void diskComponentAdded(final ILSMIndex index, boolean fullMergeIsRequested) throws HyracksDataException,
+            IndexException {
+        // The components are in newest-first order.
+        List<ILSMComponent> immutableComponents = index.getImmutableComponents();
+        for (ILSMComponent c : immutableComponents) {
+            if (c.getState() != ComponentState.READABLE_UNWRITABLE) {
+                return;
+            }
+        }
+        if (fullMergeIsRequested) {
+            ILSMIndexAccessor accessor = (ILSMIndexAccessor) index.createAccessor(NoOpOperationCallback.INSTANCE,
+                    NoOpOperationCallback.INSTANCE);
+            accessor.scheduleFullMerge(index.getIOOperationCallback());
+            return;
+        }
+        int numComponents = immutableComponents.size();
+        if (numComponents < 2) {
+            return;
+        }
+        LSMIOStatistics statistics = ((AbstractLSMIndex) index).getIOStatistics();
+        long[] sizes = new long[numComponents];
+        long minSize = Long.MAX_VALUE;
+        for (int i = 0; i < numComponents; i++) {
+            sizes[i] = ((AbstractDiskLSMComponent) immutableComponents.get(i)).getComponentSize();
+            minSize = Math.min(minSize, sizes[i]);
+        }
+        // Without any flush yet, the smallest (bulk loaded) component is the base.
+        long baseSize = statistics.getNumFlushes() > 0 ? statistics.getAverageFlushSize() : minSize;
+        int[] levels = new int[numComponents];
+        for (int i = 0; i < numComponents; i++) {
+            levels[i] = getLevel(sizes[i], baseSize);
+        }
+        int[] range = selectComponents(sizes, levels, baseSize);
+        if (range != null) {
+            range = trimDisjointComponents(immutableComponents, range);
+        }
+        if (range == null && numComponents > maxComponentCount) {
+            range = new int[] { 0, numComponents - maxComponentCount + 1 };
+        }
+        if (range == null) {
+            return;
+        }
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine(getClass().getSimpleName() + " merges components " + range[0] + " to " + (range[1] - 1)
+                    + " of " + numComponents + " of index: " + index + " with statistics " + statistics);
+        }
+        List<ILSMComponent> mergableComponents = new ArrayList<ILSMComponent>(immutableComponents.subList(range[0],
+                range[1]));
+        ILSMIndexAccessor accessor = (ILSMIndexAccessor) index.createAccessor(NoOpOperationCallback.INSTANCE,
+                NoOpOperationCallback.INSTANCE);
+        accessor.scheduleMerge(index.getIOOperationCallback(), mergableComponents);
+    }
+
+    /**
+     * Drops the oldest and newest components of a range as long as their key ranges overlap none of the others: they
+     * would be rewritten for nothing. The components in the middle stay, since merged components are contiguous, and
+     * so does a component that only partly overlaps the others.
+     *
+     * @return the trimmed range, or null if less than 2 components are left
+     */
+    private int[] trimDisjointComponents(List<ILSMComponent> components, int[] range) throws HyracksDataException {
+        int start = range[0];
+        int end = range[1];
+        while (end - start >= 2 && isDisjoint(components, end - 1, start, end - 1)) {
+            end--;
+        }
+        while (end - start >= 2 && isDisjoint(components, start, start + 1, end)) {
+            start++;
+        }
+        return end - start >= 2 ? new int[] { start, end } : null;
+    }
+
+    private boolean isDisjoint(List<ILSMComponent> components, int index, int start, int end)
+            throws HyracksDataException {
+        ILSMComponentFilter keyRange = ((AbstractDiskLSMComponent) components.get(index)).getKeyRange();
+        if (keyRange == null) {
+            return false;
+        }
+        MultiComparator cmp = MultiComparator.create(keyRange.getFilterCmpFactories());
+        for (int i = start; i < end; i++) {
+            ILSMComponentFilter otherKeyRange = ((AbstractDiskLSMComponent) components.get(i)).getKeyRange();
+            if (otherKeyRange == null
+                    || keyRange.satisfy(otherKeyRange.getMinTuple(), otherKeyRange.getMaxTuple(), cmp)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Chooses the components to merge.
+     *
+     * @param sizes
+     *            the sizes of the disk components, newest first
+     * @param levels
+     *            the levels of the disk components
+     * @param baseSize
+     *            the size up to which a component is in level 0
+     * @return the (inclusive) start and (exclusive) end of the range of components to merge, or null
+     */
+    protected abstract int[] selectComponents(long[] sizes, int[] levels, long baseSize);
+
+    protected int getLevel(long size, long baseSize) {
+        int level = 0;
+        for (double capacity = Math.max(baseSize, 1); size > capacity; capacity *= sizeRatio) {
+            level++;
+        }
+        return level;
+    }
+
+    @Override
+    public void configure(Map<String, String> properties) {
+        sizeRatio = Double.parseDouble(properties.get("size-ratio"));
+        maxComponentCount = Integer.parseInt(properties.get("max-component-count"));
+        if (sizeRatio <= 1) {
+            throw new IllegalArgumentException("size-ratio should be larger than 1, but it is " + sizeRatio);
+        }
+        if (maxComponentCount < 1) {
+            throw new IllegalArgumentException("max-component-count should at least be 1, but it is "
+                    + maxComponentCount);
+        }
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.hyracks.storage.am.lsm.common.impls;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
+import edu.uci.ics.hyracks.api.io.IODeviceHandle;
+import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMIOOperation;
+import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMIOOperation.LSMIOOpertionType;
+import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMIOOperationScheduler;
+import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMIORateLimiter;
+import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMMergeOperation;
+
+/**
+ * An asynchronous scheduler that keeps merges from starving flushes of disk bandwidth. Flushes and merges run in
+ * separate pools of bounded size, so that flushes never queue up behind merges, and flushes of the same index run
+ * serially in the order of their scheduling, as with the {@link AsynchronousScheduler}. A merge waits to start:
+ * - while flushes wait for a thread of the flush pool, and
+ * - while the devices it reads or writes already run the maximum number of concurrent merges.
+ * The running merges share a {@link LSMIORateLimiter}: they take tokens from it for every page they write, so that
+ * together they write no faster than the rate limit.
+ */
+public class BoundedAsynchronousScheduler implements ILSMIOOperationScheduler {
+    private static final long IDLE_THREAD_KEEP_ALIVE_SECONDS = 60L;
+
+    private final int numFlushThreads;
+    private final int numMergeThreads;
+    private final int maxConcurrentMergesPerDevice;
+    private final ILSMIORateLimiter mergeRateLimiter;
+
+    private ExecutorService flushExecutor;
+    private ExecutorService mergeExecutor;
+
+    // Guarded by flushExecutor.
+    private final Map<String, ILSMIOOperation> runningFlushOperations = new HashMap<String, ILSMIOOperation>();
+    private final Map<String, Deque<ILSMIOOperation>> waitingFlushOperations =
+            new HashMap<String, Deque<ILSMIOOperation>>();
+
+    // Guarded by this.
+    private final Map<IODeviceHandle, Integer> runningMerges = new HashMap<IODeviceHandle, Integer>();
+    private int queuedFlushes;
+
+    /**
+     * @param maxConcurrentMergesPerDevice
+     *            the number of merges that may read or write a device at the same time
+     * @param mergeMBPerSecond
+     *            the rate limit of merges, in MB written per second, or 0 for no limit
+     */
+    public BoundedAsynchronousScheduler(int numFlushThreads, int numMergeThreads, int maxConcurrentMergesPerDevice,
+            double mergeMBPerSecond) {
+        if (numFlushThreads < 1 || numMergeThreads < 1 || maxConcurrentMergesPerDevice < 1) {
+            throw new IllegalArgumentException("The number of flush threads (" + numFlushThreads
+                    + "), merge threads (" + numMergeThreads + ") and concurrent merges per device ("
+                    + maxConcurrentMergesPerDevice + ") should at least be 1.");
+        }
+        if (mergeMBPerSecond < 0) {
+            throw new IllegalArgumentException("The merge rate limit should not be negative, but it is "
+                    + mergeMBPerSecond);
+        }
+        this.numFlushThreads = numFlushThreads;
+        this.numMergeThreads = numMergeThreads;
+        this.maxConcurrentMergesPerDevice = maxConcurrentMergesPerDevice;
+        this.mergeRateLimiter = mergeMBPerSecond > 0 ? new LSMIORateLimiter(mergeMBPerSecond * 1024 * 1024) : null;
+    }
+
+    public void init(ThreadFactory threadFactory) {
+        flushExecutor = new ThreadPoolExecutor(numFlushThreads, numFlushThreads, IDLE_THREAD_KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), threadFactory) {
+            {
+                allowCoreThreadTimeOut(true);
+            }
+
+            @Override
+            protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+                return new LSMIOOperationTask<T>(callable);
+            }
+
+            @Override
+            protected void beforeExecute(Thread t, Runnable r) {
+                super.beforeExecute(t, r);
+                flushStarted();
+            }
+
+            @SuppressWarnings("unchecked")
+            @Override
+            protected void afterExecute(Runnable r, Throwable t) {
+                super.afterExecute(r, t);
+                LSMIOOperationTask<Boolean> task = (LSMIOOperationTask<Boolean>) r;
+                String id = task.getOperation().getIndexUniqueIdentifier();
+                synchronized (this) {
+                    runningFlushOperations.remove(id);
+                    if (waitingFlushOperations.containsKey(id)) {
+                        ILSMIOOperation op = waitingFlushOperations.get(id).poll();
+                        if (op != null) {
+                            submitFlush(op);
+                        } else {
+                            waitingFlushOperations.remove(id);
+                        }
+                    }
+                }
+            }
+        };
+        mergeExecutor = new ThreadPoolExecutor(numMergeThreads, numMergeThreads, IDLE_THREAD_KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), threadFactory) {
+            {
+                allowCoreThreadTimeOut(true);
+            }
+
+            @Override
+            protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+                return new LSMIOOperationTask<T>(callable);
+            }
+
+            @SuppressWarnings("unchecked")
+            @Override
+            protected void beforeExecute(Thread t, Runnable r) {
+                super.beforeExecute(t, r);
+                startMerge(((LSMIOOperationTask<Boolean>) r).getOperation());
+            }
+
+            @SuppressWarnings("unchecked")
+            @Override
+            protected void afterExecute(Runnable r, Throwable t) {
+                super.afterExecute(r, t);
+                endMerge(((LSMIOOperationTask<Boolean>) r).getOperation());
+            }
+        };
+    }
+
+    @Override
+    public void scheduleOperation(ILSMIOOperation operation) throws HyracksDataException {
+        if (operation.getIOOpertionType() == LSMIOOpertionType.MERGE) {
+            mergeExecutor.submit(operation);
+        } else {
+            String id = operation.getIndexUniqueIdentifier();
+            synchronized (flushExecutor) {
+                if (runningFlushOperations.containsKey(id)) {
+                    if (waitingFlushOperations.containsKey(id)) {
+                        waitingFlushOperations.get(id).offer(operation);
+                    } else {
+                        Deque<ILSMIOOperation> q = new ArrayDeque<ILSMIOOperation>();
+                        q.offer(operation);
+                        waitingFlushOperations.put(id, q);
+                    }
+                } else {
+                    runningFlushOperations.put(id, operation);
+                    submitFlush(operation);
+                }
+            }
+        }
+    }
+
+    private void submitFlush(ILSMIOOperation operation) {
+        synchronized (this) {
+            queuedFlushes++;
+        }
+        flushExecutor.submit(operation);
+    }
+
+    private synchronized void flushStarted() {
+        queuedFlushes--;
+        notifyAll();
+    }
+
+    /**
+     * Waits until a merge may start, counts it as running on its devices, and hands it the rate limiter.
+     */
+    private synchronized void startMerge(ILSMIOOperation operation) {
+        Set<IODeviceHandle> devices = getDevices(operation);
+        try {
+            while (queuedFlushes > 0 || !hasMergeSlots(devices)) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            // The merge still runs, but no longer waits for its turn.
+            Thread.currentThread().interrupt();
+        }
+        for (IODeviceHandle device : devices) {
+            Integer numMerges = runningMerges.get(device);
+            runningMerges.put(device, numMerges == null ? 1 : numMerges + 1);
+        }
+        if (operation instanceof ILSMMergeOperation) {
+            ((ILSMMergeOperation) operation).setRateLimiter(mergeRateLimiter);
+        }
+    }
+
+    private synchronized void endMerge(ILSMIOOperation operation) {
+        for (IODeviceHandle device : getDevices(operation)) {
+            int numMerges = runningMerges.get(device) - 1;
+            if (numMerges == 0) {
+                runningMerges.remove(device);
+            } else {
+                runningMerges.put(device, numMerges);
+            }
+        }
+        notifyAll();
+    }
+
+    private boolean hasMergeSlots(Set<IODeviceHandle> devices) {
+        for (IODeviceHandle device : devices) {
+            Integer numMerges = runningMerges.get(device);
+            if (numMerges != null && numMerges >= maxConcurrentMergesPerDevice) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Set<IODeviceHandle> getDevices(ILSMIOOperation operation) {
+        Set<IODeviceHandle> devices = new HashSet<IODeviceHandle>(operation.getReadDevices());
+        devices.addAll(operation.getWriteDevices());
+        return devices;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.hyracks.storage.am.lsm.common.impls;
+
+import edu.uci.ics.hyracks.api.dataflow.value.IBinaryComparatorFactory;
+import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
+import edu.uci.ics.hyracks.dataflow.common.comm.io.ArrayTupleBuilder;
+import edu.uci.ics.hyracks.dataflow.common.comm.io.ArrayTupleReference;
+import edu.uci.ics.hyracks.dataflow.common.data.accessors.ITupleReference;
+import edu.uci.ics.hyracks.dataflow.common.util.TupleUtils;
+import edu.uci.ics.hyracks.storage.am.common.ophelpers.MultiComparator;
+import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMComponentFilter;
+
+/**
+ * The range of the keys of a disk component: a filter on the key fields of the index rather than on its filter
+ * fields. Searches skip the components whose key range does not overlap the keys they look for, and merge policies
+ * may leave out a component whose key range does not overlap those of the others. When merges split their output
+ * into slices, each slice is a component with its own key range, and a merge keeps the slices whose key ranges do
+ * not overlap the newer data it merges.
+ */
+public class LSMComponentKeyRange implements ILSMComponentFilter {
+
+    private final IBinaryComparatorFactory[] cmpFactories;
+    private final ArrayTupleBuilder minTupleBuilder;
+    private final ArrayTupleBuilder maxTupleBuilder;
+
+    private ArrayTupleReference minTuple;
+    private ArrayTupleReference maxTuple;
+
+    public LSMComponentKeyRange(IBinaryComparatorFactory[] cmpFactories) {
+        this.cmpFactories = cmpFactories;
+        minTupleBuilder = new ArrayTupleBuilder(cmpFactories.length);
+        maxTupleBuilder = new ArrayTupleBuilder(cmpFactories.length);
+    }
+
+    @Override
+    public IBinaryComparatorFactory[] getFilterCmpFactories() {
+        return cmpFactories;
+    }
+
+    @Override
+    public void reset() {
+        minTuple = null;
+        maxTuple = null;
+    }
+
+    @Override
+    public void update(ITupleReference tuple, MultiComparator cmp) throws HyracksDataException {
+        if (minTuple == null || cmp.compare(tuple, minTuple) < 0) {
+            minTuple = copyKey(minTupleBuilder, tuple, minTuple);
+        }
+        if (maxTuple == null || cmp.compare(tuple, maxTuple) > 0) {
+            maxTuple = copyKey(maxTupleBuilder, tuple, maxTuple);
+        }
+    }
+
+    private ArrayTupleReference copyKey(ArrayTupleBuilder tupleBuilder, ITupleReference tuple,
+            ArrayTupleReference tupleCopy) throws HyracksDataException {
+        TupleUtils.copyTuple(tupleBuilder, tuple, cmpFactories.length);
+        if (tupleCopy == null) {
+            tupleCopy = new ArrayTupleReference();
+        }
+        tupleCopy.reset(tupleBuilder.getFieldEndOffsets(), tupleBuilder.getByteArray());
+        return tupleCopy;
+    }
+
+    @Override
+    public ITupleReference getMinTuple() {
+        return minTuple;
+    }
+
+    @Override
+    public ITupleReference getMaxTuple() {
+        return maxTuple;
+    }
+
+    @Override
+    public boolean satisfy(ITupleReference minTuple, ITupleReference maxTuple, MultiComparator cmp)
+            throws HyracksDataException {
+        if (maxTuple != null && this.minTuple != null && cmp.compare(maxTuple, this.minTuple) < 0) {
+            return false;
+        }
+        if (minTuple != null && this.maxTuple != null && cmp.compare(minTuple, this.maxTuple) > 0) {
+            return false;
+        }
+        return true;
+    }
+}
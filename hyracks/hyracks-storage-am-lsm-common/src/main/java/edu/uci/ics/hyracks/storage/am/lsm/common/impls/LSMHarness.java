@@ -212,6 +212,8 @@ public class LSMHarness implements ILSMHarness {
                         case FLUSH:
                             // newComponent is null if the flush op. was not performed.
                             if (newComponent != null) {
+                                ((AbstractLSMIndex) lsmIndex).getIOStatistics().flushed(
+                                        ((AbstractDiskLSMComponent) newComponent).getComponentSize());
                                 lsmIndex.addComponent(newComponent);
                                 mergePolicy.diskComponentAdded(lsmIndex, false);
                             }
@@ -219,6 +221,22 @@ public class LSMHarness implements ILSMHarness {
                         case MERGE:
                             // newComponent is null if the merge op. was not performed.
                             if (newComponent != null) {
+                                long mergedComponentsSize = 0;
+                                for (ILSMComponent c : ctx.getComponentHolder()) {
+                                    mergedComponentsSize += ((AbstractDiskLSMComponent) c).getComponentSize();
+                                }
+                                long newComponentSize = ((AbstractDiskLSMComponent) newComponent).getComponentSize();
+                                // The slices that the merge kept were neither read nor written.
+                                for (ILSMComponent c : ((AbstractDiskLSMComponent) newComponent).getOtherSlices()) {
+                                    long sliceSize = ((AbstractDiskLSMComponent) c).getComponentSize();
+                                    if (((AbstractDiskLSMComponent) c).isCarriedOver()) {
+                                        mergedComponentsSize -= sliceSize;
+                                    } else {
+                                        newComponentSize += sliceSize;
+                                    }
+                                }
+                                ((AbstractLSMIndex) lsmIndex).getIOStatistics().merged(mergedComponentsSize,
+                                        newComponentSize);
                                 lsmIndex.subsumeMergedComponents(newComponent, ctx.getComponentHolder());
                                 mergePolicy.diskComponentAdded(lsmIndex, fullMergeIsRequested.get());
                             }
@@ -302,9 +320,11 @@ public class LSMHarness implements ILSMHarness {
             return false;
         }
         try {
-            lsmIndex.modify(ctx, tuple);
             // The mutable component is always in the first index.
             AbstractMemoryLSMComponent mutableComponent = (AbstractMemoryLSMComponent) ctx.getComponentHolder().get(0);
+            // Counted before the modification, so that a failed one is counted even if it added a tuple.
+            mutableComponent.incrementNumModifications();
+            lsmIndex.modify(ctx, tuple);
             mutableComponent.setIsModified();
         } catch (Exception e) {
             failedOperation = true;
@@ -321,6 +341,7 @@ public class LSMHarness implements ILSMHarness {
         LSMOperationType opType = LSMOperationType.SEARCH;
         ctx.setSearchPredicate(pred);
         getAndEnterComponents(ctx, opType, false);
+        ((AbstractLSMIndex) lsmIndex).getIOStatistics().searched(ctx.getComponentHolder().size());
         try {
             lsmIndex.search(ctx, cursor, pred);
         } catch (HyracksDataException | IndexException e) {
@@ -409,6 +430,12 @@ public class LSMHarness implements ILSMHarness {
         try {
             newComponent = lsmIndex.merge(operation);
             operation.getCallback().afterOperation(LSMOperationType.MERGE, ctx.getComponentHolder(), newComponent);
+            // The returned slice is marked last: once it is valid, so are the other slices of the merge.
+            for (ILSMComponent c : ((AbstractDiskLSMComponent) newComponent).getOtherSlices()) {
+                if (!((AbstractDiskLSMComponent) c).isCarriedOver()) {
+                    lsmIndex.markAsValid(c);
+                }
+            }
             lsmIndex.markAsValid(newComponent);
         } catch (Throwable e) {
             e.printStackTrace();
@@ -426,6 +453,8 @@ public class LSMHarness implements ILSMHarness {
     public void addBulkLoadedComponent(ILSMComponent c) throws HyracksDataException, IndexException {
         lsmIndex.markAsValid(c);
         synchronized (opTracker) {
+            long componentSize = ((AbstractDiskLSMComponent) c).getComponentSize();
+            ((AbstractLSMIndex) lsmIndex).getIOStatistics().bulkLoaded(componentSize);
             lsmIndex.addComponent(c);
             mergePolicy.diskComponentAdded(lsmIndex, false);
         }
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.hyracks.storage.am.lsm.common.impls;
+
+import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
+import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMIORateLimiter;
+
+/**
+ * A token bucket that limits the rate at which I/O operations write. The bucket fills up at the rate limit and holds
+ * up to a second of it. A writer takes as many tokens as the bytes it is about to write; the bucket goes into debt
+ * for more bytes than the tokens left, and the writer waits until its part of the debt is paid off. The operations
+ * that share a limiter share its rate.
+ */
+public class LSMIORateLimiter implements ILSMIORateLimiter {
+    private final double bytesPerSecond;
+
+    // Guarded by this.
+    private double tokens;
+    private long lastRefillTime;
+
+    public LSMIORateLimiter(double bytesPerSecond) {
+        if (bytesPerSecond <= 0) {
+            throw new IllegalArgumentException("The rate limit should be positive, but it is " + bytesPerSecond);
+        }
+        this.bytesPerSecond = bytesPerSecond;
+        this.tokens = bytesPerSecond;
+        this.lastRefillTime = System.nanoTime();
+    }
+
+    /**
+     * Takes the tokens for a write, and waits until the bucket is out of debt.
+     */
+    @Override
+    public void acquire(long bytes) throws HyracksDataException {
+        long waitMillis;
+        synchronized (this) {
+            long now = System.nanoTime();
+            tokens = Math.min(bytesPerSecond, tokens + (now - lastRefillTime) / 1e9 * bytesPerSecond);
+            lastRefillTime = now;
+            tokens -= bytes;
+            waitMillis = tokens < 0 ? (long) Math.ceil(-tokens / bytesPerSecond * 1000) : 0;
+        }
+        if (waitMillis > 0) {
+            try {
+                Thread.sleep(waitMillis);
+            } catch (InterruptedException e) {
+                throw new HyracksDataException(e);
+            }
+        }
+    }
+
+    @Override
+    public double getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.hyracks.storage.am.lsm.common.impls;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the bytes an LSM index writes to disk and the components its searches read, so that its write and read
+ * amplification can be observed.
+ * The bytes of flushed and bulk loaded components are ingested once; the bytes of merged components are written
+ * again. Each search reads all the components, memory and disk, that it entered.
+ */
+public class LSMIOStatistics {
+    private final AtomicLong numFlushes = new AtomicLong();
+    private final AtomicLong flushedBytes = new AtomicLong();
+    private final AtomicLong ingestedBytes = new AtomicLong();
+    private final AtomicLong numMerges = new AtomicLong();
+    private final AtomicLong mergeReadBytes = new AtomicLong();
+    private final AtomicLong mergeWrittenBytes = new AtomicLong();
+    private final AtomicLong numSearches = new AtomicLong();
+    private final AtomicLong numSearchedComponents = new AtomicLong();
+
+    public void flushed(long componentSize) {
+        numFlushes.incrementAndGet();
+        flushedBytes.addAndGet(componentSize);
+        ingestedBytes.addAndGet(componentSize);
+    }
+
+    public void bulkLoaded(long componentSize) {
+        ingestedBytes.addAndGet(componentSize);
+    }
+
+    public void merged(long mergedComponentsSize, long componentSize) {
+        numMerges.incrementAndGet();
+        mergeReadBytes.addAndGet(mergedComponentsSize);
+        mergeWrittenBytes.addAndGet(componentSize);
+    }
+
+    public void searched(int numComponents) {
+        numSearches.incrementAndGet();
+        numSearchedComponents.addAndGet(numComponents);
+    }
+
+    public long getNumFlushes() {
+        return numFlushes.get();
+    }
+
+    public long getFlushedBytes() {
+        return flushedBytes.get();
+    }
+
+    public long getIngestedBytes() {
+        return ingestedBytes.get();
+    }
+
+    public long getNumMerges() {
+        return numMerges.get();
+    }
+
+    public long getMergeReadBytes() {
+        return mergeReadBytes.get();
+    }
+
+    public long getMergeWrittenBytes() {
+        return mergeWrittenBytes.get();
+    }
+
+    public long getNumSearches() {
+        return numSearches.get();
+    }
+
+    public long getNumSearchedComponents() {
+        return numSearchedComponents.get();
+    }
+
+    /**
+     * @return the average size of the flushed components, or 0 before the first flush
+     */
+    public long getAverageFlushSize() {
+        long n = numFlushes.get();
+        return n == 0 ? 0 : flushedBytes.get() / n;
+    }
+
+    /**
+     * @return the bytes written to disk per ingested byte, 1 if nothing was merged
+     */
+    public double getWriteAmplification() {
+        long ingested = ingestedBytes.get();
+        return ingested == 0 ? 1 : (double) (ingested + mergeWrittenBytes.get()) / ingested;
+    }
+
+    /**
+     * @return the average number of components a search read, 0 before the first search
+     */
+    public double getReadAmplification() {
+        long n = numSearches.get();
+        return n == 0 ? 0 : (double) numSearchedComponents.get() / n;
+    }
+
+    @Override
+    public String toString() {
+        return "{ flushes: " + getNumFlushes() + ", ingested bytes: " + getIngestedBytes() + ", merges: "
+                + getNumMerges() + ", merge read bytes: " + getMergeReadBytes() + ", merge written bytes: "
+                + getMergeWrittenBytes() + ", write amplification: " + getWriteAmplification() + ", searches: "
+                + getNumSearches() + ", read amplification: " + getReadAmplification() + " }";
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.hyracks.storage.am.lsm.common.impls;
+
+/**
+ * Keeps a single component per level: a new component is merged into the older components of its level, or of lower
+ * levels, until the next older component is in a higher level than the merged one. A search reads about one
+ * component per level, but a byte is written up to size-ratio times per level.
+ */
+public class LeveledMergePolicy extends AbstractSizeRatioMergePolicy {
+
+    @Override
+    protected int[] selectComponents(long[] sizes, int[] levels, long baseSize) {
+        long mergedSize = sizes[0];
+        int end = 1;
+        while (end < sizes.length && levels[end] <= getLevel(mergedSize, baseSize)) {
+            mergedSize += sizes[end];
+            end++;
+        }
+        return end > 1 ? new int[] { 0, end } : null;
+    }
+}
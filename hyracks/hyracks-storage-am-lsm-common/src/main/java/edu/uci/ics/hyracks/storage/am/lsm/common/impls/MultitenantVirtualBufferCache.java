@@ -14,6 +14,8 @@
  */
 package edu.uci.ics.hyracks.storage.am.lsm.common.impls;
 
+import java.util.List;
+
 import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
 import edu.uci.ics.hyracks.api.io.FileReference;
 import edu.uci.ics.hyracks.storage.am.lsm.common.api.IVirtualBufferCache;
@@ -60,6 +62,16 @@ public class MultitenantVirtualBufferCache implements IVirtualBufferCache {
         return vbc.pin(dpid, newPage);
     }
 
+    @Override
+    public ICachedPage pin(long dpid, boolean newPage, boolean sequential) throws HyracksDataException {
+        return vbc.pin(dpid, newPage, sequential);
+    }
+
+    @Override
+    public void prefetch(long dpid, int numPages) throws HyracksDataException {
+        vbc.prefetch(dpid, numPages);
+    }
+
     @Override
     public void unpin(ICachedPage page) throws HyracksDataException {
         vbc.unpin(page);
@@ -70,6 +82,11 @@ public class MultitenantVirtualBufferCache implements IVirtualBufferCache {
         vbc.flushDirtyPage(page);
     }
 
+    @Override
+    public void flushDirtyPages(List<ICachedPage> pages) throws HyracksDataException {
+        vbc.flushDirtyPages(pages);
+    }
+
     @Override
     public void force(int fileId, boolean metadata) throws HyracksDataException {
         vbc.force(fileId, metadata);
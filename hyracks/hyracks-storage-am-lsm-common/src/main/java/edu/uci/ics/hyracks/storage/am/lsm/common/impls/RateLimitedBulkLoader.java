@@ -0,0 +1,59 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.hyracks.storage.am.lsm.common.impls;
+
+import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
+import edu.uci.ics.hyracks.dataflow.common.data.accessors.ITupleReference;
+import edu.uci.ics.hyracks.storage.am.common.api.IIndexBulkLoader;
+import edu.uci.ics.hyracks.storage.am.common.api.IndexException;
+import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMIORateLimiter;
+
+/**
+ * A bulk loader that takes a page worth of tokens from a rate limiter for every page of tuples it adds, before the
+ * page is written, so that the writes of a merge are spread out at the rate limit rather than bursting.
+ */
+public class RateLimitedBulkLoader implements IIndexBulkLoader {
+    private final IIndexBulkLoader bulkLoader;
+    private final ILSMIORateLimiter rateLimiter;
+    private final int pageSize;
+    private long unchargedBytes;
+
+    public RateLimitedBulkLoader(IIndexBulkLoader bulkLoader, ILSMIORateLimiter rateLimiter, int pageSize) {
+        this.bulkLoader = bulkLoader;
+        this.rateLimiter = rateLimiter;
+        this.pageSize = pageSize;
+    }
+
+    @Override
+    public void add(ITupleReference tuple) throws IndexException, HyracksDataException {
+        for (int i = 0; i < tuple.getFieldCount(); i++) {
+            unchargedBytes += tuple.getFieldLength(i);
+        }
+        while (unchargedBytes >= pageSize) {
+            rateLimiter.acquire(pageSize);
+            unchargedBytes -= pageSize;
+        }
+        bulkLoader.add(tuple);
+    }
+
+    @Override
+    public void end() throws IndexException, HyracksDataException {
+        if (unchargedBytes > 0) {
+            rateLimiter.acquire(unchargedBytes);
+            unchargedBytes = 0;
+        }
+        bulkLoader.end();
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.hyracks.storage.am.lsm.common.impls;
+
+/**
+ * Lets up to size-ratio components accumulate in a level, and merges them into a single component of the next level
+ * once there are that many. A byte is written about once per level, but a search reads up to size-ratio components
+ * per level.
+ */
+public class TieredMergePolicy extends AbstractSizeRatioMergePolicy {
+
+    @Override
+    protected int[] selectComponents(long[] sizes, int[] levels, long baseSize) {
+        int componentsPerLevel = Math.max(2, (int) Math.ceil(sizeRatio));
+        int start = 0;
+        for (int i = 1; i <= levels.length; i++) {
+            if (i == levels.length || levels[i] != levels[start]) {
+                // The newest run of components of a level that is full.
+                if (i - start >= componentsPerLevel) {
+                    return new int[] { start, i };
+                }
+                start = i;
+            }
+        }
+        return null;
+    }
+}
@@ -17,6 +17,7 @@ package edu.uci.ics.hyracks.storage.am.lsm.common.impls;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -152,6 +153,17 @@ public class VirtualBufferCache implements IVirtualBufferCache {
         return pin(dpid, false);
     }
 
+    @Override
+    public ICachedPage pin(long dpid, boolean newPage, boolean sequential) throws HyracksDataException {
+        // Memory components are never evicted, so there is no replacement decision to hint.
+        return pin(dpid, newPage);
+    }
+
+    @Override
+    public void prefetch(long dpid, int numPages) throws HyracksDataException {
+        // Memory component pages are always resident.
+    }
+
     @Override
     public ICachedPage pin(long dpid, boolean newPage) throws HyracksDataException {
         VirtualPage page = null;
@@ -211,6 +223,10 @@ public class VirtualBufferCache implements IVirtualBufferCache {
     public void flushDirtyPage(ICachedPage page) throws HyracksDataException {
     }
 
+    @Override
+    public void flushDirtyPages(List<ICachedPage> pages) throws HyracksDataException {
+    }
+
     @Override
     public void force(int fileId, boolean metadata) throws HyracksDataException {
     }
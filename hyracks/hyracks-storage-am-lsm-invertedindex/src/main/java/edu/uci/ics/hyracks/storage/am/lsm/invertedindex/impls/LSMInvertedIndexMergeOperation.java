@@ -25,12 +25,13 @@ import edu.uci.ics.hyracks.api.io.IODeviceHandle;
 import edu.uci.ics.hyracks.storage.am.common.api.IIndexCursor;
 import edu.uci.ics.hyracks.storage.am.common.api.IndexException;
 import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMComponent;
-import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMIOOperation;
 import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMIOOperationCallback;
+import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMIORateLimiter;
 import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMIndexAccessorInternal;
+import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMMergeOperation;
 import edu.uci.ics.hyracks.storage.am.lsm.invertedindex.ondisk.OnDiskInvertedIndex;
 
-public class LSMInvertedIndexMergeOperation implements ILSMIOOperation {
+public class LSMInvertedIndexMergeOperation implements ILSMMergeOperation {
     private final ILSMIndexAccessorInternal accessor;
     private final List<ILSMComponent> mergingComponents;
     private final IIndexCursor cursor;
@@ -39,6 +40,7 @@ public class LSMInvertedIndexMergeOperation implements ILSMIOOperation {
     private final FileReference bloomFilterMergeTarget;
     private final ILSMIOOperationCallback callback;
     private final String indexIdentifier;
+    private ILSMIORateLimiter rateLimiter;
 
     public LSMInvertedIndexMergeOperation(ILSMIndexAccessorInternal accessor, List<ILSMComponent> mergingComponents,
             IIndexCursor cursor, FileReference dictBTreeMergeTarget, FileReference deletedKeysBTreeMergeTarget,
@@ -106,6 +108,16 @@ public class LSMInvertedIndexMergeOperation implements ILSMIOOperation {
         return mergingComponents;
     }
 
+    @Override
+    public ILSMIORateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    @Override
+    public void setRateLimiter(ILSMIORateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
     @Override
     public String getIndexUniqueIdentifier() {
         return indexIdentifier;
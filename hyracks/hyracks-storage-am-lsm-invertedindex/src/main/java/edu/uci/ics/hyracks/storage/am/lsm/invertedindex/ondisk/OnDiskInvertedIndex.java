@@ -19,6 +19,7 @@ import java.io.DataOutput;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 
+import edu.uci.ics.hyracks.api.comm.FrameHelper;
 import edu.uci.ics.hyracks.api.context.IHyracksCommonContext;
 import edu.uci.ics.hyracks.api.dataflow.value.IBinaryComparatorFactory;
 import edu.uci.ics.hyracks.api.dataflow.value.ITypeTraits;
@@ -563,6 +564,11 @@ public class OnDiskInvertedIndex implements IInvertedIndex {
             return ByteBuffer.allocate(FRAME_SIZE);
         }
 
+        @Override
+        public ByteBuffer allocateFrame(int bytes) {
+            return ByteBuffer.allocate(FrameHelper.getFrameCount(FRAME_SIZE, bytes) * FRAME_SIZE);
+        }
+
         @Override
         public void deallocateFrames(int frameCount) {
             // TODO Auto-generated method stub
@@ -299,7 +299,8 @@ public class ExternalRTree extends LSMRTree implements ITwoPCIndex {
             search(opCtx, btreeCursor, rtreeSearchPred);
 
             BTree btree = mergedComponent.getBTree();
-            IIndexBulkLoader btreeBulkLoader = btree.createBulkLoader(1.0f, true, 0L, false);
+            IIndexBulkLoader btreeBulkLoader = createRateLimitedBulkLoader(
+                    btree.createBulkLoader(1.0f, true, 0L, false), mergeOp);
 
             long numElements = 0L;
             for (int i = 0; i < mergeOp.getMergingComponents().size(); ++i) {
@@ -327,7 +328,8 @@ public class ExternalRTree extends LSMRTree implements ITwoPCIndex {
             btreeBulkLoader.end();
         }
 
-        IIndexBulkLoader bulkLoader = mergedComponent.getRTree().createBulkLoader(1.0f, false, 0L, false);
+        IIndexBulkLoader bulkLoader = createRateLimitedBulkLoader(
+                mergedComponent.getRTree().createBulkLoader(1.0f, false, 0L, false), mergeOp);
         try {
             while (cursor.hasNext()) {
                 cursor.next();
@@ -24,11 +24,12 @@ import edu.uci.ics.hyracks.api.io.IODeviceHandle;
 import edu.uci.ics.hyracks.storage.am.common.api.ITreeIndexCursor;
 import edu.uci.ics.hyracks.storage.am.common.api.IndexException;
 import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMComponent;
-import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMIOOperation;
 import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMIOOperationCallback;
+import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMIORateLimiter;
 import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMIndexAccessorInternal;
+import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMMergeOperation;
 
-public class LSMRTreeMergeOperation implements ILSMIOOperation {
+public class LSMRTreeMergeOperation implements ILSMMergeOperation {
     private final ILSMIndexAccessorInternal accessor;
     private final List<ILSMComponent> mergingComponents;
     private final ITreeIndexCursor cursor;
@@ -37,6 +38,7 @@ public class LSMRTreeMergeOperation implements ILSMIOOperation {
     private final FileReference bloomFilterMergeTarget;
     private final ILSMIOOperationCallback callback;
     private final String indexIdentifier;
+    private ILSMIORateLimiter rateLimiter;
     private boolean keepDeletedTuples;
 
     public LSMRTreeMergeOperation(ILSMIndexAccessorInternal accessor, List<ILSMComponent> mergingComponents,
@@ -108,6 +110,16 @@ public class LSMRTreeMergeOperation implements ILSMIOOperation {
         return mergingComponents;
     }
 
+    @Override
+    public ILSMIORateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    @Override
+    public void setRateLimiter(ILSMIORateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
     @Override
     public String getIndexUniqueIdentifier() {
         return indexIdentifier;
@@ -287,7 +287,8 @@ public class LSMRTreeWithAntiMatterTuples extends AbstractLSMRTree {
         LSMRTreeDiskComponent component = createDiskComponent(componentFactory, mergeOp.getRTreeMergeTarget(), null,
                 null, true);
         RTree mergedRTree = component.getRTree();
-        IIndexBulkLoader bulkloader = mergedRTree.createBulkLoader(1.0f, false, 0L, false);
+        IIndexBulkLoader bulkloader = createRateLimitedBulkLoader(
+                mergedRTree.createBulkLoader(1.0f, false, 0L, false), mergeOp);
         try {
             while (cursor.hasNext()) {
                 cursor.next();
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.hyracks.storage.common.buffercache;
+
+import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
+import edu.uci.ics.hyracks.storage.common.file.BufferedFileHandle;
+
+/**
+ * Adaptive read-ahead for cursors that walk the pages of a file. The read-ahead window starts out empty, doubles
+ * (up to a maximum) with every access to the page following the previously accessed one, and collapses again on a
+ * non-sequential access. Pages are prefetched in batches whenever less than half of the window is still ahead of the
+ * cursor, so that reads overlap with the processing of the current page.
+ */
+public class AdaptiveReadAhead {
+    public static final int DEFAULT_MAX_WINDOW = 64;
+
+    private static final int MIN_WINDOW = 4;
+
+    private final int maxWindow;
+    private int fileId = -1;
+    private int maxPageId = Integer.MAX_VALUE;
+    private int lastPageId = -1;
+    private int prefetchedPageId = -1;
+    private int window = 0;
+
+    public AdaptiveReadAhead() {
+        this(DEFAULT_MAX_WINDOW);
+    }
+
+    public AdaptiveReadAhead(int maxWindow) {
+        this.maxWindow = maxWindow;
+    }
+
+    /**
+     * Starts a new scan. maxPageId bounds the pages that will be prefetched, pass Integer.MAX_VALUE if the last page
+     * of the file is not known.
+     */
+    public void reset(int maxPageId) {
+        this.maxPageId = maxPageId;
+        fileId = -1;
+        lastPageId = -1;
+        prefetchedPageId = -1;
+        window = 0;
+    }
+
+    /**
+     * Must be called before the given page is pinned by the cursor.
+     */
+    public void notifyPageAccess(IBufferCache bufferCache, int fileId, int pageId) throws HyracksDataException {
+        if (maxWindow <= 0) {
+            return;
+        }
+        if (fileId != this.fileId || lastPageId < 0 || pageId != lastPageId + 1) {
+            this.fileId = fileId;
+            lastPageId = pageId;
+            prefetchedPageId = pageId;
+            window = 0;
+            return;
+        }
+        lastPageId = pageId;
+        window = Math.min(Math.max(window * 2, MIN_WINDOW), maxWindow);
+        if (prefetchedPageId - pageId >= window / 2) {
+            return;
+        }
+        int firstPageId = Math.max(pageId + 1, prefetchedPageId + 1);
+        int lastPrefetchPageId = (int) Math.min((long) pageId + window, maxPageId);
+        if (firstPageId <= lastPrefetchPageId) {
+            bufferCache.prefetch(BufferedFileHandle.getDiskPageId(fileId, firstPageId), lastPrefetchPageId
+                    - firstPageId + 1);
+            prefetchedPageId = lastPrefetchPageId;
+        }
+    }
+
+    public int getWindow() {
+        return window;
+    }
+}
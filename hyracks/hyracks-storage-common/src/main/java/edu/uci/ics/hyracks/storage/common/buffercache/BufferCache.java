@@ -16,12 +16,18 @@ package edu.uci.ics.hyracks.storage.common.buffercache;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
@@ -33,7 +39,9 @@ import java.util.logging.Logger;
 import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
 import edu.uci.ics.hyracks.api.io.FileReference;
 import edu.uci.ics.hyracks.api.io.IFileHandle;
+import edu.uci.ics.hyracks.api.io.IIOFuture;
 import edu.uci.ics.hyracks.api.io.IIOManager;
+import edu.uci.ics.hyracks.api.io.IIOManager.IOPriority;
 import edu.uci.ics.hyracks.api.lifecycle.ILifeCycleComponent;
 import edu.uci.ics.hyracks.storage.common.file.BufferedFileHandle;
 import edu.uci.ics.hyracks.storage.common.file.IFileMapManager;
@@ -44,11 +52,12 @@ public class BufferCache implements IBufferCacheInternal, ILifeCycleComponent {
 
     private static final int MIN_CLEANED_COUNT_DIFF = 3;
     private static final int PIN_MAX_WAIT_TIME = 50;
+    private static final int MAX_WRITE_BATCH_SIZE = 64;
 
     private final int pageSize;
     private final int maxOpenFiles;
     private final IIOManager ioManager;
-    private final CacheBucket[] pageMap;
+    final CacheBucket[] pageMap;
     private final IPageReplacementStrategy pageReplacementStrategy;
     private final IPageCleanerPolicy pageCleanerPolicy;
     private final IFileMapManager fileMapManager;
@@ -56,7 +65,8 @@ public class BufferCache implements IBufferCacheInternal, ILifeCycleComponent {
     private final Map<Integer, BufferedFileHandle> fileInfoMap;
     private final Set<Integer> virtualFiles;
 
-    private List<ICachedPageInternal> cachedPages = new ArrayList<ICachedPageInternal>();
+    private final List<ICachedPageInternal> cachedPages;
+    private final Queue<CachedPage> prefetchedPages;
 
     private boolean closed;
 
@@ -67,6 +77,7 @@ public class BufferCache implements IBufferCacheInternal, ILifeCycleComponent {
         this.pageSize = pageReplacementStrategy.getPageSize();
         this.maxOpenFiles = maxOpenFiles;
         pageReplacementStrategy.setBufferCache(this);
+        cachedPages = new ArrayList<ICachedPageInternal>(pageReplacementStrategy.getMaxAllowedNumPages());
         pageMap = new CacheBucket[pageReplacementStrategy.getMaxAllowedNumPages() * MAP_FACTOR];
         for (int i = 0; i < pageMap.length; ++i) {
             pageMap[i] = new CacheBucket();
@@ -78,6 +89,7 @@ public class BufferCache implements IBufferCacheInternal, ILifeCycleComponent {
         Executor executor = Executors.newCachedThreadPool(threadFactory);
         fileInfoMap = new HashMap<Integer, BufferedFileHandle>();
         virtualFiles = new HashSet<Integer>();
+        prefetchedPages = new ConcurrentLinkedQueue<CachedPage>();
         cleanerThread = new CleanerThread();
         executor.execute(cleanerThread);
         closed = false;
@@ -115,54 +127,167 @@ public class BufferCache implements IBufferCacheInternal, ILifeCycleComponent {
     public ICachedPage tryPin(long dpid) throws HyracksDataException {
         // Calling the pinSanityCheck should be used only for debugging, since the synchronized block over the fileInfoMap is a hot spot.
         //pinSanityCheck(dpid);
-        CachedPage cPage = null;
-        int hash = hash(dpid);
-        CacheBucket bucket = pageMap[hash];
-        bucket.bucketLock.lock();
-        try {
-            cPage = bucket.cachedPage;
-            while (cPage != null) {
-                if (cPage.dpid == dpid) {
-                    cPage.pinCount.incrementAndGet();
-                    pageReplacementStrategy.notifyCachePageAccess(cPage);
-                    return cPage;
-                }
-                cPage = cPage.next;
-            }
-        } finally {
-            bucket.bucketLock.unlock();
+        CachedPage cPage = lookupAndPin(dpid);
+        if (cPage != null) {
+            pageReplacementStrategy.notifyCachePageAccess(cPage);
         }
         return cPage;
     }
 
     @Override
     public ICachedPage pin(long dpid, boolean newPage) throws HyracksDataException {
+        return pin(dpid, newPage, false);
+    }
+
+    @Override
+    public ICachedPage pin(long dpid, boolean newPage, boolean sequential) throws HyracksDataException {
         // Calling the pinSanityCheck should be used only for debugging, since the synchronized block over the fileInfoMap is a hot spot.
         //pinSanityCheck(dpid);
-        CachedPage cPage = findPage(dpid, false);
+        CachedPage cPage = findPage(dpid, false, true);
         if (!newPage) {
-            // Resolve race of multiple threads trying to read the page from
-            // disk.
+            if (!cPage.valid) {
+                // Look up the file outside of the page's monitor, so that the monitor is never held while waiting
+                // for the fileInfoMap.
+                BufferedFileHandle fInfo = getFileInfo(cPage);
+                // Resolve race of multiple threads trying to read the page from
+                // disk.
+                synchronized (cPage) {
+                    if (!cPage.valid && cPage.pendingRead != null) {
+                        completePrefetch(cPage);
+                    }
+                    if (!cPage.valid) {
+                        read(cPage, fInfo);
+                        cPage.valid = true;
+                    }
+                }
+            }
+        } else {
+            // A pending read-ahead must be completed before the caller initializes the page, and the page must be
+            // marked valid under the monitor, so that no read-ahead is issued into it afterwards.
             synchronized (cPage) {
-                if (!cPage.valid) {
-                    read(cPage);
-                    cPage.valid = true;
+                if (cPage.pendingRead != null) {
+                    completePrefetch(cPage);
                 }
+                cPage.valid = true;
             }
+        }
+        if (sequential) {
+            pageReplacementStrategy.notifyCachePageSequentialAccess(cPage);
         } else {
-            cPage.valid = true;
+            pageReplacementStrategy.notifyCachePageAccess(cPage);
         }
-        pageReplacementStrategy.notifyCachePageAccess(cPage);
         return cPage;
     }
 
+    @Override
+    public void prefetch(long dpid, int numPages) throws HyracksDataException {
+        if (closed) {
+            throw new HyracksDataException("prefetch called on a closed cache");
+        }
+        int fileId = BufferedFileHandle.getFileId(dpid);
+        int pageId = BufferedFileHandle.getPageId(dpid);
+        BufferedFileHandle fInfo = null;
+        for (int i = 0; i < numPages; ++i) {
+            CachedPage cPage = findPage(BufferedFileHandle.getDiskPageId(fileId, pageId + i), false, false);
+            if (cPage == null) {
+                // Read-ahead is only a hint, so do not wait for the cleaner to free pages.
+                break;
+            }
+            boolean issued = false;
+            if (!cPage.valid) {
+                if (fInfo == null) {
+                    fInfo = getFileInfo(cPage);
+                }
+                synchronized (cPage) {
+                    // Skip pages pinned by others: they are either being read by a pin or pinned as new pages, which
+                    // a read-ahead would overwrite with stale contents.
+                    if (!cPage.valid && cPage.pendingRead == null && cPage.pinCount.get() == 1) {
+                        cPage.buffer.clear();
+                        cPage.pendingRead = ioManager.asyncRead(fInfo.getFileHandle(), (long) (pageId + i)
+                                * pageSize, cPage.buffer);
+                        issued = true;
+                    }
+                }
+            }
+            if (issued) {
+                // The pin is handed over to the pending read and released when the read is completed.
+                prefetchedPages.add(cPage);
+                pageReplacementStrategy.notifyCachePageSequentialAccess(cPage);
+            } else {
+                cPage.pinCount.decrementAndGet();
+            }
+        }
+        completePrefetches(-1, false);
+    }
+
+    /**
+     * Completes the pending prefetch read of the page and releases the pin held by it. The page is marked valid only
+     * if a full page was read, otherwise it is left to be read synchronously by the next pin. Must be called while
+     * holding the page's monitor.
+     */
+    private void completePrefetch(CachedPage cPage) {
+        IIOFuture pendingRead = cPage.pendingRead;
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    if (pendingRead.synchronize() == pageSize) {
+                        cPage.valid = true;
+                    }
+                    break;
+                } catch (InterruptedException e) {
+                    // The read still targets the page's buffer, so we cannot give up on it.
+                    interrupted = true;
+                } catch (HyracksDataException e) {
+                    if (LOGGER.isLoggable(Level.FINE)) {
+                        LOGGER.log(Level.FINE, "Prefetch of page " + cPage.dpid + " failed", e);
+                    }
+                    break;
+                }
+            }
+        } finally {
+            cPage.pendingRead = null;
+            cPage.pinCount.decrementAndGet();
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Releases prefetched pages whose reads have finished, so that pages that are never pinned become replaceable
+     * again. If wait is true, reads that are still in flight for the given file (or all files, if fileId is -1) are
+     * waited for.
+     */
+    private void completePrefetches(int fileId, boolean wait) {
+        Iterator<CachedPage> i = prefetchedPages.iterator();
+        while (i.hasNext()) {
+            CachedPage cPage = i.next();
+            IIOFuture pendingRead = cPage.pendingRead;
+            if (pendingRead == null) {
+                // Already completed by a pin.
+                i.remove();
+                continue;
+            }
+            boolean matches = fileId < 0 || BufferedFileHandle.getFileId(cPage.dpid) == fileId;
+            if ((wait && matches) || pendingRead.isComplete()) {
+                synchronized (cPage) {
+                    if (cPage.pendingRead != null) {
+                        completePrefetch(cPage);
+                    }
+                }
+                i.remove();
+            }
+        }
+    }
+
     @Override
     /**
      * Allocate and pin a virtual page. This is just like a normal page, except that it will never be flushed.
      */
     public ICachedPage pinVirtual(long vpid) throws HyracksDataException {
         //pinSanityCheck(vpid);
-        CachedPage cPage = findPage(vpid, true);
+        CachedPage cPage = findPage(vpid, true, true);
         cPage.virtual = true;
         return cPage;
     }
@@ -174,7 +299,7 @@ public class BufferCache implements IBufferCacheInternal, ILifeCycleComponent {
     //TODO: I should not have to copy the page. I should just append it to the end of the hash bucket, but this is
     //safer/easier for now.
     public ICachedPage unpinVirtual(long vpid, long dpid) throws HyracksDataException {
-        CachedPage virtPage = findPage(vpid, true); //should definitely succeed.
+        CachedPage virtPage = findPage(vpid, true, true); //should definitely succeed.
         //pinSanityCheck(dpid); //debug
         ICachedPage realPage = pin(dpid, false);
         virtPage.acquireReadLatch();
@@ -189,30 +314,47 @@ public class BufferCache implements IBufferCacheInternal, ILifeCycleComponent {
         return realPage;
     }
 
-    private CachedPage findPage(long dpid, boolean virtual) throws HyracksDataException {
+    /**
+     * Looks up the page with the given dpid in the page map and pins it.
+     *
+     * @return the pinned page, or null if the page is not cached
+     */
+    CachedPage lookupAndPin(long dpid) {
+        CacheBucket bucket = pageMap[hash(dpid)];
+        bucket.bucketLock.lock();
+        try {
+            CachedPage cPage = bucket.cachedPage;
+            while (cPage != null) {
+                if (cPage.dpid == dpid) {
+                    cPage.pinCount.incrementAndGet();
+                    return cPage;
+                }
+                cPage = cPage.next;
+            }
+        } finally {
+            bucket.bucketLock.unlock();
+        }
+        return null;
+    }
+
+    /**
+     * Finds the page with the given dpid, or assigns a victim page to it, and returns it pinned. If wait is false,
+     * null is returned instead of waiting for the cleaner when no victim is available.
+     */
+    private CachedPage findPage(long dpid, boolean virtual, boolean wait) throws HyracksDataException {
         while (true) {
             int startCleanedCount = cleanerThread.cleanedCount;
 
-            CachedPage cPage = null;
             /*
              * Hash dpid to get a bucket and then check if the page exists in
              * the bucket.
              */
+            CachedPage cPage = lookupAndPin(dpid);
+            if (cPage != null) {
+                return cPage;
+            }
             int hash = hash(dpid);
             CacheBucket bucket = pageMap[hash];
-            bucket.bucketLock.lock();
-            try {
-                cPage = bucket.cachedPage;
-                while (cPage != null) {
-                    if (cPage.dpid == dpid) {
-                        cPage.pinCount.incrementAndGet();
-                        return cPage;
-                    }
-                    cPage = cPage.next;
-                }
-            } finally {
-                bucket.bucketLock.unlock();
-            }
             /*
              * If we got here, the page was not in the hash table. Now we ask
              * the page replacement strategy to find us a victim.
@@ -276,6 +418,7 @@ public class BufferCache implements IBufferCacheInternal, ILifeCycleComponent {
                      * Case 2a.
                      */
                     bucket.bucketLock.lock();
+                    victim.beginReassign();
                     try {
                         if (victim.pinCount.get() != 1) {
                             victim.pinCount.decrementAndGet();
@@ -292,6 +435,7 @@ public class BufferCache implements IBufferCacheInternal, ILifeCycleComponent {
                         }
                         victim.reset(dpid);
                     } finally {
+                        victim.endReassign();
                         bucket.bucketLock.unlock();
                     }
                     return victim;
@@ -307,6 +451,7 @@ public class BufferCache implements IBufferCacheInternal, ILifeCycleComponent {
                         bucket.bucketLock.lock();
                         victimBucket.bucketLock.lock();
                     }
+                    victim.beginReassign();
                     try {
                         if (victim.pinCount.get() != 1) {
                             victim.pinCount.decrementAndGet();
@@ -335,12 +480,16 @@ public class BufferCache implements IBufferCacheInternal, ILifeCycleComponent {
                         victim.next = bucket.cachedPage;
                         bucket.cachedPage = victim;
                     } finally {
+                        victim.endReassign();
                         victimBucket.bucketLock.unlock();
                         bucket.bucketLock.unlock();
                     }
                     return victim;
                 }
             }
+            if (!wait) {
+                return null;
+            }
             synchronized (cleanerThread) {
                 pageCleanerPolicy.notifyVictimNotFound(cleanerThread);
             }
@@ -395,8 +544,7 @@ public class BufferCache implements IBufferCacheInternal, ILifeCycleComponent {
         return buffer.toString();
     }
 
-    private void read(CachedPage cPage) throws HyracksDataException {
-        BufferedFileHandle fInfo = getFileInfo(cPage);
+    private void read(CachedPage cPage, BufferedFileHandle fInfo) throws HyracksDataException {
         cPage.buffer.clear();
         ioManager.syncRead(fInfo.getFileHandle(), (long) BufferedFileHandle.getPageId(cPage.dpid) * pageSize,
                 cPage.buffer);
@@ -420,7 +568,29 @@ public class BufferCache implements IBufferCacheInternal, ILifeCycleComponent {
         cPage.buffer.position(0);
         cPage.buffer.limit(pageSize);
         ioManager.syncWrite(fInfo.getFileHandle(), (long) BufferedFileHandle.getPageId(cPage.dpid) * pageSize,
-                cPage.buffer);
+                cPage.buffer, IOPriority.BACKGROUND);
+    }
+
+    /**
+     * Writes the given pages, which must be consecutive pages of the same file, with a single gathering write.
+     */
+    private void write(CachedPage[] cPages, int numPages) throws HyracksDataException {
+        if (numPages == 1) {
+            write(cPages[0]);
+            return;
+        }
+        BufferedFileHandle fInfo = getFileInfo(cPages[0]);
+        if (fInfo.fileHasBeenDeleted()) {
+            return;
+        }
+        ByteBuffer[] buffers = new ByteBuffer[numPages];
+        for (int i = 0; i < numPages; ++i) {
+            buffers[i] = cPages[i].buffer;
+            buffers[i].position(0);
+            buffers[i].limit(pageSize);
+        }
+        ioManager.syncWrite(fInfo.getFileHandle(), (long) BufferedFileHandle.getPageId(cPages[0].dpid) * pageSize,
+                buffers, IOPriority.BACKGROUND);
     }
 
     @Override
@@ -431,13 +601,14 @@ public class BufferCache implements IBufferCacheInternal, ILifeCycleComponent {
         ((CachedPage) page).pinCount.decrementAndGet();
     }
 
-    private int hash(long dpid) {
+    int hash(long dpid) {
         return (int) (dpid % pageMap.length);
     }
 
-    private static class CacheBucket {
-        private final Lock bucketLock;
-        private CachedPage cachedPage;
+    static class CacheBucket {
+        final Lock bucketLock;
+        // Volatile, together with CachedPage.next, so that chains can be traversed without holding the bucket lock.
+        volatile CachedPage cachedPage;
 
         public CacheBucket() {
             bucketLock = new ReentrantLock();
@@ -449,6 +620,132 @@ public class BufferCache implements IBufferCacheInternal, ILifeCycleComponent {
         return cachedPages.get(cpid);
     }
 
+    private static class DirtyPage {
+        private CachedPage cPage;
+        // Snapshot of the page's dpid, so that the sort order is stable even if the page is cleaned and re-assigned
+        // concurrently.
+        private long dpid;
+    }
+
+    private static final Comparator<DirtyPage> DIRTY_PAGE_COMPARATOR = new Comparator<DirtyPage>() {
+        @Override
+        public int compare(DirtyPage a, DirtyPage b) {
+            return a.dpid < b.dpid ? -1 : (a.dpid == b.dpid ? 0 : 1);
+        }
+    };
+
+    /**
+     * Collects dirty pages, sorts them by file and page id, and writes runs of consecutive pages with gathering
+     * writes. Pages of a run are latched while the run is written; when forcing, only the first page of a run is
+     * latched with a blocking call, so that a batch never waits for a latch while holding others.
+     */
+    private class PageWriteBatch {
+        private final List<DirtyPage> dirtyPages = new ArrayList<DirtyPage>();
+        private final CachedPage[] run = new CachedPage[MAX_WRITE_BATCH_SIZE];
+        private int size;
+        private int runLength;
+        private boolean force;
+
+        public void add(CachedPage cPage) {
+            if (!cPage.dirty.get() || cPage.virtual) {
+                return;
+            }
+            if (size == dirtyPages.size()) {
+                dirtyPages.add(new DirtyPage());
+            }
+            DirtyPage dirtyPage = dirtyPages.get(size++);
+            dirtyPage.cPage = cPage;
+            dirtyPage.dpid = cPage.dpid;
+        }
+
+        public void flush(boolean force) {
+            this.force = force;
+            try {
+                Collections.sort(dirtyPages.subList(0, size), DIRTY_PAGE_COMPARATOR);
+                for (int i = 0; i < size; ++i) {
+                    DirtyPage dirtyPage = dirtyPages.get(i);
+                    CachedPage cPage = dirtyPage.cPage;
+                    if (runLength > 0) {
+                        CachedPage last = run[runLength - 1];
+                        if (runLength == MAX_WRITE_BATCH_SIZE || dirtyPage.dpid != last.dpid + 1
+                                || BufferedFileHandle.getFileId(dirtyPage.dpid) != BufferedFileHandle
+                                        .getFileId(last.dpid)) {
+                            writeRun();
+                        }
+                    }
+                    boolean latched;
+                    if (force) {
+                        latched = runLength > 0 && cPage.latch.writeLock().tryLock();
+                        if (!latched) {
+                            if (runLength > 0) {
+                                writeRun();
+                            }
+                            cPage.latch.writeLock().lock();
+                        }
+                    } else if (!cPage.latch.readLock().tryLock()) {
+                        if (cleanerThread.shutdownStart) {
+                            throw new IllegalStateException(
+                                    "Cache closed, but unable to acquire read lock on dirty page: " + cPage.dpid);
+                        }
+                        continue;
+                    }
+                    // Make sure page is still dirty and still holds the page we sorted it by.
+                    if (!cPage.dirty.get() || cPage.dpid != dirtyPage.dpid) {
+                        unlatch(cPage);
+                        continue;
+                    }
+                    run[runLength++] = cPage;
+                }
+                if (runLength > 0) {
+                    writeRun();
+                }
+            } finally {
+                for (int i = 0; i < runLength; ++i) {
+                    unlatch(run[i]);
+                    run[i] = null;
+                }
+                runLength = 0;
+                for (int i = 0; i < size; ++i) {
+                    dirtyPages.get(i).cPage = null;
+                }
+                size = 0;
+            }
+        }
+
+        private void writeRun() {
+            boolean cleaned = true;
+            try {
+                write(run, runLength);
+            } catch (HyracksDataException e) {
+                cleaned = false;
+            }
+            for (int i = 0; i < runLength; ++i) {
+                CachedPage cPage = run[i];
+                if (cleaned) {
+                    cPage.dirty.set(false);
+                    cPage.pinCount.decrementAndGet();
+                }
+                unlatch(cPage);
+                run[i] = null;
+            }
+            if (cleaned) {
+                cleanerThread.cleanedCount += runLength;
+                synchronized (cleanerThread.cleanNotification) {
+                    cleanerThread.cleanNotification.notifyAll();
+                }
+            }
+            runLength = 0;
+        }
+
+        private void unlatch(CachedPage cPage) {
+            if (force) {
+                cPage.latch.writeLock().unlock();
+            } else {
+                cPage.latch.readLock().unlock();
+            }
+        }
+    }
+
     private class CleanerThread extends Thread {
         private boolean shutdownStart = false;
         private boolean shutdownComplete = false;
@@ -460,54 +757,13 @@ public class BufferCache implements IBufferCacheInternal, ILifeCycleComponent {
         // way because it is used for heuristics.
         private int cleanedCount = 0;
 
+        private final PageWriteBatch writeBatch = new PageWriteBatch();
+
         public CleanerThread() {
             setPriority(MAX_PRIORITY);
             setDaemon(true);
         }
 
-        public void cleanPage(CachedPage cPage, boolean force) {
-            if (cPage.dirty.get() && !cPage.virtual) {
-                boolean proceed = false;
-                if (force) {
-                    cPage.latch.writeLock().lock();
-                    proceed = true;
-                } else {
-                    proceed = cPage.latch.readLock().tryLock();
-                }
-                if (proceed) {
-                    try {
-                        // Make sure page is still dirty.
-                        if (!cPage.dirty.get()) {
-                            return;
-                        }
-                        boolean cleaned = true;
-                        try {
-                            write(cPage);
-                        } catch (HyracksDataException e) {
-                            cleaned = false;
-                        }
-                        if (cleaned) {
-                            cPage.dirty.set(false);
-                            cPage.pinCount.decrementAndGet();
-                            cleanedCount++;
-                            synchronized (cleanNotification) {
-                                cleanNotification.notifyAll();
-                            }
-                        }
-                    } finally {
-                        if (force) {
-                            cPage.latch.writeLock().unlock();
-                        } else {
-                            cPage.latch.readLock().unlock();
-                        }
-                    }
-                } else if (shutdownStart) {
-                    throw new IllegalStateException("Cache closed, but unable to acquire read lock on dirty page: "
-                            + cPage.dpid);
-                }
-            }
-        }
-
         @Override
         public synchronized void run() {
             try {
@@ -515,9 +771,10 @@ public class BufferCache implements IBufferCacheInternal, ILifeCycleComponent {
                     pageCleanerPolicy.notifyCleanCycleStart(this);
                     int numPages = pageReplacementStrategy.getNumPages();
                     for (int i = 0; i < numPages; ++i) {
-                        CachedPage cPage = (CachedPage) cachedPages.get(i);
-                        cleanPage(cPage, false);
+                        writeBatch.add((CachedPage) cachedPages.get(i));
                     }
+                    writeBatch.flush(false);
+                    completePrefetches(-1, false);
                     if (shutdownStart) {
                         break;
                     }
@@ -637,6 +894,7 @@ public class BufferCache implements IBufferCacheInternal, ILifeCycleComponent {
     }
 
     private void sweepAndFlush(int fileId, boolean flushDirtyPages) throws HyracksDataException {
+        completePrefetches(fileId, true);
         for (int i = 0; i < pageMap.length; ++i) {
             CacheBucket bucket = pageMap[i];
             bucket.bucketLock.lock();
@@ -672,19 +930,25 @@ public class BufferCache implements IBufferCacheInternal, ILifeCycleComponent {
             throws HyracksDataException {
         if (BufferedFileHandle.getFileId(cPage.dpid) == fileId) {
             int pinCount = -1;
-            if (cPage.dirty.get()) {
-                if (flushDirtyPages) {
-                    write(cPage);
+            cPage.beginReassign();
+            try {
+                if (cPage.dirty.get()) {
+                    if (flushDirtyPages) {
+                        write(cPage);
+                    }
+                    cPage.dirty.set(false);
+                    pinCount = cPage.pinCount.decrementAndGet();
+                } else {
+                    pinCount = cPage.pinCount.get();
                 }
-                cPage.dirty.set(false);
-                pinCount = cPage.pinCount.decrementAndGet();
-            } else {
-                pinCount = cPage.pinCount.get();
-            }
-            if (pinCount > 0) {
-                throw new IllegalStateException("Page is pinned and file is being closed. Pincount is: " + pinCount);
+                if (pinCount > 0) {
+                    throw new IllegalStateException("Page is pinned and file is being closed. Pincount is: "
+                            + pinCount);
+                }
+                cPage.invalidate();
+            } finally {
+                cPage.endReassign();
             }
-            cPage.invalidate();
             return true;
         }
         return false;
@@ -716,7 +980,19 @@ public class BufferCache implements IBufferCacheInternal, ILifeCycleComponent {
     @Override
     public void flushDirtyPage(ICachedPage page) throws HyracksDataException {
         // Assumes the caller has pinned the page.
-        cleanerThread.cleanPage((CachedPage) page, true);
+        PageWriteBatch writeBatch = new PageWriteBatch();
+        writeBatch.add((CachedPage) page);
+        writeBatch.flush(true);
+    }
+
+    @Override
+    public void flushDirtyPages(List<ICachedPage> pages) throws HyracksDataException {
+        // Assumes the caller has pinned the pages.
+        PageWriteBatch writeBatch = new PageWriteBatch();
+        for (int i = 0; i < pages.size(); ++i) {
+            writeBatch.add((CachedPage) pages.get(i));
+        }
+        writeBatch.flush(true);
     }
 
     @Override
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.hyracks.storage.common.buffercache;
+
+import java.util.concurrent.ThreadFactory;
+
+import edu.uci.ics.hyracks.api.io.IIOManager;
+import edu.uci.ics.hyracks.storage.common.file.IFileMapManager;
+
+/**
+ * Builds the buffer cache of a node with the implementation selected by configuration. If the system property
+ * {@value #REPLACEMENT_PROPERTY} is {@value #SCAN_RESISTANT_REPLACEMENT}, the cache is a {@link BufferCache} with a
+ * {@link ScanResistantClockPageReplacementStrategy}, which keeps the pages of sequential pins on probation. Otherwise,
+ * if the system property {@value #CLOCK_PARTITIONS_PROPERTY} is set to a positive number of clock partitions, the
+ * cache is an {@link OptimisticBufferCache} with a {@link PartitionedClockPageReplacementStrategy} of that many
+ * partitions. Otherwise it is a {@link BufferCache} with a {@link ClockPageReplacementStrategy}.
+ */
+public class BufferCacheFactory {
+    public static final String REPLACEMENT_PROPERTY = "hyracks.buffercache.replacement";
+    public static final String CLOCK_REPLACEMENT = "clock";
+    public static final String SCAN_RESISTANT_REPLACEMENT = "2q";
+    public static final String CLOCK_PARTITIONS_PROPERTY = "hyracks.buffercache.clockpartitions";
+
+    private BufferCacheFactory() {
+    }
+
+    public static BufferCache createBufferCache(IIOManager ioManager, ICacheMemoryAllocator allocator, int pageSize,
+            int numPages, IPageCleanerPolicy pageCleanerPolicy, IFileMapManager fileMapManager, int maxOpenFiles,
+            ThreadFactory threadFactory) {
+        return createBufferCache(ioManager, allocator, pageSize, numPages, pageCleanerPolicy, fileMapManager,
+                maxOpenFiles, threadFactory, System.getProperty(REPLACEMENT_PROPERTY, CLOCK_REPLACEMENT),
+                Integer.getInteger(CLOCK_PARTITIONS_PROPERTY, 0));
+    }
+
+    /**
+     * @param clockPartitions
+     *            the number of clock partitions of an optimistic buffer cache, or 0 for the default buffer cache
+     */
+    public static BufferCache createBufferCache(IIOManager ioManager, ICacheMemoryAllocator allocator, int pageSize,
+            int numPages, IPageCleanerPolicy pageCleanerPolicy, IFileMapManager fileMapManager, int maxOpenFiles,
+            ThreadFactory threadFactory, int clockPartitions) {
+        return createBufferCache(ioManager, allocator, pageSize, numPages, pageCleanerPolicy, fileMapManager,
+                maxOpenFiles, threadFactory, CLOCK_REPLACEMENT, clockPartitions);
+    }
+
+    /**
+     * @param replacement
+     *            {@value #CLOCK_REPLACEMENT} or {@value #SCAN_RESISTANT_REPLACEMENT}
+     * @param clockPartitions
+     *            the number of clock partitions of an optimistic buffer cache, or 0 for the default buffer cache;
+     *            only used with {@value #CLOCK_REPLACEMENT}
+     */
+    public static BufferCache createBufferCache(IIOManager ioManager, ICacheMemoryAllocator allocator, int pageSize,
+            int numPages, IPageCleanerPolicy pageCleanerPolicy, IFileMapManager fileMapManager, int maxOpenFiles,
+            ThreadFactory threadFactory, String replacement, int clockPartitions) {
+        if (SCAN_RESISTANT_REPLACEMENT.equals(replacement)) {
+            return new BufferCache(ioManager, new ScanResistantClockPageReplacementStrategy(allocator, pageSize,
+                    numPages), pageCleanerPolicy, fileMapManager, maxOpenFiles, threadFactory);
+        }
+        if (!CLOCK_REPLACEMENT.equals(replacement)) {
+            throw new IllegalArgumentException("Unknown page replacement strategy: " + replacement);
+        }
+        if (clockPartitions > 0) {
+            return new OptimisticBufferCache(ioManager, new PartitionedClockPageReplacementStrategy(allocator,
+                    pageSize, numPages, clockPartitions), pageCleanerPolicy, fileMapManager, maxOpenFiles,
+                    threadFactory);
+        }
+        return new BufferCache(ioManager, new ClockPageReplacementStrategy(allocator, pageSize, numPages),
+                pageCleanerPolicy, fileMapManager, maxOpenFiles, threadFactory);
+    }
+}
@@ -20,6 +20,8 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import edu.uci.ics.hyracks.api.io.IIOFuture;
+
 /**
  * @author yingyib
  */
@@ -29,12 +31,18 @@ class CachedPage implements ICachedPageInternal {
     final AtomicInteger pinCount;
     final AtomicBoolean dirty;
     final ReadWriteLock latch;
+    // Even while the page is stably mapped to its dpid, odd while it is being re-assigned. Lets lock-free readers
+    // validate a pin taken without holding the bucket lock.
+    final AtomicInteger version;
     private final Object replacementStrategyObject;
     private final IPageReplacementStrategy pageReplacementStrategy;
     volatile long dpid;
-    CachedPage next;
+    volatile CachedPage next;
     volatile boolean valid;
     volatile boolean virtual;
+    // Outstanding prefetch read into the buffer, guarded by the page's monitor. The page holds an extra pin while
+    // the read is pending.
+    volatile IIOFuture pendingRead;
 
     public CachedPage(int cpid, ByteBuffer buffer, IPageReplacementStrategy pageReplacementStrategy) {
         this.cpid = cpid;
@@ -43,6 +51,7 @@ class CachedPage implements ICachedPageInternal {
         pinCount = new AtomicInteger();
         dirty = new AtomicBoolean();
         latch = new ReentrantReadWriteLock(true);
+        version = new AtomicInteger();
         replacementStrategyObject = pageReplacementStrategy.createPerPageStrategyObject(cpid);
         dpid = -1;
         valid = false;
@@ -60,11 +69,28 @@ class CachedPage implements ICachedPageInternal {
         reset(-1);
     }
 
+    /**
+     * Must be called before checking the pin count of a page that is about to be re-assigned or invalidated, and
+     * must be paired with a call to {@link #endReassign()}.
+     */
+    void beginReassign() {
+        version.incrementAndGet();
+    }
+
+    void endReassign() {
+        version.incrementAndGet();
+    }
+
     @Override
     public ByteBuffer getBuffer() {
         return buffer;
     }
 
+    @Override
+    public long getDiskPageId() {
+        return dpid;
+    }
+
     @Override
     public Object getReplacementStrategyObject() {
         return replacementStrategyObject;
@@ -57,6 +57,12 @@ public class ClockPageReplacementStrategy implements IPageReplacementStrategy {
         getPerPageObject(cPage).set(true);
     }
 
+    @Override
+    public void notifyCachePageSequentialAccess(ICachedPageInternal cPage) {
+        // The clock does not tell scans apart: a sequential pin sets the reference bit like any other pin.
+        notifyCachePageAccess(cPage);
+    }
+
     @Override
     public ICachedPageInternal findVictim() {
         lock.lock();
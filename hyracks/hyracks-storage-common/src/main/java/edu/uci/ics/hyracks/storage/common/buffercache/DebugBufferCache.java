@@ -15,6 +15,7 @@
 
 package edu.uci.ics.hyracks.storage.common.buffercache;
 
+import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
 
 import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
@@ -82,6 +83,18 @@ public class DebugBufferCache implements IBufferCache {
         return page;
     }
 
+    @Override
+    public ICachedPage pin(long dpid, boolean newPage, boolean sequential) throws HyracksDataException {
+        ICachedPage page = bufferCache.pin(dpid, newPage, sequential);
+        pinCount.addAndGet(1);
+        return page;
+    }
+
+    @Override
+    public void prefetch(long dpid, int numPages) throws HyracksDataException {
+        bufferCache.prefetch(dpid, numPages);
+    }
+
     @Override
     public void unpin(ICachedPage page) throws HyracksDataException {
         bufferCache.unpin(page);
@@ -161,6 +174,11 @@ public class DebugBufferCache implements IBufferCache {
         bufferCache.flushDirtyPage(page);
     }
 
+    @Override
+    public void flushDirtyPages(List<ICachedPage> pages) throws HyracksDataException {
+        bufferCache.flushDirtyPages(pages);
+    }
+
     @Override
     public void force(int fileId, boolean metadata) throws HyracksDataException {
         bufferCache.force(fileId, metadata);
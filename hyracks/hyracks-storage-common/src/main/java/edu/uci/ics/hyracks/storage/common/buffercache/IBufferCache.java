@@ -14,6 +14,8 @@
  */
 package edu.uci.ics.hyracks.storage.common.buffercache;
 
+import java.util.List;
+
 import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
 import edu.uci.ics.hyracks.api.io.FileReference;
 
@@ -34,6 +36,19 @@ public interface IBufferCache {
 
     public ICachedPage pin(long dpid, boolean newPage) throws HyracksDataException;
 
+    /**
+     * Same as {@link #pin(long, boolean)}, but a sequential pin tells the buffer cache that the page is read as part
+     * of a scan (e.g. a disk-order scan or a merge) and must not be treated as a re-reference of the page.
+     */
+    public ICachedPage pin(long dpid, boolean newPage, boolean sequential) throws HyracksDataException;
+
+    /**
+     * Asynchronously reads up to numPages consecutive pages of a file, starting at dpid, into the buffer cache
+     * without pinning them for the caller. Pages that are already cached are skipped, and read-ahead stops early
+     * when no free page is available without waiting for the cleaner.
+     */
+    public void prefetch(long dpid, int numPages) throws HyracksDataException;
+
     public ICachedPage pinVirtual(long vpid) throws HyracksDataException;
 
     public ICachedPage unpinVirtual(long vpid, long dpid) throws HyracksDataException;
@@ -42,6 +57,11 @@ public interface IBufferCache {
 
     public void flushDirtyPage(ICachedPage page) throws HyracksDataException;
 
+    /**
+     * Flushes the given pinned pages, coalescing dirty pages that are consecutive in their file into single writes.
+     */
+    public void flushDirtyPages(List<ICachedPage> pages) throws HyracksDataException;
+
     public void force(int fileId, boolean metadata) throws HyracksDataException;
 
     public int getPageSize();
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.hyracks.storage.common.buffercache;
+
+import java.util.concurrent.ThreadFactory;
+
+import edu.uci.ics.hyracks.api.io.IIOManager;
+import edu.uci.ics.hyracks.storage.common.file.IFileMapManager;
+
+/**
+ * A {@link BufferCache} whose hit path does not take the bucket lock. A page found in the page map is pinned with an
+ * atomic increment of its pin count and the pin is then validated against the page's version, which is moved to an
+ * odd value by any thread that re-assigns or invalidates the page before it checks the pin count. Either the reader
+ * observes the version change and backs off, or the evicting thread observes the extra pin and gives up the victim.
+ * Misses, and hits that fail validation too often, fall back to the locked path of {@link BufferCache}.
+ * Best combined with a {@link PartitionedClockPageReplacementStrategy} so that eviction does not serialize either;
+ * {@link BufferCacheFactory} builds that combination when it is configured.
+ */
+public class OptimisticBufferCache extends BufferCache {
+    private static final int MAX_OPTIMISTIC_ATTEMPTS = 4;
+
+    public OptimisticBufferCache(IIOManager ioManager, IPageReplacementStrategy pageReplacementStrategy,
+            IPageCleanerPolicy pageCleanerPolicy, IFileMapManager fileMapManager, int maxOpenFiles,
+            ThreadFactory threadFactory) {
+        super(ioManager, pageReplacementStrategy, pageCleanerPolicy, fileMapManager, maxOpenFiles, threadFactory);
+    }
+
+    @Override
+    CachedPage lookupAndPin(long dpid) {
+        CacheBucket bucket = pageMap[hash(dpid)];
+        for (int i = 0; i < MAX_OPTIMISTIC_ATTEMPTS; ++i) {
+            CachedPage cPage = bucket.cachedPage;
+            while (cPage != null && cPage.dpid != dpid) {
+                cPage = cPage.next;
+            }
+            if (cPage == null) {
+                // Either not cached, or we raced with a page moving between chains. Let the locked path decide.
+                break;
+            }
+            int version = cPage.version.get();
+            if ((version & 1) != 0) {
+                continue;
+            }
+            cPage.pinCount.incrementAndGet();
+            if (cPage.version.get() == version && cPage.dpid == dpid) {
+                return cPage;
+            }
+            cPage.pinCount.decrementAndGet();
+        }
+        return super.lookupAndPin(dpid);
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.hyracks.storage.common.buffercache;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A clock replacement strategy whose pages are striped over a number of partitions, each with its own clock hand and
+ * lock. Page cpid belongs to partition (cpid % numPartitions). A thread looking for a victim starts at a partition
+ * derived from its id and only moves on to (and eventually blocks on) other partitions when its own partition is
+ * contended or has no evictable page, so concurrent evictions on different partitions do not serialize.
+ */
+public class PartitionedClockPageReplacementStrategy implements IPageReplacementStrategy {
+    private static final int MAX_UNSUCCESSFUL_CYCLE_COUNT = 3;
+
+    private final Lock allocationLock;
+    private final ClockPartition[] partitions;
+    private IBufferCacheInternal bufferCache;
+    private final ICacheMemoryAllocator allocator;
+    private volatile int numPages = 0;
+    private final int pageSize;
+    private final int maxAllowedNumPages;
+
+    public PartitionedClockPageReplacementStrategy(ICacheMemoryAllocator allocator, int pageSize,
+            int maxAllowedNumPages) {
+        this(allocator, pageSize, maxAllowedNumPages, Runtime.getRuntime().availableProcessors());
+    }
+
+    public PartitionedClockPageReplacementStrategy(ICacheMemoryAllocator allocator, int pageSize,
+            int maxAllowedNumPages, int numPartitions) {
+        if (numPartitions <= 0) {
+            throw new IllegalArgumentException("Number of clock partitions must be positive: " + numPartitions);
+        }
+        this.allocationLock = new ReentrantLock();
+        this.allocator = allocator;
+        this.pageSize = pageSize;
+        this.maxAllowedNumPages = maxAllowedNumPages;
+        partitions = new ClockPartition[Math.max(1, Math.min(numPartitions, maxAllowedNumPages))];
+        for (int i = 0; i < partitions.length; ++i) {
+            partitions[i] = new ClockPartition(i);
+        }
+    }
+
+    @Override
+    public Object createPerPageStrategyObject(int cpid) {
+        return new AtomicBoolean();
+    }
+
+    @Override
+    public void setBufferCache(IBufferCacheInternal bufferCache) {
+        this.bufferCache = bufferCache;
+    }
+
+    @Override
+    public void notifyCachePageReset(ICachedPageInternal cPage) {
+        getPerPageObject(cPage).set(false);
+    }
+
+    @Override
+    public void notifyCachePageAccess(ICachedPageInternal cPage) {
+        getPerPageObject(cPage).set(true);
+    }
+
+    @Override
+    public void notifyCachePageSequentialAccess(ICachedPageInternal cPage) {
+        // The clock does not tell scans apart: a sequential pin sets the reference bit like any other pin.
+        notifyCachePageAccess(cPage);
+    }
+
+    @Override
+    public ICachedPageInternal findVictim() {
+        if (numPages < maxAllowedNumPages) {
+            allocationLock.lock();
+            try {
+                if (numPages < maxAllowedNumPages) {
+                    return allocatePage();
+                }
+            } finally {
+                allocationLock.unlock();
+            }
+        }
+        int start = (int) (Thread.currentThread().getId() % partitions.length);
+        // First pass: only visit partitions that nobody else is sweeping.
+        for (int i = 0; i < partitions.length; ++i) {
+            ClockPartition partition = partitions[(start + i) % partitions.length];
+            if (partition.lock.tryLock()) {
+                try {
+                    ICachedPageInternal cPage = partition.findVictimByEviction();
+                    if (cPage != null) {
+                        return cPage;
+                    }
+                } finally {
+                    partition.lock.unlock();
+                }
+            }
+        }
+        // Second pass: wait for the contended partitions as well.
+        for (int i = 0; i < partitions.length; ++i) {
+            ClockPartition partition = partitions[(start + i) % partitions.length];
+            partition.lock.lock();
+            try {
+                ICachedPageInternal cPage = partition.findVictimByEviction();
+                if (cPage != null) {
+                    return cPage;
+                }
+            } finally {
+                partition.lock.unlock();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public int getNumPages() {
+        return numPages;
+    }
+
+    private ICachedPageInternal allocatePage() {
+        CachedPage cPage = new CachedPage(numPages, allocator.allocate(pageSize, 1)[0], this);
+        bufferCache.addPage(cPage);
+        numPages++;
+        AtomicBoolean accessedFlag = getPerPageObject(cPage);
+        if (!accessedFlag.compareAndSet(true, false)) {
+            if (cPage.pinIfGoodVictim()) {
+                return cPage;
+            }
+        }
+        return null;
+    }
+
+    private AtomicBoolean getPerPageObject(ICachedPageInternal cPage) {
+        return (AtomicBoolean) cPage.getReplacementStrategyObject();
+    }
+
+    @Override
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    @Override
+    public int getMaxAllowedNumPages() {
+        return maxAllowedNumPages;
+    }
+
+    public int getNumPartitions() {
+        return partitions.length;
+    }
+
+    private class ClockPartition {
+        private final Lock lock;
+        private final int partition;
+        // Index into the pages of this partition, i.e. the clock points at cpid (partition + clockPtr * numPartitions).
+        private int clockPtr;
+
+        public ClockPartition(int partition) {
+            this.lock = new ReentrantLock();
+            this.partition = partition;
+            clockPtr = 0;
+        }
+
+        private ICachedPageInternal findVictimByEviction() {
+            int partitionNumPages = (numPages - partition + partitions.length - 1) / partitions.length;
+            if (partitionNumPages <= 0) {
+                return null;
+            }
+            if (clockPtr >= partitionNumPages) {
+                clockPtr = 0;
+            }
+            int startClockPtr = clockPtr;
+            int cycleCount = 0;
+            do {
+                ICachedPageInternal cPage = bufferCache.getPage(partition + clockPtr * partitions.length);
+                AtomicBoolean accessedFlag = getPerPageObject(cPage);
+                if (!accessedFlag.compareAndSet(true, false)) {
+                    if (cPage.pinIfGoodVictim()) {
+                        return cPage;
+                    }
+                }
+                clockPtr = (clockPtr + 1) % partitionNumPages;
+                if (clockPtr == startClockPtr) {
+                    ++cycleCount;
+                }
+            } while (cycleCount < MAX_UNSUCCESSFUL_CYCLE_COUNT);
+            return null;
+        }
+    }
+}
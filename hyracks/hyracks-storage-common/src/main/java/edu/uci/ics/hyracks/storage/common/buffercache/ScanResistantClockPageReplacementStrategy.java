@@ -0,0 +1,250 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.hyracks.storage.common.buffercache;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A 2Q-style replacement strategy implemented on top of a single clock. A page enters the cache on probation and is
+ * only promoted to the protected set when it is referenced again after its first access. Sequential accesses (see
+ * {@link IBufferCache#pin(long, boolean, boolean)}) never count as a re-reference, so the pages of a disk-order scan
+ * or a merge stay on probation and are the first to be evicted, while hot pages such as B-tree interior nodes stay
+ * protected. Protected pages get a second chance through their referenced bit and are demoted to probation when the
+ * protected set grows beyond its share of the cache; they are only evicted directly when no probationary page can be.
+ * As in 2Q, the dpids of recently evicted probationary pages are remembered, so a page that is read again shortly
+ * after it was evicted is promoted right away.
+ */
+public class ScanResistantClockPageReplacementStrategy implements IPageReplacementStrategy {
+    private static final int MAX_UNSUCCESSFUL_CYCLE_COUNT = 3;
+    private static final double DEFAULT_PROTECTED_FRACTION = 0.75;
+    private static final double GHOST_FRACTION = 0.5;
+
+    // Per-page state bits.
+    private static final int SEEN = 0x1;
+    private static final int REFERENCED = 0x2;
+    private static final int PROTECTED = 0x4;
+    private static final int GHOST = 0x8;
+
+    private final Lock lock;
+    private IBufferCacheInternal bufferCache;
+    private int clockPtr;
+    private final ICacheMemoryAllocator allocator;
+    private int numPages = 0;
+    private final int pageSize;
+    private final int maxAllowedNumPages;
+    private final int maxProtectedPages;
+    private final AtomicInteger protectedPages;
+    // dpids of recently evicted probationary pages, oldest first.
+    private final LinkedHashSet<Long> ghosts;
+    private final int maxGhosts;
+
+    public ScanResistantClockPageReplacementStrategy(ICacheMemoryAllocator allocator, int pageSize,
+            int maxAllowedNumPages) {
+        this(allocator, pageSize, maxAllowedNumPages, DEFAULT_PROTECTED_FRACTION);
+    }
+
+    public ScanResistantClockPageReplacementStrategy(ICacheMemoryAllocator allocator, int pageSize,
+            int maxAllowedNumPages, double protectedFraction) {
+        if (protectedFraction <= 0 || protectedFraction >= 1) {
+            throw new IllegalArgumentException("Protected fraction must be in (0, 1): " + protectedFraction);
+        }
+        this.lock = new ReentrantLock();
+        this.allocator = allocator;
+        this.pageSize = pageSize;
+        this.maxAllowedNumPages = maxAllowedNumPages;
+        this.maxProtectedPages = (int) (maxAllowedNumPages * protectedFraction);
+        this.protectedPages = new AtomicInteger();
+        this.ghosts = new LinkedHashSet<Long>();
+        this.maxGhosts = Math.max(1, (int) (maxAllowedNumPages * GHOST_FRACTION));
+        clockPtr = 0;
+    }
+
+    @Override
+    public Object createPerPageStrategyObject(int cpid) {
+        return new PageState();
+    }
+
+    @Override
+    public void setBufferCache(IBufferCacheInternal bufferCache) {
+        this.bufferCache = bufferCache;
+    }
+
+    @Override
+    public void notifyCachePageReset(ICachedPageInternal cPage) {
+        PageState pageState = getPerPageObject(cPage);
+        long dpid = cPage.getDiskPageId();
+        int newState = 0;
+        synchronized (ghosts) {
+            if (dpid >= 0 && ghosts.remove(dpid)) {
+                newState = GHOST;
+            }
+            int state = pageState.state.getAndSet(newState);
+            if ((state & PROTECTED) != 0) {
+                protectedPages.decrementAndGet();
+            } else if ((state & SEEN) != 0 && pageState.dpid >= 0) {
+                ghosts.add(pageState.dpid);
+                if (ghosts.size() > maxGhosts) {
+                    Iterator<Long> oldest = ghosts.iterator();
+                    oldest.next();
+                    oldest.remove();
+                }
+            }
+            pageState.dpid = dpid;
+        }
+    }
+
+    @Override
+    public void notifyCachePageAccess(ICachedPageInternal cPage) {
+        AtomicInteger state = getPerPageObject(cPage).state;
+        while (true) {
+            int s = state.get();
+            int newS;
+            if ((s & GHOST) != 0) {
+                newS = (s & ~GHOST) | SEEN | PROTECTED;
+            } else if ((s & SEEN) == 0) {
+                newS = s | SEEN;
+            } else {
+                newS = s | REFERENCED;
+            }
+            if (newS == s) {
+                return;
+            }
+            if (state.compareAndSet(s, newS)) {
+                if ((newS & PROTECTED) != 0 && (s & PROTECTED) == 0) {
+                    protectedPages.incrementAndGet();
+                }
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void notifyCachePageSequentialAccess(ICachedPageInternal cPage) {
+        AtomicInteger state = getPerPageObject(cPage).state;
+        while (true) {
+            int s = state.get();
+            int newS = (s & ~GHOST) | SEEN;
+            if (newS == s || state.compareAndSet(s, newS)) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public ICachedPageInternal findVictim() {
+        lock.lock();
+        ICachedPageInternal cachedPage = null;
+        try {
+            if (numPages >= maxAllowedNumPages) {
+                cachedPage = findVictimByEviction();
+            } else {
+                cachedPage = allocatePage();
+            }
+        } finally {
+            lock.unlock();
+        }
+        return cachedPage;
+    }
+
+    private ICachedPageInternal findVictimByEviction() {
+        int startClockPtr = clockPtr;
+        int cycleCount = 0;
+        do {
+            ICachedPageInternal cPage = bufferCache.getPage(clockPtr);
+            AtomicInteger state = getPerPageObject(cPage).state;
+            int s = state.get();
+            if ((s & PROTECTED) != 0) {
+                if ((s & REFERENCED) != 0) {
+                    // Second chance.
+                    state.compareAndSet(s, s & ~REFERENCED);
+                } else if (protectedPages.get() > maxProtectedPages) {
+                    if (state.compareAndSet(s, s & ~PROTECTED)) {
+                        protectedPages.decrementAndGet();
+                    }
+                } else if (cycleCount > 0 && cPage.pinIfGoodVictim()) {
+                    // A full cycle did not turn up an evictable probationary page.
+                    clockPtr = (clockPtr + 1) % numPages;
+                    return cPage;
+                }
+            } else {
+                if ((s & REFERENCED) != 0) {
+                    // Re-referenced while on probation.
+                    if (state.compareAndSet(s, (s & ~REFERENCED) | PROTECTED)) {
+                        protectedPages.incrementAndGet();
+                    }
+                } else if (cPage.pinIfGoodVictim()) {
+                    // Move on, the new page will not have its first access recorded as a reference.
+                    clockPtr = (clockPtr + 1) % numPages;
+                    return cPage;
+                }
+            }
+            clockPtr = (clockPtr + 1) % numPages;
+            if (clockPtr == startClockPtr) {
+                ++cycleCount;
+            }
+        } while (cycleCount < MAX_UNSUCCESSFUL_CYCLE_COUNT);
+        return null;
+    }
+
+    @Override
+    public int getNumPages() {
+        int retNumPages = 0;
+        lock.lock();
+        try {
+            retNumPages = numPages;
+        } finally {
+            lock.unlock();
+        }
+        return retNumPages;
+    }
+
+    private ICachedPageInternal allocatePage() {
+        CachedPage cPage = new CachedPage(numPages, allocator.allocate(pageSize, 1)[0], this);
+        bufferCache.addPage(cPage);
+        numPages++;
+        if (cPage.pinIfGoodVictim()) {
+            return cPage;
+        }
+        return null;
+    }
+
+    private PageState getPerPageObject(ICachedPageInternal cPage) {
+        return (PageState) cPage.getReplacementStrategyObject();
+    }
+
+    @Override
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    @Override
+    public int getMaxAllowedNumPages() {
+        return maxAllowedNumPages;
+    }
+
+    public int getNumProtectedPages() {
+        return protectedPages.get();
+    }
+
+    private static class PageState {
+        private final AtomicInteger state = new AtomicInteger();
+        // The dpid the page held when it was last reset, guarded by the ghosts monitor.
+        private long dpid = -1;
+    }
+}
@@ -17,10 +17,12 @@ package edu.uci.ics.hyracks.test.support;
 import java.nio.ByteBuffer;
 
 import edu.uci.ics.hyracks.api.application.INCApplicationContext;
+import edu.uci.ics.hyracks.api.comm.FrameHelper;
 import edu.uci.ics.hyracks.api.context.IHyracksJobletContext;
 import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
 import edu.uci.ics.hyracks.api.exceptions.HyracksException;
 import edu.uci.ics.hyracks.api.io.FileReference;
+import edu.uci.ics.hyracks.api.io.IBlockCompressorFactory;
 import edu.uci.ics.hyracks.api.io.IIOManager;
 import edu.uci.ics.hyracks.api.job.JobId;
 import edu.uci.ics.hyracks.api.job.profiling.counters.ICounterContext;
@@ -45,6 +47,10 @@ public class TestJobletContext implements IHyracksJobletContext {
         return ByteBuffer.allocate(frameSize);
     }
 
+    public ByteBuffer allocateFrame(int bytes) {
+        return ByteBuffer.allocate(FrameHelper.getFrameCount(frameSize, bytes) * frameSize);
+    }
+
     public int getFrameSize() {
         return frameSize;
     }
@@ -93,6 +99,11 @@ public class TestJobletContext implements IHyracksJobletContext {
         return null;
     }
 
+    @Override
+    public IBlockCompressorFactory getSpillCompressorFactory() {
+        return null;
+    }
+
     @Override
     public Class<?> loadClass(String className) {
         try {
@@ -18,6 +18,8 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 import edu.uci.ics.hyracks.api.client.NodeControllerInfo;
@@ -29,11 +31,17 @@ import edu.uci.ics.hyracks.control.nc.io.IOManager;
 
 public class TestRootContext implements IHyracksRootContext {
     private IOManager ioManager;
+    private ExecutorService executor;
 
     public TestRootContext() throws HyracksException {
         List<IODeviceHandle> devices = new ArrayList<IODeviceHandle>();
         devices.add(new IODeviceHandle(new File(System.getProperty("java.io.tmpdir")), "."));
-        ioManager = new IOManager(devices, Executors.newCachedThreadPool());
+        executor = Executors.newCachedThreadPool();
+        ioManager = new IOManager(devices, executor);
+    }
+
+    public Executor getExecutor() {
+        return executor;
     }
 
     @Override
@@ -15,6 +15,7 @@
 package edu.uci.ics.hyracks.test.support;
 
 import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
 
 import edu.uci.ics.hyracks.api.context.IHyracksJobletContext;
 import edu.uci.ics.hyracks.api.context.IHyracksTaskContext;
@@ -34,11 +35,19 @@ import edu.uci.ics.hyracks.control.nc.io.WorkspaceFileFactory;
 public class TestTaskContext implements IHyracksTaskContext {
     private final TestJobletContext jobletContext;
     private final TaskAttemptId taskId;
+    private final Executor executor;
     private WorkspaceFileFactory fileFactory;
 
     public TestTaskContext(TestJobletContext jobletContext, TaskAttemptId taskId) throws HyracksException {
+        this(jobletContext, taskId, ((TestRootContext) jobletContext.getApplicationContext().getRootContext())
+                .getExecutor());
+    }
+
+    public TestTaskContext(TestJobletContext jobletContext, TaskAttemptId taskId, Executor executor)
+            throws HyracksException {
         this.jobletContext = jobletContext;
         this.taskId = taskId;
+        this.executor = executor;
         fileFactory = new WorkspaceFileFactory(this, (IOManager) getIOManager());
     }
 
@@ -46,6 +55,11 @@ public class TestTaskContext implements IHyracksTaskContext {
     public ByteBuffer allocateFrame() {
         return jobletContext.allocateFrame();
     }
+
+    @Override
+    public ByteBuffer allocateFrame(int bytes) {
+        return jobletContext.allocateFrame(bytes);
+    }
     
     @Override
     public void deallocateFrames(int frameCount) {
@@ -96,6 +110,11 @@ public class TestTaskContext implements IHyracksTaskContext {
         return taskId;
     }
 
+    @Override
+    public Executor getExecutor() {
+        return executor;
+    }
+
     @Override
     public void setStateObject(IStateObject taskState) {
 
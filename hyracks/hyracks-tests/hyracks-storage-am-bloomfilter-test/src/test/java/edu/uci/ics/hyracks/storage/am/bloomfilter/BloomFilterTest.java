@@ -164,4 +164,62 @@ public class BloomFilterTest extends AbstractBloomFilterTest {
         bf.deactivate();
         bf.destroy();
     }
+
+    @Test
+    public void shrinkingTest() throws Exception {
+        shrinkingTest(false);
+    }
+
+    @Test
+    public void blockedShrinkingTest() throws Exception {
+        shrinkingTest(true);
+    }
+
+    private void shrinkingTest(boolean blocked) throws Exception {
+        if (LOGGER.isLoggable(Level.INFO)) {
+            LOGGER.info("TESTING SHRINKING BLOOM FILTER");
+        }
+
+        IBufferCache bufferCache = harness.getBufferCache();
+
+        int numElements = 1000;
+        long maxNumElements = 100L * numElements;
+        int[] keyFields = { 0 };
+
+        BloomFilter bf = new BloomFilter(bufferCache, harness.getFileMapProvider(), harness.getFileReference(),
+                keyFields, blocked, 0);
+
+        double acceptanleFalsePositiveRate = 0.1;
+        int maxBucketsPerElement = BloomCalculations.maxBucketsPerElement(maxNumElements);
+        BloomFilterSpecification bloomFilterSpec = BloomCalculations.computeBloomSpec(maxBucketsPerElement,
+                acceptanleFalsePositiveRate);
+
+        bf.create();
+        bf.activate();
+        IIndexBulkLoader builder = bf.createShrinkingBuilder(maxNumElements, bloomFilterSpec.getNumHashes(),
+                bloomFilterSpec.getNumBucketsPerElements());
+
+        int fieldCount = 2;
+        ArrayTupleBuilder tupleBuilder = new ArrayTupleBuilder(fieldCount);
+        ArrayTupleReference tuple = new ArrayTupleReference();
+        for (int i = 0; i < numElements; ++i) {
+            TupleUtils.createIntegerTuple(tupleBuilder, tuple, i, i);
+            builder.add(tuple);
+        }
+        builder.end();
+
+        // The filter is at most twice as large as one built for the added elements.
+        long numBits = (long) numElements * bloomFilterSpec.getNumBucketsPerElements();
+        Assert.assertTrue(bf.getNumPages() <= 2 * numBits / (bufferCache.getPageSize() * 8) + 1);
+        Assert.assertEquals(numElements, bf.getNumElements());
+
+        long[] hashes = new long[2];
+        for (int i = 0; i < numElements; ++i) {
+            TupleUtils.createIntegerTuple(tupleBuilder, tuple, i, i);
+            Assert.assertTrue(bf.contains(tuple, hashes));
+        }
+
+        bf.deactivate();
+        bf.destroy();
+    }
 }
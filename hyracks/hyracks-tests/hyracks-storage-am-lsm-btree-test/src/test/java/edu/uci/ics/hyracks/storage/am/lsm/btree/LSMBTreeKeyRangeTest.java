@@ -0,0 +1,146 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.hyracks.storage.am.lsm.btree;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.uci.ics.hyracks.api.context.IHyracksTaskContext;
+import edu.uci.ics.hyracks.api.dataflow.value.ISerializerDeserializer;
+import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
+import edu.uci.ics.hyracks.api.exceptions.HyracksException;
+import edu.uci.ics.hyracks.dataflow.common.data.marshalling.IntegerSerializerDeserializer;
+import edu.uci.ics.hyracks.dataflow.common.util.TupleUtils;
+import edu.uci.ics.hyracks.storage.am.btree.impls.RangePredicate;
+import edu.uci.ics.hyracks.storage.am.common.api.IIndexAccessor;
+import edu.uci.ics.hyracks.storage.am.common.api.IIndexCursor;
+import edu.uci.ics.hyracks.storage.am.common.ophelpers.MultiComparator;
+import edu.uci.ics.hyracks.storage.am.lsm.btree.impls.LSMBTree;
+import edu.uci.ics.hyracks.storage.am.lsm.btree.util.LSMBTreeTestContext;
+import edu.uci.ics.hyracks.storage.am.lsm.btree.util.LSMBTreeTestHarness;
+import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMMergePolicy;
+import edu.uci.ics.hyracks.storage.am.lsm.common.impls.LSMIOStatistics;
+import edu.uci.ics.hyracks.storage.am.lsm.common.impls.TieredMergePolicyFactory;
+
+@SuppressWarnings("rawtypes")
+public class LSMBTreeKeyRangeTest {
+    private static final int NUM_BATCHES = 10;
+    private static final int BATCH_SIZE = 100;
+    private static final int BATCH_KEY_SPAN = 1000;
+
+    private final LSMBTreeTestHarness harness = new LSMBTreeTestHarness();
+
+    @Before
+    public void setUp() throws HyracksException {
+        harness.setUp();
+    }
+
+    @After
+    public void tearDown() throws HyracksDataException {
+        harness.tearDown();
+    }
+
+    @Test
+    public void searchTest() throws Exception {
+        LSMBTreeTestContext ctx = createTestContext(harness.getMergePolicy());
+        LSMBTree lsmBTree = (LSMBTree) ctx.getIndex();
+        loadBatches(ctx);
+        Assert.assertEquals(NUM_BATCHES, lsmBTree.getImmutableComponents().size());
+
+        LSMIOStatistics statistics = lsmBTree.getIOStatistics();
+        for (int i = 0; i < NUM_BATCHES; i++) {
+            long numSearchedComponents = statistics.getNumSearchedComponents();
+            int lowKey = i * BATCH_KEY_SPAN;
+            Assert.assertEquals(BATCH_SIZE, countRange(ctx, lowKey, lowKey + BATCH_KEY_SPAN - 1));
+            // The disk components of the other batches are skipped.
+            Assert.assertTrue(statistics.getNumSearchedComponents() - numSearchedComponents < NUM_BATCHES);
+        }
+        Assert.assertEquals(2 * BATCH_SIZE, countRange(ctx, BATCH_KEY_SPAN / 2, 5 * BATCH_KEY_SPAN / 2));
+        Assert.assertEquals(0, countRange(ctx, BATCH_SIZE, BATCH_KEY_SPAN - 1));
+        Assert.assertEquals(0, countRange(ctx, NUM_BATCHES * BATCH_KEY_SPAN, (NUM_BATCHES + 1) * BATCH_KEY_SPAN));
+        lsmBTree.deactivate();
+        lsmBTree.destroy();
+    }
+
+    @Test
+    public void disjointMergeTest() throws Exception {
+        Map<String, String> properties = new HashMap<String, String>();
+        properties.put("size-ratio", "3");
+        properties.put("max-component-count", String.valueOf(2 * NUM_BATCHES));
+        ILSMMergePolicy mergePolicy = new TieredMergePolicyFactory().createMergePolicy(properties,
+                (IHyracksTaskContext) null);
+        LSMBTreeTestContext ctx = createTestContext(mergePolicy);
+        LSMBTree lsmBTree = (LSMBTree) ctx.getIndex();
+        loadBatches(ctx);
+        // Components with disjoint key ranges are not rewritten by merges.
+        Assert.assertEquals(0, lsmBTree.getIOStatistics().getNumMerges());
+        Assert.assertEquals(NUM_BATCHES, lsmBTree.getImmutableComponents().size());
+        Assert.assertEquals(NUM_BATCHES * BATCH_SIZE, countRange(ctx, 0, NUM_BATCHES * BATCH_KEY_SPAN));
+        lsmBTree.deactivate();
+        lsmBTree.destroy();
+    }
+
+    private LSMBTreeTestContext createTestContext(ILSMMergePolicy mergePolicy) throws Exception {
+        ISerializerDeserializer[] fieldSerdes = { IntegerSerializerDeserializer.INSTANCE,
+                IntegerSerializerDeserializer.INSTANCE };
+        LSMBTreeTestContext ctx = LSMBTreeTestContext.create(harness.getVirtualBufferCaches(),
+                harness.getFileReference(), harness.getDiskBufferCache(), harness.getDiskFileMapProvider(),
+                fieldSerdes, 1, harness.getBoomFilterFalsePositiveRate(), mergePolicy, harness.getOperationTracker(),
+                harness.getIOScheduler(), harness.getIOOperationCallback());
+        ctx.getIndex().create();
+        ctx.getIndex().activate();
+        return ctx;
+    }
+
+    /**
+     * Inserts batches of keys far apart from each other, one disk component each.
+     */
+    private void loadBatches(LSMBTreeTestContext ctx) throws Exception {
+        LSMBTree lsmBTree = (LSMBTree) ctx.getIndex();
+        for (int i = 0; i < NUM_BATCHES; i++) {
+            for (int j = 0; j < BATCH_SIZE; j++) {
+                int key = i * BATCH_KEY_SPAN + j;
+                ctx.getIndexAccessor().insert(TupleUtils.createIntegerTuple(key, key));
+            }
+            // Deactivate and the re-activate the index to force it flush its in memory component
+            lsmBTree.deactivate();
+            lsmBTree.activate();
+        }
+    }
+
+    private int countRange(LSMBTreeTestContext ctx, int lowKey, int highKey) throws Exception {
+        MultiComparator cmp = MultiComparator.create(ctx.getComparatorFactories());
+        RangePredicate rangePred = new RangePredicate(TupleUtils.createIntegerTuple(lowKey),
+                TupleUtils.createIntegerTuple(highKey), true, true, cmp, cmp);
+        IIndexAccessor accessor = ctx.getIndexAccessor();
+        IIndexCursor cursor = accessor.createSearchCursor(false);
+        int count = 0;
+        try {
+            accessor.search(cursor, rangePred);
+            while (cursor.hasNext()) {
+                cursor.next();
+                count++;
+            }
+        } finally {
+            cursor.close();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.hyracks.storage.am.lsm.btree;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.uci.ics.hyracks.api.context.IHyracksTaskContext;
+import edu.uci.ics.hyracks.api.dataflow.value.ISerializerDeserializer;
+import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
+import edu.uci.ics.hyracks.api.exceptions.HyracksException;
+import edu.uci.ics.hyracks.dataflow.common.data.marshalling.IntegerSerializerDeserializer;
+import edu.uci.ics.hyracks.storage.am.btree.OrderedIndexTestUtils;
+import edu.uci.ics.hyracks.storage.am.config.AccessMethodTestsConfig;
+import edu.uci.ics.hyracks.storage.am.lsm.btree.impls.LSMBTree;
+import edu.uci.ics.hyracks.storage.am.lsm.btree.util.LSMBTreeTestContext;
+import edu.uci.ics.hyracks.storage.am.lsm.btree.util.LSMBTreeTestHarness;
+import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMMergePolicy;
+import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMMergePolicyFactory;
+import edu.uci.ics.hyracks.storage.am.lsm.common.impls.LSMIOStatistics;
+import edu.uci.ics.hyracks.storage.am.lsm.common.impls.LeveledMergePolicyFactory;
+import edu.uci.ics.hyracks.storage.am.lsm.common.impls.TieredMergePolicyFactory;
+
+@SuppressWarnings("rawtypes")
+public class LSMBTreeSizeRatioMergePolicyTest {
+    private static final int NUM_FLUSHES = 24;
+    private static final int MAX_COMPONENT_COUNT = 8;
+
+    private final LSMBTreeTestHarness harness = new LSMBTreeTestHarness();
+    private final OrderedIndexTestUtils orderedIndexTestUtils = new OrderedIndexTestUtils();
+
+    @Before
+    public void setUp() throws HyracksException {
+        harness.setUp();
+    }
+
+    @After
+    public void tearDown() throws HyracksDataException {
+        harness.tearDown();
+    }
+
+    @Test
+    public void tieredTest() throws Exception {
+        runTest(new TieredMergePolicyFactory(), 3);
+    }
+
+    @Test
+    public void leveledTest() throws Exception {
+        runTest(new LeveledMergePolicyFactory(), 3);
+    }
+
+    @Test
+    public void maxComponentCountTest() throws Exception {
+        // With a size ratio that large, only the component count bound triggers merges.
+        runTest(new TieredMergePolicyFactory(), 1000);
+    }
+
+    private void runTest(ILSMMergePolicyFactory mergePolicyFactory, int sizeRatio) throws Exception {
+        Map<String, String> properties = new HashMap<String, String>();
+        properties.put("size-ratio", String.valueOf(sizeRatio));
+        properties.put("max-component-count", String.valueOf(MAX_COMPONENT_COUNT));
+        ILSMMergePolicy mergePolicy = mergePolicyFactory.createMergePolicy(properties, (IHyracksTaskContext) null);
+        ISerializerDeserializer[] fieldSerdes = { IntegerSerializerDeserializer.INSTANCE,
+                IntegerSerializerDeserializer.INSTANCE };
+        LSMBTreeTestContext ctx = LSMBTreeTestContext.create(harness.getVirtualBufferCaches(),
+                harness.getFileReference(), harness.getDiskBufferCache(), harness.getDiskFileMapProvider(),
+                fieldSerdes, 1, harness.getBoomFilterFalsePositiveRate(), mergePolicy, harness.getOperationTracker(),
+                harness.getIOScheduler(), harness.getIOOperationCallback());
+        LSMBTree lsmBTree = (LSMBTree) ctx.getIndex();
+        lsmBTree.create();
+        lsmBTree.activate();
+        for (int i = 0; i < NUM_FLUSHES; i++) {
+            orderedIndexTestUtils.upsertIntTuples(ctx, AccessMethodTestsConfig.BTREE_NUM_TUPLES_TO_INSERT,
+                    harness.getRandom());
+            // Deactivate and the re-activate the index to force it flush its in memory component
+            lsmBTree.deactivate();
+            lsmBTree.activate();
+            Assert.assertTrue(lsmBTree.getImmutableComponents().size() <= MAX_COMPONENT_COUNT);
+        }
+        orderedIndexTestUtils.checkPointSearches(ctx);
+        orderedIndexTestUtils.checkScan(ctx);
+
+        LSMIOStatistics statistics = lsmBTree.getIOStatistics();
+        Assert.assertEquals(NUM_FLUSHES, statistics.getNumFlushes());
+        Assert.assertTrue(statistics.getNumMerges() > 0);
+        Assert.assertTrue(statistics.getWriteAmplification() > 1);
+        Assert.assertTrue(statistics.getReadAmplification() >= 1);
+        lsmBTree.deactivate();
+        lsmBTree.destroy();
+    }
+}
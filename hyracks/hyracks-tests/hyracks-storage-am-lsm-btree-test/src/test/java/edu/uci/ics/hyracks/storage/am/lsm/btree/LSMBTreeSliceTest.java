@@ -0,0 +1,212 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.uci.ics.hyracks.storage.am.lsm.btree;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.uci.ics.hyracks.api.dataflow.value.IBinaryComparatorFactory;
+import edu.uci.ics.hyracks.api.dataflow.value.ISerializerDeserializer;
+import edu.uci.ics.hyracks.api.dataflow.value.ITypeTraits;
+import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
+import edu.uci.ics.hyracks.api.exceptions.HyracksException;
+import edu.uci.ics.hyracks.data.std.primitive.IntegerPointable;
+import edu.uci.ics.hyracks.dataflow.common.data.accessors.ITupleReference;
+import edu.uci.ics.hyracks.dataflow.common.data.marshalling.IntegerSerializerDeserializer;
+import edu.uci.ics.hyracks.dataflow.common.util.SerdeUtils;
+import edu.uci.ics.hyracks.dataflow.common.util.TupleUtils;
+import edu.uci.ics.hyracks.storage.am.btree.impls.RangePredicate;
+import edu.uci.ics.hyracks.storage.am.common.api.IIndexAccessor;
+import edu.uci.ics.hyracks.storage.am.common.api.IIndexCursor;
+import edu.uci.ics.hyracks.storage.am.common.impls.NoOpOperationCallback;
+import edu.uci.ics.hyracks.storage.am.common.ophelpers.MultiComparator;
+import edu.uci.ics.hyracks.storage.am.lsm.btree.impls.LSMBTree;
+import edu.uci.ics.hyracks.storage.am.lsm.btree.util.LSMBTreeTestContext;
+import edu.uci.ics.hyracks.storage.am.lsm.btree.util.LSMBTreeTestHarness;
+import edu.uci.ics.hyracks.storage.am.lsm.btree.util.LSMBTreeUtils;
+import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMComponent;
+import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMComponentFilter;
+import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMIndexAccessor;
+import edu.uci.ics.hyracks.storage.am.lsm.common.impls.AbstractDiskLSMComponent;
+import edu.uci.ics.hyracks.storage.am.lsm.common.impls.BlockingIOOperationCallbackWrapper;
+
+@SuppressWarnings("rawtypes")
+public class LSMBTreeSliceTest {
+    private static final int MAX_SLICE_TUPLES = 100;
+    private static final int NUM_KEYS = 1000;
+
+    private final LSMBTreeTestHarness harness = new LSMBTreeTestHarness();
+
+    @Before
+    public void setUp() throws HyracksException {
+        harness.setUp();
+    }
+
+    @After
+    public void tearDown() throws HyracksDataException {
+        harness.tearDown();
+    }
+
+    @Test
+    public void slicedMergeTest() throws Exception {
+        LSMBTreeTestContext ctx = createTestContext();
+        LSMBTree lsmBTree = (LSMBTree) ctx.getIndex();
+        upsertAndFlush(ctx, 0, NUM_KEYS, 0);
+        upsertAndFlush(ctx, NUM_KEYS / 2, NUM_KEYS + MAX_SLICE_TUPLES, 1);
+        fullMerge(lsmBTree);
+
+        int numKeys = NUM_KEYS + MAX_SLICE_TUPLES;
+        checkSlices(lsmBTree, numKeys);
+        checkValues(ctx, 0, NUM_KEYS / 2, 0);
+        checkValues(ctx, NUM_KEYS / 2, numKeys, 1);
+
+        // The slices are reloaded together.
+        lsmBTree.deactivate();
+        lsmBTree.activate();
+        checkSlices(lsmBTree, numKeys);
+        checkValues(ctx, 0, NUM_KEYS / 2, 0);
+        checkValues(ctx, NUM_KEYS / 2, numKeys, 1);
+        lsmBTree.deactivate();
+        lsmBTree.destroy();
+    }
+
+    @Test
+    public void incrementalMergeTest() throws Exception {
+        LSMBTreeTestContext ctx = createTestContext();
+        LSMBTree lsmBTree = (LSMBTree) ctx.getIndex();
+        upsertAndFlush(ctx, 0, NUM_KEYS / 2, 0);
+        upsertAndFlush(ctx, NUM_KEYS / 2, NUM_KEYS, 0);
+        fullMerge(lsmBTree);
+        checkSlices(lsmBTree, NUM_KEYS);
+        long writtenBytes = lsmBTree.getIOStatistics().getMergeWrittenBytes();
+
+        // The new keys overlap the key range of a single slice.
+        int lowKey = 2 * MAX_SLICE_TUPLES + MAX_SLICE_TUPLES / 2;
+        upsertAndFlush(ctx, lowKey, lowKey + 10, 1);
+        fullMerge(lsmBTree);
+        checkSlices(lsmBTree, NUM_KEYS);
+        int numRewrittenSlices = 0;
+        for (ILSMComponent c : lsmBTree.getImmutableComponents()) {
+            if (!((AbstractDiskLSMComponent) c).isCarriedOver()) {
+                numRewrittenSlices++;
+            }
+        }
+        Assert.assertEquals(1, numRewrittenSlices);
+        Assert.assertTrue(5 * (lsmBTree.getIOStatistics().getMergeWrittenBytes() - writtenBytes) < writtenBytes);
+        checkValues(ctx, 0, lowKey, 0);
+        checkValues(ctx, lowKey, lowKey + 10, 1);
+        checkValues(ctx, lowKey + 10, NUM_KEYS, 0);
+
+        // The kept slices outlive the merged components whose files they share.
+        lsmBTree.deactivate();
+        lsmBTree.activate();
+        checkSlices(lsmBTree, NUM_KEYS);
+        checkValues(ctx, 0, lowKey, 0);
+        checkValues(ctx, lowKey, lowKey + 10, 1);
+        checkValues(ctx, lowKey + 10, NUM_KEYS, 0);
+        lsmBTree.deactivate();
+        lsmBTree.destroy();
+    }
+
+    private LSMBTreeTestContext createTestContext() throws Exception {
+        ISerializerDeserializer[] fieldSerdes = { IntegerSerializerDeserializer.INSTANCE,
+                IntegerSerializerDeserializer.INSTANCE };
+        ITypeTraits[] typeTraits = SerdeUtils.serdesToTypeTraits(fieldSerdes);
+        IBinaryComparatorFactory[] cmpFactories = SerdeUtils.serdesToComparatorFactories(fieldSerdes, 1);
+        LSMBTree lsmBTree = LSMBTreeUtils.createLSMTree(harness.getVirtualBufferCaches(), harness.getFileReference(),
+                harness.getDiskBufferCache(), harness.getDiskFileMapProvider(), typeTraits, cmpFactories,
+                new int[] { 0 }, harness.getBoomFilterFalsePositiveRate(), harness.getMergePolicy(),
+                harness.getOperationTracker(), harness.getIOScheduler(), harness.getIOOperationCallback(), true, null,
+                null, null, null, true, false, 0, null, MAX_SLICE_TUPLES);
+        lsmBTree.create();
+        lsmBTree.activate();
+        return new LSMBTreeTestContext(fieldSerdes, lsmBTree);
+    }
+
+    /**
+     * Upserts the keys from lowKey (inclusive) to highKey (exclusive) with the given value, into one disk component.
+     */
+    private void upsertAndFlush(LSMBTreeTestContext ctx, int lowKey, int highKey, int value) throws Exception {
+        LSMBTree lsmBTree = (LSMBTree) ctx.getIndex();
+        for (int key = lowKey; key < highKey; key++) {
+            ctx.getIndexAccessor().upsert(TupleUtils.createIntegerTuple(key, value));
+        }
+        // Deactivate and the re-activate the index to force it flush its in memory component
+        lsmBTree.deactivate();
+        lsmBTree.activate();
+    }
+
+    private void fullMerge(LSMBTree lsmBTree) throws Exception {
+        BlockingIOOperationCallbackWrapper cb = new BlockingIOOperationCallbackWrapper(
+                lsmBTree.getIOOperationCallback());
+        ILSMIndexAccessor accessor = lsmBTree.createAccessor(NoOpOperationCallback.INSTANCE,
+                NoOpOperationCallback.INSTANCE);
+        accessor.scheduleFullMerge(cb);
+        cb.waitForIO();
+    }
+
+    /**
+     * Checks that the disk components are full slices of contiguous keys from 0, with disjoint key ranges.
+     */
+    private void checkSlices(LSMBTree lsmBTree, int numKeys) throws HyracksDataException {
+        List<Integer> minKeys = new ArrayList<Integer>();
+        for (ILSMComponent c : lsmBTree.getImmutableComponents()) {
+            ILSMComponentFilter keyRange = ((AbstractDiskLSMComponent) c).getKeyRange();
+            int minKey = getKey(keyRange.getMinTuple());
+            Assert.assertEquals(minKey + MAX_SLICE_TUPLES - 1, getKey(keyRange.getMaxTuple()));
+            minKeys.add(minKey);
+        }
+        Collections.sort(minKeys);
+        Assert.assertEquals(numKeys / MAX_SLICE_TUPLES, minKeys.size());
+        for (int i = 0; i < minKeys.size(); i++) {
+            Assert.assertEquals(i * MAX_SLICE_TUPLES, minKeys.get(i).intValue());
+        }
+    }
+
+    private int getKey(ITupleReference tuple) {
+        return IntegerPointable.getInteger(tuple.getFieldData(0), tuple.getFieldStart(0));
+    }
+
+    /**
+     * Checks that the keys from lowKey (inclusive) to highKey (exclusive) are all there, with the given value.
+     */
+    private void checkValues(LSMBTreeTestContext ctx, int lowKey, int highKey, int value) throws Exception {
+        MultiComparator cmp = MultiComparator.create(ctx.getComparatorFactories());
+        RangePredicate rangePred = new RangePredicate(TupleUtils.createIntegerTuple(lowKey),
+                TupleUtils.createIntegerTuple(highKey - 1), true, true, cmp, cmp);
+        IIndexAccessor accessor = ctx.getIndexAccessor();
+        IIndexCursor cursor = accessor.createSearchCursor(false);
+        int key = lowKey;
+        try {
+            accessor.search(cursor, rangePred);
+            while (cursor.hasNext()) {
+                cursor.next();
+                ITupleReference tuple = cursor.getTuple();
+                Assert.assertEquals(key++, getKey(tuple));
+                Assert.assertEquals(value, IntegerPointable.getInteger(tuple.getFieldData(1), tuple.getFieldStart(1)));
+            }
+        } finally {
+            cursor.close();
+        }
+        Assert.assertEquals(highKey, key);
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.hyracks.storage.am.lsm.common;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
+import edu.uci.ics.hyracks.api.io.IODeviceHandle;
+import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMComponent;
+import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMIOOperation.LSMIOOpertionType;
+import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMIOOperationCallback;
+import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMIORateLimiter;
+import edu.uci.ics.hyracks.storage.am.lsm.common.api.ILSMMergeOperation;
+import edu.uci.ics.hyracks.storage.am.lsm.common.impls.BoundedAsynchronousScheduler;
+
+public class BoundedAsynchronousSchedulerTest {
+    private static final long OPERATION_MILLIS = 50;
+    private static final long TIMEOUT_SECONDS = 60;
+    private static final int PAGE_SIZE = 4096;
+
+    private final IODeviceHandle device0 = new IODeviceHandle(new File("device0"), ".");
+    private final IODeviceHandle device1 = new IODeviceHandle(new File("device1"), ".");
+    private final Map<IODeviceHandle, Integer> runningMerges = new HashMap<IODeviceHandle, Integer>();
+    private final Map<IODeviceHandle, Integer> maxRunningMerges = new HashMap<IODeviceHandle, Integer>();
+    private final List<String> startedOperations = Collections.synchronizedList(new ArrayList<String>());
+    private final List<Thread> threads = Collections.synchronizedList(new ArrayList<Thread>());
+
+    @Test
+    public void maxConcurrentMergesTest() throws Exception {
+        BoundedAsynchronousScheduler scheduler = createScheduler(1, 8, 2, 0);
+        int numMerges = 16;
+        CountDownLatch done = new CountDownLatch(numMerges);
+        for (int i = 0; i < numMerges; i++) {
+            scheduler.scheduleOperation(new TestOperation("merge" + i, LSMIOOpertionType.MERGE, i % 2 == 0 ? device0
+                    : device1, 0, null, null, done));
+        }
+        Assert.assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        Assert.assertTrue(maxRunningMerges.get(device0) <= 2);
+        Assert.assertTrue(maxRunningMerges.get(device1) <= 2);
+    }
+
+    @Test
+    public void flushPriorityTest() throws Exception {
+        BoundedAsynchronousScheduler scheduler = createScheduler(1, 1, 1, 0);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch blocker = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(3);
+        scheduler.scheduleOperation(new TestOperation("flush0", LSMIOOpertionType.FLUSH, device0, 0, started,
+                blocker, done));
+        Assert.assertTrue(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        // Waits for the flush thread.
+        scheduler.scheduleOperation(new TestOperation("flush1", LSMIOOpertionType.FLUSH, device0, 0, null, null,
+                done));
+        // Waits for the flush that waits for the flush thread.
+        scheduler.scheduleOperation(new TestOperation("merge", LSMIOOpertionType.MERGE, device1, 0, null, null,
+                done));
+        // The thread of the merge pool is created for the merge, after the one of the flush pool, and it waits
+        // before running the merge, until the waiting flush starts.
+        awaitWaiting(threads.get(1));
+        Assert.assertEquals(Collections.singletonList("flush0"), new ArrayList<String>(startedOperations));
+        blocker.countDown();
+        Assert.assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        Assert.assertEquals(3, startedOperations.size());
+    }
+
+    @Test
+    public void mergeRateLimitTest() throws Exception {
+        // 1 MB per second: the concurrent merges write the first MB from the full bucket, and each next one waits.
+        BoundedAsynchronousScheduler scheduler = createScheduler(1, 3, 3, 1);
+        int numMerges = 3;
+        CountDownLatch done = new CountDownLatch(numMerges);
+        long startTime = System.currentTimeMillis();
+        for (int i = 0; i < numMerges; i++) {
+            scheduler.scheduleOperation(new TestOperation("merge" + i, LSMIOOpertionType.MERGE, device0,
+                    1024 * 1024, null, null, done));
+        }
+        Assert.assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        Assert.assertTrue(System.currentTimeMillis() - startTime >= (numMerges - 1) * 1000 - OPERATION_MILLIS);
+    }
+
+    private BoundedAsynchronousScheduler createScheduler(int numFlushThreads, int numMergeThreads,
+            int maxConcurrentMergesPerDevice, double mergeMBPerSecond) {
+        BoundedAsynchronousScheduler scheduler = new BoundedAsynchronousScheduler(numFlushThreads, numMergeThreads,
+                maxConcurrentMergesPerDevice, mergeMBPerSecond);
+        final ThreadFactory threadFactory = Executors.defaultThreadFactory();
+        scheduler.init(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = threadFactory.newThread(r);
+                threads.add(thread);
+                return thread;
+            }
+        });
+        return scheduler;
+    }
+
+    private static void awaitWaiting(Thread thread) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS);
+        while (thread.getState() != Thread.State.WAITING) {
+            Assert.assertTrue(System.currentTimeMillis() < deadline);
+            Thread.yield();
+        }
+    }
+
+    private class TestOperation implements ILSMMergeOperation {
+        private final String name;
+        private final LSMIOOpertionType type;
+        private final IODeviceHandle device;
+        private final long size;
+        private final CountDownLatch started;
+        private final CountDownLatch blocker;
+        private final CountDownLatch done;
+        private ILSMIORateLimiter rateLimiter;
+
+        /**
+         * @param size
+         *            the number of bytes that the operation writes, in pages
+         */
+        public TestOperation(String name, LSMIOOpertionType type, IODeviceHandle device, long size,
+                CountDownLatch started, CountDownLatch blocker, CountDownLatch done) {
+            this.name = name;
+            this.type = type;
+            this.device = device;
+            this.size = size;
+            this.started = started;
+            this.blocker = blocker;
+            this.done = done;
+        }
+
+        @Override
+        public Set<IODeviceHandle> getReadDevices() {
+            return Collections.singleton(device);
+        }
+
+        @Override
+        public Set<IODeviceHandle> getWriteDevices() {
+            return Collections.singleton(device);
+        }
+
+        @Override
+        public Boolean call() throws HyracksDataException {
+            startedOperations.add(name);
+            if (type == LSMIOOpertionType.MERGE) {
+                synchronized (runningMerges) {
+                    Integer numMerges = runningMerges.get(device);
+                    numMerges = numMerges == null ? 1 : numMerges + 1;
+                    runningMerges.put(device, numMerges);
+                    Integer maxNumMerges = maxRunningMerges.get(device);
+                    maxRunningMerges.put(device, maxNumMerges == null ? numMerges : Math.max(maxNumMerges,
+                            numMerges));
+                }
+            }
+            if (started != null) {
+                started.countDown();
+            }
+            try {
+                if (blocker != null) {
+                    blocker.await();
+                }
+                for (long written = 0; rateLimiter != null && written < size; written += PAGE_SIZE) {
+                    rateLimiter.acquire(PAGE_SIZE);
+                }
+                Thread.sleep(OPERATION_MILLIS);
+            } catch (InterruptedException e) {
+                throw new HyracksDataException(e);
+            } finally {
+                if (type == LSMIOOpertionType.MERGE) {
+                    synchronized (runningMerges) {
+                        runningMerges.put(device, runningMerges.get(device) - 1);
+                    }
+                }
+                done.countDown();
+            }
+            return true;
+        }
+
+        @Override
+        public ILSMIOOperationCallback getCallback() {
+            return null;
+        }
+
+        @Override
+        public String getIndexUniqueIdentifier() {
+            return name;
+        }
+
+        @Override
+        public LSMIOOpertionType getIOOpertionType() {
+            return type;
+        }
+
+        @Override
+        public List<ILSMComponent> getMergingComponents() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public ILSMIORateLimiter getRateLimiter() {
+            return rateLimiter;
+        }
+
+        @Override
+        public void setRateLimiter(ILSMIORateLimiter rateLimiter) {
+            this.rateLimiter = rateLimiter;
+        }
+    }
+}
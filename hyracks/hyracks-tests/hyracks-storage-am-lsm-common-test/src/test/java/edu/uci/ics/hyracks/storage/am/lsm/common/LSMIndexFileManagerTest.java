@@ -16,6 +16,7 @@
 package edu.uci.ics.hyracks.storage.am.lsm.common;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 import java.io.File;
 import java.io.FilenameFilter;
@@ -209,6 +210,63 @@ public class LSMIndexFileManagerTest {
         }
     }
 
+    @Test
+    public void sliceValidationTest() throws InterruptedException, IOException, IndexException {
+        ILSMIndexFileManager fileManager = new DummyLSMIndexFileManager(fileMapProvider, file, new DummyTreeFactory());
+        fileManager.createDirs();
+
+        List<FileReference> flushFiles = new ArrayList<FileReference>();
+        int numFileNames = 10;
+        long sleepTime = 5;
+        for (int i = 0; i < numFileNames; i++) {
+            flushFiles.add(fileManager.getRelFlushFileReference().getInsertIndexFileReference());
+            Thread.sleep(sleepTime);
+        }
+        List<FileReference> allFiles = new ArrayList<FileReference>();
+        allFiles.addAll(flushFiles);
+
+        // Simulate a merge of the flush files 0 to 4 into 3 slices, and one of the flush files 5 to 9 that did not
+        // write its first slice.
+        List<FileReference> completeSlices = simulateSlicedMerge(fileManager, flushFiles.get(0), flushFiles.get(4),
+                0, 3);
+        allFiles.addAll(completeSlices);
+        List<FileReference> incompleteSlices = simulateSlicedMerge(fileManager, flushFiles.get(5),
+                flushFiles.get(9), 1, 3);
+        allFiles.addAll(incompleteSlices);
+
+        assertNull(fileManager.getSliceGroup(flushFiles.get(0).getFile().getName()));
+        assertEquals(fileManager.getSliceGroup(completeSlices.get(0).getFile().getName()),
+                fileManager.getSliceGroup(completeSlices.get(2).getFile().getName()));
+
+        for (FileReference fileRef : allFiles) {
+            fileRef.getFile().createNewFile();
+            fileRef.getFile().deleteOnExit();
+        }
+
+        // The slices of the complete merge replace the flush files 0 to 4, and the slices of the incomplete merge
+        // are deleted.
+        List<String> expectedValidFiles = new ArrayList<String>();
+        for (int i = numFileNames - 1; i >= 5; i--) {
+            expectedValidFiles.add(flushFiles.get(i).getFile().getName());
+        }
+        for (FileReference slice : completeSlices) {
+            expectedValidFiles.add(slice.getFile().getName());
+        }
+
+        List<LSMComponentFileReferences> lsmComonentFileReference = fileManager.cleanupAndGetValidFiles();
+        assertEquals(expectedValidFiles.size(), lsmComonentFileReference.size());
+        for (int i = 0; i < expectedValidFiles.size(); i++) {
+            assertEquals(expectedValidFiles.get(i), lsmComonentFileReference.get(i).getInsertIndexFileReference()
+                    .getFile().getName());
+        }
+        FilenameFilter filter = new FilenameFilter() {
+            public boolean accept(File dir, String name) {
+                return !name.startsWith(".");
+            }
+        };
+        assertEquals(expectedValidFiles.size(), new File(baseDir).list(filter).length);
+    }
+
     @Test
     public void singleIODeviceTest() throws InterruptedException, IOException, IndexException {
         IOManager singleDeviceIOManager = createIOManager(1);
@@ -247,6 +305,16 @@ public class LSMIndexFileManagerTest {
         return relMergeFileRefs.getInsertIndexFileReference();
     }
 
+    private List<FileReference> simulateSlicedMerge(ILSMIndexFileManager fileManager, FileReference a,
+            FileReference b, int firstSlice, int numSlices) throws HyracksDataException {
+        List<FileReference> slices = new ArrayList<FileReference>();
+        for (int i = firstSlice; i < numSlices; i++) {
+            slices.add(fileManager.getRelMergeSliceFileReference(a.getFile().getName(), b.getFile().getName(), i)
+                    .getInsertIndexFileReference());
+        }
+        return slices;
+    }
+
     private String getMergeFileName(ILSMIndexFileManager fileNameManager, String firstFile, String lastFile)
             throws HyracksDataException {
         File f1 = new File(firstFile);
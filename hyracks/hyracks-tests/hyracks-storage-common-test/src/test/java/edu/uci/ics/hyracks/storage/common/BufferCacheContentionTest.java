@@ -0,0 +1,182 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.hyracks.storage.common;
+
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.uci.ics.hyracks.api.context.IHyracksTaskContext;
+import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
+import edu.uci.ics.hyracks.api.io.FileReference;
+import edu.uci.ics.hyracks.storage.common.buffercache.BufferCache;
+import edu.uci.ics.hyracks.storage.common.buffercache.BufferCacheFactory;
+import edu.uci.ics.hyracks.storage.common.buffercache.ClockPageReplacementStrategy;
+import edu.uci.ics.hyracks.storage.common.buffercache.DelayPageCleanerPolicy;
+import edu.uci.ics.hyracks.storage.common.buffercache.HeapBufferAllocator;
+import edu.uci.ics.hyracks.storage.common.buffercache.IBufferCache;
+import edu.uci.ics.hyracks.storage.common.buffercache.ICachedPage;
+import edu.uci.ics.hyracks.storage.common.buffercache.OptimisticBufferCache;
+import edu.uci.ics.hyracks.storage.common.buffercache.PartitionedClockPageReplacementStrategy;
+import edu.uci.ics.hyracks.storage.common.file.BufferedFileHandle;
+import edu.uci.ics.hyracks.storage.common.file.IFileMapManager;
+import edu.uci.ics.hyracks.storage.common.file.TransientFileMapManager;
+import edu.uci.ics.hyracks.test.support.TestUtils;
+
+/**
+ * Concurrent pin/unpin workload against the default and the optimistic buffer cache. Every page of the test file
+ * stores its own page id, so each pin also checks that a thread never gets handed a page holding another page's
+ * contents. The measured throughput is logged; run with a larger DURATION_MILLIS and NUM_THREADS to use this as a
+ * contention benchmark.
+ */
+public class BufferCacheContentionTest {
+    private static final Logger LOGGER = Logger.getLogger(BufferCacheContentionTest.class.getName());
+
+    protected static final String tmpDir = System.getProperty("java.io.tmpdir");
+    protected static final String sep = System.getProperty("file.separator");
+
+    private static final int PAGE_SIZE = 256;
+    private static final int NUM_PAGES = 64;
+    private static final int MAX_OPEN_FILES = 10;
+    private static final int NUM_THREADS = 8;
+    private static final long DURATION_MILLIS = 1000;
+    private static final int HYRACKS_FRAME_SIZE = PAGE_SIZE;
+    private IHyracksTaskContext ctx = TestUtils.create(HYRACKS_FRAME_SIZE);
+
+    private final static ThreadFactory threadFactory = new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+            return new Thread(r);
+        }
+    };
+
+    @Test
+    public void clockBufferCacheTest() throws Exception {
+        IFileMapManager fileMapManager = new TransientFileMapManager();
+        runWorkload("clock", new BufferCache(ctx.getIOManager(), new ClockPageReplacementStrategy(
+                new HeapBufferAllocator(), PAGE_SIZE, NUM_PAGES), new DelayPageCleanerPolicy(1000), fileMapManager,
+                MAX_OPEN_FILES, threadFactory), fileMapManager);
+    }
+
+    @Test
+    public void optimisticBufferCacheTest() throws Exception {
+        IFileMapManager fileMapManager = new TransientFileMapManager();
+        runWorkload("optimistic", new OptimisticBufferCache(ctx.getIOManager(),
+                new PartitionedClockPageReplacementStrategy(new HeapBufferAllocator(), PAGE_SIZE, NUM_PAGES, 4),
+                new DelayPageCleanerPolicy(1000), fileMapManager, MAX_OPEN_FILES, threadFactory), fileMapManager);
+    }
+
+    @Test
+    public void configuredBufferCacheTest() throws Exception {
+        IFileMapManager fileMapManager = new TransientFileMapManager();
+        BufferCache bufferCache = BufferCacheFactory.createBufferCache(ctx.getIOManager(), new HeapBufferAllocator(),
+                PAGE_SIZE, NUM_PAGES, new DelayPageCleanerPolicy(1000), fileMapManager, MAX_OPEN_FILES,
+                threadFactory);
+        Assert.assertEquals(BufferCache.class, bufferCache.getClass());
+        bufferCache.close();
+
+        // the property selects the optimistic buffer cache with a partitioned clock
+        System.setProperty(BufferCacheFactory.CLOCK_PARTITIONS_PROPERTY, "4");
+        try {
+            bufferCache = BufferCacheFactory.createBufferCache(ctx.getIOManager(), new HeapBufferAllocator(),
+                    PAGE_SIZE, NUM_PAGES, new DelayPageCleanerPolicy(1000), fileMapManager, MAX_OPEN_FILES,
+                    threadFactory);
+        } finally {
+            System.clearProperty(BufferCacheFactory.CLOCK_PARTITIONS_PROPERTY);
+        }
+        Assert.assertEquals(OptimisticBufferCache.class, bufferCache.getClass());
+        runWorkload("configured", bufferCache, fileMapManager);
+    }
+
+    private void runWorkload(String name, IBufferCache bufferCache, IFileMapManager fileMapManager) throws Exception {
+        FileReference file = new FileReference(new File(tmpDir + sep + "contentionTestFile-" + name));
+        bufferCache.createFile(file);
+        final int fileId = fileMapManager.lookupFileId(file);
+        bufferCache.openFile(fileId);
+
+        // Twice as many pages as the cache holds, so that the hot half is mostly hit and the cold half evicts.
+        final int filePages = NUM_PAGES * 2;
+        for (int i = 0; i < filePages; i++) {
+            ICachedPage page = bufferCache.pin(BufferedFileHandle.getDiskPageId(fileId, i), true);
+            page.acquireWriteLatch();
+            try {
+                page.getBuffer().putInt(0, i);
+            } finally {
+                page.releaseWriteLatch(true);
+                bufferCache.unpin(page);
+            }
+        }
+
+        final IBufferCache cache = bufferCache;
+        final AtomicBoolean stop = new AtomicBoolean();
+        final AtomicLong pins = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+        Thread[] threads = new Thread[NUM_THREADS];
+        for (int t = 0; t < NUM_THREADS; t++) {
+            final Random rnd = new Random(t);
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    long localPins = 0;
+                    try {
+                        while (!stop.get()) {
+                            // 90% of the accesses go to a hot set of a quarter of the cache.
+                            int pageId = rnd.nextInt(10) != 0 ? rnd.nextInt(NUM_PAGES / 4) : rnd.nextInt(filePages);
+                            ICachedPage page = cache.pin(BufferedFileHandle.getDiskPageId(fileId, pageId), false);
+                            page.acquireReadLatch();
+                            try {
+                                if (page.getBuffer().getInt(0) != pageId) {
+                                    errors.incrementAndGet();
+                                }
+                            } finally {
+                                page.releaseReadLatch();
+                                cache.unpin(page);
+                            }
+                            localPins++;
+                        }
+                    } catch (HyracksDataException e) {
+                        errors.incrementAndGet();
+                    }
+                    pins.addAndGet(localPins);
+                }
+            });
+        }
+        long start = System.currentTimeMillis();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        Thread.sleep(DURATION_MILLIS);
+        stop.set(true);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsed = System.currentTimeMillis() - start;
+        if (LOGGER.isLoggable(Level.INFO)) {
+            LOGGER.info(name + " buffer cache: " + NUM_THREADS + " threads, " + pins.get() + " pins in " + elapsed
+                    + "ms (" + (pins.get() * 1000 / Math.max(1, elapsed)) + " pins/s)");
+        }
+        Assert.assertEquals(0, errors.get());
+
+        bufferCache.closeFile(fileId);
+        bufferCache.deleteFile(fileId, false);
+        bufferCache.close();
+    }
+}
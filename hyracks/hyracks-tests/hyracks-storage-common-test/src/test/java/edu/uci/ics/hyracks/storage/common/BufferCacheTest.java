@@ -15,6 +15,8 @@
 package edu.uci.ics.hyracks.storage.common;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
@@ -22,6 +24,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.AfterClass;
 import org.junit.Assert;
@@ -30,6 +34,7 @@ import org.junit.Test;
 import edu.uci.ics.hyracks.api.context.IHyracksTaskContext;
 import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
 import edu.uci.ics.hyracks.api.io.FileReference;
+import edu.uci.ics.hyracks.storage.common.buffercache.AdaptiveReadAhead;
 import edu.uci.ics.hyracks.storage.common.buffercache.IBufferCache;
 import edu.uci.ics.hyracks.storage.common.buffercache.ICachedPage;
 import edu.uci.ics.hyracks.storage.common.file.BufferedFileHandle;
@@ -411,6 +416,163 @@ public class BufferCacheTest {
         bufferCache.closeFile(fileId);
     }
 
+    @Test
+    public void prefetchTest() throws HyracksDataException {
+        TestStorageManagerComponentHolder.init(PAGE_SIZE, NUM_PAGES, MAX_OPEN_FILES);
+        IBufferCache bufferCache = TestStorageManagerComponentHolder.getBufferCache(ctx);
+        IFileMapProvider fmp = TestStorageManagerComponentHolder.getFileMapProvider(ctx);
+        String fileName = getFileName();
+        FileReference file = new FileReference(new File(fileName));
+        bufferCache.createFile(file);
+        int fileId = fmp.lookupFileId(file);
+        int numFilePages = NUM_PAGES * 3;
+        bufferCache.openFile(fileId);
+
+        // write more pages than fit into the cache, so that the first pages are evicted
+        for (int i = 0; i < numFilePages; i++) {
+            ICachedPage page = bufferCache.pin(BufferedFileHandle.getDiskPageId(fileId, i), true);
+            page.acquireWriteLatch();
+            try {
+                page.getBuffer().putInt(0, i);
+            } finally {
+                page.releaseWriteLatch(true);
+                bufferCache.unpin(page);
+            }
+        }
+
+        // scan the file with read-ahead and verify the contents of the pages
+        AdaptiveReadAhead readAhead = new AdaptiveReadAhead(NUM_PAGES / 2);
+        readAhead.reset(numFilePages - 1);
+        for (int i = 0; i < numFilePages; i++) {
+            readAhead.notifyPageAccess(bufferCache, fileId, i);
+            ICachedPage page = bufferCache.pin(BufferedFileHandle.getDiskPageId(fileId, i), false, true);
+            page.acquireReadLatch();
+            try {
+                Assert.assertEquals(i, page.getBuffer().getInt(0));
+            } finally {
+                page.releaseReadLatch();
+                bufferCache.unpin(page);
+            }
+        }
+        Assert.assertEquals(NUM_PAGES / 2, readAhead.getWindow());
+
+        // prefetching past the end of the file must neither fail nor leave pages pinned
+        bufferCache.prefetch(BufferedFileHandle.getDiskPageId(fileId, numFilePages), 3);
+
+        bufferCache.closeFile(fileId);
+        bufferCache.close();
+    }
+
+    @Test
+    public void prefetchConcurrentWithNewPagesTest() throws Exception {
+        TestStorageManagerComponentHolder.init(PAGE_SIZE, NUM_PAGES, MAX_OPEN_FILES);
+        final IBufferCache bufferCache = TestStorageManagerComponentHolder.getBufferCache(ctx);
+        IFileMapProvider fmp = TestStorageManagerComponentHolder.getFileMapProvider(ctx);
+        String fileName = getFileName();
+        FileReference file = new FileReference(new File(fileName));
+        bufferCache.createFile(file);
+        final int fileId = fmp.lookupFileId(file);
+        final int numFilePages = NUM_PAGES * 3;
+        bufferCache.openFile(fileId);
+
+        // keep reading ahead over the file while its pages are re-initialized as new pages
+        final AtomicBoolean done = new AtomicBoolean();
+        final AtomicReference<Exception> prefetchFailure = new AtomicReference<Exception>();
+        Thread prefetcher = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    while (!done.get()) {
+                        bufferCache.prefetch(BufferedFileHandle.getDiskPageId(fileId, 0), numFilePages);
+                    }
+                } catch (Exception e) {
+                    prefetchFailure.set(e);
+                }
+            }
+        };
+        prefetcher.start();
+        try {
+            for (int round = 1; round <= 200; round++) {
+                for (int i = 0; i < numFilePages; i++) {
+                    ICachedPage page = bufferCache.pin(BufferedFileHandle.getDiskPageId(fileId, i), true);
+                    page.acquireWriteLatch();
+                    try {
+                        page.getBuffer().putInt(0, round);
+                    } finally {
+                        page.releaseWriteLatch(true);
+                        bufferCache.unpin(page);
+                    }
+                }
+                // a read-ahead that raced with a new page would have overwritten it with the previous round
+                for (int i = 0; i < numFilePages; i++) {
+                    ICachedPage page = bufferCache.pin(BufferedFileHandle.getDiskPageId(fileId, i), false);
+                    page.acquireReadLatch();
+                    try {
+                        Assert.assertEquals(round, page.getBuffer().getInt(0));
+                    } finally {
+                        page.releaseReadLatch();
+                        bufferCache.unpin(page);
+                    }
+                }
+            }
+        } finally {
+            done.set(true);
+            prefetcher.join();
+        }
+        Assert.assertNull(prefetchFailure.get());
+
+        bufferCache.closeFile(fileId);
+        bufferCache.close();
+    }
+
+    @Test
+    public void flushDirtyPagesTest() throws HyracksDataException, IOException {
+        TestStorageManagerComponentHolder.init(PAGE_SIZE, NUM_PAGES, MAX_OPEN_FILES);
+        IBufferCache bufferCache = TestStorageManagerComponentHolder.getBufferCache(ctx);
+        IFileMapProvider fmp = TestStorageManagerComponentHolder.getFileMapProvider(ctx);
+        String fileName = getFileName();
+        FileReference file = new FileReference(new File(fileName));
+        bufferCache.createFile(file);
+        int fileId = fmp.lookupFileId(file);
+        bufferCache.openFile(fileId);
+
+        // dirty a few pages with a gap, so that the flush needs more than one write
+        int[] pageIds = new int[] { 4, 0, 1, 2, 5, 7 };
+        List<ICachedPage> pages = new ArrayList<ICachedPage>();
+        for (int pageId : pageIds) {
+            ICachedPage page = bufferCache.pin(BufferedFileHandle.getDiskPageId(fileId, pageId), true);
+            page.acquireWriteLatch();
+            try {
+                page.getBuffer().putInt(0, pageId + 1);
+            } finally {
+                page.releaseWriteLatch(true);
+            }
+            pages.add(page);
+        }
+        try {
+            bufferCache.flushDirtyPages(pages);
+        } finally {
+            for (ICachedPage page : pages) {
+                bufferCache.unpin(page);
+            }
+        }
+        bufferCache.force(fileId, false);
+
+        // verify the flushed pages on disk
+        RandomAccessFile raf = new RandomAccessFile(fileName, "r");
+        try {
+            for (int pageId : pageIds) {
+                raf.seek((long) pageId * PAGE_SIZE);
+                Assert.assertEquals(pageId + 1, raf.readInt());
+            }
+        } finally {
+            raf.close();
+        }
+
+        bufferCache.closeFile(fileId);
+        bufferCache.close();
+    }
+
     @AfterClass
     public static void cleanup() throws Exception {
         for (String s : openedFiles) {
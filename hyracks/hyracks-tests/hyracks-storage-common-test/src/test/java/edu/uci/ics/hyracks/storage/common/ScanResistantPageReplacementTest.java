@@ -0,0 +1,131 @@
+/*
+ * Copyright 2009-2013 by The Regents of the University of California
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * you may obtain a copy of the License from
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.uci.ics.hyracks.storage.common;
+
+import java.io.File;
+import java.util.concurrent.ThreadFactory;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.uci.ics.hyracks.api.context.IHyracksTaskContext;
+import edu.uci.ics.hyracks.api.exceptions.HyracksDataException;
+import edu.uci.ics.hyracks.api.io.FileReference;
+import edu.uci.ics.hyracks.storage.common.buffercache.BufferCache;
+import edu.uci.ics.hyracks.storage.common.buffercache.BufferCacheFactory;
+import edu.uci.ics.hyracks.storage.common.buffercache.DelayPageCleanerPolicy;
+import edu.uci.ics.hyracks.storage.common.buffercache.HeapBufferAllocator;
+import edu.uci.ics.hyracks.storage.common.buffercache.IBufferCache;
+import edu.uci.ics.hyracks.storage.common.buffercache.ICachedPage;
+import edu.uci.ics.hyracks.storage.common.buffercache.ScanResistantClockPageReplacementStrategy;
+import edu.uci.ics.hyracks.storage.common.file.BufferedFileHandle;
+import edu.uci.ics.hyracks.storage.common.file.IFileMapManager;
+import edu.uci.ics.hyracks.storage.common.file.TransientFileMapManager;
+import edu.uci.ics.hyracks.test.support.TestUtils;
+
+public class ScanResistantPageReplacementTest {
+    protected static final String tmpDir = System.getProperty("java.io.tmpdir");
+    protected static final String sep = System.getProperty("file.separator");
+
+    private static final int PAGE_SIZE = 256;
+    private static final int NUM_PAGES = 20;
+    private static final int NUM_HOT_PAGES = 5;
+    private static final int NUM_FILE_PAGES = NUM_PAGES * 5;
+    private static final int MAX_OPEN_FILES = 10;
+    private static final int HYRACKS_FRAME_SIZE = PAGE_SIZE;
+    private IHyracksTaskContext ctx = TestUtils.create(HYRACKS_FRAME_SIZE);
+
+    private final static ThreadFactory threadFactory = new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+            return new Thread(r);
+        }
+    };
+
+    @Test
+    public void hotPagesSurviveSequentialScanTest() throws HyracksDataException {
+        IFileMapManager fileMapManager = new TransientFileMapManager();
+        IBufferCache bufferCache = new BufferCache(ctx.getIOManager(), new ScanResistantClockPageReplacementStrategy(
+                new HeapBufferAllocator(), PAGE_SIZE, NUM_PAGES), new DelayPageCleanerPolicy(1000), fileMapManager,
+                MAX_OPEN_FILES, threadFactory);
+        runHotPagesWorkload(bufferCache, fileMapManager);
+    }
+
+    @Test
+    public void configuredReplacementTest() throws HyracksDataException {
+        IFileMapManager fileMapManager = new TransientFileMapManager();
+        // the property selects the scan-resistant strategy for the buffer caches built by the factory
+        System.setProperty(BufferCacheFactory.REPLACEMENT_PROPERTY, BufferCacheFactory.SCAN_RESISTANT_REPLACEMENT);
+        BufferCache bufferCache;
+        try {
+            bufferCache = BufferCacheFactory.createBufferCache(ctx.getIOManager(), new HeapBufferAllocator(),
+                    PAGE_SIZE, NUM_PAGES, new DelayPageCleanerPolicy(1000), fileMapManager, MAX_OPEN_FILES,
+                    threadFactory);
+        } finally {
+            System.clearProperty(BufferCacheFactory.REPLACEMENT_PROPERTY);
+        }
+        runHotPagesWorkload(bufferCache, fileMapManager);
+    }
+
+    private void runHotPagesWorkload(IBufferCache bufferCache, IFileMapManager fileMapManager)
+            throws HyracksDataException {
+        FileReference file = new FileReference(new File(tmpDir + sep + "scanResistanceTestFile"));
+        bufferCache.createFile(file);
+        int fileId = fileMapManager.lookupFileId(file);
+        bufferCache.openFile(fileId);
+
+        for (int i = 0; i < NUM_FILE_PAGES; i++) {
+            ICachedPage page = bufferCache.pin(BufferedFileHandle.getDiskPageId(fileId, i), true);
+            page.acquireWriteLatch();
+            try {
+                page.getBuffer().putInt(0, i);
+            } finally {
+                page.releaseWriteLatch(true);
+                bufferCache.unpin(page);
+            }
+        }
+
+        // Reference the hot pages a few times so that they get promoted.
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < NUM_HOT_PAGES; i++) {
+                ICachedPage page = bufferCache.pin(BufferedFileHandle.getDiskPageId(fileId, i), false);
+                Assert.assertEquals(i, page.getBuffer().getInt(0));
+                bufferCache.unpin(page);
+            }
+            scan(bufferCache, fileId, NUM_HOT_PAGES + round * NUM_PAGES / 2, NUM_HOT_PAGES + (round + 1) * NUM_PAGES
+                    / 2);
+        }
+
+        // A scan over several times the size of the cache must not evict them.
+        scan(bufferCache, fileId, NUM_HOT_PAGES, NUM_FILE_PAGES);
+        for (int i = 0; i < NUM_HOT_PAGES; i++) {
+            ICachedPage page = bufferCache.tryPin(BufferedFileHandle.getDiskPageId(fileId, i));
+            Assert.assertNotNull("Hot page " + i + " was evicted by a sequential scan", page);
+            Assert.assertEquals(i, page.getBuffer().getInt(0));
+            bufferCache.unpin(page);
+        }
+
+        bufferCache.closeFile(fileId);
+        bufferCache.deleteFile(fileId, false);
+        bufferCache.close();
+    }
+
+    private void scan(IBufferCache bufferCache, int fileId, int fromPage, int toPage) throws HyracksDataException {
+        for (int i = fromPage; i < toPage; i++) {
+            ICachedPage page = bufferCache.pin(BufferedFileHandle.getDiskPageId(fileId, i), false, true);
+            Assert.assertEquals(i, page.getBuffer().getInt(0));
+            bufferCache.unpin(page);
+        }
+    }
+}